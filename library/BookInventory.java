@@ -4,6 +4,7 @@ import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -11,6 +12,36 @@ public class BookInventory {
     private final Map<String, Book> books = new HashMap<>();
     private final Map<String, Set<BookCopy>> copiesByBookId = new HashMap<>();
     private final Map<String, Deque<BookCopy>> availableCopiesByBookId = new HashMap<>();
+    private final Map<String, BookCopy> copiesById = new HashMap<>(); // copyId (barcode) -> copy, O(1) scan lookup
+    private final CanonicalBookPool bookPool; // shared Book instances across inventories
+    private InventoryHistory history; // optional versioned record for point-in-time queries
+
+    public BookInventory(){
+        this(CanonicalBookPool.shared());
+    }
+
+    public BookInventory(CanonicalBookPool bookPool){
+        if(bookPool == null){
+            throw new IllegalArgumentException("CanonicalBookPool cannot be null");
+        }
+        this.bookPool = bookPool;
+    }
+
+    // attachHistory
+    // Starts recording copy additions/removals into the history. Existing copies are recorded as they are now
+    // (borrowers of copies already on loan are unknown to the inventory), so attach before loans start.
+    public void attachHistory(InventoryHistory history){
+        if(history == null){
+            throw new IllegalArgumentException("InventoryHistory cannot be null");
+        }
+        if(this.history != null){
+            throw new IllegalStateException("InventoryHistory is already attached");
+        }
+        this.history = history;
+        for(BookCopy copy : copiesById.values()){
+            history.recordCopyAdded(copy);
+        }
+    }
 
     // addBook
     // Registers a new book and creates N physical copies.
@@ -27,7 +58,10 @@ public class BookInventory {
                 throw new IllegalStateException("Book with ID " + bookId + " already exists in inventory");
             }
 
-            books.put(bookId,book);
+            // keep the shared catalog entry; copies reuse its interned bookId string
+            Book canonical = bookPool.canonicalize(book);
+            bookId = canonical.getBookId();
+            books.put(bookId,canonical);
             copiesByBookId.put(bookId, new HashSet<>());
             availableCopiesByBookId.put(bookId, new ArrayDeque<>());
 
@@ -37,6 +71,10 @@ public class BookInventory {
 
                 copiesByBookId.get(bookId).add(copy);
                 availableCopiesByBookId.get(bookId).add(copy);
+                copiesById.put(copyId, copy);
+                if(history != null){
+                    history.recordCopyAdded(copy);
+                }
             }
 
         }
@@ -58,12 +96,28 @@ public class BookInventory {
         }
 
 
-        books.remove(bookId);
+        for(BookCopy copy : allCopies){
+            copiesById.remove(copy.getCopyId());
+            if(history != null){
+                history.recordCopyRemoved(copy);
+            }
+        }
+        Book removed = books.remove(bookId);
         copiesByBookId.remove(bookId);
         availableCopiesByBookId.remove(bookId);
+        bookPool.release(removed);
 
     }
 
+    // findCopy
+    // Resolves a scanned copy id (barcode) to its physical copy. Returns null if the id is unknown.
+    public BookCopy findCopy(String copyId){
+        if(copyId==null){
+            throw new IllegalArgumentException("Copy ID cannot be null");
+        }
+        return copiesById.get(copyId);
+    }
+
     // allocateCopy
     // Allocates an available copy of the specified book(From inventory, give me one available physical copy of this book and mark it as issued).
     public BookCopy allocateCopy(String bookId){
@@ -108,4 +162,33 @@ public class BookInventory {
           // Inventory restores availability
         availableCopies.addLast(copy);
     }
+
+    // releaseCopies
+    // Bulk variant of releaseCopy for copies of ONE book: the book's collections are looked up once for the whole group.
+    public void releaseCopies(String bookId, List<BookCopy> copies){
+        if(bookId==null){
+            throw new IllegalArgumentException("Book ID cannot be null");
+        }
+        if(copies==null){
+            throw new IllegalArgumentException("Book copies cannot be null");
+        }
+        Set<BookCopy> allCopies = copiesByBookId.get(bookId);
+        Deque<BookCopy> availableCopies = availableCopiesByBookId.get(bookId);
+        if(allCopies==null || availableCopies==null){
+            throw new IllegalStateException("Book with ID " + bookId + " does not exist in inventory");
+        }
+        for(BookCopy copy : copies){
+            if(copy==null || !allCopies.contains(copy)){
+                throw new IllegalStateException("This copy does not belong to book ID " + bookId);
+            }
+            // validate everything first so a bad copy cannot leave the group half released
+            if(copy.isAvailable()){
+                throw new IllegalStateException("Book copy is not issued");
+            }
+        }
+        for(BookCopy copy : copies){
+            copy.returnCopy();
+            availableCopies.addLast(copy);
+        }
+    }
 }
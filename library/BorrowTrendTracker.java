@@ -0,0 +1,61 @@
+package library;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// Live "most borrowed" rankings fed by Library.borrowBook.
+//
+// Each borrow is offered to two bounded heavy-hitter summaries:
+// - popular books, keyed by bookId
+// - busiest borrowers, keyed by userId, kept separately per UserType
+// The half-life controls the window: one hour gives "trending this hour",
+// one day gives "trending today". Register one tracker per window you need.
+public class BorrowTrendTracker implements LoanListener {
+
+    private final Clock clock;
+    private final DecayingTopK<String> books;
+    private final Map<UserType, DecayingTopK<String>> borrowersByType = new EnumMap<>(UserType.class);
+
+    public BorrowTrendTracker(int capacity, Duration halfLife, Clock clock) {
+        if (halfLife == null || halfLife.isZero() || halfLife.isNegative()) {
+            throw new IllegalArgumentException("Half-life must be positive");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        this.clock = clock;
+        long now = clock.millis();
+        long halfLifeMillis = halfLife.toMillis();
+        this.books = new DecayingTopK<>(capacity, halfLifeMillis, now);
+        for (UserType type : UserType.values()) {
+            borrowersByType.put(type, new DecayingTopK<>(capacity, halfLifeMillis, now));
+        }
+    }
+
+    public BorrowTrendTracker(int capacity, Duration halfLife) {
+        this(capacity, halfLife, Clock.systemUTC());
+    }
+
+    @Override
+    public void onBorrow(User user, BookCopy copy) {
+        long now = clock.millis();
+        books.offer(copy.getBookId(), now);
+        borrowersByType.get(user.getUserType()).offer(user.getUserId(), now);
+    }
+
+    // Most borrowed bookIds, highest decayed count first.
+    public List<DecayingTopK.HeavyHitter<String>> topBooks(int n) {
+        return books.top(n, clock.millis());
+    }
+
+    // Most active userIds of the given type, highest decayed count first.
+    public List<DecayingTopK.HeavyHitter<String>> topBorrowers(UserType userType, int n) {
+        if (userType == null) {
+            throw new IllegalArgumentException("User type cannot be null");
+        }
+        return borrowersByType.get(userType).top(n, clock.millis());
+    }
+}
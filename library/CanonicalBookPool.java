@@ -0,0 +1,131 @@
+package library;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// JVM-wide catalog of canonical Book instances, shared by every BookInventory.
+//
+// Many libraries in one process hold largely the same titles. Instead of each inventory
+// keeping its own Book with its own title/author/isbn/publisher strings, inventories
+// register books through this pool and keep a reference to the shared entry.
+//
+// - Books are deduplicated by ISBN. A book whose fields all match the pooled entry
+//   resolves to that entry.
+// - A book that reuses a pooled ISBN with different details (e.g. a tenant-specific
+//   bookId) is not pooled, but its strings are still interned, so it shares storage.
+// - Entries are reference-counted: every canonicalize is one reference, and the owner gives
+//   it back with release when it drops the book. A pooled book, and any interned string,
+//   leaves the pool when its last reference is released, so a churning catalog does not leak.
+//
+// Unlike the rest of the model this class is thread-safe, because it is shared across
+// library instances that may run on different threads.
+public final class CanonicalBookPool {
+
+    private static final CanonicalBookPool SHARED = new CanonicalBookPool();
+
+    private final ConcurrentMap<String, Counted<Book>> booksByIsbn = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counted<String>> strings = new ConcurrentHashMap<>();
+
+    public static CanonicalBookPool shared() {
+        return SHARED;
+    }
+
+    // Returns the canonical instance for the given book and takes one reference on it.
+    public Book canonicalize(Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Book cannot be null");
+        }
+        Book[] result = new Book[1];
+        booksByIsbn.compute(book.getIsbn(), (isbn, pooled) -> {
+            if (pooled != null && sameDetails(pooled.value, book)) {
+                pooled.references++;
+                result[0] = pooled.value;
+                return pooled;
+            }
+            result[0] = internAll(book);
+            // a different book already owns this ISBN: hand out the unpooled, interned copy
+            return pooled != null ? pooled : new Counted<>(result[0]);
+        });
+        return result[0];
+    }
+
+    // Gives back one reference taken by canonicalize; book must be the instance it returned.
+    public void release(Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Book cannot be null");
+        }
+        boolean[] pooled = new boolean[1];
+        booksByIsbn.computeIfPresent(book.getIsbn(), (isbn, entry) -> {
+            if (entry.value != book) {
+                return entry;
+            }
+            pooled[0] = true;
+            if (--entry.references > 0) {
+                return entry;
+            }
+            releaseAll(book);
+            return null;
+        });
+        if (!pooled[0]) {
+            releaseAll(book); // an unpooled copy interned its strings on every canonicalize
+        }
+    }
+
+    public int size() {
+        return booksByIsbn.size();
+    }
+
+    // Distinct strings currently shared through the pool.
+    public int internedStringCount() {
+        return strings.size();
+    }
+
+    private Book internAll(Book book) {
+        return new Book(
+                intern(book.getBookId()),
+                intern(book.getTitle()),
+                intern(book.getAuthor()),
+                intern(book.getIsbn()),
+                intern(book.getPublisher()));
+    }
+
+    private void releaseAll(Book book) {
+        release(book.getBookId());
+        release(book.getTitle());
+        release(book.getAuthor());
+        release(book.getIsbn());
+        release(book.getPublisher());
+    }
+
+    private String intern(String value) {
+        return strings.compute(value, (key, entry) -> {
+            if (entry == null) {
+                return new Counted<>(value);
+            }
+            entry.references++;
+            return entry;
+        }).value;
+    }
+
+    private void release(String value) {
+        strings.computeIfPresent(value, (key, entry) -> --entry.references > 0 ? entry : null);
+    }
+
+    private static boolean sameDetails(Book a, Book b) {
+        return a.getBookId().equals(b.getBookId())
+                && a.getTitle().equals(b.getTitle())
+                && a.getAuthor().equals(b.getAuthor())
+                && a.getIsbn().equals(b.getIsbn())
+                && a.getPublisher().equals(b.getPublisher());
+    }
+
+    // A pooled value and how many holders share it; only mutated inside the map's compute calls.
+    private static final class Counted<T> {
+        private final T value;
+        private int references = 1;
+
+        private Counted(T value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package library;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Outcome of a bulk book-drop check-in. Scans that cannot be processed are
+// reported per scan instead of aborting the whole batch; the same copy id scanned
+// badly twice is reported twice.
+public class CheckInReport {
+
+    private final List<String> checkedInCopyIds = new ArrayList<>();
+    private final List<Map.Entry<String, String>> failures = new ArrayList<>(); // copyId -> reason, in scan order
+
+    void recordCheckedIn(String copyId) {
+        checkedInCopyIds.add(copyId);
+    }
+
+    void recordFailure(String copyId, String reason) {
+        failures.add(Map.entry(copyId, String.valueOf(reason)));
+    }
+
+    public List<String> getCheckedInCopyIds() {
+        return new ArrayList<>(checkedInCopyIds);
+    }
+
+    public List<Map.Entry<String, String>> getFailures() {
+        return new ArrayList<>(failures);
+    }
+
+    public int getCheckedInCount() {
+        return checkedInCopyIds.size();
+    }
+
+    public int getFailureCount() {
+        return failures.size();
+    }
+
+    @Override
+    public String toString() {
+        return "CheckInReport{" +
+                "checkedIn=" + checkedInCopyIds.size() +
+                ", failures=" + failures +
+                '}';
+    }
+}
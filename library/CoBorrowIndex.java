@@ -0,0 +1,187 @@
+package library;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// "Readers who borrowed this also borrowed" index, maintained incrementally from Library.borrowBook.
+//
+// - Each user keeps a short window of recently borrowed bookIds. A new borrow pairs the book with
+//   every title in that window and bumps both co-occurrence counters. Windows are kept for the
+//   maxTrackedUsers most recently active users only.
+// - Counters decay with a half-life (forward decay, as in DecayingTopK): a bump weighs
+//   2^((t - landmark) / halfLife), so a fresh pair outweighs an equally frequent stale one and
+//   old pairs fade instead of holding their place forever.
+// - Per book only a bounded candidate set of neighbours is kept. When it overflows, the weakest
+//   half by decayed weight is pruned, so memory per title stays O(neighboursPerBook). The free
+//   half is the admission window: a new pair stays there until the next prune, long enough to
+//   collect more bumps, and then competes on decayed weight rather than raw count.
+// - Reads never touch the counters: recommendationsFor serves an immutable top-k list from a cache
+//   that is rebuilt for changed books at most once per refresh interval, on a borrow or a read.
+public class CoBorrowIndex implements LoanListener {
+
+    private static final int CANDIDATE_FACTOR = 4;
+    // Rescale once weights reach 2^64 to stay far away from double overflow.
+    private static final double RESCALE_THRESHOLD = Math.pow(2, 64);
+
+    private final int neighboursPerBook;
+    private final int candidateLimit;
+    private final int historyPerUser;
+    private final long refreshIntervalMillis;
+    private final double lambda; // ln(2) / halfLifeMillis
+    private final Clock clock;
+
+    private final Map<String, Deque<String>> recentBooksByUser;
+    private final Map<String, Map<String, Double>> coCounts = new HashMap<>();
+    private final Set<String> dirtyBooks = new HashSet<>();
+    private final Map<String, List<String>> recommendations = new HashMap<>();
+    private long lastRefreshMillis;
+    private long landmarkMillis;
+
+    public CoBorrowIndex(int neighboursPerBook, int historyPerUser, int maxTrackedUsers, Duration refreshInterval,
+                         Duration halfLife, Clock clock) {
+        if (neighboursPerBook <= 0) {
+            throw new IllegalArgumentException("Neighbours per book must be positive");
+        }
+        if (historyPerUser <= 0) {
+            throw new IllegalArgumentException("History per user must be positive");
+        }
+        if (maxTrackedUsers <= 0) {
+            throw new IllegalArgumentException("Max tracked users must be positive");
+        }
+        if (refreshInterval == null || refreshInterval.isNegative()) {
+            throw new IllegalArgumentException("Refresh interval cannot be null or negative");
+        }
+        if (halfLife == null || halfLife.toMillis() <= 0) {
+            throw new IllegalArgumentException("Half-life must be at least one millisecond");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        this.neighboursPerBook = neighboursPerBook;
+        this.candidateLimit = neighboursPerBook * CANDIDATE_FACTOR;
+        this.historyPerUser = historyPerUser;
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+        this.lambda = Math.log(2) / halfLife.toMillis();
+        this.clock = clock;
+        this.lastRefreshMillis = clock.millis();
+        this.landmarkMillis = lastRefreshMillis;
+        // access order: the least recently active user's window goes first
+        this.recentBooksByUser = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Deque<String>> eldest) {
+                return size() > maxTrackedUsers;
+            }
+        };
+    }
+
+    // Windows of up to 100,000 users; co-borrow strength halves every 30 days.
+    public CoBorrowIndex(int neighboursPerBook, int historyPerUser, Duration refreshInterval) {
+        this(neighboursPerBook, historyPerUser, 100_000, refreshInterval, Duration.ofDays(30), Clock.systemUTC());
+    }
+
+    @Override
+    public void onBorrow(User user, BookCopy copy) {
+        String bookId = copy.getBookId();
+        Deque<String> history = recentBooksByUser.computeIfAbsent(user.getUserId(), id -> new ArrayDeque<>());
+
+        // Borrowing the same title again says nothing new about co-occurrence
+        if (!history.contains(bookId)) {
+            double weight = bumpWeight();
+            for (String other : history) {
+                bump(bookId, other, weight);
+                bump(other, bookId, weight);
+            }
+            history.addLast(bookId);
+            if (history.size() > historyPerUser) {
+                history.removeFirst();
+            }
+        }
+
+        refreshIfDue();
+    }
+
+    // Cached top-k co-borrowed bookIds, strongest first. Empty if nothing is known yet.
+    public List<String> recommendationsFor(String bookId) {
+        if (bookId == null) {
+            throw new IllegalArgumentException("Book ID cannot be null");
+        }
+        refreshIfDue();
+        return recommendations.getOrDefault(bookId, List.of());
+    }
+
+    // Rebuilds the cached lists of every book whose counters changed since the last refresh.
+    public void refresh() {
+        for (String bookId : dirtyBooks) {
+            Map<String, Double> neighbours = coCounts.get(bookId);
+            if (neighbours == null || neighbours.isEmpty()) {
+                recommendations.remove(bookId);
+                continue;
+            }
+            List<Map.Entry<String, Double>> ranked = strongestFirst(neighbours);
+            int limit = Math.min(neighboursPerBook, ranked.size());
+            List<String> top = new ArrayList<>(limit);
+            for (int i = 0; i < limit; i++) {
+                top.add(ranked.get(i).getKey());
+            }
+            recommendations.put(bookId, List.copyOf(top));
+        }
+        dirtyBooks.clear();
+        lastRefreshMillis = clock.millis();
+    }
+
+    private void refreshIfDue() {
+        if (clock.millis() - lastRefreshMillis >= refreshIntervalMillis) {
+            refresh();
+        }
+    }
+
+    // Weight of a bump made now, rescaling every counter first if weights grew too large.
+    private double bumpWeight() {
+        long now = clock.millis();
+        double weight = Math.exp(lambda * (now - landmarkMillis));
+        if (weight < RESCALE_THRESHOLD) {
+            return weight;
+        }
+        for (Map<String, Double> neighbours : coCounts.values()) {
+            neighbours.replaceAll((id, count) -> count / weight);
+        }
+        landmarkMillis = now;
+        return 1.0;
+    }
+
+    private void bump(String bookId, String neighbour, double weight) {
+        Map<String, Double> neighbours = coCounts.computeIfAbsent(bookId, id -> new HashMap<>());
+        neighbours.merge(neighbour, weight, Double::sum);
+        if (neighbours.size() > candidateLimit) {
+            prune(neighbours);
+        }
+        dirtyBooks.add(bookId);
+    }
+
+    // Keeps the strongest half of the candidates by decayed weight (never fewer than neighboursPerBook).
+    private void prune(Map<String, Double> neighbours) {
+        List<Map.Entry<String, Double>> ranked = strongestFirst(neighbours);
+        int keep = Math.max(neighboursPerBook, candidateLimit / 2);
+        for (int i = keep; i < ranked.size(); i++) {
+            neighbours.remove(ranked.get(i).getKey());
+        }
+    }
+
+    private static List<Map.Entry<String, Double>> strongestFirst(Map<String, Double> neighbours) {
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(neighbours.entrySet());
+        ranked.sort((a, b) -> {
+            int byCount = Double.compare(b.getValue(), a.getValue());
+            return byCount != 0 ? byCount : a.getKey().compareTo(b.getKey());
+        });
+        return ranked;
+    }
+}
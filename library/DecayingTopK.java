@@ -0,0 +1,203 @@
+package library;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Space-Saving heavy-hitters summary with exponential time decay.
+//
+// - Tracks at most `capacity` keys, so memory is fixed no matter how many distinct keys are offered.
+// - When a new key arrives and the summary is full, it replaces the current minimum and inherits
+//   its count as the maximum over-estimation error (classic Space-Saving).
+// - Decay uses "forward decay": each hit is weighted by 2^((t - landmark) / halfLife), so old
+//   counters never have to be touched. Counts are scaled back to "now" only when read.
+// - Counters live in an indexed min-heap, so a hit costs one map lookup plus an O(log capacity) sift.
+//
+// Not thread-safe, like the rest of the library model.
+public class DecayingTopK<K> {
+
+    // Rescale once weights reach 2^64 to stay far away from double overflow.
+    private static final double RESCALE_THRESHOLD = Math.pow(2, 64);
+
+    private final int capacity;
+    private final double lambda; // ln(2) / halfLifeMillis
+    private final Map<K, Counter<K>> index;
+    private final Counter<K>[] heap;
+    private int size;
+    private long landmarkMillis;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public DecayingTopK(int capacity, long halfLifeMillis, long startMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        if (halfLifeMillis <= 0) {
+            throw new IllegalArgumentException("Half-life must be positive");
+        }
+        this.capacity = capacity;
+        this.lambda = Math.log(2) / halfLifeMillis;
+        // sized up front so the index never rehashes
+        this.index = new HashMap<>((int) (capacity / 0.75f) + 1);
+        this.heap = (Counter<K>[]) new Counter[capacity];
+        this.landmarkMillis = startMillis;
+    }
+
+    // Record one occurrence of key at time nowMillis.
+    public void offer(K key, long nowMillis) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key cannot be null");
+        }
+        double weight = weightAt(nowMillis);
+        if (weight >= RESCALE_THRESHOLD) {
+            rescale(nowMillis);
+            weight = 1.0;
+        }
+
+        Counter<K> counter = index.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.heapIndex);
+            return;
+        }
+
+        if (size < capacity) {
+            counter = new Counter<>(key, weight, 0.0);
+            counter.heapIndex = size;
+            heap[size++] = counter;
+            index.put(key, counter);
+            siftUp(counter.heapIndex);
+            return;
+        }
+
+        // Evict the minimum and reuse its slot (no allocation on the steady-state path)
+        Counter<K> min = heap[0];
+        index.remove(min.key);
+        min.key = key;
+        min.error = min.count;
+        min.count += weight;
+        index.put(key, min);
+        siftDown(0);
+    }
+
+    // Top n keys by decayed count, highest first.
+    public List<HeavyHitter<K>> top(int n, long nowMillis) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        Counter<K>[] snapshot = Arrays.copyOf(heap, size);
+        Arrays.sort(snapshot, Comparator.comparingDouble((Counter<K> c) -> c.count).reversed());
+
+        double scale = weightAt(nowMillis);
+        int limit = Math.min(n, size);
+        List<HeavyHitter<K>> result = new ArrayList<>(limit);
+        for (int i = 0; i < limit; i++) {
+            Counter<K> c = snapshot[i];
+            result.add(new HeavyHitter<>(c.key, c.count / scale, c.error / scale));
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private double weightAt(long nowMillis) {
+        return Math.exp(lambda * (nowMillis - landmarkMillis));
+    }
+
+    // Move the landmark to now, shrinking every counter by the same factor.
+    private void rescale(long nowMillis) {
+        double factor = weightAt(nowMillis);
+        for (int i = 0; i < size; i++) {
+            heap[i].count /= factor;
+            heap[i].error /= factor;
+        }
+        landmarkMillis = nowMillis;
+    }
+
+    private void siftUp(int i) {
+        Counter<K> c = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent].count <= c.count) {
+                break;
+            }
+            place(heap[parent], i);
+            i = parent;
+        }
+        place(c, i);
+    }
+
+    private void siftDown(int i) {
+        Counter<K> c = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && heap[right].count < heap[child].count) {
+                child = right;
+            }
+            if (c.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], i);
+            i = child;
+        }
+        place(c, i);
+    }
+
+    private void place(Counter<K> c, int i) {
+        heap[i] = c;
+        c.heapIndex = i;
+    }
+
+    private static final class Counter<K> {
+        private K key;
+        private double count;
+        private double error;
+        private int heapIndex;
+
+        private Counter(K key, double count, double error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    // Read-only result of a top-N query. The true decayed count lies in [estimate - maxError, estimate].
+    public static final class HeavyHitter<K> {
+        private final K key;
+        private final double estimate;
+        private final double maxError;
+
+        public HeavyHitter(K key, double estimate, double maxError) {
+            this.key = key;
+            this.estimate = estimate;
+            this.maxError = maxError;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public double getEstimate() {
+            return estimate;
+        }
+
+        public double getMaxError() {
+            return maxError;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + String.format("%.2f", estimate) + " (+/-" + String.format("%.2f", maxError) + ")";
+        }
+    }
+}
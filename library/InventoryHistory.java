@@ -0,0 +1,180 @@
+package library;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Multi-version record of copy availability and loans, for "as of time T" audits and reports.
+//
+// - Every change to a copy (added, issued, returned, removed) appends an immutable version to that
+//   copy's chain. Versions carry a wall-clock timestamp and a global sequence number.
+// - Readers take a snapshot with asOf(T). A snapshot only sees versions with timestamp <= T and
+//   sequence <= the sequence committed when the snapshot was taken, so a write that lands while a
+//   report is running is invisible to it. Readers never lock and never block the writer.
+// - Versions older than the retention horizon are garbage-collected: each chain keeps only the
+//   newest version at or before the horizon, which still answers queries at the horizon itself.
+//
+// Wiring: attach to the inventory (adds/removes) AND register as a loan listener on the library
+// (borrowers). Writes come from the single-threaded library; reads may come from any thread.
+// Writes and garbage collection share the instance monitor, so collectGarbage may also be called
+// from a maintenance thread; readers never take it.
+public class InventoryHistory implements LoanListener {
+
+    private static final int GC_EVERY_WRITES = 1024;
+
+    private final Clock clock;
+    private final long retentionMillis;
+    private final Map<String, Version> headsByCopyId = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> copyIdsByBookId = new ConcurrentHashMap<>();
+
+    private long lastTimestamp;
+    private long nextSequence = 1;
+    private int writesSinceGc;
+    private volatile long committedSequence;
+    private volatile long horizonMillis = Long.MIN_VALUE;
+
+    public InventoryHistory(Duration retention, Clock clock) {
+        if (retention == null || retention.isZero() || retention.isNegative()) {
+            throw new IllegalArgumentException("Retention must be positive");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        this.retentionMillis = retention.toMillis();
+        this.clock = clock;
+    }
+
+    public InventoryHistory(Duration retention) {
+        this(retention, Clock.systemUTC());
+    }
+
+    // Inventory hooks
+
+    synchronized void recordCopyAdded(BookCopy copy) {
+        copyIdsByBookId.computeIfAbsent(copy.getBookId(), id -> ConcurrentHashMap.newKeySet()).add(copy.getCopyId());
+        append(copy, copy.getStatus(), null, false);
+    }
+
+    void recordCopyRemoved(BookCopy copy) {
+        append(copy, copy.getStatus(), null, true);
+    }
+
+    // Library hooks
+
+    @Override
+    public void onBorrow(User user, BookCopy copy) {
+        append(copy, BookCopyStatus.ISSUED, user.getUserId(), false);
+    }
+
+    @Override
+    public void onReturn(User user, BookCopy copy) {
+        append(copy, BookCopyStatus.AVAILABLE, null, false);
+    }
+
+    // Consistent read-only view of the inventory as it was at the given instant.
+    public InventorySnapshot asOf(Instant at) {
+        if (at == null) {
+            throw new IllegalArgumentException("Timestamp cannot be null");
+        }
+        long atMillis = at.toEpochMilli();
+        ensureRetained(atMillis);
+        return new InventorySnapshot(this, atMillis, committedSequence);
+    }
+
+    public InventorySnapshot now() {
+        return asOf(clock.instant());
+    }
+
+    // Drops versions that no query inside the retention window can see.
+    public synchronized void collectGarbage() {
+        long horizon = clock.millis() - retentionMillis;
+        // publish the horizon first so readers that race with the trim can detect it
+        horizonMillis = Math.max(horizonMillis, horizon);
+        for (Map.Entry<String, Version> entry : headsByCopyId.entrySet()) {
+            Version version = entry.getValue();
+            while (version != null && version.timestamp > horizon) {
+                version = version.previous;
+            }
+            if (version == null) {
+                continue;
+            }
+            version.previous = null;
+            if (version == entry.getValue() && version.removed) {
+                // removed before the horizon and untouched since: forget the copy entirely, unless a
+                // newer head was installed after we looked
+                if (headsByCopyId.remove(entry.getKey(), version)) {
+                    Set<String> copyIds = copyIdsByBookId.get(version.bookId);
+                    if (copyIds != null) {
+                        copyIds.remove(entry.getKey());
+                    }
+                }
+            }
+        }
+        writesSinceGc = 0;
+    }
+
+    // Snapshot support (package-private)
+
+    Version visibleVersion(String copyId, long atMillis, long sequence) {
+        Version version = headsByCopyId.get(copyId);
+        while (version != null && (version.timestamp > atMillis || version.sequence > sequence)) {
+            version = version.previous;
+        }
+        return version;
+    }
+
+    Set<String> copyIdsOf(String bookId) {
+        Set<String> copyIds = copyIdsByBookId.get(bookId);
+        return copyIds != null ? copyIds : Set.of();
+    }
+
+    Set<String> allCopyIds() {
+        return headsByCopyId.keySet();
+    }
+
+    void ensureRetained(long atMillis) {
+        if (atMillis < horizonMillis) {
+            throw new IllegalArgumentException("Timestamp is older than the retention horizon");
+        }
+    }
+
+    private synchronized void append(BookCopy copy, BookCopyStatus status, String borrowerId, boolean removed) {
+        // timestamps never go backwards, even if the wall clock does
+        long timestamp = Math.max(clock.millis(), lastTimestamp);
+        lastTimestamp = timestamp;
+        long sequence = nextSequence++;
+
+        String copyId = copy.getCopyId();
+        Version version = new Version(copy.getBookId(), timestamp, sequence, status, borrowerId, removed, headsByCopyId.get(copyId));
+        headsByCopyId.put(copyId, version);
+        committedSequence = sequence;
+
+        if (++writesSinceGc >= GC_EVERY_WRITES) {
+            collectGarbage();
+        }
+    }
+
+    static final class Version {
+        final String bookId;
+        final long timestamp;
+        final long sequence;
+        final BookCopyStatus status;
+        final String borrowerId; // only set while ISSUED
+        final boolean removed;
+        volatile Version previous; // cut by garbage collection
+
+        Version(String bookId, long timestamp, long sequence, BookCopyStatus status,
+                String borrowerId, boolean removed, Version previous) {
+            this.bookId = bookId;
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+            this.status = status;
+            this.borrowerId = borrowerId;
+            this.removed = removed;
+            this.previous = previous;
+        }
+    }
+}
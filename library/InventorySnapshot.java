@@ -0,0 +1,70 @@
+package library;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Point-in-time, read-only view over InventoryHistory.
+// All queries on one snapshot see the same committed state, however long the report runs.
+public class InventorySnapshot {
+
+    private final InventoryHistory history;
+    private final long atMillis;
+    private final long sequence;
+
+    InventorySnapshot(InventoryHistory history, long atMillis, long sequence) {
+        this.history = history;
+        this.atMillis = atMillis;
+        this.sequence = sequence;
+    }
+
+    public Instant getTimestamp() {
+        return Instant.ofEpochMilli(atMillis);
+    }
+
+    // Copy ids of the book that were on the shelf at this point in time.
+    public List<String> availableCopyIds(String bookId) {
+        if (bookId == null) {
+            throw new IllegalArgumentException("Book ID cannot be null");
+        }
+        List<String> available = new ArrayList<>();
+        for (String copyId : history.copyIdsOf(bookId)) {
+            InventoryHistory.Version version = history.visibleVersion(copyId, atMillis, sequence);
+            if (version != null && !version.removed && version.status == BookCopyStatus.AVAILABLE) {
+                available.add(copyId);
+            }
+        }
+        validate();
+        return available;
+    }
+
+    // Borrower of the copy at this point in time, or null if it was not on loan.
+    public String borrowerOf(String copyId) {
+        if (copyId == null) {
+            throw new IllegalArgumentException("Copy ID cannot be null");
+        }
+        InventoryHistory.Version version = history.visibleVersion(copyId, atMillis, sequence);
+        validate();
+        return version != null && !version.removed ? version.borrowerId : null;
+    }
+
+    // Every loan open at this point in time: copyId -> userId.
+    public Map<String, String> loans() {
+        Map<String, String> loans = new HashMap<>();
+        for (String copyId : history.allCopyIds()) {
+            InventoryHistory.Version version = history.visibleVersion(copyId, atMillis, sequence);
+            if (version != null && !version.removed && version.borrowerId != null) {
+                loans.put(copyId, version.borrowerId);
+            }
+        }
+        validate();
+        return loans;
+    }
+
+    // Garbage collection may have advanced past this snapshot while it was being read.
+    private void validate() {
+        history.ensureRetained(atMillis);
+    }
+}
@@ -1,6 +1,10 @@
 package library;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -15,6 +19,8 @@ public class Library {
     private final Map<String, User> users = new HashMap<>(); // Registers users by userId
     private final BookInventory inventory; // Inventory (delegated responsibility)
     private final BorrowPolicyFactory policyFactory; // Factory to get BorrowPolicy based on UserType
+    private final List<LoanListener> loanListeners = new ArrayList<>(); // Notified after successful borrow/return
+    private final Map<String, User> borrowerByCopyId = new HashMap<>(); // Reverse index: copyId -> current borrower
 
     public Library(BookInventory inventory, BorrowPolicyFactory policyFactory){
         if (policyFactory == null) {
@@ -26,6 +32,14 @@ public class Library {
         this.inventory=inventory;
         this.policyFactory=policyFactory;
     }
+
+    // Registers an observer of loan activity (trend tracking, recommendations, auditing).
+    public void addLoanListener(LoanListener listener){
+        if(listener==null){
+            throw new IllegalArgumentException("LoanListener cannot be null");
+        }
+        loanListeners.add(listener);
+    }
    
     // Registers a new user into the library system.
     public void registerUser(String userId, String name, UserType userType){
@@ -75,8 +89,6 @@ public class Library {
         copy = inventory.allocateCopy(bookId);
         // Let user borrow the allocated copy
         user.borrowCopy(copy);
-
-        return copy;
         }catch(RuntimeException e){
             // Rollback inventory if user borrowing fails
              if (copy != null) {
@@ -84,7 +96,18 @@ public class Library {
             }
             throw e;
         }
-        
+
+        borrowerByCopyId.put(copy.getCopyId(), user);
+
+        // Notify listeners only once the loan is committed
+        for(LoanListener listener : loanListeners){
+            try{
+                listener.onBorrow(user, copy);
+            }catch(RuntimeException e){
+                reportListenerFailure(e);
+            }
+        }
+        return copy;
     }
     
     // Return a previously borrowed book copy.
@@ -108,8 +131,99 @@ public class Library {
 
        //  Inventory releases copy
         inventory.releaseCopy(copy);
-           
+        borrowerByCopyId.remove(copy.getCopyId());
+
+        notifyReturn(user, copy);
     }
 
-    
+    // Return a copy using only its scanned copy id (returns desk). The borrower is resolved from the reverse index.
+    public void checkIn(String copyId){
+        if(copyId==null || copyId.isBlank()){
+            throw new IllegalArgumentException("Copy ID cannot be null or blank");
+        }
+        BookCopy copy = inventory.findCopy(copyId);
+        if(copy==null){
+            throw new IllegalStateException("Copy with ID " + copyId + " does not exist in inventory");
+        }
+        User borrower = borrowerByCopyId.get(copyId);
+        if(borrower==null){
+            throw new IllegalStateException("Copy with ID " + copyId + " is not on loan");
+        }
+        returnBook(borrower.getUserId(), copy);
+    }
+
+    // Bulk check-in of scanned copy ids from a book-drop.
+    // Bad scans are reported, not thrown, so one unknown barcode does not block the rest of the drop.
+    // Every scan is validated before anything changes. Inventory releases are grouped so each book is
+    // touched once, and user/index state is updated only after its group's release succeeded; a group
+    // the inventory rejects is reported per copy and leaves its loans as they were.
+    public CheckInReport checkInAll(Collection<String> copyIds){
+        if(copyIds==null){
+            throw new IllegalArgumentException("Copy IDs cannot be null");
+        }
+        CheckInReport report = new CheckInReport();
+        Map<String, List<BookCopy>> copiesByBookId = new LinkedHashMap<>();
+        Map<String, User> borrowers = new HashMap<>();
+
+        for(String copyId : copyIds){
+            if(copyId==null || copyId.isBlank()){
+                report.recordFailure(String.valueOf(copyId), "Copy ID cannot be null or blank");
+                continue;
+            }
+            if(borrowers.containsKey(copyId)){
+                report.recordFailure(copyId, "Copy was already scanned in this drop");
+                continue;
+            }
+            BookCopy copy = inventory.findCopy(copyId);
+            if(copy==null){
+                report.recordFailure(copyId, "Copy does not exist in inventory");
+                continue;
+            }
+            User borrower = borrowerByCopyId.get(copyId);
+            if(borrower==null || !borrower.hasAlreadyBorrowed(copy)){
+                report.recordFailure(copyId, "Copy is not on loan");
+                continue;
+            }
+            borrowers.put(copyId, borrower);
+            copiesByBookId.computeIfAbsent(copy.getBookId(), id -> new ArrayList<>()).add(copy);
+        }
+
+        for(Map.Entry<String, List<BookCopy>> group : copiesByBookId.entrySet()){
+            try{
+                inventory.releaseCopies(group.getKey(), group.getValue());
+            }catch(RuntimeException e){
+                // releaseCopies is all-or-nothing per book, so nothing of this group changed
+                for(BookCopy copy : group.getValue()){
+                    report.recordFailure(copy.getCopyId(), e.getMessage());
+                }
+                continue;
+            }
+            for(BookCopy copy : group.getValue()){
+                User borrower = borrowers.get(copy.getCopyId());
+                borrower.returnCopy(copy);
+                borrowerByCopyId.remove(copy.getCopyId());
+                report.recordCheckedIn(copy.getCopyId());
+                notifyReturn(borrower, copy);
+            }
+        }
+        return report;
+    }
+
+    // The return is already committed, so a failing listener must not undo it or starve the others.
+    private void notifyReturn(User user, BookCopy copy){
+        for(LoanListener listener : loanListeners){
+            try{
+                listener.onReturn(user, copy);
+            }catch(RuntimeException e){
+                reportListenerFailure(e);
+            }
+        }
+    }
+
+    // Handed to the thread's uncaught-exception handler (by default printed), since the caller's
+    // borrow or return already succeeded.
+    private static void reportListenerFailure(RuntimeException e){
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
 }
@@ -0,0 +1,13 @@
+package library;
+
+// Observer for loan activity. Library notifies every registered listener after a
+// borrow or return has fully succeeded (inventory and user state already updated).
+// A listener that throws is reported to the thread's uncaught-exception handler; the loan stands
+// and the remaining listeners are still notified.
+public interface LoanListener {
+
+    void onBorrow(User user, BookCopy copy);
+
+    default void onReturn(User user, BookCopy copy) {
+    }
+}
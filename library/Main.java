@@ -6,11 +6,26 @@ public class Main {
     BorrowPolicyFactory policyFactory = new BorrowPolicyFactory();
     Library library = new Library(inventory, policyFactory);
 
+    // versioned inventory/loan state for "as of time T" audits
+    InventoryHistory history = new InventoryHistory(java.time.Duration.ofDays(30));
+    inventory.attachHistory(history);
+    library.addLoanListener(history);
+
+    // live "most borrowed this hour" rankings
+    BorrowTrendTracker hourlyTrends = new BorrowTrendTracker(100, java.time.Duration.ofHours(1));
+    library.addLoanListener(hourlyTrends);
+
+    // "readers who borrowed this also borrowed"
+    CoBorrowIndex coBorrowIndex = new CoBorrowIndex(5, 20, java.time.Duration.ofMinutes(1));
+    library.addLoanListener(coBorrowIndex);
+
     // add books
     // Example : inventory.addBook(new Book("4", "Computer Networks", "Andrew S. Tanenbaum", "978-0132126953", "Pearson"), 3);
    Book book1 = new Book( "B1", "Effective Java", "Joshua Bloch", "978-0134685991", "Addison-Wesley");
 
     inventory.addBook(book1,2); // adding 2 copies of book1
+    Book book2 = new Book("B2", "Java Concurrency in Practice", "Brian Goetz", "978-0321349606", "Addison-Wesley");
+    inventory.addBook(book2,1);
 
     // register users
     // Example: library.registerUser("u1", "Alice", UserType.STUDENT);
@@ -36,6 +51,16 @@ public class Main {
     
     // FACULTY borrowing
     BookCopy copy3= library.borrowBook("U2", "B1");
+    BookCopy copy4= library.borrowBook("U2", "B2");
+    // returns desk only has scanned barcodes
+    CheckInReport dropReport = library.checkInAll(java.util.List.of("B1-COPY-2", "B2-COPY-1", "B9-COPY-1"));
+    System.out.println("Book-drop: " + dropReport);
+    coBorrowIndex.refresh();
+    System.out.println("Readers of B1 also borrowed: " + coBorrowIndex.recommendationsFor("B1"));
+    InventorySnapshot audit = history.now();
+    System.out.println("Loans as of " + audit.getTimestamp() + ": " + audit.loans());
+    System.out.println("Trending books: " + hourlyTrends.topBooks(5));
+    System.out.println("Top students: " + hourlyTrends.topBorrowers(UserType.STUDENT, 5));
     System.out.println("System working as expected.");
     
     }
@@ -45,7 +45,7 @@ public class User {
     //     return borrowedCopies.size()<MAX_BORROW_LIMIT;
     // }
 
-    private boolean hasAlreadyBorrowed(BookCopy copy){
+    boolean hasAlreadyBorrowed(BookCopy copy){
         return borrowedCopies.contains(copy);
     }
 
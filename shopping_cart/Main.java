@@ -1,5 +1,61 @@
 package shopping_cart;
 
+import java.time.Duration;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+import shopping_cart.load.LoadHarness;
+import shopping_cart.load.LoadProfile;
+import shopping_cart.load.LoadReport;
+import shopping_cart.load.Operation;
+import shopping_cart.service.ShoppingService;
+
+// Load test for the shopping service. Arguments are key=value pairs, all optional:
+//
+//   seed=42 users=10000 products=5000 stock=1000000 threads=8 rate=0 warmup=5 duration=30
+//   browse=60 add=20 update=10 checkout=5 abandon=5
+//
+// rate is the offered load in operations per second across all threads (0 = as fast as possible);
+// warmup and duration are in seconds; browse..abandon are the traffic mix weights.
+// Example: java shopping_cart.Main threads=16 rate=20000 duration=60
 public class Main {
 
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int users = Integer.parseInt(options.getOrDefault("users", "10000"));
+        int products = Integer.parseInt(options.getOrDefault("products", "5000"));
+        long stock = Long.parseLong(options.getOrDefault("stock", "1000000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "5")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+
+        Map<Operation, Integer> mix = LoadProfile.defaultMix();
+        for (Operation operation : Operation.values()) {
+            String weight = options.get(operation.name().toLowerCase());
+            if (weight != null) {
+                mix.put(operation, Integer.parseInt(weight));
+            }
+        }
+
+        try (ShoppingService service = new ShoppingService(Currency.getInstance("USD"))) {
+            LoadHarness harness = new LoadHarness(service, users, products, stock, seed);
+            LoadProfile profile = new LoadProfile(threads, rate, warmup, duration, mix);
+            System.out.println("seed=" + seed + " users=" + users + " products=" + products + " threads=" + threads
+                    + " rate=" + (rate == 0 ? "max" : rate + "/s") + " warmup=" + warmup.getSeconds() + "s duration="
+                    + duration.getSeconds() + "s mix=" + mix);
+            LoadReport report = harness.run(profile);
+            System.out.print(report);
+        }
+    }
 }
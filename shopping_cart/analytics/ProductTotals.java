@@ -0,0 +1,140 @@
+package shopping_cart.analytics;
+
+import java.util.Arrays;
+
+import shopping_cart.util.MoneyMath;
+
+// Open-addressing map from product id to (revenue in minor units, units sold), held in primitive
+// arrays so adding a line allocates nothing once the table has grown to its working size.
+// clear() keeps the capacity; recycle() keeps it too unless the table is far larger than its
+// last contents needed, so a recycled time bucket reuses its arrays but does not hold on to a
+// table grown for one unusually busy period.
+final class ProductTotals {
+
+    private int[] keys;
+    private long[] revenue;
+    private long[] units;
+    private boolean[] used;
+    private int size;
+
+    // A table over this many times the capacity its contents need is released on recycle.
+    private static final int MAX_SLACK = 4;
+
+    ProductTotals(int expectedProducts) {
+        allocate(capacityFor(expectedProducts));
+    }
+
+    void add(int productId, long revenueMinor, long unitsSold) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int i = slot(productId);
+        if (!used[i]) {
+            used[i] = true;
+            keys[i] = productId;
+            size++;
+        }
+        revenue[i] = MoneyMath.add(revenue[i], revenueMinor);
+        units[i] += unitsSold;
+    }
+
+    void addAll(ProductTotals other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.used[i]) {
+                add(other.keys[i], other.revenue[i], other.units[i]);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        Arrays.fill(revenue, 0);
+        Arrays.fill(units, 0);
+        size = 0;
+    }
+
+    // Empties the table for reuse. If it is more than MAX_SLACK times the capacity its last
+    // contents needed (it grew for a busier period), it is reallocated at that capacity instead.
+    void recycle() {
+        int fitted = capacityFor(size);
+        if (keys.length > fitted * MAX_SLACK) {
+            allocate(fitted);
+            size = 0;
+        } else {
+            clear();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Slot-level access for iteration: slots 0..capacity()-1, skipping unused ones.
+    int capacity() {
+        return keys.length;
+    }
+
+    boolean isUsed(int slot) {
+        return used[slot];
+    }
+
+    int productAt(int slot) {
+        return keys[slot];
+    }
+
+    long revenueAt(int slot) {
+        return revenue[slot];
+    }
+
+    long unitsAt(int slot) {
+        return units[slot];
+    }
+
+    // Slot of the product, or -1.
+    int find(int productId) {
+        int i = slot(productId);
+        return used[i] ? i : -1;
+    }
+
+    ProductTotals copy() {
+        ProductTotals copy = new ProductTotals(size);
+        copy.addAll(this);
+        return copy;
+    }
+
+    // Slot holding productId, or the free slot where it belongs.
+    private int slot(int productId) {
+        int mask = keys.length - 1;
+        int h = productId * 0x9E3779B9;
+        int i = (h ^ (h >>> 16)) & mask;
+        while (used[i] && keys[i] != productId) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        long[] oldRevenue = revenue;
+        long[] oldUnits = units;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                add(oldKeys[i], oldRevenue[i], oldUnits[i]);
+            }
+        }
+    }
+
+    private static int capacityFor(int products) {
+        return Integer.highestOneBit(Math.max(4, products * 2 - 1)) << 1;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        revenue = new long[capacity];
+        units = new long[capacity];
+        used = new boolean[capacity];
+    }
+}
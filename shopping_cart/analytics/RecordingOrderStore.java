@@ -0,0 +1,38 @@
+package shopping_cart.analytics;
+
+import java.util.List;
+
+import shopping_cart.model.Order;
+import shopping_cart.service.OrderStore;
+
+// OrderStore decorator that feeds every saved order into a RevenueAnalytics.
+public class RecordingOrderStore implements OrderStore {
+
+    private final OrderStore delegate;
+    private final RevenueAnalytics analytics;
+
+    public RecordingOrderStore(OrderStore delegate, RevenueAnalytics analytics) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("OrderStore cannot be null");
+        }
+        if (analytics == null) {
+            throw new IllegalArgumentException("RevenueAnalytics cannot be null");
+        }
+        this.delegate = delegate;
+        this.analytics = analytics;
+    }
+
+    @Override
+    public void saveAll(List<Order> orders) {
+        delegate.saveAll(orders);
+        // the orders are stored now; a failure here must not fail (and so compensate) the checkout
+        for (Order order : orders) {
+            try {
+                analytics.record(order);
+            } catch (RuntimeException e) {
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            }
+        }
+    }
+}
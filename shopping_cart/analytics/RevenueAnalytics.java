@@ -0,0 +1,254 @@
+package shopping_cart.analytics;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Currency;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import shopping_cart.model.Order;
+import shopping_cart.model.OrderLineItem;
+import shopping_cart.util.MoneyMath;
+
+// Live revenue, units and basket size over recent orders, without reprocessing order history.
+//
+// - Orders are pre-aggregated by creation time into buckets of bucketWidth. The newest bucketCount
+//   buckets are kept in a ring; older ones are recycled, arrays and all. A bucket is allocated
+//   the first time an order lands in it, so quiet periods cost one empty ring slot.
+// - Every rollup consecutive buckets (about sqrt(bucketCount / 2)) are also rolled up into one
+//   coarser bucket as orders are recorded, so a long window merges mostly rolled-up buckets and
+//   only fine ones at its ragged ends.
+// - Recording threads write into striped partials picked by thread (as in StripedStockCounter), so
+//   concurrent checkouts rarely share a lock. A stripe is allocated by the first thread that
+//   records into it: with RecordingOrderStore behind the checkout pipeline's single save stage
+//   there is one stripe, whatever stripeCount allows. A query merges the stripes' buckets.
+// - Recording costs O(lines of the order) no matter how much history there is; a query costs
+//   O((2 x rollup + window buckets / rollup) x stripes x products sold), no matter how many orders
+//   there were.
+// - Windows are whole buckets. A sliding window ends with the current bucket; tumbling windows
+//   start at multiples of their size since the epoch.
+//
+// Orders dated after the current bucket (clock skew) count towards the current bucket. Orders too old
+// for the retained buckets are ignored and counted in getLateOrderCount.
+public class RevenueAnalytics {
+
+    private final Currency currency;
+    private final long widthMillis;
+    private final int bucketCount;
+    private final int rollup; // buckets per rolled-up bucket; 1: no rollups
+    private final int rollupCount;
+    private final AtomicReferenceArray<Stripe> stripes; // null until a thread records into it
+    private final int mask;
+    private final Clock clock;
+    private final AtomicLong lateOrders = new AtomicLong();
+
+    public RevenueAnalytics(Currency currency, Duration bucketWidth, int bucketCount, int stripeCount, Clock clock) {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency cannot be null");
+        }
+        if (bucketWidth == null || bucketWidth.toMillis() <= 0) {
+            throw new IllegalArgumentException("Bucket width must be at least one millisecond");
+        }
+        if (bucketCount <= 0) {
+            throw new IllegalArgumentException("Bucket count must be positive");
+        }
+        if (stripeCount <= 0 || Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a positive power of two");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        this.currency = currency;
+        this.widthMillis = bucketWidth.toMillis();
+        this.bucketCount = bucketCount;
+        this.rollup = Math.max(1, (int) Math.sqrt(bucketCount / 2.0));
+        this.clock = clock;
+        // enough rolled-up buckets that every one overlapping the retained buckets is still kept
+        this.rollupCount = rollup == 1 ? 0 : (bucketCount + rollup - 1) / rollup + 1;
+        this.stripes = new AtomicReferenceArray<>(stripeCount);
+        this.mask = stripeCount - 1;
+    }
+
+    // E.g. (USD, 1 second, 3600): per-second buckets, windows up to an hour. Up to two stripes per
+    // processor; only those threads actually record into are allocated.
+    public RevenueAnalytics(Currency currency, Duration bucketWidth, int bucketCount) {
+        this(currency, bucketWidth, bucketCount,
+                Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)), Clock.systemUTC());
+    }
+
+    public void record(Order order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Order cannot be null");
+        }
+        if (!order.getTotalAmount().getCurrency().equals(currency)) {
+            throw new IllegalArgumentException("Order is not in analytics currency " + currency);
+        }
+        long current = currentBucket();
+        long bucket = Math.min(Math.floorDiv(order.getCreatedAt().toEpochMilli(), widthMillis), current);
+        if (bucket <= current - bucketCount) {
+            lateOrders.incrementAndGet();
+            return;
+        }
+        Stripe stripe = homeStripe();
+        synchronized (stripe) {
+            Bucket target = Stripe.bucketFor(stripe.ring, bucket);
+            Bucket rolledUp = rollup == 1 ? null : Stripe.bucketFor(stripe.rollups, Math.floorDiv(bucket, rollup));
+            if (target == null || (rollup > 1 && rolledUp == null)) {
+                lateOrders.incrementAndGet();
+                return;
+            }
+            target.orders++;
+            if (rolledUp != null) {
+                rolledUp.orders++;
+            }
+            for (OrderLineItem line : order.getLineItems()) {
+                long revenue = MoneyMath.multiply(line.getPriceAtPurchase().getAmountMinor(), line.getQuantity());
+                target.add(line.getProductId(), revenue, line.getQuantity());
+                if (rolledUp != null) {
+                    rolledUp.add(line.getProductId(), revenue, line.getQuantity());
+                }
+            }
+        }
+    }
+
+    // The last `length` of time, ending with the current bucket.
+    public WindowStats sliding(Duration length) {
+        long buckets = bucketsIn(length);
+        long end = currentBucket() + 1;
+        return window(end - buckets, end);
+    }
+
+    // The tumbling window of the given size that is windowsBack windows before the current one
+    // (0 = the window containing now).
+    public WindowStats tumbling(Duration size, int windowsBack) {
+        if (windowsBack < 0) {
+            throw new IllegalArgumentException("Windows back cannot be negative");
+        }
+        long buckets = bucketsIn(size);
+        long start = Math.floorDiv(currentBucket(), buckets) * buckets - windowsBack * buckets;
+        return window(start, start + buckets);
+    }
+
+    public long getLateOrderCount() {
+        return lateOrders.get();
+    }
+
+    private WindowStats window(long fromBucket, long toBucket) {
+        if (fromBucket <= currentBucket() - bucketCount) {
+            throw new IllegalArgumentException("Window reaches back further than the retained buckets");
+        }
+        long orders = 0;
+        long units = 0;
+        long revenue = 0;
+        ProductTotals products = new ProductTotals(64);
+        for (int i = 0; i < stripes.length(); i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe == null) {
+                continue;
+            }
+            synchronized (stripe) {
+                long b = fromBucket;
+                while (b < toBucket) {
+                    Bucket bucket;
+                    long expected;
+                    if (rollup > 1 && Math.floorMod(b, (long) rollup) == 0 && toBucket - b >= rollup) {
+                        expected = b / rollup;
+                        bucket = stripe.rollups[(int) Math.floorMod(expected, (long) stripe.rollups.length)];
+                        b += rollup;
+                    } else {
+                        expected = b;
+                        bucket = stripe.ring[(int) Math.floorMod(b, (long) bucketCount)];
+                        b++;
+                    }
+                    if (bucket == null || bucket.index != expected) {
+                        continue;
+                    }
+                    orders += bucket.orders;
+                    units += bucket.units;
+                    revenue = MoneyMath.add(revenue, bucket.revenueMinor);
+                    products.addAll(bucket.products);
+                }
+            }
+        }
+        return new WindowStats(Instant.ofEpochMilli(fromBucket * widthMillis), Instant.ofEpochMilli(toBucket * widthMillis),
+                currency, orders, units, revenue, products);
+    }
+
+    private long bucketsIn(Duration length) {
+        if (length == null || length.toMillis() <= 0 || length.toMillis() % widthMillis != 0) {
+            throw new IllegalArgumentException("Window length must be a positive multiple of the bucket width");
+        }
+        long buckets = length.toMillis() / widthMillis;
+        if (buckets > bucketCount) {
+            throw new IllegalArgumentException("Window is longer than the retained buckets");
+        }
+        return buckets;
+    }
+
+    private long currentBucket() {
+        return Math.floorDiv(clock.millis(), widthMillis);
+    }
+
+    private Stripe homeStripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        int index = (h ^ (h >>> 16)) & mask;
+        Stripe stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new Stripe(bucketCount, rollupCount));
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    // One thread group's buckets and rolled-up buckets; guarded by the stripe's monitor.
+    private static final class Stripe {
+        private final Bucket[] ring;
+        private final Bucket[] rollups;
+
+        private Stripe(int bucketCount, int rollupCount) {
+            ring = new Bucket[bucketCount]; // slots stay null until an order lands in them
+            rollups = new Bucket[rollupCount];
+        }
+
+        // The bucket for this index, allocating its slot on first use or recycling it if it still
+        // holds an older one; null if the slot already moved on to a newer index.
+        private static Bucket bucketFor(Bucket[] ring, long index) {
+            int slot = (int) Math.floorMod(index, (long) ring.length);
+            Bucket bucket = ring[slot];
+            if (bucket == null) {
+                bucket = new Bucket();
+                bucket.index = index;
+                ring[slot] = bucket;
+                return bucket;
+            }
+            if (bucket.index == index) {
+                return bucket;
+            }
+            if (bucket.index > index) {
+                return null;
+            }
+            bucket.index = index;
+            bucket.orders = 0;
+            bucket.units = 0;
+            bucket.revenueMinor = 0;
+            bucket.products.recycle();
+            return bucket;
+        }
+    }
+
+    private static final class Bucket {
+        private long index = Long.MIN_VALUE;
+        private long orders;
+        private long units;
+        private long revenueMinor;
+        private final ProductTotals products = new ProductTotals(16);
+
+        private void add(int productId, long revenue, int quantity) {
+            products.add(productId, revenue, quantity);
+            units += quantity;
+            revenueMinor = MoneyMath.add(revenueMinor, revenue);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package shopping_cart.analytics;
+
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import shopping_cart.model.Money;
+import shopping_cart.util.MoneyMath;
+
+// Revenue and basket figures for the orders created in [from, to).
+//
+// Stats of the same window computed elsewhere (another shard or node) combine with merge().
+public final class WindowStats {
+
+    private final Instant from;
+    private final Instant to;
+    private final Currency currency;
+    private final long orderCount;
+    private final long unitsSold;
+    private final long revenueMinor;
+    private final ProductTotals products;
+
+    WindowStats(Instant from, Instant to, Currency currency, long orderCount, long unitsSold, long revenueMinor,
+                ProductTotals products) {
+        this.from = from;
+        this.to = to;
+        this.currency = currency;
+        this.orderCount = orderCount;
+        this.unitsSold = unitsSold;
+        this.revenueMinor = revenueMinor;
+        this.products = products;
+    }
+
+    public Instant getFrom() {
+        return from;
+    }
+
+    public Instant getTo() {
+        return to;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public long getUnitsSold() {
+        return unitsSold;
+    }
+
+    public Money getRevenue() {
+        return Money.ofMinor(revenueMinor, currency);
+    }
+
+    // Units per order; 0 for an empty window.
+    public double getAverageBasketSize() {
+        return orderCount == 0 ? 0 : (double) unitsSold / orderCount;
+    }
+
+    public Money getAverageOrderValue() {
+        if (orderCount == 0) {
+            return Money.zero(currency);
+        }
+        return Money.ofMinor(MoneyMath.divide(revenueMinor, orderCount, RoundingMode.HALF_EVEN), currency);
+    }
+
+    public Money getRevenue(int productId) {
+        int slot = products.find(productId);
+        return Money.ofMinor(slot < 0 ? 0 : products.revenueAt(slot), currency);
+    }
+
+    public long getUnitsSold(int productId) {
+        int slot = products.find(productId);
+        return slot < 0 ? 0 : products.unitsAt(slot);
+    }
+
+    public Map<Integer, Money> getRevenueByProduct() {
+        Map<Integer, Money> result = new LinkedHashMap<>();
+        for (int slot = 0; slot < products.capacity(); slot++) {
+            if (products.isUsed(slot)) {
+                result.put(products.productAt(slot), Money.ofMinor(products.revenueAt(slot), currency));
+            }
+        }
+        return result;
+    }
+
+    // Ids of the k products with the most revenue, highest first (ties by lower id).
+    public List<Integer> topProductsByRevenue(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        List<Integer> slots = new ArrayList<>(products.size());
+        for (int slot = 0; slot < products.capacity(); slot++) {
+            if (products.isUsed(slot)) {
+                slots.add(slot);
+            }
+        }
+        slots.sort((a, b) -> {
+            int byRevenue = Long.compare(products.revenueAt(b), products.revenueAt(a));
+            return byRevenue != 0 ? byRevenue : Integer.compare(products.productAt(a), products.productAt(b));
+        });
+        List<Integer> top = new ArrayList<>(Math.min(k, slots.size()));
+        for (int i = 0; i < slots.size() && i < k; i++) {
+            top.add(products.productAt(slots.get(i)));
+        }
+        return top;
+    }
+
+    public WindowStats merge(WindowStats other) {
+        if (other == null) {
+            throw new IllegalArgumentException("WindowStats cannot be null");
+        }
+        if (!from.equals(other.from) || !to.equals(other.to)) {
+            throw new IllegalArgumentException("Only stats of the same window can be merged");
+        }
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Cannot merge stats in different currencies");
+        }
+        ProductTotals merged = products.copy();
+        merged.addAll(other.products);
+        return new WindowStats(from, to, currency, orderCount + other.orderCount, unitsSold + other.unitsSold,
+                MoneyMath.add(revenueMinor, other.revenueMinor), merged);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + from + ", " + to + "): " + orderCount + " orders, " + unitsSold + " units, " + getRevenue();
+    }
+}
@@ -0,0 +1,255 @@
+package shopping_cart.auth;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import shopping_cart.model.User;
+
+// Hashes and verifies passwords on a dedicated pool of workers, off the request threads.
+//
+// - Hashes are salted PBKDF2-HMAC-SHA256 at a tunable iteration count. Every hash records its own
+//   cost, so raising the cost never invalidates stored hashes.
+// - Requests wait in one bounded queue. A full queue makes submit wait up to submitTimeout and then
+//   fail the future with RejectedExecutionException, so a login burst gets a fast "try again"
+//   instead of an ever longer wait, and the number of hashing threads (workerCount) caps the CPU
+//   that hashing can take from request threads.
+// - A successful login whose hash was made at another cost is rehashed at the current cost on the
+//   same worker after the caller has its answer, and swapped in unless the password changed meanwhile.
+public class CredentialService implements AutoCloseable {
+
+    private static final String KEY_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int MIN_PASSWORD_LENGTH = 6;
+
+    private final int iterations;
+    private final long submitTimeoutMillis;
+    private final SecureRandom random = new SecureRandom();
+    private final BlockingQueue<Task> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicLong rehashed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean closed;
+
+    public CredentialService(int iterations, int workerCount, int queueCapacity, long submitTimeoutMillis,
+                             ThreadFactory threadFactory) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("Iterations must be positive");
+        }
+        if (workerCount <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Workers and queue capacity must be positive");
+        }
+        if (submitTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Submit timeout cannot be negative");
+        }
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("ThreadFactory cannot be null");
+        }
+        this.iterations = iterations;
+        this.submitTimeoutMillis = submitTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = threadFactory.newThread(this::runWorker);
+            worker.setName("credential-hash-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    // Half the cores hash, the other half stay free for request threads.
+    public CredentialService(int iterations) {
+        this(iterations, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 256, 50,
+                Executors.defaultThreadFactory());
+    }
+
+    // Hash for a new or changed password. Password rules are checked here, before queueing.
+    public CompletableFuture<PasswordHash> hash(String password) {
+        checkPolicy(password);
+        char[] chars = password.toCharArray();
+        CompletableFuture<PasswordHash> result = new CompletableFuture<>();
+        enqueue(() -> {
+            try {
+                result.complete(hash(chars, newSalt(), iterations));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                Arrays.fill(chars, '\0');
+            }
+        }, result, chars);
+        return result;
+    }
+
+    // Hashes the new password and stores its encoded form on the user.
+    public CompletableFuture<Void> changePassword(User user, String newPassword) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        return hash(newPassword).thenAccept(hash -> user.updatePasswordHash(hash.encode()));
+    }
+
+    // Completes with whether the password matches the user's stored hash.
+    public CompletableFuture<Boolean> verify(User user, String password) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        if (password == null) {
+            throw new IllegalArgumentException("Password cannot be null");
+        }
+        String encoded = user.getPasswordHash();
+        char[] chars = password.toCharArray();
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        enqueue(() -> {
+            try {
+                PasswordHash stored = PasswordHash.decode(encoded);
+                boolean matches = MessageDigest.isEqual(stored.hash(), hash(chars, stored.salt(), stored.getIterations()).hash());
+                result.complete(matches);
+                if (matches && stored.getIterations() != iterations) {
+                    if (user.replacePasswordHash(encoded, hash(chars, newSalt(), iterations).encode())) {
+                        rehashed.incrementAndGet();
+                    }
+                }
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } finally {
+                Arrays.fill(chars, '\0');
+            }
+        }, result, chars);
+        return result;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    // Stored hashes upgraded to the current cost on login.
+    public long getRehashCount() {
+        return rehashed.get();
+    }
+
+    // Requests turned away because the queue stayed full.
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    // Stops the workers. Requests still queued fail with CancellationException.
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        List<Task> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (Task task : pending) {
+            task.fail(new CancellationException("Credential service closed"));
+        }
+    }
+
+    // Fails the future right away if the service is closed or the queue stays full. A task queued
+    // while close() runs may land after its final drain; it is taken back out and failed here, and
+    // if the drain got it first the drain fails it.
+    private void enqueue(Runnable work, CompletableFuture<?> result, char[] password) {
+        Task task = new Task(work, result, password);
+        if (closed) {
+            task.fail(new RejectedExecutionException("Credential service is closed"));
+            return;
+        }
+        try {
+            if (!queue.offer(task, submitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                task.fail(new RejectedExecutionException("Credential service is saturated"));
+            } else if (closed && queue.remove(task)) {
+                task.fail(new RejectedExecutionException("Credential service is closed"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.fail(e);
+        }
+    }
+
+    private void runWorker() {
+        while (!closed) {
+            Task task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            task.run();
+        }
+    }
+
+    private byte[] newSalt() {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    private static PasswordHash hash(char[] password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BITS);
+        try {
+            byte[] hash = SecretKeyFactory.getInstance(KEY_ALGORITHM).generateSecret(spec).getEncoded();
+            return new PasswordHash(iterations, salt, hash);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(KEY_ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static void checkPolicy(String password) {
+        if (password == null || password.isBlank()) {
+            throw new IllegalArgumentException("Please Enter your password");
+        }
+        if (password.length() < MIN_PASSWORD_LENGTH) {
+            throw new IllegalArgumentException("Password must be at least " + MIN_PASSWORD_LENGTH + " characters long.");
+        }
+    }
+
+    // Queued work plus what to clean up if it never runs.
+    private static final class Task {
+        private final Runnable work;
+        private final CompletableFuture<?> result;
+        private final char[] password;
+
+        private Task(Runnable work, CompletableFuture<?> result, char[] password) {
+            this.work = work;
+            this.result = result;
+            this.password = password;
+        }
+
+        private void run() {
+            work.run();
+        }
+
+        private void fail(Throwable cause) {
+            Arrays.fill(password, '\0');
+            result.completeExceptionally(cause);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package shopping_cart.auth;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+// A salted PBKDF2-HMAC-SHA256 password hash together with the cost it was computed at.
+//
+// Stored form: "pbkdf2-sha256$<iterations>$<base64 salt>$<base64 hash>". Keeping the cost in
+// the stored value lets CredentialService verify old hashes after the cost is raised and
+// upgrade them on the next successful login.
+public final class PasswordHash {
+
+    static final String ALGORITHM = "pbkdf2-sha256";
+
+    private final int iterations;
+    private final byte[] salt;
+    private final byte[] hash;
+
+    PasswordHash(int iterations, byte[] salt, byte[] hash) {
+        this.iterations = iterations;
+        this.salt = salt;
+        this.hash = hash;
+    }
+
+    public static PasswordHash decode(String encoded) {
+        if (encoded == null) {
+            throw new IllegalArgumentException("Encoded password hash cannot be null");
+        }
+        String[] parts = encoded.split("\\$");
+        if (parts.length != 4 || !parts[0].equals(ALGORITHM)) {
+            throw new IllegalArgumentException("Not a " + ALGORITHM + " password hash");
+        }
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] hash = Base64.getDecoder().decode(parts[3]);
+            if (iterations <= 0 || salt.length == 0 || hash.length == 0) {
+                throw new IllegalArgumentException("Malformed password hash");
+            }
+            return new PasswordHash(iterations, salt, hash);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed password hash", e);
+        }
+    }
+
+    public String encode() {
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return ALGORITHM + "$" + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    byte[] salt() {
+        return salt;
+    }
+
+    byte[] hash() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PasswordHash)) return false;
+        PasswordHash other = (PasswordHash) o;
+        return iterations == other.iterations && Arrays.equals(salt, other.salt) && Arrays.equals(hash, other.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(salt) + Arrays.hashCode(hash);
+    }
+
+    // Never prints the hash itself.
+    @Override
+    public String toString() {
+        return ALGORITHM + "(" + iterations + " iterations)";
+    }
+}
@@ -0,0 +1,26 @@
+package shopping_cart.bench;
+
+// One operation to measure, shaped like a JMH @State class with a @Benchmark method.
+//
+// setUp builds fresh state for a cart size and thread count before each trial; invoke is then
+// called in a tight loop by that many threads at once on the same state, so it must be
+// thread-safe. invoke's result is folded into a sink the runner publishes, so the JIT cannot drop
+// the work as dead code (what JMH's Blackhole is for).
+abstract class Benchmark {
+
+    private final String name;
+
+    Benchmark(String name) {
+        this.name = name;
+    }
+
+    final String name() {
+        return name;
+    }
+
+    abstract void setUp(int cartSize, int threads);
+
+    // thread is 0..threads-1; i counts that thread's invocations. Walk the state with them rather
+    // than a shared random, which would itself be contended.
+    abstract long invoke(int thread, int i);
+}
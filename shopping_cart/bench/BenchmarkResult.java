@@ -0,0 +1,78 @@
+package shopping_cart.bench;
+
+import java.util.Locale;
+
+// Score of one benchmark at one cart size and thread count, as one line of a results file:
+//
+//   <benchmark> <cartSize> <threads> <ns/op> <error ns/op> <bytes/op>
+//
+// ns/op is the average time one thread spends per call (JMH's AverageTime mode) and error is the
+// standard deviation across measurement iterations. bytes/op is -1 if allocation could not be read.
+final class BenchmarkResult {
+
+    private final String benchmark;
+    private final int cartSize;
+    private final int threads;
+    private final double nanosPerOp;
+    private final double errorNanos;
+    private final double bytesPerOp;
+
+    BenchmarkResult(String benchmark, int cartSize, int threads, double nanosPerOp, double errorNanos, double bytesPerOp) {
+        if (benchmark == null || benchmark.isBlank() || benchmark.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("Benchmark name must be one non-blank word");
+        }
+        this.benchmark = benchmark;
+        this.cartSize = cartSize;
+        this.threads = threads;
+        this.nanosPerOp = nanosPerOp;
+        this.errorNanos = errorNanos;
+        this.bytesPerOp = bytesPerOp;
+    }
+
+    static BenchmarkResult parse(String line) {
+        String[] fields = line.trim().split("\\s+");
+        if (fields.length != 6) {
+            throw new IllegalArgumentException("Expected 6 fields in result line: " + line);
+        }
+        try {
+            return new BenchmarkResult(fields[0], Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                    Double.parseDouble(fields[3]), Double.parseDouble(fields[4]), Double.parseDouble(fields[5]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed result line: " + line, e);
+        }
+    }
+
+    String format() {
+        return String.format(Locale.ROOT, "%-24s %6d %3d %12.2f %10.2f %10.1f",
+                benchmark, cartSize, threads, nanosPerOp, errorNanos, bytesPerOp);
+    }
+
+    // Identifies the same measurement across runs.
+    String key() {
+        return benchmark + " " + cartSize + " " + threads;
+    }
+
+    String getBenchmark() {
+        return benchmark;
+    }
+
+    int getCartSize() {
+        return cartSize;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    double getNanosPerOp() {
+        return nanosPerOp;
+    }
+
+    double getErrorNanos() {
+        return errorNanos;
+    }
+
+    double getBytesPerOp() {
+        return bytesPerOp;
+    }
+}
@@ -0,0 +1,286 @@
+package shopping_cart.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// Runs CartBenchmarks and optionally checks the scores against a baseline. Arguments are key=value
+// pairs, all optional:
+//
+//   filter=<regex>        only benchmarks whose name matches
+//   sizes=1,10,100,1000,10000
+//   threads=4             thread count of the contended runs (every benchmark also runs on 1)
+//   warmup=3 iterations=5 time=500    iterations of time milliseconds each, per trial
+//   out=<file>            also write the results there (the baseline format)
+//   baseline=<file> tolerance=10      compare with a baseline; exits 1 on a regression, 2 if the
+//                                     baseline was recorded on another host
+//
+// Each trial (benchmark x size x thread count) gets fresh state, then warmup iterations that are
+// discarded, then measured ones. A regression is a slowdown of more than tolerance percent that
+// also exceeds both runs' error, or more than tolerance percent (and 8 bytes) more allocation.
+// Results files start with the host they were measured on (see HostInfo). A baseline from a host
+// with a different JVM, OS, architecture or CPU count is refused before anything runs: regenerate
+// it (out=<file>) on the machine that will compare against it.
+//
+// No baseline is checked in, because none would match another machine. Record one on the host
+// that runs the comparison, from the revision to compare against, then pass it back in:
+//
+//   java shopping_cart.bench.BenchmarkRunner out=bench-baseline.txt
+//   java shopping_cart.bench.BenchmarkRunner baseline=bench-baseline.txt
+public final class BenchmarkRunner {
+
+    // written once per iteration so benchmark results stay observable
+    private static volatile long blackhole;
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        Pattern filter = Pattern.compile(options.getOrDefault("filter", ".*"));
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : options.getOrDefault("sizes", "1,10,100,1000,10000").split(",")) {
+            sizes.add(Integer.parseInt(size.trim()));
+        }
+        int contendedThreads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "3"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "5"));
+        long iterationMillis = Long.parseLong(options.getOrDefault("time", "500"));
+        double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "10")) / 100;
+        if (contendedThreads < 2 || warmup < 0 || iterations < 2 || iterationMillis <= 0) {
+            throw new IllegalArgumentException("Need threads >= 2, warmup >= 0, iterations >= 2 and time > 0");
+        }
+
+        HostInfo host = HostInfo.current();
+        String baseline = options.get("baseline");
+        Map<String, BenchmarkResult> baselineResults = null;
+        if (baseline != null) {
+            baselineResults = readResults(Paths.get(baseline), host);
+            if (baselineResults == null) {
+                System.exit(2);
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add(host.format());
+        lines.add("# warmup=" + warmup + " iterations=" + iterations + " time=" + iterationMillis + "ms");
+        lines.add("# benchmark               size thr        ns/op      error       B/op");
+        lines.forEach(System.out::println);
+        List<BenchmarkResult> results = new ArrayList<>();
+        for (Benchmark benchmark : CartBenchmarks.all()) {
+            if (!filter.matcher(benchmark.name()).find()) {
+                continue;
+            }
+            for (int size : sizes) {
+                for (int threads : new int[] {1, contendedThreads}) {
+                    BenchmarkResult result = trial(benchmark, size, threads, warmup, iterations, iterationMillis);
+                    results.add(result);
+                    lines.add(result.format());
+                    System.out.println(result.format());
+                }
+            }
+        }
+
+        String out = options.get("out");
+        if (out != null) {
+            try {
+                Files.write(Paths.get(out), lines, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write results to " + out, e);
+            }
+        }
+        if (baselineResults != null && compare(baselineResults, results, tolerance) > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static BenchmarkResult trial(Benchmark benchmark, int size, int threads, int warmup, int iterations,
+                                         long iterationMillis) {
+        benchmark.setUp(size, threads);
+        int[] nextInvocation = new int[threads];
+        double[] nanosPerOp = new double[iterations];
+        long measuredOps = 0;
+        long measuredBytes = 0;
+        boolean allocationKnown = true;
+        for (int iteration = -warmup; iteration < iterations; iteration++) {
+            Iteration run = new Iteration(benchmark, threads, nextInvocation);
+            run.execute(iterationMillis);
+            if (iteration >= 0) {
+                nanosPerOp[iteration] = (double) run.nanos / run.ops;
+                measuredOps += run.ops;
+                measuredBytes += run.bytes;
+                allocationKnown &= run.bytes >= 0;
+            }
+        }
+        double mean = 0;
+        for (double score : nanosPerOp) {
+            mean += score / iterations;
+        }
+        double variance = 0;
+        for (double score : nanosPerOp) {
+            variance += (score - mean) * (score - mean) / (iterations - 1);
+        }
+        double bytesPerOp = allocationKnown ? (double) measuredBytes / measuredOps : -1;
+        return new BenchmarkResult(benchmark.name(), size, threads, mean, Math.sqrt(variance), bytesPerOp);
+    }
+
+    // Prints the comparison and returns the number of regressions.
+    private static int compare(Map<String, BenchmarkResult> baseline, List<BenchmarkResult> results, double tolerance) {
+        System.out.println();
+        System.out.println("# compared with baseline (time and allocation change)");
+        int regressions = 0;
+        for (BenchmarkResult result : results) {
+            BenchmarkResult before = baseline.get(result.key());
+            if (before == null) {
+                System.out.println(String.format(Locale.ROOT, "%-36s not in baseline", result.key()));
+                continue;
+            }
+            double timeChange = result.getNanosPerOp() / before.getNanosPerOp() - 1;
+            boolean slower = timeChange > tolerance
+                    && result.getNanosPerOp() - before.getNanosPerOp() > result.getErrorNanos() + before.getErrorNanos();
+            boolean allocates = before.getBytesPerOp() >= 0 && result.getBytesPerOp() >= 0
+                    && result.getBytesPerOp() > before.getBytesPerOp() * (1 + tolerance) + 8;
+            if (slower || allocates) {
+                regressions++;
+            }
+            System.out.println(String.format(Locale.ROOT, "%-36s %+7.1f%% %+9.1f B/op%s", result.key(), timeChange * 100,
+                    result.getBytesPerOp() - before.getBytesPerOp(), slower || allocates ? "  REGRESSION" : ""));
+        }
+        System.out.println("# " + regressions + " regression(s)");
+        return regressions;
+    }
+
+    // The baseline's results, or null (after saying why) if it was not recorded on this host.
+    private static Map<String, BenchmarkResult> readResults(Path file, HostInfo host) {
+        Map<String, BenchmarkResult> results = new LinkedHashMap<>();
+        HostInfo recordedOn = null;
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (HostInfo.isHostLine(line)) {
+                    recordedOn = HostInfo.parse(line);
+                } else if (!line.isBlank() && !line.startsWith("#")) {
+                    BenchmarkResult result = BenchmarkResult.parse(line);
+                    results.put(result.key(), result);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read baseline " + file, e);
+        }
+        if (recordedOn == null) {
+            System.out.println("# refusing to compare: baseline " + file + " does not say which host it was recorded on");
+            return null;
+        }
+        List<String> differences = host.differences(recordedOn);
+        if (!differences.isEmpty()) {
+            System.out.println("# refusing to compare: baseline " + file + " was recorded on another host (this vs baseline)");
+            for (String difference : differences) {
+                System.out.println("#   " + difference);
+            }
+            return null;
+        }
+        return results;
+    }
+
+    // One timed iteration: every thread calls the benchmark until told to stop, then reports its
+    // own call count, running time and allocation.
+    private static final class Iteration {
+        private final Benchmark benchmark;
+        private final int threads;
+        private final int[] nextInvocation; // per thread, carried over between iterations
+        private final CountDownLatch startGate = new CountDownLatch(1);
+        private volatile boolean stop;
+        private long ops;
+        private long nanos;
+        private long bytes;
+
+        private Iteration(Benchmark benchmark, int threads, int[] nextInvocation) {
+            this.benchmark = benchmark;
+            this.threads = threads;
+            this.nextInvocation = nextInvocation;
+        }
+
+        private void execute(long millis) {
+            long[][] perThread = new long[threads][3]; // ops, nanos, bytes
+            List<Thread> workers = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                Thread worker = new Thread(() -> perThread[thread] = measure(thread), "bench-" + t);
+                workers.add(worker);
+                worker.start();
+            }
+            startGate.countDown();
+            try {
+                TimeUnit.MILLISECONDS.sleep(millis);
+                stop = true;
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Benchmark interrupted", e);
+            }
+            for (long[] counts : perThread) {
+                ops += counts[0];
+                nanos += counts[1];
+                bytes = bytes < 0 || counts[2] < 0 ? -1 : bytes + counts[2];
+            }
+        }
+
+        private long[] measure(int thread) {
+            try {
+                startGate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new long[] {0, 0, 0};
+            }
+            long allocatedBefore = allocatedBytes();
+            int i = nextInvocation[thread];
+            long sink = 0;
+            long start = System.nanoTime();
+            while (!stop) {
+                sink += benchmark.invoke(thread, i++);
+            }
+            long elapsed = System.nanoTime() - start;
+            long allocatedAfter = allocatedBytes();
+            blackhole = sink;
+            long calls = (i - nextInvocation[thread]) & 0xFFFFFFFFL; // i may wrap around
+            nextInvocation[thread] = i;
+            long allocated = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+            return new long[] {calls, elapsed, allocated};
+        }
+    }
+
+    // Bytes this thread has allocated so far; -1 if the JVM cannot tell.
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        if (!allocation.isThreadAllocatedMemorySupported() || !allocation.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return allocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,217 @@
+package shopping_cart.bench;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+import shopping_cart.model.Cart;
+import shopping_cart.model.LineItem;
+import shopping_cart.model.Money;
+import shopping_cart.model.Order;
+import shopping_cart.model.OrderLineItem;
+import shopping_cart.model.Product;
+import shopping_cart.model.User;
+
+// The cart model's hot paths. Every benchmark runs against a cart (or order) of cartSize lines,
+// one line per product, and keeps that size steady while it runs.
+final class CartBenchmarks {
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    private CartBenchmarks() {
+    }
+
+    static List<Benchmark> all() {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new AddProduct());
+        benchmarks.add(new UpdateQuantity());
+        benchmarks.add(new RemoveProduct());
+        benchmarks.add(new GetTotalAmount());
+        benchmarks.add(new OrderConstruction());
+        benchmarks.add(new LineItemEquals());
+        benchmarks.add(new LineItemHashCode());
+        return benchmarks;
+    }
+
+    // Products 1..count, prices spread over 1.00-100.00.
+    private static Product[] products(int count) {
+        Product[] products = new Product[count];
+        for (int i = 0; i < count; i++) {
+            int id = i + 1;
+            products[i] = new Product(id, "Product " + id, "Benchmark product " + id, Money.ofMinor(100 + (id * 7919L) % 9_900, USD));
+        }
+        return products;
+    }
+
+    private static Cart filledCart(Product[] products, int lines) {
+        Cart cart = new Cart(1L, USD);
+        for (int i = 0; i < lines; i++) {
+            cart.addProduct(products[i], 1);
+        }
+        return cart;
+    }
+
+    // Adds one unit to an existing line: the common "add again" case, size unchanged.
+    private static final class AddProduct extends Benchmark {
+        private Product[] products;
+        private Cart cart;
+
+        private AddProduct() {
+            super("Cart.addProduct");
+        }
+
+        @Override
+        void setUp(int cartSize, int threads) {
+            products = products(cartSize);
+            cart = filledCart(products, cartSize);
+        }
+
+        @Override
+        long invoke(int thread, int i) {
+            cart.addProduct(products[Math.floorMod(i + thread * 7919, products.length)], 1);
+            return i;
+        }
+    }
+
+    private static final class UpdateQuantity extends Benchmark {
+        private Product[] products;
+        private Cart cart;
+
+        private UpdateQuantity() {
+            super("Cart.updateQuantity");
+        }
+
+        @Override
+        void setUp(int cartSize, int threads) {
+            products = products(cartSize);
+            cart = filledCart(products, cartSize);
+        }
+
+        @Override
+        long invoke(int thread, int i) {
+            cart.updateQuantity(products[Math.floorMod(i + thread * 7919, products.length)].getId(), 1 + (i & 7));
+            return i;
+        }
+    }
+
+    // Removes a line and adds it back, so the cart keeps its size. Each thread owns one extra product
+    // beyond the cartSize base lines, so contended threads never remove each other's line.
+    private static final class RemoveProduct extends Benchmark {
+        private Product[] extras;
+        private Cart cart;
+
+        private RemoveProduct() {
+            super("Cart.removeProduct+add");
+        }
+
+        @Override
+        void setUp(int cartSize, int threads) {
+            Product[] products = products(cartSize + threads);
+            cart = filledCart(products, cartSize + threads);
+            extras = new Product[threads];
+            System.arraycopy(products, cartSize, extras, 0, threads);
+        }
+
+        @Override
+        long invoke(int thread, int i) {
+            Product extra = extras[thread];
+            cart.removeProduct(extra.getId());
+            cart.addProduct(extra, 1);
+            return i;
+        }
+    }
+
+    private static final class GetTotalAmount extends Benchmark {
+        private Cart cart;
+
+        private GetTotalAmount() {
+            super("Cart.getTotalAmount");
+        }
+
+        @Override
+        void setUp(int cartSize, int threads) {
+            cart = filledCart(products(cartSize), cartSize);
+        }
+
+        @Override
+        long invoke(int thread, int i) {
+            return cart.getTotalAmount().getAmountMinor();
+        }
+    }
+
+    // new Order(...) over a ready list of order lines: copies the lines and totals them.
+    private static final class OrderConstruction extends Benchmark {
+        private User user;
+        private List<OrderLineItem> lines;
+        private Instant createdAt;
+
+        private OrderConstruction() {
+            super("Order.<init>");
+        }
+
+        @Override
+        void setUp(int cartSize, int threads) {
+            user = new User(1, "bench", "bench@example.com", "pbkdf2-sha256$1$AAAA$AAAA");
+            lines = new ArrayList<>(cartSize);
+            for (Product product : products(cartSize)) {
+                lines.add(new OrderLineItem(product.getId(), product.getProductName(), product.getPrice(), 2));
+            }
+            createdAt = Instant.parse("2026-01-01T00:00:00Z");
+        }
+
+        @Override
+        long invoke(int thread, int i) {
+            return new Order(i, user, lines, createdAt).getTotalAmount().getAmountMinor();
+        }
+    }
+
+    // Equal pairs: distinct LineItem objects for the same product, as in a set lookup that hits.
+    private static final class LineItemEquals extends Benchmark {
+        private LineItem[] items;
+        private LineItem[] copies;
+
+        private LineItemEquals() {
+            super("LineItem.equals");
+        }
+
+        @Override
+        void setUp(int cartSize, int threads) {
+            Product[] products = products(cartSize);
+            items = new LineItem[cartSize];
+            copies = new LineItem[cartSize];
+            for (int i = 0; i < cartSize; i++) {
+                items[i] = new LineItem(i + 1, products[i], 1);
+                copies[i] = new LineItem(i + 1, products[i], 2);
+            }
+        }
+
+        @Override
+        long invoke(int thread, int i) {
+            int k = Math.floorMod(i + thread * 7919, items.length);
+            return items[k].equals(copies[k]) ? 1 : 0;
+        }
+    }
+
+    private static final class LineItemHashCode extends Benchmark {
+        private LineItem[] items;
+
+        private LineItemHashCode() {
+            super("LineItem.hashCode");
+        }
+
+        @Override
+        void setUp(int cartSize, int threads) {
+            Product[] products = products(cartSize);
+            items = new LineItem[cartSize];
+            for (int i = 0; i < cartSize; i++) {
+                items[i] = new LineItem(i + 1, products[i], 1);
+            }
+        }
+
+        @Override
+        long invoke(int thread, int i) {
+            return items[Math.floorMod(i + thread * 7919, items.length)].hashCode();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package shopping_cart.bench;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The machine and JVM a results file was measured on, as one line of that file:
+//
+//   # host java=<version> vm=<name> os=<name> arch=<arch> cpus=<count>
+//
+// Spaces inside values are written as '_'. Scores only compare between runs on equal hosts: a
+// different CPU count alone changes every contended result.
+final class HostInfo {
+
+    static final String PREFIX = "# host ";
+
+    private final Map<String, String> properties;
+
+    private HostInfo(Map<String, String> properties) {
+        this.properties = properties;
+    }
+
+    static HostInfo current() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("java", System.getProperty("java.version"));
+        properties.put("vm", System.getProperty("java.vm.name"));
+        properties.put("os", System.getProperty("os.name"));
+        properties.put("arch", System.getProperty("os.arch"));
+        properties.put("cpus", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            property.setValue(property.getValue().trim().replaceAll("\\s+", "_"));
+        }
+        return new HostInfo(properties);
+    }
+
+    static boolean isHostLine(String line) {
+        return line.startsWith(PREFIX);
+    }
+
+    static HostInfo parse(String line) {
+        if (!isHostLine(line)) {
+            throw new IllegalArgumentException("Not a host line: " + line);
+        }
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (String field : line.substring(PREFIX.length()).trim().split("\\s+")) {
+            int eq = field.indexOf('=');
+            if (eq <= 0 || eq == field.length() - 1) {
+                throw new IllegalArgumentException("Malformed host line: " + line);
+            }
+            properties.put(field.substring(0, eq), field.substring(eq + 1));
+        }
+        return new HostInfo(properties);
+    }
+
+    String format() {
+        StringBuilder line = new StringBuilder(PREFIX.trim());
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            line.append(' ').append(property.getKey()).append('=').append(property.getValue());
+        }
+        return line.toString();
+    }
+
+    // One "key: this vs other" entry per property that differs or is missing on either side.
+    List<String> differences(HostInfo other) {
+        Map<String, String> keys = new LinkedHashMap<>(properties);
+        keys.putAll(other.properties);
+        List<String> differences = new ArrayList<>();
+        for (String key : keys.keySet()) {
+            String mine = properties.get(key);
+            String theirs = other.properties.get(key);
+            if (mine == null || !mine.equals(theirs)) {
+                differences.add(key + ": " + mine + " vs " + theirs);
+            }
+        }
+        return differences;
+    }
+}
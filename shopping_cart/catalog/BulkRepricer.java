@@ -0,0 +1,289 @@
+package shopping_cart.catalog;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import shopping_cart.model.Money;
+
+// Reprices the catalog in parallel and publishes the result as one catalog version.
+//
+// - Work is split by catalog chunk: fork-join tasks take ranges of chunks, price them from the
+//   current snapshot and build replacement product arrays for the chunks that changed. Unchanged
+//   chunks are shared with the previous version.
+// - Nothing is published until every chunk is done; a failure (a rule throwing, an invalid price,
+//   an unknown product) leaves the catalog untouched. Shoppers see all old or all new prices.
+// - Other catalog writers wait while the prices are computed and published; readers never wait.
+public class BulkRepricer {
+
+    private static final int CHUNKS_PER_TASK = 16;
+
+    private final ProductCatalog catalog;
+    private final ForkJoinPool pool;
+
+    public BulkRepricer(ProductCatalog catalog, ForkJoinPool pool) {
+        if (catalog == null) {
+            throw new IllegalArgumentException("ProductCatalog cannot be null");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("ForkJoinPool cannot be null");
+        }
+        this.catalog = catalog;
+        this.pool = pool;
+    }
+
+    public BulkRepricer(ProductCatalog catalog) {
+        this(catalog, ForkJoinPool.commonPool());
+    }
+
+    // Applies the rules in order to every product, each rule seeing the price the previous one
+    // produced. Returns the number of products whose price changed.
+    public int reprice(List<PriceRule> rules) {
+        if (rules == null || rules.isEmpty()) {
+            throw new IllegalArgumentException("At least one price rule is required");
+        }
+        PriceRule[] ruleArray = rules.toArray(new PriceRule[0]);
+        for (PriceRule rule : ruleArray) {
+            if (rule == null) {
+                throw new IllegalArgumentException("Price rule cannot be null");
+            }
+        }
+        return catalog.reprice((snapshot, nextVersion) ->
+                inParallel(snapshot, chunk -> applyRules(snapshot, chunk, ruleArray, nextVersion)));
+    }
+
+    // Streams a price file of "productId,amount" lines, e.g. "42,19.99", with amounts in each
+    // product's currency. Blank lines and lines starting with '#' are skipped; products not listed
+    // keep their price and a later line for the same product wins.
+    public int reprice(Path priceFile) {
+        if (priceFile == null) {
+            throw new IllegalArgumentException("Price file cannot be null");
+        }
+        try (Reader in = Files.newBufferedReader(priceFile, StandardCharsets.UTF_8)) {
+            return reprice(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read price file " + priceFile, e);
+        }
+    }
+
+    public int reprice(Reader prices) {
+        if (prices == null) {
+            throw new IllegalArgumentException("Reader cannot be null");
+        }
+        // parsed before taking the catalog lock; the chunk layout never changes
+        ChunkPrices[] byChunk = read(prices, catalog.current());
+        return catalog.reprice((snapshot, nextVersion) ->
+                inParallel(snapshot, chunk -> applyFile(snapshot, chunk, byChunk[chunk], nextVersion)));
+    }
+
+    // Computes the replaced products of one catalog version (see ProductCatalog.reprice).
+    interface Repricing {
+        ProductVersion[][] apply(CatalogSnapshot snapshot, long nextVersion);
+    }
+
+    private interface ChunkStep {
+        ProductVersion[] apply(int chunk); // null: chunk unchanged
+    }
+
+    private ProductVersion[][] inParallel(CatalogSnapshot snapshot, ChunkStep step) {
+        ProductVersion[][] replaced = new ProductVersion[snapshot.chunkCount()][];
+        try {
+            pool.invoke(new ChunkRange(0, replaced.length, step, replaced));
+        } catch (RuntimeException e) {
+            // fork-join rethrows a worker's exception as a copy wrapping the original; surface the original
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException && cause.getClass() == e.getClass()) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+        return replaced;
+    }
+
+    private static ProductVersion[] applyRules(CatalogSnapshot snapshot, int chunk, PriceRule[] rules, long nextVersion) {
+        ProductVersion[] products = snapshot.chunkProducts(chunk);
+        boolean changed = false;
+        for (int i = 0; i < products.length; i++) {
+            ProductVersion product = products[i];
+            Money price = product.getPrice();
+            for (PriceRule rule : rules) {
+                price = rule.apply(product, price);
+                if (price == null) {
+                    throw new IllegalArgumentException("Price rule returned no price for product " + product.getId());
+                }
+            }
+            if (!price.equals(product.getPrice())) {
+                products[i] = ProductCatalog.repriced(product, price, nextVersion);
+                changed = true;
+            }
+        }
+        return changed ? products : null;
+    }
+
+    private static ProductVersion[] applyFile(CatalogSnapshot snapshot, int chunk, ChunkPrices prices, long nextVersion) {
+        if (prices == null) {
+            return null;
+        }
+        int[] ids = snapshot.chunkIds(chunk);
+        ProductVersion[] original = snapshot.chunkProducts(chunk);
+        ProductVersion[] products = original.clone();
+        for (int k = 0; k < prices.size; k++) {
+            int i = Arrays.binarySearch(ids, prices.ids[k]);
+            if (i < 0) {
+                throw new IllegalArgumentException("Product with ID " + prices.ids[k] + " is not in catalog");
+            }
+            Currency currency = original[i].getPrice().getCurrency();
+            Money price = Money.ofMinor(toMinor(prices.unscaled[k], prices.scales[k], currency, prices.ids[k]), currency);
+            products[i] = price.equals(original[i].getPrice()) ? original[i] : ProductCatalog.repriced(original[i], price, nextVersion);
+        }
+        for (int i = 0; i < products.length; i++) {
+            if (products[i] != original[i]) {
+                return products;
+            }
+        }
+        return null;
+    }
+
+    private static long toMinor(long unscaled, int scale, Currency currency, int productId) {
+        int digits = currency.getDefaultFractionDigits();
+        try {
+            if (scale <= digits) {
+                return Math.multiplyExact(unscaled, pow10(digits - scale));
+            }
+            long divisor = pow10(scale - digits);
+            if (unscaled % divisor != 0) {
+                throw new IllegalArgumentException("Price of product " + productId + " has more decimals than " + currency + " allows");
+            }
+            return unscaled / divisor;
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Price of product " + productId + " is out of range");
+        }
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result = Math.multiplyExact(result, 10);
+        }
+        return result;
+    }
+
+    private static ChunkPrices[] read(Reader prices, CatalogSnapshot layout) {
+        ChunkPrices[] byChunk = new ChunkPrices[layout.chunkCount()];
+        BufferedReader in = prices instanceof BufferedReader ? (BufferedReader) prices : new BufferedReader(prices);
+        int lineNumber = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.charAt(0) == '#') {
+                    continue;
+                }
+                parseLine(line, lineNumber, byChunk, layout);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read prices at line " + (lineNumber + 1), e);
+        }
+        return byChunk;
+    }
+
+    // "id,amount" with a plain non-negative decimal amount, parsed without allocating.
+    private static void parseLine(String line, int lineNumber, ChunkPrices[] byChunk, CatalogSnapshot layout) {
+        int comma = line.indexOf(',');
+        if (comma <= 0) {
+            throw new IllegalArgumentException("Malformed price line " + lineNumber + ": " + line);
+        }
+        int id;
+        try {
+            id = Integer.parseInt(line, 0, comma, 10);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed product id on price line " + lineNumber + ": " + line);
+        }
+        long unscaled = 0;
+        int scale = -1; // digits after the point; -1 until a point is seen
+        int digits = 0;
+        int end = line.length();
+        while (end > comma + 1 && line.charAt(end - 1) == ' ') {
+            end--;
+        }
+        for (int i = comma + 1; i < end; i++) {
+            char ch = line.charAt(i);
+            if (ch == '.' && scale < 0) {
+                scale = 0;
+            } else if (ch >= '0' && ch <= '9' && digits < 18) {
+                unscaled = unscaled * 10 + (ch - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (ch != ' ' || digits > 0 || scale >= 0) {
+                throw new IllegalArgumentException("Malformed amount on price line " + lineNumber + ": " + line);
+            }
+        }
+        if (digits == 0) {
+            throw new IllegalArgumentException("Malformed amount on price line " + lineNumber + ": " + line);
+        }
+        int chunk = layout.chunkIndex(id);
+        if (byChunk[chunk] == null) {
+            byChunk[chunk] = new ChunkPrices();
+        }
+        byChunk[chunk].add(id, unscaled, Math.max(scale, 0));
+    }
+
+    // Parsed prices for one chunk, in file order, as parallel primitive arrays.
+    private static final class ChunkPrices {
+        private int[] ids = new int[8];
+        private long[] unscaled = new long[8];
+        private byte[] scales = new byte[8];
+        private int size;
+
+        private void add(int id, long amount, int scale) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                unscaled = Arrays.copyOf(unscaled, size * 2);
+                scales = Arrays.copyOf(scales, size * 2);
+            }
+            ids[size] = id;
+            unscaled[size] = amount;
+            scales[size++] = (byte) scale;
+        }
+    }
+
+    // Chunks [from, to), split in halves down to CHUNKS_PER_TASK; each result lands in its own slot.
+    private static final class ChunkRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final ChunkStep step;
+        private final ProductVersion[][] replaced;
+
+        private ChunkRange(int from, int to, ChunkStep step, ProductVersion[][] replaced) {
+            this.from = from;
+            this.to = to;
+            this.step = step;
+            this.replaced = replaced;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNKS_PER_TASK) {
+                for (int c = from; c < to; c++) {
+                    replaced[c] = step.apply(c);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkRange(from, mid, step, replaced), new ChunkRange(mid, to, step, replaced));
+        }
+    }
+}
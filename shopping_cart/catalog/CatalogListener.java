@@ -0,0 +1,19 @@
+package shopping_cart.catalog;
+
+import java.util.Collection;
+import java.util.Map;
+
+import shopping_cart.model.Money;
+import shopping_cart.model.Product;
+
+// Observer of catalog writes, called after each new version is published, on the writing thread
+// and while the catalog's write lock is held (so calls arrive in version order).
+// Used to keep secondary structures such as search indexes in step with the catalog.
+// A listener that throws does not undo the write or keep the other listeners from being called;
+// its exception goes to the writing thread's uncaught-exception handler.
+public interface CatalogListener {
+
+    void productsAdded(Collection<Product> products);
+
+    void pricesChanged(Map<Integer, Money> newPrices);
+}
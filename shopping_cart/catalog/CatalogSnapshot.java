@@ -0,0 +1,164 @@
+package shopping_cart.catalog;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import shopping_cart.model.Money;
+import shopping_cart.model.PriceLookup;
+
+// One immutable, published version of the product catalog.
+//
+// Products are spread over a fixed number of chunks by hashed product id. Each chunk is an
+// immutable pair of sorted id / ProductVersion arrays. Publishing a change copies only the
+// chunks it touches plus the small top-level chunk array; every other chunk is shared with the
+// previous version. Readers hold a reference to one snapshot and never lock.
+public final class CatalogSnapshot implements PriceLookup {
+
+    private static final Chunk EMPTY_CHUNK = new Chunk(new int[0], new ProductVersion[0]);
+
+    private final long version;
+    private final Chunk[] chunks; // length is a power of two
+    private final int size;
+
+    private CatalogSnapshot(long version, Chunk[] chunks, int size) {
+        this.version = version;
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    static CatalogSnapshot empty(int chunkCount) {
+        Chunk[] chunks = new Chunk[chunkCount];
+        Arrays.fill(chunks, EMPTY_CHUNK);
+        return new CatalogSnapshot(0, chunks, 0);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // The product as of this version, or null if it was not in the catalog.
+    public ProductVersion find(int productId) {
+        Chunk chunk = chunks[chunkIndex(productId)];
+        int i = Arrays.binarySearch(chunk.ids, productId);
+        return i >= 0 ? chunk.products[i] : null;
+    }
+
+    @Override
+    public Money priceOf(int productId) {
+        ProductVersion product = find(productId);
+        if (product == null) {
+            throw new IllegalStateException("Product " + productId + " is not in catalog version " + version);
+        }
+        return product.getPrice();
+    }
+
+    public void forEach(Consumer<ProductVersion> action) {
+        for (Chunk chunk : chunks) {
+            for (ProductVersion product : chunk.products) {
+                action.accept(product);
+            }
+        }
+    }
+
+    // Next version with the given products inserted or replaced. Untouched chunks are shared.
+    CatalogSnapshot with(Map<Integer, ProductVersion> changes, long newVersion) {
+        // bucket the changes per chunk
+        int[] counts = new int[chunks.length];
+        for (Integer id : changes.keySet()) {
+            counts[chunkIndex(id)]++;
+        }
+        int[][] idsByChunk = new int[chunks.length][];
+        for (Integer id : changes.keySet()) {
+            int c = chunkIndex(id);
+            if (idsByChunk[c] == null) {
+                idsByChunk[c] = new int[counts[c]];
+                counts[c] = 0;
+            }
+            idsByChunk[c][counts[c]++] = id;
+        }
+
+        Chunk[] next = chunks.clone();
+        int nextSize = size;
+        for (int c = 0; c < next.length; c++) {
+            int[] ids = idsByChunk[c];
+            if (ids == null) {
+                continue;
+            }
+            Arrays.sort(ids);
+            ProductVersion[] products = new ProductVersion[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                products[i] = changes.get(ids[i]);
+            }
+            Chunk merged = chunks[c].merge(ids, products);
+            nextSize += merged.ids.length - chunks[c].ids.length;
+            next[c] = merged;
+        }
+        return new CatalogSnapshot(newVersion, next, nextSize);
+    }
+
+    // Next version where each non-null entry replaces that chunk's products, one for one (same ids,
+    // same order). Used by bulk repricing, which never adds or removes products.
+    CatalogSnapshot withChunkProducts(ProductVersion[][] replaced, long newVersion) {
+        Chunk[] next = chunks.clone();
+        for (int c = 0; c < next.length; c++) {
+            if (replaced[c] != null) {
+                next[c] = new Chunk(chunks[c].ids, replaced[c]);
+            }
+        }
+        return new CatalogSnapshot(newVersion, next, size);
+    }
+
+    int chunkCount() {
+        return chunks.length;
+    }
+
+    // Products of one chunk (a natural partition for parallel work).
+    ProductVersion[] chunkProducts(int chunk) {
+        return chunks[chunk].products.clone();
+    }
+
+    // Sorted ids of one chunk; shared, not copied, so callers must not modify it.
+    int[] chunkIds(int chunk) {
+        return chunks[chunk].ids;
+    }
+
+    int chunkIndex(int productId) {
+        int h = productId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (chunks.length - 1);
+    }
+
+    private static final class Chunk {
+        private final int[] ids; // sorted
+        private final ProductVersion[] products;
+
+        private Chunk(int[] ids, ProductVersion[] products) {
+            this.ids = ids;
+            this.products = products;
+        }
+
+        // Sorted merge; entries in the change set win over existing ones with the same id.
+        private Chunk merge(int[] changedIds, ProductVersion[] changed) {
+            int[] outIds = new int[ids.length + changedIds.length];
+            ProductVersion[] out = new ProductVersion[outIds.length];
+            int i = 0, j = 0, n = 0;
+            while (i < ids.length || j < changedIds.length) {
+                if (j == changedIds.length || (i < ids.length && ids[i] < changedIds[j])) {
+                    outIds[n] = ids[i];
+                    out[n++] = products[i++];
+                } else {
+                    if (i < ids.length && ids[i] == changedIds[j]) {
+                        i++; // replaced
+                    }
+                    outIds[n] = changedIds[j];
+                    out[n++] = changed[j++];
+                }
+            }
+            return new Chunk(Arrays.copyOf(outIds, n), Arrays.copyOf(out, n));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package shopping_cart.catalog;
+
+import shopping_cart.model.Money;
+
+// One step of a bulk repricing (see BulkRepricer): given a product and its price so far, returns
+// the new price, or the same price to leave it alone. Called concurrently for different products,
+// so implementations must be thread-safe.
+public interface PriceRule {
+
+    Money apply(ProductVersion product, Money price);
+}
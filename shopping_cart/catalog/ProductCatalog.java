@@ -0,0 +1,169 @@
+package shopping_cart.catalog;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import shopping_cart.model.Money;
+import shopping_cart.model.Product;
+
+// Copy-on-write product catalog.
+//
+// - current() returns the latest published CatalogSnapshot with a single volatile read. Pricing a
+//   cart or creating an order against that snapshot never sees a half-applied price change.
+// - Writers are serialized on the catalog. Each write builds the next snapshot (sharing untouched
+//   chunks) and publishes it in one volatile store, so a bulk update becomes visible all at once.
+// - Before publishing, the registered Product objects are updated in one Product.updatePrices call,
+//   so code that still reads Product.getPrice() (carts) switches to the whole write at once, carts
+//   catch up from a single price-change log entry, and a reader that sees the new snapshot also
+//   sees the new prices on the products. Prices change only through the catalog: Product has no
+//   public single-price setter, so the snapshot and the search index cannot be bypassed.
+public class ProductCatalog {
+
+    private static final int DEFAULT_CHUNK_COUNT = 4096;
+
+    private final Map<Integer, Product> liveProducts = new ConcurrentHashMap<>();
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile CatalogSnapshot current;
+
+    public ProductCatalog(int chunkCount) {
+        if (chunkCount <= 0 || Integer.bitCount(chunkCount) != 1) {
+            throw new IllegalArgumentException("Chunk count must be a positive power of two");
+        }
+        this.current = CatalogSnapshot.empty(chunkCount);
+    }
+
+    public ProductCatalog() {
+        this(DEFAULT_CHUNK_COUNT);
+    }
+
+    public CatalogSnapshot current() {
+        return current;
+    }
+
+    // The registered Product object (the one carts hold), or null if the id is not in the catalog.
+    public Product getProduct(int productId) {
+        return liveProducts.get(productId);
+    }
+
+    public void addListener(CatalogListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        listeners.add(listener);
+    }
+
+    public void addProduct(Product product) {
+        addProducts(List.of(product));
+    }
+
+    // Adds all products in one catalog version.
+    public synchronized void addProducts(Collection<Product> products) {
+        if (products == null) {
+            throw new IllegalArgumentException("Products cannot be null");
+        }
+        long nextVersion = current.getVersion() + 1;
+        Map<Integer, ProductVersion> changes = new HashMap<>();
+        for (Product product : products) {
+            if (product == null) {
+                throw new IllegalArgumentException("Product cannot be null");
+            }
+            if (liveProducts.containsKey(product.getId()) || changes.containsKey(product.getId())) {
+                throw new IllegalStateException("Product with ID " + product.getId() + " already exists in catalog");
+            }
+            changes.put(product.getId(), ProductVersion.of(product, nextVersion));
+        }
+        current = current.with(changes, nextVersion);
+        for (Product product : products) {
+            liveProducts.put(product.getId(), product);
+        }
+        for (CatalogListener listener : listeners) {
+            try {
+                listener.productsAdded(products);
+            } catch (RuntimeException e) {
+                reportListenerFailure(e);
+            }
+        }
+    }
+
+    public void updatePrice(int productId, Money newPrice) {
+        updatePrices(Map.of(productId, newPrice));
+    }
+
+    // Applies every price change in one catalog version: readers see all of them or none.
+    public synchronized void updatePrices(Map<Integer, Money> newPrices) {
+        if (newPrices == null) {
+            throw new IllegalArgumentException("Prices cannot be null");
+        }
+        CatalogSnapshot snapshot = current;
+        long nextVersion = snapshot.getVersion() + 1;
+        Map<Integer, ProductVersion> changes = new HashMap<>();
+        // validate everything before publishing anything
+        for (Map.Entry<Integer, Money> entry : newPrices.entrySet()) {
+            changes.put(entry.getKey(), repriced(snapshot, entry.getKey(), entry.getValue(), nextVersion));
+        }
+        publish(snapshot.with(changes, nextVersion), newPrices);
+    }
+
+    // Bulk form of updatePrices (see BulkRepricer). repricing computes the replaced chunks from the
+    // current snapshot while other writers wait; the result is published as one version. Returns
+    // the number of products whose price changed; publishes nothing if there are none.
+    synchronized int reprice(BulkRepricer.Repricing repricing) {
+        CatalogSnapshot snapshot = current;
+        long nextVersion = snapshot.getVersion() + 1;
+        ProductVersion[][] replaced = repricing.apply(snapshot, nextVersion);
+        CatalogSnapshot next = snapshot.withChunkProducts(replaced, nextVersion);
+        RepricedPrices newPrices = new RepricedPrices(next, replaced);
+        if (newPrices.isEmpty()) {
+            return 0;
+        }
+        publish(next, newPrices);
+        return newPrices.size();
+    }
+
+    // Validates one new price against the product's current state.
+    static ProductVersion repriced(ProductVersion existing, Money newPrice, long nextVersion) {
+        if (newPrice == null) {
+            throw new IllegalArgumentException("Price cannot be null");
+        }
+        if (newPrice.isNegative()) {
+            throw new IllegalArgumentException("Price cannot be negative");
+        }
+        if (!newPrice.getCurrency().equals(existing.getPrice().getCurrency())) {
+            throw new IllegalArgumentException("Price currency cannot change");
+        }
+        return existing.withPrice(newPrice, nextVersion);
+    }
+
+    // Product objects change first, all in one epoch; then a single volatile store makes the new
+    // version visible, so nobody sees the new snapshot next to old Product prices.
+    private void publish(CatalogSnapshot next, Map<Integer, Money> newPrices) {
+        Product.updatePrices(newPrices, liveProducts::get);
+        current = next;
+        for (CatalogListener listener : listeners) {
+            try {
+                listener.pricesChanged(newPrices);
+            } catch (RuntimeException e) {
+                reportListenerFailure(e);
+            }
+        }
+    }
+
+    // Handed to the thread's uncaught-exception handler (by default printed): the new version is
+    // already live, so the write succeeded and the remaining listeners must still hear about it.
+    private static void reportListenerFailure(RuntimeException e) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+
+    private static ProductVersion repriced(CatalogSnapshot snapshot, int productId, Money newPrice, long nextVersion) {
+        ProductVersion existing = snapshot.find(productId);
+        if (existing == null) {
+            throw new IllegalArgumentException("Product with ID " + productId + " is not in catalog");
+        }
+        return repriced(existing, newPrice, nextVersion);
+    }
+}
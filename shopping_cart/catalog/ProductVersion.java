@@ -0,0 +1,50 @@
+package shopping_cart.catalog;
+
+import shopping_cart.model.Money;
+import shopping_cart.model.Product;
+
+// Immutable state of one product as published in a catalog version.
+public final class ProductVersion {
+
+    private final int id;
+    private final String productName;
+    private final String description;
+    private final Money price;
+    private final long version; // catalog version in which this state was published
+
+    ProductVersion(int id, String productName, String description, Money price, long version) {
+        this.id = id;
+        this.productName = productName;
+        this.description = description;
+        this.price = price;
+        this.version = version;
+    }
+
+    static ProductVersion of(Product product, long version) {
+        return new ProductVersion(product.getId(), product.getProductName(), product.getDescription(), product.getPrice(), version);
+    }
+
+    ProductVersion withPrice(Money newPrice, long newVersion) {
+        return new ProductVersion(id, productName, description, newPrice, newVersion);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Money getPrice() {
+        return price;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
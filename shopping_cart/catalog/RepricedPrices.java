@@ -0,0 +1,106 @@
+package shopping_cart.catalog;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import shopping_cart.model.Money;
+
+// Read-only Map view of the new prices of a bulk repricing, backed by the repriced chunks, so
+// millions of changes reach CatalogListeners without copying them into a boxed HashMap.
+// A product is in the view if its state in the replaced chunks carries the new catalog version.
+final class RepricedPrices extends AbstractMap<Integer, Money> {
+
+    private final CatalogSnapshot snapshot; // the version being published
+    private final ProductVersion[][] chunks; // null entries: chunk unchanged
+    private final long version;
+    private final int size;
+
+    RepricedPrices(CatalogSnapshot snapshot, ProductVersion[][] chunks) {
+        this.snapshot = snapshot;
+        this.chunks = chunks;
+        this.version = snapshot.getVersion();
+        int count = 0;
+        for (ProductVersion[] chunk : chunks) {
+            if (chunk != null) {
+                for (ProductVersion product : chunk) {
+                    if (product.getVersion() == version) {
+                        count++;
+                    }
+                }
+            }
+        }
+        this.size = count;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Money get(Object key) {
+        if (!(key instanceof Integer)) {
+            return null;
+        }
+        ProductVersion product = snapshot.find((Integer) key);
+        return product != null && product.getVersion() == version ? product.getPrice() : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, Money>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Map.Entry<Integer, Money>> iterator() {
+                return new Iterator<>() {
+                    private int chunk;
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return seek() != null;
+                    }
+
+                    @Override
+                    public Map.Entry<Integer, Money> next() {
+                        ProductVersion product = seek();
+                        if (product == null) {
+                            throw new NoSuchElementException();
+                        }
+                        index++;
+                        return new AbstractMap.SimpleImmutableEntry<>(product.getId(), product.getPrice());
+                    }
+
+                    // Next changed product at or after the cursor, without consuming it.
+                    private ProductVersion seek() {
+                        for (; chunk < chunks.length; chunk++, index = 0) {
+                            ProductVersion[] products = chunks[chunk];
+                            if (products == null) {
+                                continue;
+                            }
+                            for (; index < products.length; index++) {
+                                if (products[index].getVersion() == version) {
+                                    return products[index];
+                                }
+                            }
+                        }
+                        return null;
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package shopping_cart.codec;
+
+import shopping_cart.model.Product;
+
+// Net change of one cart line within a delta, relative to the line the receiver last saw (if any).
+// A known line that was removed, or removed and added again, is sent as a removal of the old line
+// followed by a new line, never as a quantity update: the receiver must drop the old line's id and
+// position just as the sender did.
+final class CartChange {
+
+    final Product product;
+    final boolean known; // the receiver has a line for the product
+    final long knownLineId;
+    boolean replaced; // the known line was removed at some point, even if the product is back
+    long lineId; // the product's line now, if quantity > 0
+    int quantity; // 0: no line now
+    long version; // cart version after the latest change folded in
+
+    CartChange(Product product, boolean known, long knownLineId) {
+        this.product = product;
+        this.known = known;
+        this.knownLineId = knownLineId;
+        this.lineId = knownLineId;
+    }
+
+    boolean removesKnownLine() {
+        return known && (quantity == 0 || replaced);
+    }
+
+    boolean addsLine() {
+        return quantity > 0 && (!known || replaced);
+    }
+
+    // Records written for this change: an optional removal plus the current line, if any.
+    int recordCount() {
+        return (removesKnownLine() ? 1 : 0) + (quantity > 0 ? 1 : 0);
+    }
+}
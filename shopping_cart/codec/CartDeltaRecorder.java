@@ -0,0 +1,99 @@
+package shopping_cart.codec;
+
+import java.nio.ByteBuffer;
+
+import shopping_cart.model.Cart;
+import shopping_cart.model.CartListener;
+import shopping_cart.model.LineItem;
+import shopping_cart.model.Product;
+import shopping_cart.util.IntLinkedHashMap;
+
+// Collects a cart's line changes between replications so only the difference is shipped.
+//
+// Repeated changes to one line collapse into its latest quantity, and a line added and removed
+// again within one delta disappears from it. A line the receiver already has that is removed and
+// added again is sent as a removal and a new line (see CartChange), so the replica drops the old
+// line id and appends the new one at the end, as the sender did. Every change carries its line id
+// and the cart version it produced, and the delta the version after its last change, so the
+// replica ends at the sender's ids, order and version.
+// Each delta carries a sequence number (1, 2, ...) so the receiver can detect a missing one.
+// Status changes (checkout) are not part of deltas; replicate the full cart for those. Cart
+// events and writeDelta are serialized on the recorder.
+public final class CartDeltaRecorder implements CartListener {
+
+    private final Cart cart;
+    private final IntLinkedHashMap<CartChange> pending = new IntLinkedHashMap<>();
+    private final IntLinkedHashMap<Long> lineIds = new IntLinkedHashMap<>(); // product id -> line id, as the cart holds them
+    private long sequence;
+    private long version; // cart version after the latest event
+    private long sentVersion; // cart version the receiver reached with the previous delta
+
+    private CartDeltaRecorder(Cart cart) {
+        this.cart = cart;
+    }
+
+    public static CartDeltaRecorder attach(Cart cart) {
+        if (cart == null) {
+            throw new IllegalArgumentException("Cart cannot be null");
+        }
+        CartDeltaRecorder recorder = new CartDeltaRecorder(cart);
+        // once the listener is in, every write waits for the cart's monitor: the lines read here
+        // are exactly those the first event applies to
+        synchronized (cart) {
+            cart.addListener(recorder);
+            for (LineItem line : cart.getLineItems()) {
+                recorder.lineIds.put(line.getProduct().getId(), line.getId());
+            }
+            recorder.version = cart.getVersion();
+            recorder.sentVersion = recorder.version;
+        }
+        return recorder;
+    }
+
+    @Override
+    public synchronized void lineChanged(Cart changed, Product product, int oldQuantity, int newQuantity) {
+        if (changed != cart) {
+            return;
+        }
+        int productId = product.getId();
+        CartChange change = pending.get(productId);
+        if (change == null) {
+            Long known = lineIds.get(productId);
+            change = new CartChange(product, known != null, known == null ? 0 : known);
+            pending.put(productId, change);
+        } else if (oldQuantity == 0) {
+            // a line added again goes after every line added before it, as the replica appends them
+            pending.remove(productId);
+            pending.put(productId, change);
+        }
+        if (oldQuantity == 0) {
+            change.lineId = changed.getLineId(productId); // runs under the cart's monitor: still this line
+            change.replaced |= change.known;
+            lineIds.put(productId, change.lineId);
+        } else if (newQuantity == 0) {
+            lineIds.remove(productId);
+        }
+        version = changed.getVersion();
+        change.quantity = newQuantity;
+        change.version = version;
+        if (!change.known && newQuantity == 0) {
+            pending.remove(productId); // never seen by the receiver: nothing to send
+        }
+    }
+
+    // Also true after lines that were added and removed again: the receiver still moves to the new version.
+    public synchronized boolean hasChanges() {
+        return !pending.isEmpty() || version != sentVersion;
+    }
+
+    // Encodes the changes since the previous delta and starts a new one; returns the delta's
+    // sequence number. If the buffer is too small (BufferOverflowException) the changes are kept.
+    public synchronized long writeDelta(ByteBuffer out) {
+        long next = sequence + 1;
+        ModelCodec.writeCartDelta(out, cart, next, version, pending);
+        sequence = next;
+        sentVersion = version;
+        pending.clear();
+        return next;
+    }
+}
@@ -0,0 +1,388 @@
+package shopping_cart.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import shopping_cart.model.Cart;
+import shopping_cart.model.CartSnapshot;
+import shopping_cart.model.CartStatus;
+import shopping_cart.model.LineItem;
+import shopping_cart.model.Money;
+import shopping_cart.model.Order;
+import shopping_cart.model.OrderLineItem;
+import shopping_cart.model.Product;
+import shopping_cart.model.User;
+import shopping_cart.util.IdGenerator;
+import shopping_cart.util.IntLinkedHashMap;
+import shopping_cart.util.VarInts;
+
+// Binary form of the cart and order model for replication between nodes.
+//
+// Every record starts with a type tag and the schema version it was written with; decoders accept
+// any version up to SCHEMA_VERSION. Version 2 widened cart, line item and order ids to 64 bits;
+// version 3 added the cart version and line ids to cart records; version 4 added them to each cart
+// delta change. Integers are variable-length (VarInts), money is minor units, strings are
+// length-prefixed UTF-8, and a currency is written once per record, not per price.
+// Encoding and decoding work directly on the caller's ByteBuffer at its position; encoding throws
+// BufferOverflowException if the buffer is too small.
+//
+// Products inside carts and line items are written in full. On decode, the product resolver is
+// asked first (so a node keeps using its own Product instances); if it returns null the product
+// is rebuilt from the record. Orders reference users by id and must be resolved by the caller.
+public final class ModelCodec {
+
+    public static final byte SCHEMA_VERSION = 4;
+
+    private static final byte CART = 1;
+    private static final byte LINE_ITEM = 2;
+    private static final byte ORDER = 3;
+    private static final byte ORDER_LINE_ITEM = 4;
+    private static final byte CART_DELTA = 5;
+
+    private static final byte NO_PRODUCT = 0;
+    private static final byte WITH_PRODUCT = 1;
+
+    private ModelCodec() {
+    }
+
+    // One consistent snapshot of the cart: status, version and the lines (id, product, quantity)
+    // in the order they were added.
+    public static void encode(Cart cart, ByteBuffer out) {
+        if (cart == null) {
+            throw new IllegalArgumentException("Cart cannot be null");
+        }
+        CartSnapshot snapshot = cart.snapshot();
+        List<LineItem> lines = snapshot.getLineItems();
+        putHeader(out, CART);
+        VarInts.putVarLong(out, cart.getId());
+        putCurrency(out, cart.getCurrency());
+        out.put((byte) snapshot.getStatus().ordinal());
+        VarInts.putVarLong(out, snapshot.getVersion());
+        VarInts.putVarInt(out, lines.size());
+        for (LineItem line : lines) {
+            VarInts.putVarLong(out, line.getId());
+            putProduct(out, line.getProduct());
+            VarInts.putVarInt(out, line.getQuantity());
+        }
+    }
+
+    public static Cart decodeCart(ByteBuffer in, IntFunction<Product> products) {
+        return decodeCart(in, products, null);
+    }
+
+    // Restores the cart's line ids, line order and version; lines added afterwards take ids from
+    // lineIds (null: id 0). Records older than version 3 have neither, so their lines get id 0
+    // and the cart starts again from version 0.
+    public static Cart decodeCart(ByteBuffer in, IntFunction<Product> products, IdGenerator lineIds) {
+        requireResolver(products);
+        byte schema = checkHeader(in, CART);
+        long id = getId(in, schema);
+        Currency currency = getCurrency(in);
+        CartStatus status = status(in.get());
+        if (status == CartStatus.CANCELLED) {
+            throw new IllegalStateException("Cancelled carts cannot be restored");
+        }
+        long version = schema >= 3 ? VarInts.getVarLong(in) : 0;
+        int lineCount = VarInts.getVarInt(in);
+        List<LineItem> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            long lineId = schema >= 3 ? VarInts.getVarLong(in) : 0;
+            Product product = getProduct(in, currency, products);
+            lines.add(new LineItem(lineId, product, VarInts.getVarInt(in)));
+        }
+        return new Cart(id, currency, lineIds, lines, status, version);
+    }
+
+    public static void encode(LineItem line, ByteBuffer out) {
+        if (line == null) {
+            throw new IllegalArgumentException("Line item cannot be null");
+        }
+        putHeader(out, LINE_ITEM);
+        VarInts.putVarLong(out, line.getId());
+        putCurrency(out, line.getProduct().getPrice().getCurrency());
+        putProduct(out, line.getProduct());
+        VarInts.putVarInt(out, line.getQuantity());
+    }
+
+    public static LineItem decodeLineItem(ByteBuffer in, IntFunction<Product> products) {
+        requireResolver(products);
+        long id = getId(in, checkHeader(in, LINE_ITEM));
+        Currency currency = getCurrency(in);
+        Product product = getProduct(in, currency, products);
+        return new LineItem(id, product, VarInts.getVarInt(in));
+    }
+
+    public static void encode(Order order, ByteBuffer out) {
+        if (order == null) {
+            throw new IllegalArgumentException("Order cannot be null");
+        }
+        List<OrderLineItem> lines = order.getLineItems();
+        putHeader(out, ORDER);
+        VarInts.putVarLong(out, order.getId());
+        VarInts.putVarInt(out, order.getUser().getId());
+        VarInts.putVarLong(out, VarInts.zigZag(order.getCreatedAt().getEpochSecond()));
+        VarInts.putVarInt(out, order.getCreatedAt().getNano());
+        putCurrency(out, order.getTotalAmount().getCurrency());
+        VarInts.putVarInt(out, lines.size());
+        for (OrderLineItem line : lines) {
+            putOrderLine(out, line);
+        }
+    }
+
+    // users resolves the order's user id; an unknown user is an IllegalStateException.
+    public static Order decodeOrder(ByteBuffer in, IntFunction<User> users) {
+        if (users == null) {
+            throw new IllegalArgumentException("User resolver cannot be null");
+        }
+        long id = getId(in, checkHeader(in, ORDER));
+        int userId = VarInts.getVarInt(in);
+        Instant createdAt = Instant.ofEpochSecond(VarInts.unZigZag(VarInts.getVarLong(in)), VarInts.getVarInt(in));
+        Currency currency = getCurrency(in);
+        int lineCount = VarInts.getVarInt(in);
+        List<OrderLineItem> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            lines.add(getOrderLine(in, currency));
+        }
+        User user = users.apply(userId);
+        if (user == null) {
+            throw new IllegalStateException("Unknown user " + userId + " for order " + id);
+        }
+        return new Order(id, user, lines, createdAt);
+    }
+
+    public static void encode(OrderLineItem line, ByteBuffer out) {
+        if (line == null) {
+            throw new IllegalArgumentException("Order line item cannot be null");
+        }
+        putHeader(out, ORDER_LINE_ITEM);
+        putCurrency(out, line.getPriceAtPurchase().getCurrency());
+        putOrderLine(out, line);
+    }
+
+    public static OrderLineItem decodeOrderLineItem(ByteBuffer in) {
+        checkHeader(in, ORDER_LINE_ITEM);
+        return getOrderLine(in, getCurrency(in));
+    }
+
+    // Applies a delta written by CartDeltaRecorder to the receiver's copy of the cart and returns
+    // the delta's sequence number. The caller checks it follows the last one applied. From
+    // version 4 the copy keeps the sender's line ids, order and version; a copy that no longer
+    // matches the sender's lines fails with IllegalStateException.
+    public static long applyCartDelta(ByteBuffer in, Cart cart, IntFunction<Product> products) {
+        requireResolver(products);
+        byte version = checkHeader(in, CART_DELTA);
+        if (cart == null) {
+            throw new IllegalArgumentException("Cart cannot be null");
+        }
+        long cartId = getId(in, version);
+        if (cartId != cart.getId()) {
+            throw new IllegalArgumentException("Delta is for cart " + cartId + ", not " + cart.getId());
+        }
+        long sequence = VarInts.getVarLong(in);
+        long cartVersion = version >= 4 ? VarInts.getVarLong(in) : -1;
+        int count = VarInts.getVarInt(in);
+        for (int i = 0; i < count; i++) {
+            if (version >= 4) {
+                applyDeltaLine(in, cart, products);
+            } else {
+                applyLegacyDeltaLine(in, cart, products);
+            }
+        }
+        if (version >= 4) {
+            cart.replicateVersion(cartVersion); // covers lines added and removed again within the delta
+        }
+        return sequence;
+    }
+
+    // After the sequence: the cart version after the delta's last change, then the records. Record
+    // per line: line id, product id, quantity (0 = removed), cart version after that change, then
+    // the product itself for a new line.
+    static void writeCartDelta(ByteBuffer out, Cart cart, long sequence, long cartVersion, IntLinkedHashMap<CartChange> changes) {
+        int records = 0;
+        for (CartChange change : changes) {
+            records += change.recordCount();
+        }
+        putHeader(out, CART_DELTA);
+        VarInts.putVarLong(out, cart.getId());
+        VarInts.putVarLong(out, sequence);
+        VarInts.putVarLong(out, cartVersion);
+        VarInts.putVarInt(out, records);
+        for (CartChange change : changes) {
+            if (change.removesKnownLine()) {
+                putDeltaLine(out, change.knownLineId, change.product.getId(), 0, change.version, null);
+            }
+            if (change.quantity > 0) {
+                putDeltaLine(out, change.lineId, change.product.getId(), change.quantity, change.version,
+                        change.addsLine() ? change.product : null);
+            }
+        }
+    }
+
+    private static void putDeltaLine(ByteBuffer out, long lineId, int productId, int quantity, long cartVersion, Product newLine) {
+        VarInts.putVarLong(out, lineId);
+        VarInts.putVarInt(out, productId);
+        VarInts.putVarInt(out, quantity);
+        VarInts.putVarLong(out, cartVersion);
+        if (newLine != null) {
+            out.put(WITH_PRODUCT);
+            putProduct(out, newLine);
+        } else {
+            out.put(NO_PRODUCT);
+        }
+    }
+
+    private static void applyDeltaLine(ByteBuffer in, Cart cart, IntFunction<Product> products) {
+        long lineId = VarInts.getVarLong(in);
+        int productId = VarInts.getVarInt(in);
+        int quantity = VarInts.getVarInt(in);
+        long cartVersion = VarInts.getVarLong(in);
+        Product product = in.get() == WITH_PRODUCT ? getProduct(in, cart.getCurrency(), products) : null;
+        if (product != null) {
+            cart.replicateNewLine(lineId, product, quantity, cartVersion);
+        } else {
+            cart.replicateQuantity(lineId, productId, quantity, cartVersion);
+        }
+    }
+
+    // Versions 1-3: product id, quantity, product for a new line; no line ids or versions.
+    private static void applyLegacyDeltaLine(ByteBuffer in, Cart cart, IntFunction<Product> products) {
+        int productId = VarInts.getVarInt(in);
+        int quantity = VarInts.getVarInt(in);
+        Product product = in.get() == WITH_PRODUCT ? getProduct(in, cart.getCurrency(), products) : null;
+        if (quantity == 0) {
+            cart.removeProduct(productId);
+        } else if (product != null) {
+            cart.addProduct(product, quantity);
+        } else {
+            cart.updateQuantity(productId, quantity);
+        }
+    }
+
+    private static void putHeader(ByteBuffer out, byte tag) {
+        if (out == null) {
+            throw new IllegalArgumentException("Buffer cannot be null");
+        }
+        out.put(tag);
+        out.put(SCHEMA_VERSION);
+    }
+
+    // Returns the record's schema version.
+    private static byte checkHeader(ByteBuffer in, byte expectedTag) {
+        if (in == null) {
+            throw new IllegalArgumentException("Buffer cannot be null");
+        }
+        byte tag = in.get();
+        if (tag != expectedTag) {
+            throw new IllegalArgumentException("Expected record type " + expectedTag + " but found " + tag);
+        }
+        byte version = in.get();
+        if (version < 1 || version > SCHEMA_VERSION) {
+            throw new IllegalStateException("Unsupported schema version " + version);
+        }
+        return version;
+    }
+
+    // Version 1 wrote 32-bit ids; the cast restores negative ones.
+    private static long getId(ByteBuffer in, byte version) {
+        long id = VarInts.getVarLong(in);
+        return version == 1 ? (int) id : id;
+    }
+
+    private static void requireResolver(IntFunction<Product> products) {
+        if (products == null) {
+            throw new IllegalArgumentException("Product resolver cannot be null");
+        }
+    }
+
+    private static void putProduct(ByteBuffer out, Product product) {
+        VarInts.putVarInt(out, product.getId());
+        putString(out, product.getProductName());
+        putString(out, product.getDescription());
+        VarInts.putVarLong(out, product.getPrice().getAmountMinor());
+    }
+
+    private static Product getProduct(ByteBuffer in, Currency currency, IntFunction<Product> products) {
+        int id = VarInts.getVarInt(in);
+        String name = getString(in);
+        String description = getString(in);
+        long priceMinor = VarInts.getVarLong(in);
+        Product known = products.apply(id);
+        return known != null ? known : new Product(id, name, description, Money.ofMinor(priceMinor, currency));
+    }
+
+    private static void putOrderLine(ByteBuffer out, OrderLineItem line) {
+        VarInts.putVarInt(out, line.getProductId());
+        putString(out, line.getProductName());
+        VarInts.putVarLong(out, line.getPriceAtPurchase().getAmountMinor());
+        VarInts.putVarInt(out, line.getQuantity());
+    }
+
+    private static OrderLineItem getOrderLine(ByteBuffer in, Currency currency) {
+        int productId = VarInts.getVarInt(in);
+        String name = getString(in);
+        Money price = Money.ofMinor(VarInts.getVarLong(in), currency);
+        return new OrderLineItem(productId, name, price, VarInts.getVarInt(in));
+    }
+
+    private static void putCurrency(ByteBuffer out, Currency currency) {
+        String code = currency.getCurrencyCode();
+        for (int i = 0; i < 3; i++) {
+            out.put((byte) code.charAt(i));
+        }
+    }
+
+    private static Currency getCurrency(ByteBuffer in) {
+        char[] code = { (char) in.get(), (char) in.get(), (char) in.get() };
+        return Currency.getInstance(new String(code));
+    }
+
+    private static CartStatus status(byte ordinal) {
+        CartStatus[] values = CartStatus.values();
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IllegalStateException("Unknown cart status " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    // ASCII strings (the common case) are written char by char without an intermediate byte[].
+    private static void putString(ByteBuffer out, String value) {
+        int length = value.length();
+        boolean ascii = true;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = value.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            VarInts.putVarInt(out, length);
+            for (int i = 0; i < length; i++) {
+                out.put((byte) value.charAt(i));
+            }
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            VarInts.putVarInt(out, bytes.length);
+            out.put(bytes);
+        }
+    }
+
+    // Heap buffers are decoded in place; direct buffers need one copy.
+    private static String getString(ByteBuffer in) {
+        int length = VarInts.getVarInt(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalStateException("Malformed string length " + length);
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,75 @@
+package shopping_cart.events;
+
+// One change to a cart or one placed order, as shipped to downstream consumers.
+//
+// Cart events: entityId is the cart id and version the cart's version after the change. Versions of
+// one cart increase by one per change, so a consumer can spot a gap. Line events carry the product
+// and its old and new quantity (0 = not in the cart).
+// ORDER_PLACED: entityId is the order id; userId, totalItems (as newQuantity) and amountMinor
+// (order total in minor units) describe the order.
+public final class ChangeEvent {
+
+    private final ChangeType type;
+    private final long entityId;
+    private final long version;
+    private final int userId;
+    private final int productId;
+    private final int oldQuantity;
+    private final int newQuantity;
+    private final long amountMinor;
+    private final long timestampMillis;
+
+    ChangeEvent(ChangeType type, long entityId, long version, int userId, int productId,
+                int oldQuantity, int newQuantity, long amountMinor, long timestampMillis) {
+        this.type = type;
+        this.entityId = entityId;
+        this.version = version;
+        this.userId = userId;
+        this.productId = productId;
+        this.oldQuantity = oldQuantity;
+        this.newQuantity = newQuantity;
+        this.amountMinor = amountMinor;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public ChangeType getType() {
+        return type;
+    }
+
+    public long getEntityId() {
+        return entityId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getOldQuantity() {
+        return oldQuantity;
+    }
+
+    public int getNewQuantity() {
+        return newQuantity;
+    }
+
+    public long getAmountMinor() {
+        return amountMinor;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + entityId + "@" + version + ", product " + productId + ": " + oldQuantity + " -> " + newQuantity + ")";
+    }
+}
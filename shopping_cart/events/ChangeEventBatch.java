@@ -0,0 +1,136 @@
+package shopping_cart.events;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import shopping_cart.util.VarInts;
+
+// Wire form of a batch of ChangeEvents.
+//
+//   byte format, varint uncompressed length, deflated payload
+//   payload: varint count, varlong base timestamp, then per event:
+//     byte type, varlong entityId, varlong version, varint userId, varint productId,
+//     varint old quantity, varint new quantity, zigzag varlong amount, zigzag varlong timestamp - base
+//
+// Events of one batch share ids, products and timestamps heavily, so deflate usually shrinks a
+// batch to a fraction of its varint size.
+public final class ChangeEventBatch {
+
+    private static final byte FORMAT = 1;
+    private static final int MAX_EVENT_SIZE = 1 + 10 + 10 + 5 + 5 + 5 + 5 + 10 + 10;
+
+    private ChangeEventBatch() {
+    }
+
+    public static byte[] encode(List<ChangeEvent> events) {
+        if (events == null || events.isEmpty()) {
+            throw new IllegalArgumentException("Batch must have at least one event");
+        }
+        ByteBuffer payload = ByteBuffer.allocate(5 + 10 + events.size() * MAX_EVENT_SIZE);
+        long base = events.get(0).getTimestampMillis();
+        VarInts.putVarInt(payload, events.size());
+        VarInts.putVarLong(payload, base);
+        for (ChangeEvent event : events) {
+            payload.put((byte) event.getType().ordinal());
+            VarInts.putVarLong(payload, event.getEntityId());
+            VarInts.putVarLong(payload, event.getVersion());
+            VarInts.putVarInt(payload, event.getUserId());
+            VarInts.putVarInt(payload, event.getProductId());
+            VarInts.putVarInt(payload, event.getOldQuantity());
+            VarInts.putVarInt(payload, event.getNewQuantity());
+            VarInts.putVarLong(payload, VarInts.zigZag(event.getAmountMinor()));
+            VarInts.putVarLong(payload, VarInts.zigZag(event.getTimestampMillis() - base));
+        }
+        int length = payload.position();
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(payload.array(), 0, length);
+            deflater.finish();
+            ByteBuffer out = ByteBuffer.allocate(1 + 5 + length + length / 100 + 64);
+            out.put(FORMAT);
+            VarInts.putVarInt(out, length);
+            while (!deflater.finished()) {
+                if (!out.hasRemaining()) {
+                    out = grow(out);
+                }
+                int written = deflater.deflate(out.array(), out.position(), out.remaining());
+                out.position(out.position() + written);
+            }
+            byte[] batch = new byte[out.position()];
+            System.arraycopy(out.array(), 0, batch, 0, batch.length);
+            return batch;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static List<ChangeEvent> decode(byte[] batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch cannot be null");
+        }
+        ByteBuffer in = ByteBuffer.wrap(batch);
+        byte format = in.get();
+        if (format != FORMAT) {
+            throw new IllegalStateException("Unsupported event batch format " + format);
+        }
+        int length = VarInts.getVarInt(in);
+        if (length <= 0) {
+            throw new IllegalStateException("Malformed event batch length " + length);
+        }
+        byte[] payload = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(batch, in.position(), in.remaining());
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(payload, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != length) {
+                throw new IllegalStateException("Truncated event batch");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt event batch", e);
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer events = ByteBuffer.wrap(payload);
+        int count = VarInts.getVarInt(events);
+        long base = VarInts.getVarLong(events);
+        ChangeType[] types = ChangeType.values();
+        List<ChangeEvent> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int type = events.get();
+            if (type < 0 || type >= types.length) {
+                throw new IllegalStateException("Unknown change type " + type);
+            }
+            long entityId = VarInts.getVarLong(events);
+            long version = VarInts.getVarLong(events);
+            int userId = VarInts.getVarInt(events);
+            int productId = VarInts.getVarInt(events);
+            int oldQuantity = VarInts.getVarInt(events);
+            int newQuantity = VarInts.getVarInt(events);
+            long amountMinor = VarInts.unZigZag(VarInts.getVarLong(events));
+            long timestamp = base + VarInts.unZigZag(VarInts.getVarLong(events));
+            result.add(new ChangeEvent(types[type], entityId, version, userId, productId,
+                    oldQuantity, newQuantity, amountMinor, timestamp));
+        }
+        return result;
+    }
+
+    private static ByteBuffer grow(ByteBuffer out) {
+        ByteBuffer bigger = ByteBuffer.allocate(out.capacity() * 2);
+        out.flip();
+        bigger.put(out);
+        return bigger;
+    }
+}
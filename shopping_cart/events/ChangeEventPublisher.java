@@ -0,0 +1,262 @@
+package shopping_cart.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import shopping_cart.model.Cart;
+import shopping_cart.model.CartListener;
+import shopping_cart.model.CartStatus;
+import shopping_cart.model.Order;
+import shopping_cart.model.OrderLineItem;
+import shopping_cart.model.Product;
+
+// Streams cart and order changes to an EventTransport in compressed batches.
+//
+// - Tracked carts report every line and status change. Recording one is an allocation and one CAS
+//   into a lock-free ring; encoding, compression and I/O happen on the publisher's shipping thread,
+//   which wakes every lingerMillis and ships what has accumulated in batches of up to maxBatchSize.
+// - Ordering per cart: a cart with listeners serializes its writers, so its events enter the ring in
+//   change order, and the single shipping thread sends batches in ring order. A batch the transport
+//   fails to take is retried with exponential backoff, so delivery is at-least-once: consumers drop
+//   repeats by (entityId, version). After maxSendAttempts failures the batch is dropped and counted,
+//   so a dead transport cannot hold the ring (and with it every tracked cart) forever.
+// - A full ring makes the writer wait for the shipper, but at most offerTimeoutMillis: then the
+//   event is dropped and counted as an overflow. Writers run inside cart listeners, under the
+//   cart's monitor, so this wait bounds what a stuck downstream can add to a cart operation.
+// - Events recorded after close() are dropped and counted. close() waits for writers already past
+//   the closed check to finish their offer, so no event lands in the ring after the final drain.
+public class ChangeEventPublisher implements CartListener, AutoCloseable {
+
+    private static final long MAX_BACKOFF_NANOS = 1_000_000_000L;
+
+    private final EventTransport transport;
+    private final EventRing ring;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final long offerTimeoutNanos;
+    private final int maxSendAttempts;
+    private final Thread shipper;
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong shipped = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong failedSends = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong droppedBatches = new AtomicLong();
+    private final AtomicInteger recording = new AtomicInteger(); // writers between the closed check and their offer
+    private volatile boolean closed;
+
+    public ChangeEventPublisher(EventTransport transport, int bufferCapacity, int maxBatchSize, long lingerMillis,
+                                long offerTimeoutMillis, int maxSendAttempts, ThreadFactory threadFactory) {
+        if (transport == null) {
+            throw new IllegalArgumentException("EventTransport cannot be null");
+        }
+        if (maxBatchSize <= 0 || lingerMillis <= 0) {
+            throw new IllegalArgumentException("Batch size and linger must be positive");
+        }
+        if (offerTimeoutMillis < 0 || maxSendAttempts <= 0) {
+            throw new IllegalArgumentException("Offer timeout cannot be negative and send attempts must be positive");
+        }
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("ThreadFactory cannot be null");
+        }
+        this.transport = transport;
+        this.ring = new EventRing(bufferCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = lingerMillis * 1_000_000L;
+        this.offerTimeoutNanos = offerTimeoutMillis * 1_000_000L;
+        this.maxSendAttempts = maxSendAttempts;
+        this.shipper = threadFactory.newThread(this::ship);
+        shipper.setName("change-event-shipper");
+        shipper.setDaemon(true);
+        shipper.start();
+    }
+
+    // A writer waits at most 5 ms for room; a batch gets 8 attempts (at a 10 ms linger, about 1.3 s
+    // of backoff in all).
+    public ChangeEventPublisher(EventTransport transport, int bufferCapacity, int maxBatchSize, long lingerMillis,
+                                ThreadFactory threadFactory) {
+        this(transport, bufferCapacity, maxBatchSize, lingerMillis, 5, 8, threadFactory);
+    }
+
+    public ChangeEventPublisher(EventTransport transport) {
+        this(transport, 1 << 16, 1024, 10, Executors.defaultThreadFactory());
+    }
+
+    public void track(Cart cart) {
+        if (cart == null) {
+            throw new IllegalArgumentException("Cart cannot be null");
+        }
+        cart.addListener(this);
+    }
+
+    @Override
+    public void lineChanged(Cart cart, Product product, int oldQuantity, int newQuantity) {
+        ChangeType type = oldQuantity == 0 ? ChangeType.PRODUCT_ADDED
+                : newQuantity == 0 ? ChangeType.PRODUCT_REMOVED
+                : ChangeType.QUANTITY_CHANGED;
+        // called under the cart's monitor, so the version is the one this change produced
+        record(new ChangeEvent(type, cart.getId(), cart.getVersion(), 0, product.getId(),
+                oldQuantity, newQuantity, 0, System.currentTimeMillis()));
+    }
+
+    @Override
+    public void statusChanged(Cart cart, CartStatus oldStatus, CartStatus newStatus) {
+        ChangeType type;
+        if (newStatus == CartStatus.CHECKED_OUT) {
+            type = ChangeType.CHECKED_OUT;
+        } else if (newStatus == CartStatus.ACTIVE) {
+            type = ChangeType.REOPENED;
+        } else {
+            return;
+        }
+        record(new ChangeEvent(type, cart.getId(), cart.getVersion(), 0, 0, 0, 0, 0, System.currentTimeMillis()));
+    }
+
+    public void orderPlaced(Order order) {
+        if (order == null) {
+            throw new IllegalArgumentException("Order cannot be null");
+        }
+        int items = 0;
+        for (OrderLineItem line : order.getLineItems()) {
+            items += line.getQuantity();
+        }
+        record(new ChangeEvent(ChangeType.ORDER_PLACED, order.getId(), 1, order.getUser().getId(), 0,
+                0, items, order.getTotalAmount().getAmountMinor(), order.getCreatedAt().toEpochMilli()));
+    }
+
+    // Blocks until every event recorded before the call has been shipped (or dropped on close).
+    public void flush() {
+        long target = recorded.get();
+        while (shipped.get() + dropped.get() < target && shipper.isAlive()) {
+            LockSupport.unpark(shipper);
+            LockSupport.parkNanos(100_000);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    // Compressed bytes handed to the transport.
+    public long getShippedBytes() {
+        return bytes.get();
+    }
+
+    public long getFailedSendCount() {
+        return failedSends.get();
+    }
+
+    // Events dropped because the ring stayed full for offerTimeoutMillis (also in getDroppedCount).
+    public long getOverflowCount() {
+        return overflowed.get();
+    }
+
+    // Batches given up on after maxSendAttempts failed sends (their events are in getDroppedCount).
+    public long getDroppedBatchCount() {
+        return droppedBatches.get();
+    }
+
+    // Ships everything recorded so far, then stops the shipping thread. Does not close the transport.
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(shipper);
+        try {
+            shipper.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(ChangeEvent event) {
+        // announce the offer before checking closed: the shipper waits for announced offers before its last drain
+        recording.incrementAndGet();
+        try {
+            if (closed) {
+                dropped.incrementAndGet();
+                return;
+            }
+            recorded.incrementAndGet();
+            long deadline = 0;
+            while (!ring.offer(event)) {
+                if (closed) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                long now = System.nanoTime();
+                if (deadline == 0) {
+                    deadline = now + offerTimeoutNanos;
+                } else if (now - deadline >= 0) {
+                    overflowed.incrementAndGet();
+                    dropped.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(shipper);
+                LockSupport.parkNanos(50_000);
+            }
+        } finally {
+            recording.decrementAndGet();
+        }
+    }
+
+    private void ship() {
+        List<ChangeEvent> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            boolean stopping = closed; // read before draining: whatever was recorded before close goes out
+            while (stopping && recording.get() > 0) {
+                Thread.yield(); // writers that passed the closed check are still offering
+            }
+            while (ring.drainTo(batch, maxBatchSize) > 0) {
+                send(batch);
+                batch.clear();
+            }
+            if (stopping) {
+                return;
+            }
+            LockSupport.parkNanos(lingerNanos);
+        }
+    }
+
+    // Retries with backoff doubling from lingerMillis; gives up after maxSendAttempts, or at once
+    // when shutting down.
+    private void send(List<ChangeEvent> batch) {
+        byte[] encoded = ChangeEventBatch.encode(batch);
+        long backoffNanos = lingerNanos;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transport.send(encoded);
+                batches.incrementAndGet();
+                bytes.addAndGet(encoded.length);
+                shipped.addAndGet(batch.size());
+                return;
+            } catch (RuntimeException e) {
+                failedSends.incrementAndGet();
+                if (closed || attempt >= maxSendAttempts) {
+                    droppedBatches.incrementAndGet();
+                    dropped.addAndGet(batch.size());
+                    return;
+                }
+                LockSupport.parkNanos(backoffNanos); // close() unparks this thread
+                backoffNanos = Math.min(backoffNanos * 2, MAX_BACKOFF_NANOS);
+            }
+        }
+    }
+}
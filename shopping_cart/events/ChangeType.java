@@ -0,0 +1,10 @@
+package shopping_cart.events;
+
+public enum ChangeType {
+    PRODUCT_ADDED,
+    QUANTITY_CHANGED,
+    PRODUCT_REMOVED,
+    CHECKED_OUT,
+    REOPENED,
+    ORDER_PLACED
+}
@@ -0,0 +1,68 @@
+package shopping_cart.events;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bounded lock-free queue: any number of producers, one consumer.
+//
+// Each slot has a sequence number saying whose turn it is. A producer claims the next position
+// with one CAS, stores its event and publishes it by advancing the slot's sequence; the consumer
+// takes slots strictly in position order and stops at the first one not yet published. Events a
+// thread offers one after another therefore leave the ring in that order.
+final class EventRing {
+
+    private final ChangeEvent[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // next position to claim
+    private long head; // next position to take; consumer only
+
+    EventRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two");
+        }
+        this.slots = new ChangeEvent[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    // False if the ring is full.
+    boolean offer(ChangeEvent event) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = event;
+                    sequences.set(index, position + 1); // publishes the slot write
+                    return true;
+                }
+            } else if (sequence < position) {
+                return false; // the consumer has not freed this slot yet
+            }
+            // else another producer claimed this position first: retry with the new tail
+        }
+    }
+
+    // Moves up to max published events into out, in position order; returns how many.
+    int drainTo(List<ChangeEvent> out, int max) {
+        int taken = 0;
+        while (taken < max) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            out.add(slots[index]);
+            slots[index] = null;
+            sequences.set(index, head + slots.length); // free for the producer one lap later
+            head++;
+            taken++;
+        }
+        return taken;
+    }
+}
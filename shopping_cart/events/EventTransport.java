@@ -0,0 +1,8 @@
+package shopping_cart.events;
+
+// Where ChangeEventPublisher ships its batches. Batches arrive one at a time, in order, from
+// the publisher's shipping thread; a transport that throws gets the same batch again later.
+public interface EventTransport {
+
+    void send(byte[] batch);
+}
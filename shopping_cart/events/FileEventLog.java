@@ -0,0 +1,144 @@
+package shopping_cart.events;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// EventTransport that appends batches to one file: int length, then the encoded batch.
+//
+// A failed write is cut off again, so a retried batch never follows a half-written one. With
+// forceEachBatch every batch is on disk before send returns; otherwise the OS decides when.
+// read() returns the events of all complete batches, ignoring a torn batch at the end. Opening the
+// log cuts such a torn batch (left by a crash mid-write) off, so new batches follow the last
+// complete one instead of being hidden behind the torn one.
+public class FileEventLog implements EventTransport, AutoCloseable {
+
+    private final FileChannel channel;
+    private final boolean forceEachBatch;
+
+    public FileEventLog(Path file, boolean forceEachBatch) {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long end = endOfCompleteBatches(channel);
+            if (end < channel.size()) {
+                channel.truncate(end);
+                channel.force(false);
+            }
+            channel.position(end);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open event log " + file, e);
+        }
+        this.forceEachBatch = forceEachBatch;
+    }
+
+    public FileEventLog(Path file) {
+        this(file, false);
+    }
+
+    @Override
+    public synchronized void send(byte[] batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch cannot be null");
+        }
+        ByteBuffer framed = ByteBuffer.allocate(Integer.BYTES + batch.length);
+        framed.putInt(batch.length).put(batch).flip();
+        long start;
+        try {
+            start = channel.position();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to event log", e);
+        }
+        try {
+            while (framed.hasRemaining()) {
+                channel.write(framed);
+            }
+            if (forceEachBatch) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException ignored) {
+                // the reader still stops at the torn batch
+            }
+            throw new UncheckedIOException("Cannot append to event log", e);
+        }
+    }
+
+    public static List<ChangeEvent> read(Path file) {
+        List<ChangeEvent> events = new ArrayList<>();
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            while (true) {
+                length.clear();
+                if (!readFully(in, length)) {
+                    break;
+                }
+                int size = length.flip().getInt();
+                if (size <= 0 || size > in.size() - in.position()) {
+                    break;
+                }
+                ByteBuffer batch = ByteBuffer.allocate(size);
+                if (!readFully(in, batch)) {
+                    break;
+                }
+                events.addAll(ChangeEventBatch.decode(batch.array()));
+            }
+        } catch (NoSuchFileException e) {
+            return events;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read event log " + file, e);
+        }
+        return events;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close event log", e);
+        }
+    }
+
+    // Offset just past the last batch whose length and bytes are all in the file.
+    private static long endOfCompleteBatches(FileChannel in) throws IOException {
+        long size = in.size();
+        long end = 0;
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        while (size - end >= Integer.BYTES) {
+            length.clear();
+            in.position(end);
+            if (!readFully(in, length)) {
+                break;
+            }
+            int batchSize = length.flip().getInt();
+            if (batchSize <= 0 || batchSize > size - end - Integer.BYTES) {
+                break;
+            }
+            end += Integer.BYTES + batchSize;
+        }
+        return end;
+    }
+
+    private static boolean readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
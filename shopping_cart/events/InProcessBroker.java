@@ -0,0 +1,54 @@
+package shopping_cart.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Stand-in for a message broker inside one JVM, for tests and local runs.
+//
+// Keeps every batch it receives and hands the decoded events to subscribers in arrival order, on
+// the sender's thread. If a subscriber throws, the batch is not kept and the publisher sends it
+// again, so other subscribers may see those events twice (at-least-once, like a real broker).
+public class InProcessBroker implements EventTransport {
+
+    private final List<Consumer<ChangeEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final List<byte[]> batches = new ArrayList<>();
+    private long bytesReceived;
+
+    public void subscribe(Consumer<ChangeEvent> subscriber) {
+        if (subscriber == null) {
+            throw new IllegalArgumentException("Subscriber cannot be null");
+        }
+        subscribers.add(subscriber);
+    }
+
+    @Override
+    public synchronized void send(byte[] batch) {
+        List<ChangeEvent> events = ChangeEventBatch.decode(batch);
+        for (Consumer<ChangeEvent> subscriber : subscribers) {
+            for (ChangeEvent event : events) {
+                subscriber.accept(event);
+            }
+        }
+        batches.add(batch);
+        bytesReceived += batch.length;
+    }
+
+    // Every event received so far, in order; e.g. for a subscriber that joins late.
+    public synchronized List<ChangeEvent> replay() {
+        List<ChangeEvent> events = new ArrayList<>();
+        for (byte[] batch : batches) {
+            events.addAll(ChangeEventBatch.decode(batch));
+        }
+        return events;
+    }
+
+    public synchronized int getBatchCount() {
+        return batches.size();
+    }
+
+    public synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+}
@@ -0,0 +1,38 @@
+package shopping_cart.events;
+
+import java.util.List;
+
+import shopping_cart.model.Order;
+import shopping_cart.service.OrderStore;
+
+// OrderStore decorator that publishes ORDER_PLACED for every order once the store has saved it.
+public class PublishingOrderStore implements OrderStore {
+
+    private final OrderStore delegate;
+    private final ChangeEventPublisher publisher;
+
+    public PublishingOrderStore(OrderStore delegate, ChangeEventPublisher publisher) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("OrderStore cannot be null");
+        }
+        if (publisher == null) {
+            throw new IllegalArgumentException("ChangeEventPublisher cannot be null");
+        }
+        this.delegate = delegate;
+        this.publisher = publisher;
+    }
+
+    @Override
+    public void saveAll(List<Order> orders) {
+        delegate.saveAll(orders);
+        // the orders are stored now; a failure here must not fail (and so compensate) the checkout
+        for (Order order : orders) {
+            try {
+                publisher.orderPlaced(order);
+            } catch (RuntimeException e) {
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            }
+        }
+    }
+}
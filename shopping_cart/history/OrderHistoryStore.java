@@ -0,0 +1,461 @@
+package shopping_cart.history;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import shopping_cart.model.Order;
+import shopping_cart.model.User;
+import shopping_cart.service.OrderStore;
+
+// Append-only order history on memory-mapped segment files (orders-000000.seg, orders-000001.seg, ...).
+//
+// - Orders are encoded compactly (see OrderRecordCodec) and appended to the current segment;
+//   a full segment is closed off and a new one started, old segments are never rewritten.
+// - Each record points back to the same user's previously appended order, so a user's history is
+//   a chain walked newest first without touching other users' records.
+// - The heap keeps only a small index per user: the newest record plus a checkpoint every
+//   CHECKPOINT_INTERVAL orders, so a date-range query jumps close to its range instead of
+//   walking the whole chain. Orders themselves are decoded only when a page is read.
+// - The index is rebuilt by scanning the segments when the store is opened.
+//
+// Orders may arrive out of creation order (several checkout workers persist concurrently), so
+// "newest first" means most recently appended first. Range queries stay exact: every record
+// carries the newest creation time seen so far in its chain, and each user's index tracks how far
+// an order has ever arrived behind that, which bounds where a range can start and end.
+//
+// Implements OrderStore, so the checkout pipeline can persist straight into the history;
+// saveAll writes a whole batch or, if anything fails, none of it.
+public class OrderHistoryStore implements OrderStore, AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final int CHECKPOINT_INTERVAL = 64;
+    private static final int MIN_SEGMENT_SIZE = 4096;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final Map<Integer, UserIndex> users = new HashMap<>();
+    private final OrderRecordCodec.Header header = new OrderRecordCodec.Header();
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+    private int writeOffset;
+    private boolean closed;
+
+    public OrderHistoryStore(Path directory, int segmentSize) {
+        if (directory == null) {
+            throw new IllegalArgumentException("History directory cannot be null");
+        }
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segment size must be at least " + MIN_SEGMENT_SIZE + " bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            closeChannels();
+            throw new UncheckedIOException("Cannot open order history in " + directory, e);
+        }
+    }
+
+    public OrderHistoryStore(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    @Override
+    public synchronized void saveAll(List<Order> orders) {
+        ensureOpen();
+        if (orders == null) {
+            throw new IllegalArgumentException("Orders cannot be null");
+        }
+        int startSegments = segments.size();
+        int startOffset = writeOffset;
+        int startSegmentEnd = -1; // where the batch stopped writing into the starting segment
+        Map<Integer, UserIndex> touched = new HashMap<>(); // user id -> index before the batch
+        try {
+            for (Order order : orders) {
+                if (order == null) {
+                    throw new IllegalArgumentException("Order cannot be null");
+                }
+                int userId = order.getUser().getId();
+                if (!touched.containsKey(userId)) {
+                    UserIndex before = users.get(userId);
+                    touched.put(userId, before == null ? null : before.copy());
+                }
+                int segmentsBefore = segments.size();
+                int offsetBefore = writeOffset;
+                append0(order);
+                if (segmentsBefore == startSegments && segments.size() > startSegments) {
+                    startSegmentEnd = offsetBefore;
+                }
+            }
+        } catch (RuntimeException e) {
+            rollBack(startSegments, startOffset, startSegmentEnd < 0 ? writeOffset : startSegmentEnd, touched);
+            throw e;
+        }
+    }
+
+    public synchronized void append(Order order) {
+        saveAll(Collections.singletonList(order));
+    }
+
+    private void append0(Order order) {
+        int userId = order.getUser().getId();
+        UserIndex index = users.get(userId);
+        long newestMillis = Math.max(order.getCreatedAt().toEpochMilli(), index == null ? Long.MIN_VALUE : index.newestMillis);
+        int maxSize = OrderRecordCodec.maxEncodedSize(order);
+        if (scratch.capacity() < maxSize) {
+            scratch = ByteBuffer.allocate(Math.max(maxSize, scratch.capacity() * 2));
+        }
+        long previous = index == null ? OrderPage.NO_MORE_PAGES : index.head;
+        ByteBuffer record = OrderRecordCodec.encode(order, newestMillis, previous, scratch);
+        int length = record.remaining();
+        // keep room for the zero length that marks the end of the segment
+        if (length + OrderRecordCodec.LENGTH_PREFIX > segmentSize) {
+            throw new IllegalArgumentException("Order " + order.getId() + " does not fit in a history segment");
+        }
+        if (writeOffset + length + OrderRecordCodec.LENGTH_PREFIX > segmentSize) {
+            openSegment(segments.size());
+            writeOffset = 0;
+        }
+        int segmentNo = segments.size() - 1;
+        MappedByteBuffer segment = segments.get(segmentNo);
+        // body first, length last: a record interrupted half-way still reads as end of data
+        segment.put(writeOffset + OrderRecordCodec.LENGTH_PREFIX, record,
+                OrderRecordCodec.LENGTH_PREFIX, length - OrderRecordCodec.LENGTH_PREFIX);
+        segment.putInt(writeOffset, record.getInt(0));
+        long pointer = pointer(segmentNo, writeOffset);
+        writeOffset += length;
+        if (index == null) {
+            index = new UserIndex();
+            users.put(userId, index);
+        }
+        index.add(pointer, order.getCreatedAt().toEpochMilli());
+    }
+
+    // Undoes a partly written batch: restores the touched users' indexes, zeroes what was written
+    // into the starting segment (so recovery and later appends see end of data there) and drops
+    // any segment the batch opened.
+    private void rollBack(int startSegments, int startOffset, int startSegmentEnd, Map<Integer, UserIndex> touched) {
+        for (Map.Entry<Integer, UserIndex> entry : touched.entrySet()) {
+            if (entry.getValue() == null) {
+                users.remove(entry.getKey());
+            } else {
+                users.put(entry.getKey(), entry.getValue());
+            }
+        }
+        MappedByteBuffer start = segments.get(startSegments - 1);
+        for (int offset = startOffset; offset < startSegmentEnd; offset++) {
+            start.put(offset, (byte) 0);
+        }
+        int opened = Math.max(segments.size(), channels.size());
+        while (segments.size() > startSegments) {
+            segments.remove(segments.size() - 1);
+        }
+        while (channels.size() > startSegments) {
+            try {
+                channels.remove(channels.size() - 1).close();
+            } catch (IOException ignored) {
+                // the file is deleted below
+            }
+        }
+        for (int segmentNo = startSegments; segmentNo < opened; segmentNo++) {
+            try {
+                Files.deleteIfExists(segmentPath(segmentNo));
+            } catch (IOException ignored) {
+                // an empty leftover segment reads as no data when the store is reopened
+            }
+        }
+        writeOffset = startOffset;
+    }
+
+    // The user's n most recently appended orders, newest first.
+    public synchronized List<Order> lastOrders(User user, int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Number of orders must be positive");
+        }
+        UserIndex index = indexOf(user);
+        if (index == null) {
+            return new ArrayList<>();
+        }
+        return readPage(user, Instant.MIN, Instant.MAX, n, index.head).getOrders();
+    }
+
+    // First page of the user's orders created in [from, to), newest first.
+    public synchronized OrderPage ordersBetween(User user, Instant from, Instant to, int pageSize) {
+        checkRange(from, to, pageSize);
+        UserIndex index = indexOf(user);
+        if (index == null) {
+            return new OrderPage(new ArrayList<>(), OrderPage.NO_MORE_PAGES);
+        }
+        return readPage(user, from, to, pageSize, index.startBefore(clampedMillis(to)));
+    }
+
+    // Next page of the same query, continuing from a cursor returned by OrderPage.getNextCursor().
+    public synchronized OrderPage ordersBetween(User user, Instant from, Instant to, int pageSize, long cursor) {
+        checkRange(from, to, pageSize);
+        if (cursor == OrderPage.NO_MORE_PAGES) {
+            return new OrderPage(new ArrayList<>(), OrderPage.NO_MORE_PAGES);
+        }
+        UserIndex index = indexOf(user);
+        if (index == null || !isValidPointer(cursor)) {
+            throw new IllegalArgumentException("Invalid history cursor " + cursor);
+        }
+        OrderRecordCodec.readHeader(segments.get(segmentOf(cursor)), offsetOf(cursor), header);
+        if (header.userId != user.getId()) {
+            throw new IllegalArgumentException("History cursor does not belong to user " + user.getId());
+        }
+        return readPage(user, from, to, pageSize, cursor);
+    }
+
+    public synchronized int orderCount(User user) {
+        UserIndex index = indexOf(user);
+        return index == null ? 0 : index.count;
+    }
+
+    // Forces the written part of the current segment to disk.
+    public synchronized void flush() {
+        ensureOpen();
+        segments.get(segments.size() - 1).force();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!segments.isEmpty()) {
+            segments.get(segments.size() - 1).force();
+        }
+        closeChannels();
+    }
+
+    private OrderPage readPage(User user, Instant from, Instant to, int pageSize, long start) {
+        long fromMillis = clampedMillis(from);
+        List<Order> orders = new ArrayList<>(Math.min(pageSize, 64));
+        long pointer = start;
+        while (pointer != OrderPage.NO_MORE_PAGES) {
+            MappedByteBuffer segment = segments.get(segmentOf(pointer));
+            int offset = offsetOf(pointer);
+            OrderRecordCodec.readHeader(segment, offset, header);
+            // this record and all older ones were created before newestMillis + 1ms
+            if (header.newestMillis < fromMillis) {
+                return new OrderPage(orders, OrderPage.NO_MORE_PAGES);
+            }
+            if (orders.size() == pageSize) {
+                return new OrderPage(orders, pointer);
+            }
+            long previous = header.previousPointer;
+            if (header.compareCreatedAt(from) >= 0 && header.compareCreatedAt(to) < 0) {
+                orders.add(OrderRecordCodec.decode(segment, offset, user));
+            }
+            pointer = previous;
+        }
+        return new OrderPage(orders, OrderPage.NO_MORE_PAGES);
+    }
+
+    // Epoch millis, with instants beyond the long range (Instant.MIN/MAX as open bounds) clamped to it.
+    private static long clampedMillis(Instant instant) {
+        try {
+            return instant.toEpochMilli();
+        } catch (ArithmeticException e) {
+            return instant.isBefore(Instant.EPOCH) ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    private UserIndex indexOf(User user) {
+        ensureOpen();
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        return users.get(user.getId());
+    }
+
+    private static void checkRange(Instant from, Instant to, int pageSize) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Time range cannot be null");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Range start must be before its end");
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing
+                    .filter(path -> path.getFileName().toString().matches("orders-\\d{6}\\.seg"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (int i = 0; i < files.size(); i++) {
+            if (!files.get(i).equals(segmentPath(i))) {
+                throw new IllegalStateException("Order history segment " + segmentPath(i) + " is missing");
+            }
+            openSegment(i);
+            writeOffset = scan(i);
+        }
+        if (segments.isEmpty()) {
+            openSegment(0);
+            writeOffset = 0;
+        }
+    }
+
+    // Re-indexes every record in a segment; returns the offset just past the last one.
+    private int scan(int segmentNo) {
+        MappedByteBuffer segment = segments.get(segmentNo);
+        int offset = 0;
+        while (offset + OrderRecordCodec.LENGTH_PREFIX <= segmentSize) {
+            int length = segment.getInt(offset);
+            if (length == 0) {
+                break;
+            }
+            OrderRecordCodec.readHeader(segment, offset, header);
+            users.computeIfAbsent(header.userId, id -> new UserIndex())
+                    .add(pointer(segmentNo, offset), header.createdAtMillis());
+            offset += OrderRecordCodec.LENGTH_PREFIX + length;
+        }
+        return offset;
+    }
+
+    private void openSegment(int segmentNo) {
+        Path path = segmentPath(segmentNo);
+        try {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channels.add(channel);
+            if (channel.size() != 0 && channel.size() != segmentSize) {
+                throw new IllegalStateException("Segment " + path + " was written with a different segment size");
+            }
+            // mapping past the end grows the file; the new bytes read as zero (end of data)
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map order history segment " + path, e);
+        }
+    }
+
+    private Path segmentPath(int segmentNo) {
+        return directory.resolve(String.format("orders-%06d.seg", segmentNo));
+    }
+
+    private void closeChannels() {
+        for (FileChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing left to do for a channel that fails to close
+            }
+        }
+        channels.clear();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Order history is closed");
+        }
+    }
+
+    private boolean isValidPointer(long pointer) {
+        int segmentNo = segmentOf(pointer);
+        int offset = offsetOf(pointer);
+        if (pointer < 0 || segmentNo >= segments.size() || offset < 0) {
+            return false;
+        }
+        return segmentNo < segments.size() - 1 ? offset < segmentSize : offset < writeOffset;
+    }
+
+    private static long pointer(int segmentNo, int offset) {
+        return ((long) segmentNo << 32) | offset;
+    }
+
+    private static int segmentOf(long pointer) {
+        return (int) (pointer >>> 32);
+    }
+
+    private static int offsetOf(long pointer) {
+        return (int) pointer;
+    }
+
+    // Per-user index: newest record plus every CHECKPOINT_INTERVAL-th record, oldest first.
+    // Times are epoch millis rounded down. newestMillis is the latest creation time appended so far
+    // and latenessMillis the furthest any order has arrived behind it, so every record appended
+    // after a checkpoint was created no earlier than the checkpoint's newestMillis - latenessMillis.
+    private static final class UserIndex {
+        private long head = OrderPage.NO_MORE_PAGES;
+        private long newestMillis = Long.MIN_VALUE;
+        private long latenessMillis;
+        private int count;
+        private long[] checkpointPointers = new long[4];
+        private long[] checkpointNewestMillis = new long[4];
+        private int checkpoints;
+
+        private void add(long pointer, long createdAtMillis) {
+            if (createdAtMillis < newestMillis) {
+                latenessMillis = Math.max(latenessMillis, newestMillis - createdAtMillis);
+            } else {
+                newestMillis = createdAtMillis;
+            }
+            if (count % CHECKPOINT_INTERVAL == 0) {
+                if (checkpoints == checkpointPointers.length) {
+                    checkpointPointers = Arrays.copyOf(checkpointPointers, checkpoints * 2);
+                    checkpointNewestMillis = Arrays.copyOf(checkpointNewestMillis, checkpoints * 2);
+                }
+                checkpointPointers[checkpoints] = pointer;
+                checkpointNewestMillis[checkpoints] = newestMillis;
+                checkpoints++;
+            }
+            head = pointer;
+            count++;
+        }
+
+        // A record from which walking backwards reaches every order created before toMillis: the
+        // oldest checkpoint after which every record was created at or after toMillis + 1ms
+        // (and so is out of range), else the head.
+        private long startBefore(long toMillis) {
+            int low = 0;
+            int high = checkpoints;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (checkpointNewestMillis[mid] - latenessMillis <= toMillis) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low < checkpoints ? checkpointPointers[low] : head;
+        }
+
+        private UserIndex copy() {
+            UserIndex copy = new UserIndex();
+            copy.head = head;
+            copy.newestMillis = newestMillis;
+            copy.latenessMillis = latenessMillis;
+            copy.count = count;
+            copy.checkpointPointers = checkpointPointers.clone();
+            copy.checkpointNewestMillis = checkpointNewestMillis.clone();
+            copy.checkpoints = checkpoints;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package shopping_cart.history;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import shopping_cart.model.Order;
+
+// One page of a user's order history, newest first.
+// Pass getNextCursor() back to OrderHistoryStore to continue; NO_MORE_PAGES when exhausted.
+public final class OrderPage {
+
+    public static final long NO_MORE_PAGES = -1;
+
+    private final List<Order> orders;
+    private final long nextCursor;
+
+    OrderPage(List<Order> orders, long nextCursor) {
+        this.orders = orders;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Order> getOrders() {
+        return new ArrayList<>(orders);
+    }
+
+    public long getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != NO_MORE_PAGES;
+    }
+}
@@ -0,0 +1,133 @@
+package shopping_cart.history;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+import shopping_cart.model.Money;
+import shopping_cart.model.Order;
+import shopping_cart.model.OrderLineItem;
+import shopping_cart.model.User;
+import shopping_cart.util.VarInts;
+
+// Compact binary form of one Order inside a history segment.
+//
+//   int    body length (0 marks the end of written data in a segment)
+//   varint userId, varlong orderId, zigzag varlong createdAt epoch seconds, varint createdAt nanos,
+//   varlong newest millis - createdAt millis, varlong previous pointer + 1
+//   3 bytes currency code, varint line count
+//   per line: varint productId, zigzag varlong price minor units, varint quantity, varint name length, UTF-8 name
+//
+// createdAt round-trips exactly. "Newest millis" is the latest creation time (in epoch millis,
+// rounded down) among this record and every earlier record of the same user; it lets a backwards
+// walk stop without assuming the user's orders were appended in creation order.
+//
+// Variable-length ints keep typical orders to a few dozen bytes.
+final class OrderRecordCodec {
+
+    static final int LENGTH_PREFIX = Integer.BYTES;
+
+    private OrderRecordCodec() {
+    }
+
+    // Encodes into scratch (cleared first) and returns it flipped and ready to copy.
+    static ByteBuffer encode(Order order, long newestMillis, long previousPointer, ByteBuffer scratch) {
+        Instant createdAt = order.getCreatedAt();
+        if (newestMillis < createdAt.toEpochMilli()) {
+            throw new IllegalArgumentException("Newest creation time cannot be before the order's own");
+        }
+        scratch.clear();
+        scratch.putInt(0); // length, patched below
+        VarInts.putVarInt(scratch, order.getUser().getId());
+        VarInts.putVarLong(scratch, order.getId());
+        VarInts.putVarLong(scratch, VarInts.zigZag(createdAt.getEpochSecond()));
+        VarInts.putVarInt(scratch, createdAt.getNano());
+        VarInts.putVarLong(scratch, newestMillis - createdAt.toEpochMilli());
+        VarInts.putVarLong(scratch, previousPointer + 1);
+        scratch.put(order.getTotalAmount().getCurrency().getCurrencyCode().getBytes(StandardCharsets.US_ASCII));
+        List<OrderLineItem> lines = order.getLineItems();
+        VarInts.putVarInt(scratch, lines.size());
+        for (OrderLineItem line : lines) {
+            VarInts.putVarInt(scratch, line.getProductId());
+            VarInts.putVarLong(scratch, VarInts.zigZag(line.getPriceAtPurchase().getAmountMinor()));
+            VarInts.putVarInt(scratch, line.getQuantity());
+            byte[] name = line.getProductName().getBytes(StandardCharsets.UTF_8);
+            VarInts.putVarInt(scratch, name.length);
+            scratch.put(name);
+        }
+        scratch.putInt(0, scratch.position() - LENGTH_PREFIX);
+        scratch.flip();
+        return scratch;
+    }
+
+    // Upper bound of the encoded size, used to size the scratch buffer.
+    static int maxEncodedSize(Order order) {
+        int size = LENGTH_PREFIX + 5 + 10 + 10 + 5 + 10 + 10 + 3 + 5;
+        for (OrderLineItem line : order.getLineItems()) {
+            size += 5 + 10 + 5 + 5 + line.getProductName().length() * 3;
+        }
+        return size;
+    }
+
+    // Header fields needed by the index, read without decoding the lines.
+    static final class Header {
+        int userId;
+        long createdAtSecond;
+        int createdAtNano;
+        long newestMillis;
+        long previousPointer;
+
+        // Compares this record's creation time with an instant, exactly.
+        int compareCreatedAt(Instant instant) {
+            int bySecond = Long.compare(createdAtSecond, instant.getEpochSecond());
+            return bySecond != 0 ? bySecond : Integer.compare(createdAtNano, instant.getNano());
+        }
+
+        long createdAtMillis() {
+            return Instant.ofEpochSecond(createdAtSecond, createdAtNano).toEpochMilli();
+        }
+    }
+
+    static void readHeader(ByteBuffer buffer, int offset, Header header) {
+        int[] pos = { offset + LENGTH_PREFIX };
+        header.userId = VarInts.getVarInt(buffer, pos);
+        VarInts.getVarLong(buffer, pos); // orderId
+        header.createdAtSecond = VarInts.unZigZag(VarInts.getVarLong(buffer, pos));
+        header.createdAtNano = VarInts.getVarInt(buffer, pos);
+        header.newestMillis = header.createdAtMillis() + VarInts.getVarLong(buffer, pos);
+        header.previousPointer = VarInts.getVarLong(buffer, pos) - 1;
+    }
+
+    static Order decode(ByteBuffer buffer, int offset, User user) {
+        int[] pos = { offset + LENGTH_PREFIX };
+        int userId = VarInts.getVarInt(buffer, pos);
+        if (userId != user.getId()) {
+            throw new IllegalStateException("Order record belongs to user " + userId + ", not " + user.getId());
+        }
+        long orderId = VarInts.getVarLong(buffer, pos);
+        Instant createdAt = Instant.ofEpochSecond(VarInts.unZigZag(VarInts.getVarLong(buffer, pos)), VarInts.getVarInt(buffer, pos));
+        VarInts.getVarLong(buffer, pos); // newest millis
+        VarInts.getVarLong(buffer, pos); // previous pointer
+        byte[] code = new byte[3];
+        for (int i = 0; i < 3; i++) {
+            code[i] = buffer.get(pos[0]++);
+        }
+        Currency currency = Currency.getInstance(new String(code, StandardCharsets.US_ASCII));
+        int lineCount = VarInts.getVarInt(buffer, pos);
+        List<OrderLineItem> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            int productId = VarInts.getVarInt(buffer, pos);
+            long priceMinor = VarInts.unZigZag(VarInts.getVarLong(buffer, pos));
+            int quantity = VarInts.getVarInt(buffer, pos);
+            byte[] name = new byte[VarInts.getVarInt(buffer, pos)];
+            for (int b = 0; b < name.length; b++) {
+                name[b] = buffer.get(pos[0]++);
+            }
+            lines.add(new OrderLineItem(productId, new String(name, StandardCharsets.UTF_8), Money.ofMinor(priceMinor, currency), quantity));
+        }
+        return new Order(orderId, user, lines, createdAt);
+    }
+}
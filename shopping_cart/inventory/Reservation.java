@@ -0,0 +1,74 @@
+package shopping_cart.inventory;
+
+import java.time.Instant;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Timed hold on stock for one checkout. Exactly one of confirm, cancel or expiry wins.
+public final class Reservation {
+
+    private static final int HELD = 0;
+    private static final int CONFIRMED = 1;
+    private static final int RELEASED = 2;
+
+    private final long id;
+    private final int[] productIds;
+    private final int[] quantities;
+    private final Instant expiresAt;
+    private final AtomicInteger state = new AtomicInteger(HELD);
+    private volatile ScheduledFuture<?> expiryTask;
+
+    Reservation(long id, int[] productIds, int[] quantities, Instant expiresAt) {
+        this.id = id;
+        this.productIds = productIds;
+        this.quantities = quantities;
+        this.expiresAt = expiresAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isHeld() {
+        return state.get() == HELD;
+    }
+
+    public boolean isConfirmed() {
+        return state.get() == CONFIRMED;
+    }
+
+    int[] productIds() {
+        return productIds;
+    }
+
+    int[] quantities() {
+        return quantities;
+    }
+
+    void setExpiryTask(ScheduledFuture<?> expiryTask) {
+        this.expiryTask = expiryTask;
+    }
+
+    boolean markConfirmed() {
+        return transition(CONFIRMED);
+    }
+
+    boolean markReleased() {
+        return transition(RELEASED);
+    }
+
+    private boolean transition(int target) {
+        if (!state.compareAndSet(HELD, target)) {
+            return false;
+        }
+        ScheduledFuture<?> task = expiryTask;
+        if (task != null) {
+            task.cancel(false);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,167 @@
+package shopping_cart.inventory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import shopping_cart.model.OrderLineItem;
+import shopping_cart.service.StockReserver;
+
+// Stock for every product, backed by one StripedStockCounter per SKU.
+//
+// - reserve/release implement the checkout pipeline's StockReserver: all lines or none.
+// - hold places a timed Reservation; if it is neither confirmed nor cancelled before its TTL,
+//   a background timer returns the stock automatically.
+public class StockService implements StockReserver, AutoCloseable {
+
+    private final Map<Integer, StripedStockCounter> counters = new ConcurrentHashMap<>();
+    private final AtomicLong nextReservationId = new AtomicLong(1);
+    private final ScheduledThreadPoolExecutor expiryTimer;
+    private final Clock clock;
+    private final int cellsPerProduct;
+
+    // cellsPerProduct: cells a SKU's counter stripes over once it is contended; until then it is a
+    // single counter (see StripedStockCounter).
+    public StockService(int cellsPerProduct, Clock clock) {
+        if (cellsPerProduct <= 0 || Integer.bitCount(cellsPerProduct) != 1) {
+            throw new IllegalArgumentException("Cells per product must be a positive power of two");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        this.cellsPerProduct = cellsPerProduct;
+        this.clock = clock;
+        this.expiryTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "stock-reservation-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // cancelled expiry tasks (confirmed/cancelled holds) leave the timer queue immediately
+        this.expiryTimer.setRemoveOnCancelPolicy(true);
+    }
+
+    public StockService() {
+        this(StripedStockCounter.defaultCellCount(), Clock.systemUTC());
+    }
+
+    public void registerProduct(int productId, long initialStock) {
+        if (counters.putIfAbsent(productId, new StripedStockCounter(initialStock, cellsPerProduct)) != null) {
+            throw new IllegalStateException("Stock for product " + productId + " is already registered");
+        }
+    }
+
+    public void restock(int productId, long quantity) {
+        counter(productId).release(quantity);
+    }
+
+    public long available(int productId) {
+        return counter(productId).available();
+    }
+
+    @Override
+    public void reserve(List<OrderLineItem> lineItems) {
+        int[][] lines = toLines(lineItems);
+        acquireAll(lines[0], lines[1]);
+    }
+
+    @Override
+    public void release(List<OrderLineItem> lineItems) {
+        int[][] lines = toLines(lineItems);
+        releaseAll(lines[0], lines[1], lines[0].length);
+    }
+
+    // Holds stock for every line for at most ttl. Throws IllegalStateException if any line is short.
+    public Reservation hold(List<OrderLineItem> lineItems, Duration ttl) {
+        if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+            throw new IllegalArgumentException("TTL must be positive");
+        }
+        int[][] lines = toLines(lineItems);
+        acquireAll(lines[0], lines[1]);
+        Reservation reservation = new Reservation(nextReservationId.getAndIncrement(), lines[0], lines[1], clock.instant().plus(ttl));
+        try {
+            reservation.setExpiryTask(expiryTimer.schedule(() -> expire(reservation), ttl.toNanos(), TimeUnit.NANOSECONDS));
+        } catch (RuntimeException e) {
+            // e.g. rejected after close(): nothing would ever expire the hold, so give the stock back
+            if (reservation.markReleased()) {
+                releaseAll(lines[0], lines[1], lines[0].length);
+            }
+            throw e;
+        }
+        return reservation;
+    }
+
+    // Makes the hold permanent (checkout completed). Fails if it already expired or was cancelled.
+    public void confirm(Reservation reservation) {
+        if (reservation == null) {
+            throw new IllegalArgumentException("Reservation cannot be null");
+        }
+        if (!reservation.markConfirmed()) {
+            throw new IllegalStateException("Reservation " + reservation.getId() + " is no longer held");
+        }
+    }
+
+    // Returns held stock early. No-op if the reservation is already confirmed, cancelled or expired.
+    public void cancel(Reservation reservation) {
+        if (reservation == null) {
+            throw new IllegalArgumentException("Reservation cannot be null");
+        }
+        if (reservation.markReleased()) {
+            releaseAll(reservation.productIds(), reservation.quantities(), reservation.productIds().length);
+        }
+    }
+
+    @Override
+    public void close() {
+        expiryTimer.shutdownNow();
+    }
+
+    private void expire(Reservation reservation) {
+        if (reservation.markReleased()) {
+            releaseAll(reservation.productIds(), reservation.quantities(), reservation.productIds().length);
+        }
+    }
+
+    private void acquireAll(int[] productIds, int[] quantities) {
+        for (int i = 0; i < productIds.length; i++) {
+            if (!counter(productIds[i]).tryAcquire(quantities[i])) {
+                releaseAll(productIds, quantities, i);
+                throw new IllegalStateException("Insufficient stock for product " + productIds[i]);
+            }
+        }
+    }
+
+    private void releaseAll(int[] productIds, int[] quantities, int count) {
+        for (int i = 0; i < count; i++) {
+            counter(productIds[i]).release(quantities[i]);
+        }
+    }
+
+    private StripedStockCounter counter(int productId) {
+        StripedStockCounter counter = counters.get(productId);
+        if (counter == null) {
+            throw new IllegalStateException("No stock registered for product " + productId);
+        }
+        return counter;
+    }
+
+    // Validates up front so a bad line cannot leave earlier lines reserved.
+    private int[][] toLines(List<OrderLineItem> lineItems) {
+        if (lineItems == null || lineItems.isEmpty()) {
+            throw new IllegalArgumentException("Line items cannot be null or empty");
+        }
+        int[] productIds = new int[lineItems.size()];
+        int[] quantities = new int[lineItems.size()];
+        for (int i = 0; i < productIds.length; i++) {
+            OrderLineItem item = lineItems.get(i);
+            counter(item.getProductId());
+            productIds[i] = item.getProductId();
+            quantities[i] = item.getQuantity();
+        }
+        return new int[][] { productIds, quantities };
+    }
+}
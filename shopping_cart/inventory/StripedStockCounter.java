@@ -0,0 +1,179 @@
+package shopping_cart.inventory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Stock level of one product. It starts as a single unpadded counter and is split over several
+// padded cells only once its counter sees CAS contention (as LongAdder does), so a catalog of
+// mostly quiet SKUs costs one AtomicLong each and only hot SKUs pay for striping.
+//
+// - Uncontended, acquire and release are one CAS on the base counter.
+// - The first failed CAS on the base allocates the cells. From then on each thread has a home
+//   cell and acquires from it with a single CAS while it has enough.
+// - When the home cell runs short, the thread takes the slow path: one thread at a time sweeps
+//   the base and every cell, takes the request from the total and spreads the rest evenly over
+//   the cells again, so the next acquires hit the fast path.
+// - A cell (or the base) is only ever decremented from a value that covers the request, so the
+//   total can never go below zero: no oversell. Units are never in flight between cells outside
+//   the slow path, so an acquire fails only when the stock summed over base and cells is short.
+public final class StripedStockCounter {
+
+    // 16 longs = 128 bytes between cells: one cell per cache line pair, no false sharing
+    private static final int PAD = 16;
+
+    private final AtomicLong base;
+    private volatile AtomicLongArray cells; // null until the base is contended; never replaced
+    private final int mask;
+    private final Object rebalanceLock = new Object();
+
+    // cellCount: cells to stripe over once contended; 1 never stripes.
+    public StripedStockCounter(long initialStock, int cellCount) {
+        if (initialStock < 0) {
+            throw new IllegalArgumentException("Stock cannot be negative");
+        }
+        if (cellCount <= 0 || Integer.bitCount(cellCount) != 1) {
+            throw new IllegalArgumentException("Cell count must be a positive power of two");
+        }
+        this.base = new AtomicLong(initialStock);
+        this.mask = cellCount - 1;
+    }
+
+    public StripedStockCounter(long initialStock) {
+        this(initialStock, defaultCellCount());
+    }
+
+    // Takes quantity units if available. Returns false (taking nothing) otherwise.
+    public boolean tryAcquire(long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than zero");
+        }
+        AtomicLongArray striped = cells;
+        if (striped == null) {
+            while (true) {
+                long current = base.get();
+                if (current < quantity) {
+                    // short, unless cells appeared meanwhile and hold the rest: the slow path knows
+                    return acquireSlow(-1, quantity);
+                }
+                if (base.compareAndSet(current, current - quantity)) {
+                    return true;
+                }
+                if (mask > 0) {
+                    break; // contended: stripe from now on
+                }
+            }
+            striped = inflate();
+        }
+        int home = homeCell();
+        return tryTake(striped, home, quantity) || acquireSlow(home, quantity);
+    }
+
+    // Puts units back (cancelled reservation, restock).
+    public void release(long quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than zero");
+        }
+        AtomicLongArray striped = cells;
+        if (striped == null) {
+            base.addAndGet(quantity);
+        } else {
+            striped.addAndGet(homeCell() * PAD, quantity);
+        }
+    }
+
+    // Base plus all cells. Exact when no acquire/release is running concurrently.
+    public long available() {
+        long total = base.get();
+        AtomicLongArray striped = cells;
+        if (striped != null) {
+            for (int i = 0; i <= mask; i++) {
+                total += striped.get(i * PAD);
+            }
+        }
+        return total;
+    }
+
+    // Cells the counter stripes over once contended.
+    public int cellCount() {
+        return mask + 1;
+    }
+
+    public boolean isStriped() {
+        return cells != null;
+    }
+
+    private AtomicLongArray inflate() {
+        synchronized (rebalanceLock) {
+            AtomicLongArray striped = cells;
+            if (striped == null) {
+                // empty cells: the first acquire on them takes the slow path and moves the base's units in
+                striped = new AtomicLongArray(cellCount() * PAD);
+                cells = striped;
+            }
+            return striped;
+        }
+    }
+
+    private static boolean tryTake(AtomicLongArray striped, int cell, long quantity) {
+        int index = cell * PAD;
+        while (true) {
+            long current = striped.get(index);
+            if (current < quantity) {
+                return false;
+            }
+            if (striped.compareAndSet(index, current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    // Sweeps the base and every cell under the lock. Fast-path takes and releases still run
+    // concurrently, but each is a single atomic update, so a unit missed by the sweep was either
+    // taken by another acquire or released after its cell was swept. home < 0: not striped when
+    // the caller looked.
+    private boolean acquireSlow(int home, long quantity) {
+        synchronized (rebalanceLock) {
+            AtomicLongArray striped = cells;
+            // refilled by the slow path that just finished
+            if (striped != null && home >= 0 && tryTake(striped, home, quantity)) {
+                return true;
+            }
+            long total = base.getAndSet(0);
+            if (striped != null) {
+                for (int i = 0; i <= mask; i++) {
+                    total += striped.getAndSet(i * PAD, 0);
+                }
+            }
+            boolean acquired = total >= quantity;
+            if (acquired) {
+                total -= quantity;
+            }
+            if (striped == null) {
+                base.addAndGet(total);
+                return acquired;
+            }
+            int start = home >= 0 ? home : homeCell();
+            int cellCount = mask + 1;
+            long share = total / cellCount;
+            long remainder = total % cellCount;
+            for (int step = 0; step < cellCount; step++) {
+                long units = share + (step < remainder ? 1 : 0);
+                if (units > 0) {
+                    striped.addAndGet(((start + step) & mask) * PAD, units);
+                }
+            }
+            return acquired;
+        }
+    }
+
+    private int homeCell() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    static int defaultCellCount() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return Integer.highestOneBit(Math.max(1, processors * 2 - 1));
+    }
+}
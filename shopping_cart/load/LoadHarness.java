@@ -0,0 +1,370 @@
+package shopping_cart.load;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+import shopping_cart.auth.CredentialService;
+import shopping_cart.model.CartSnapshot;
+import shopping_cart.model.CartStatus;
+import shopping_cart.model.LineItem;
+import shopping_cart.model.Money;
+import shopping_cart.model.Product;
+import shopping_cart.model.User;
+import shopping_cart.search.SearchQuery;
+import shopping_cart.service.ShoppingService;
+
+// Drives a ShoppingService with simulated shoppers and measures how it holds up.
+//
+// - The constructor seeds the service with productCount products (ids 1..n, words from a small
+//   vocabulary, prices 1.00-200.00) and userCount users (ids 1..n). Everything random, catalog and
+//   traffic alike, derives from one seed, so two runs with the same seed offer the same work.
+// - Each thread plays the users whose id falls in its slice, one step at a time: pick an operation
+//   by the profile's mix, a user, and a product (skewed so a few products are hot, as on a sale day).
+// - Open-loop pacing: a thread's steps are due at fixed intervals, and latency counts from when a
+//   step was due, not when it started. A service that stalls is charged for the requests that
+//   queued up behind the stall rather than quietly lowering the offered load.
+// - Allocation is read from the JVM's per-thread allocation counters over the measured phase.
+public class LoadHarness {
+
+    // product popularity ~ rank^(1/SKEW): with 3, the top 10% of products get ~46% of the traffic
+    private static final double SKEW = 3;
+    private static final long CHECKOUT_TIMEOUT_SECONDS = 30;
+    private static final String[] ADJECTIVES = {
+            "red", "blue", "green", "black", "white", "large", "small", "wireless", "organic", "classic",
+            "premium", "compact", "vintage", "smart", "portable", "steel", "wooden", "leather", "cotton", "glass"
+    };
+    private static final String[] NOUNS = {
+            "mug", "lamp", "chair", "desk", "phone", "charger", "headphones", "backpack", "jacket", "shoes",
+            "watch", "kettle", "blender", "notebook", "pen", "camera", "speaker", "pillow", "blanket", "bottle"
+    };
+
+    private final ShoppingService service;
+    private final int userCount;
+    private final int productCount;
+    private final long seed;
+
+    public LoadHarness(ShoppingService service, int userCount, int productCount, long stockPerProduct, long seed) {
+        if (service == null) {
+            throw new IllegalArgumentException("ShoppingService cannot be null");
+        }
+        if (userCount <= 0 || productCount <= 0) {
+            throw new IllegalArgumentException("User and product counts must be positive");
+        }
+        if (stockPerProduct < 0) {
+            throw new IllegalArgumentException("Stock per product cannot be negative");
+        }
+        this.service = service;
+        this.userCount = userCount;
+        this.productCount = productCount;
+        this.seed = seed;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Product> products = new ArrayList<>(productCount);
+        for (int id = 1; id <= productCount; id++) {
+            String adjective = ADJECTIVES[random.nextInt(ADJECTIVES.length)];
+            String noun = NOUNS[random.nextInt(NOUNS.length)];
+            Money price = Money.ofMinor(100 + random.nextInt(19_901), service.getCurrency());
+            products.add(new Product(id, adjective + " " + noun, "A " + adjective + " " + noun + ", item " + id, price));
+        }
+        service.addProducts(products, stockPerProduct);
+
+        // simulated shoppers never log in, so one hash serves them all
+        String passwordHash;
+        try (CredentialService credentials = new CredentialService(1_000)) {
+            passwordHash = credentials.hash("load-test-password").join().encode();
+        }
+        for (int id = 1; id <= userCount; id++) {
+            service.registerUser(new User(id, "shopper" + id, "shopper" + id + "@example.com", passwordHash));
+        }
+    }
+
+    // Runs warmup then the measured phase; blocks until both are over.
+    public LoadReport run(LoadProfile profile) {
+        if (profile == null) {
+            throw new IllegalArgumentException("LoadProfile cannot be null");
+        }
+        int threads = Math.min(profile.getThreads(), userCount);
+        long intervalNanos = profile.getOpsPerSecond() == 0 ? 0 : (long) (threads * 1e9 / profile.getOpsPerSecond());
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50); // lets every thread reach the start line
+        long measureFrom = start + profile.getWarmup().toNanos();
+        long measureUntil = measureFrom + profile.getDuration().toNanos();
+
+        SplittableRandom seeds = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        CountDownLatch finished = new CountDownLatch(threads);
+        CountDownLatch sampled = new CountDownLatch(1);
+        List<Worker> workers = new ArrayList<>(threads);
+        List<Thread> workerThreads = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(i, threads, seeds.split(), profile.getMix(), intervalNanos,
+                    start, measureFrom, measureUntil, finished, sampled);
+            Thread thread = new Thread(worker, "load-worker-" + i);
+            thread.setDaemon(true);
+            workers.add(worker);
+            workerThreads.add(thread);
+            thread.start();
+        }
+
+        // sampled while the workers are still alive, so their allocation counts too
+        sleepUntil(measureFrom);
+        Map<Long, Long> allocatedBefore = allocatedBytesByThread();
+        long[] gcBefore = gcTotals();
+        awaitUninterruptibly(finished);
+        Map<Long, Long> allocatedAfter = allocatedBytesByThread();
+        long[] gcAfter = gcTotals();
+        long elapsed = Math.max(System.nanoTime(), measureUntil) - measureFrom;
+        sampled.countDown();
+        for (Thread thread : workerThreads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+        Map<Operation, Long> errors = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram merged = new LatencyHistogram();
+            long errorCount = 0;
+            for (Worker worker : workers) {
+                merged.merge(worker.latencies[operation.ordinal()]);
+                errorCount += worker.errors[operation.ordinal()];
+            }
+            latencies.put(operation, merged);
+            errors.put(operation, errorCount);
+        }
+        long allocated = -1;
+        if (allocatedBefore != null && allocatedAfter != null) {
+            allocated = 0;
+            for (Map.Entry<Long, Long> entry : allocatedAfter.entrySet()) {
+                allocated += entry.getValue() - allocatedBefore.getOrDefault(entry.getKey(), 0L);
+            }
+        }
+        return new LoadReport(elapsed, latencies, errors, allocated, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+    }
+
+    // One thread's shoppers, random stream and measurements.
+    private final class Worker implements Runnable {
+        private final int index;
+        private final int threads;
+        private final SplittableRandom random;
+        private final Operation[] operations;
+        private final int[] cumulativeWeights;
+        private final long intervalNanos;
+        private final long start;
+        private final long measureFrom;
+        private final long measureUntil;
+        private final CountDownLatch finished;
+        private final CountDownLatch sampled;
+        private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+        private final long[] errors = new long[Operation.values().length];
+        private long checkouts;
+
+        private Worker(int index, int threads, SplittableRandom random, Map<Operation, Integer> mix, long intervalNanos,
+                       long start, long measureFrom, long measureUntil, CountDownLatch finished, CountDownLatch sampled) {
+            this.index = index;
+            this.threads = threads;
+            this.random = random;
+            this.intervalNanos = intervalNanos;
+            this.start = start;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+            this.finished = finished;
+            this.sampled = sampled;
+            List<Operation> weighted = new ArrayList<>();
+            List<Integer> cumulative = new ArrayList<>();
+            int total = 0;
+            for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+                if (entry.getValue() > 0) {
+                    total += entry.getValue();
+                    weighted.add(entry.getKey());
+                    cumulative.add(total);
+                }
+            }
+            this.operations = weighted.toArray(new Operation[0]);
+            this.cumulativeWeights = new int[cumulative.size()];
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                cumulativeWeights[i] = cumulative.get(i);
+            }
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new LatencyHistogram();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                sleepUntil(start);
+                long due = start;
+                while (true) {
+                    long began;
+                    if (intervalNanos > 0) {
+                        sleepUntil(due);
+                        began = due; // open loop: charged from when the step was due
+                        due += intervalNanos;
+                    } else {
+                        began = System.nanoTime();
+                    }
+                    if (began >= measureUntil) {
+                        return;
+                    }
+                    Operation operation = step();
+                    long latency = System.nanoTime() - began;
+                    if (began >= measureFrom) {
+                        latencies[operation.ordinal()].record(latency);
+                    }
+                }
+            } finally {
+                finished.countDown();
+                awaitUninterruptibly(sampled);
+            }
+        }
+
+        // Performs one step and returns the operation it ended up as (an update or checkout on an
+        // empty cart, or on one whose checkout is still in flight, becomes an add). A failed step
+        // counts as an error and is still timed.
+        private Operation step() {
+            Operation operation = pickOperation();
+            int userId = pickUser();
+            try {
+                switch (operation) {
+                    case BROWSE:
+                        browse();
+                        return operation;
+                    case ADD:
+                        service.addToCart(userId, pickProduct(), 1 + random.nextInt(3));
+                        return operation;
+                    case UPDATE: {
+                        CartSnapshot cart = service.viewCart(userId);
+                        List<LineItem> lines = cart.getLineItems();
+                        if (lines.isEmpty() || cart.getStatus() != CartStatus.ACTIVE) {
+                            operation = Operation.ADD;
+                            service.addToCart(userId, pickProduct(), 1 + random.nextInt(3));
+                            return operation;
+                        }
+                        LineItem line = lines.get(random.nextInt(lines.size()));
+                        service.updateQuantity(userId, line.getProduct().getId(), 1 + random.nextInt(5));
+                        return operation;
+                    }
+                    case CHECKOUT: {
+                        CartSnapshot cart = service.viewCart(userId);
+                        if (cart.getTotalItems() == 0 || cart.getStatus() != CartStatus.ACTIVE) {
+                            operation = Operation.ADD;
+                            service.addToCart(userId, pickProduct(), 1 + random.nextInt(3));
+                            return operation;
+                        }
+                        String key = "load-" + seed + "-" + index + "-" + checkouts++;
+                        service.checkout(userId, key).get(CHECKOUT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                        return operation;
+                    }
+                    default:
+                        service.abandonCart(userId);
+                        return operation;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Load worker interrupted", e);
+            } catch (RuntimeException | ExecutionException | TimeoutException e) {
+                errors[operation.ordinal()]++;
+                return operation;
+            }
+        }
+
+        private void browse() {
+            String text = random.nextInt(4) == 0
+                    ? ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)]
+                    : NOUNS[random.nextInt(NOUNS.length)];
+            Money maxPrice = random.nextInt(3) == 0
+                    ? Money.ofMinor(1_000 + random.nextInt(10_000), service.getCurrency())
+                    : null;
+            SearchQuery.Sort sort = random.nextBoolean() ? SearchQuery.Sort.CATALOG_ORDER : SearchQuery.Sort.PRICE_ASCENDING;
+            service.browse(new SearchQuery(text, null, maxPrice, sort, 20));
+        }
+
+        private Operation pickOperation() {
+            int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            int i = 0;
+            while (ticket >= cumulativeWeights[i]) {
+                i++;
+            }
+            return operations[i];
+        }
+
+        // users index, index + threads, index + 2 * threads, ... belong to this worker
+        private int pickUser() {
+            int owned = (userCount - index + threads - 1) / threads;
+            return 1 + index + random.nextInt(owned) * threads;
+        }
+
+        private int pickProduct() {
+            return 1 + (int) (productCount * Math.pow(random.nextDouble(), SKEW));
+        }
+    }
+
+    private static void sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Bytes allocated so far by every live thread, by thread id; null if the JVM cannot tell.
+    private static Map<Long, Long> allocatedBytesByThread() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+        if (!allocation.isThreadAllocatedMemorySupported() || !allocation.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+        long[] ids = allocation.getAllThreadIds();
+        long[] bytes = allocation.getThreadAllocatedBytes(ids);
+        Map<Long, Long> byThread = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) {
+                byThread.put(ids[i], bytes[i]);
+            }
+        }
+        return byThread;
+    }
+
+    // {collections, milliseconds} summed over all collectors.
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return new long[] {count, millis};
+    }
+}
@@ -0,0 +1,85 @@
+package shopping_cart.load;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+// How hard, how long and with what traffic mix to drive a load run.
+//
+// - opsPerSecond is the offered rate across all threads; each thread paces its share open-loop.
+//   0 runs closed-loop: every thread goes as fast as the service answers.
+// - Nothing is recorded during warmup, so the JIT and caches settle before measuring.
+// - mix weights pick each step's operation; they are relative and need not sum to 100.
+public final class LoadProfile {
+
+    private final int threads;
+    private final double opsPerSecond;
+    private final Duration warmup;
+    private final Duration duration;
+    private final Map<Operation, Integer> mix;
+
+    public LoadProfile(int threads, double opsPerSecond, Duration warmup, Duration duration, Map<Operation, Integer> mix) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        if (opsPerSecond < 0 || Double.isNaN(opsPerSecond) || Double.isInfinite(opsPerSecond)) {
+            throw new IllegalArgumentException("Ops per second must be zero or positive");
+        }
+        if (warmup == null || warmup.isNegative()) {
+            throw new IllegalArgumentException("Warmup cannot be negative");
+        }
+        if (duration == null || duration.isZero() || duration.isNegative()) {
+            throw new IllegalArgumentException("Duration must be positive");
+        }
+        if (mix == null) {
+            throw new IllegalArgumentException("Mix cannot be null");
+        }
+        long totalWeight = 0;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null || entry.getValue() < 0) {
+                throw new IllegalArgumentException("Mix weights must be zero or positive");
+            }
+            totalWeight += entry.getValue();
+        }
+        if (totalWeight == 0) {
+            throw new IllegalArgumentException("Mix must give some operation a positive weight");
+        }
+        this.threads = threads;
+        this.opsPerSecond = opsPerSecond;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.mix = Collections.unmodifiableMap(new EnumMap<>(mix));
+    }
+
+    // Mostly browsing; roughly one cart in two is checked out, the rest abandoned or left open.
+    public static Map<Operation, Integer> defaultMix() {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        mix.put(Operation.BROWSE, 60);
+        mix.put(Operation.ADD, 20);
+        mix.put(Operation.UPDATE, 10);
+        mix.put(Operation.CHECKOUT, 5);
+        mix.put(Operation.ABANDON, 5);
+        return mix;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public double getOpsPerSecond() {
+        return opsPerSecond;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public Map<Operation, Integer> getMix() {
+        return mix;
+    }
+}
@@ -0,0 +1,125 @@
+package shopping_cart.load;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Results of a load run's measured phase.
+//
+// Latencies include failed operations. Allocation covers every thread in the JVM (request threads
+// and the service's own workers); it is -1 when the JVM cannot measure per-thread allocation.
+public final class LoadReport {
+
+    private final long elapsedNanos;
+    private final Map<Operation, LatencyHistogram> latencies;
+    private final Map<Operation, Long> errors;
+    private final long allocatedBytes;
+    private final long gcCount;
+    private final long gcMillis;
+
+    LoadReport(long elapsedNanos, Map<Operation, LatencyHistogram> latencies, Map<Operation, Long> errors,
+               long allocatedBytes, long gcCount, long gcMillis) {
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = Collections.unmodifiableMap(new EnumMap<>(latencies));
+        this.errors = Collections.unmodifiableMap(new EnumMap<>(errors));
+        this.allocatedBytes = allocatedBytes;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+    }
+
+    public double getElapsedSeconds() {
+        return elapsedNanos / 1e9;
+    }
+
+    public long getOperationCount() {
+        long total = 0;
+        for (LatencyHistogram histogram : latencies.values()) {
+            total += histogram.getCount();
+        }
+        return total;
+    }
+
+    public long getOperationCount(Operation operation) {
+        LatencyHistogram histogram = latencies.get(operation);
+        return histogram == null ? 0 : histogram.getCount();
+    }
+
+    public long getErrorCount(Operation operation) {
+        return errors.getOrDefault(operation, 0L);
+    }
+
+    public double getThroughput() {
+        return getOperationCount() / getElapsedSeconds();
+    }
+
+    // Latency histogram of one operation, in nanoseconds.
+    public LatencyHistogram latency(Operation operation) {
+        LatencyHistogram copy = new LatencyHistogram();
+        LatencyHistogram histogram = latencies.get(operation);
+        if (histogram != null) {
+            copy.merge(histogram);
+        }
+        return copy;
+    }
+
+    // Histogram of all operations together.
+    public LatencyHistogram latency() {
+        LatencyHistogram all = new LatencyHistogram();
+        for (LatencyHistogram histogram : latencies.values()) {
+            all.merge(histogram);
+        }
+        return all;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public double getAllocationRate() {
+        return allocatedBytes < 0 ? -1 : allocatedBytes / getElapsedSeconds();
+    }
+
+    public double getAllocatedBytesPerOperation() {
+        long operations = getOperationCount();
+        return allocatedBytes < 0 || operations == 0 ? -1 : (double) allocatedBytes / operations;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public long getGcMillis() {
+        return gcMillis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%d ops in %.1f s = %.0f ops/s%n", getOperationCount(), getElapsedSeconds(), getThroughput()));
+        out.append(String.format("%-9s %9s %7s %9s %9s %9s %9s %9s%n",
+                "op", "count", "errors", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us"));
+        for (Operation operation : Operation.values()) {
+            appendRow(out, operation.name(), latency(operation), getErrorCount(operation));
+        }
+        long totalErrors = 0;
+        for (long count : errors.values()) {
+            totalErrors += count;
+        }
+        appendRow(out, "ALL", latency(), totalErrors);
+        if (allocatedBytes < 0) {
+            out.append("allocation: not measurable on this JVM");
+        } else {
+            out.append(String.format("allocation: %.1f MB/s, %.0f B/op", getAllocationRate() / (1 << 20),
+                    getAllocatedBytesPerOperation()));
+        }
+        out.append(String.format("; gc: %d collections, %d ms%n", gcCount, gcMillis));
+        return out.toString();
+    }
+
+    private static void appendRow(StringBuilder out, String name, LatencyHistogram histogram, long errorCount) {
+        out.append(String.format("%-9s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, histogram.getCount(), errorCount,
+                histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(90) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                histogram.getMax() / 1e3));
+    }
+}
@@ -0,0 +1,10 @@
+package shopping_cart.load;
+
+// What a simulated shopper does in one step of a load run.
+public enum Operation {
+    BROWSE,   // search the catalog
+    ADD,      // put a product in the cart
+    UPDATE,   // change the quantity of a line already in the cart
+    CHECKOUT, // check the cart out and wait for the order
+    ABANDON   // walk away from the cart
+}
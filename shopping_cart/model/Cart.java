@@ -1,100 +1,455 @@
 package shopping_cart.model;
 
 import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
+import shopping_cart.util.IdGenerator;
+import shopping_cart.util.MoneyMath;
+
+// A shopping cart that several clients (e.g. a user's phone and browser) may change at once.
+//
+// - The whole cart state is one immutable, versioned CartState. Every mutation builds the next
+//   state and installs it with compare-and-set; on a lost race it re-reads and tries again.
+// - Adding quantity is commutative, so a concurrent add is merged (re-applied on the newer state)
+//   and never lost. updateQuantity/removeProduct apply to the latest state; their conditional
+//   overloads fail instead if the cart changed since the caller's snapshot.
+// - Reads (totals, items, status, snapshot()) are a single volatile read and never block.
+// - Prices are applied lazily: lines carry the price version they were counted at, and a read
+//   reprices only lines whose product changed since (see PriceChangeLog).
+//
+// - Carts built with an IdGenerator give every new line a unique id from it; otherwise lines have id 0.
+//
+// Carts with listeners serialize their writers on the cart's monitor so listeners observe changes
+// one at a time and in order; reads stay lock-free. Writers that find no listener stay lock-free
+// too: addListener replaces the state object after registering, so a lock-free write racing it
+// fails its compare-and-set, sees the listener and is redone under the monitor.
 public class Cart {
 
-    private final int id;
-    private final List<LineItem> lineItems;
-    private CartStatus status;
+    private final long id;
+    private final Currency currency; // every product in the cart must be priced in this currency
+    private final IdGenerator lineIds; // null: lines are not given ids
+    private final AtomicReference<CartState> state;
+    private volatile List<CartListener> listeners; // copied on write, null until the first addListener
 
-    public Cart(int id) {
+    public Cart(long id, Currency currency, IdGenerator lineIds) {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency cannot be null");
+        }
         this.id = id;
-        this.lineItems = new ArrayList<>();
-        this.status = CartStatus.ACTIVE;
+        this.currency = currency;
+        this.lineIds = lineIds;
+        this.state = new AtomicReference<>(CartState.empty());
+    }
+
+    public Cart(long id, Currency currency) {
+        this(id, currency, null);
+    }
+
+    // Rebuilds a stored cart (replication, spill files): the lines keep their ids and order and the
+    // cart continues from version. Lines are priced at their products' current prices; lines
+    // added later get ids from lineIds (null: id 0).
+    public Cart(long id, Currency currency, IdGenerator lineIds, List<LineItem> lines, CartStatus status, long version) {
+        this(id, currency, lineIds);
+        if (lines == null) {
+            throw new IllegalArgumentException("Lines cannot be null");
+        }
+        if (status == null || status == CartStatus.CANCELLED) {
+            throw new IllegalArgumentException("Only active or checked-out carts can be restored");
+        }
+        if (status == CartStatus.CHECKED_OUT && lines.isEmpty()) {
+            throw new IllegalArgumentException("A checked-out cart cannot be empty");
+        }
+        if (version < 0) {
+            throw new IllegalArgumentException("Version cannot be negative");
+        }
+        Set<Integer> productIds = new HashSet<>();
+        List<LineItem> copies = new ArrayList<>(lines.size());
+        for (LineItem line : lines) {
+            if (line == null) {
+                throw new IllegalArgumentException("Line cannot be null");
+            }
+            if (!line.getProduct().getPrice().getCurrency().equals(currency)) {
+                throw new IllegalArgumentException("Product is not priced in cart currency " + currency);
+            }
+            if (!productIds.add(line.getProduct().getId())) {
+                throw new IllegalArgumentException("Product " + line.getProduct().getId() + " appears in more than one line");
+            }
+            copies.add(new LineItem(line.getId(), line.getProduct(), line.getQuantity()));
+        }
+        this.state.set(CartState.restored(copies, status, version));
+    }
+
+    // New cart whose own id and line ids all come from ids.
+    public Cart(IdGenerator ids, Currency currency) {
+        this(requireIds(ids).nextId(), currency, ids);
     }
 
-    public int getId() {
+    public long getId() {
         return id;
     }
 
-    public double getTotalAmount() {
-        double total = 0;
-        for (LineItem item : lineItems) {
-            total += item.getSubTotal();
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public CartStatus getStatus() {
+        return state.get().status;
+    }
+
+    // Version of the cart's contents; changes on every line or status change.
+    public long getVersion() {
+        return state.get().version;
+    }
+
+    public CartSnapshot snapshot() {
+        return new CartSnapshot(current(), currency);
+    }
+
+    // Copies of the line items in the order they were added; changing them does not change the cart.
+    public List<LineItem> getLineItems() {
+        return snapshot().getLineItems();
+    }
+
+    public synchronized void addListener(CartListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        List<CartListener> next = listeners == null ? new ArrayList<>(2) : new ArrayList<>(listeners);
+        next.add(listener);
+        listeners = next;
+        // lock-free writers that read the state before this point now fail their compare-and-set
+        while (true) {
+            CartState current = state.get();
+            if (state.compareAndSet(current, current.copy())) {
+                return;
+            }
         }
-        return total;
     }
 
-    public int getTotalItems() {
-        int total = 0;
-        for (LineItem item : lineItems) {
-            total += item.getQuantity();
+    public Money getTotalAmount() {
+        return Money.ofMinor(current().totalAmountMinor, currency);
+    }
+
+    // Total priced entirely against one price source (e.g. a catalog version). O(lines).
+    public Money getTotalAmount(PriceLookup prices) {
+        if (prices == null) {
+            throw new IllegalArgumentException("PriceLookup cannot be null");
+        }
+        long total = 0;
+        for (CartState.Line line : state.get().linesInOrder()) {
+            Money price = prices.priceOf(line.product.getId());
+            total = MoneyMath.add(total, MoneyMath.multiply(price.getAmountMinor(), line.quantity));
         }
-        return total;
+        return Money.ofMinor(total, currency);
     }
 
-    public void addProduct(Product product, int quantity) {
-        ensureActive();
+    public int getTotalItems() {
+        return state.get().totalItems;
+    }
 
+    public void addProduct(Product product, int quantity) {
         if (product == null)
             throw new IllegalArgumentException("Product cannot be null");
 
         if (quantity <= 0)
             throw new IllegalArgumentException("Quantity must be greater than zero");
 
-        for (LineItem item : lineItems) {
-            if (item.getProduct().getId() == product.getId()) {
-                item.updateQuantity(item.getQuantity() + quantity);
-                return;
+        if (!product.getPrice().getCurrency().equals(currency))
+            throw new IllegalArgumentException("Product is not priced in cart currency " + currency);
+
+        if (listeners != null || add(product, quantity, false) == Attempt.LOCK_REQUIRED) {
+            synchronized (this) {
+                add(product, quantity, true);
             }
         }
-
-        lineItems.add(new LineItem(product, quantity));
     }
 
     public void removeProduct(int productId) {
-        ensureActive();
-
-        boolean removed = lineItems.removeIf(
-            item -> item.getProduct().getId() == productId
-        );
+        setQuantity(productId, 0, -1);
+    }
 
-        if (!removed) {
-            throw new IllegalArgumentException("Product not found in cart");
-        }
+    // Removes the product only if the cart is still at expectedVersion; false if it changed meanwhile.
+    public boolean removeProduct(int productId, long expectedVersion) {
+        return setQuantity(productId, 0, expectedVersion);
     }
 
     public void updateQuantity(int productId, int newQuantity) {
-        ensureActive();
+        if (newQuantity <= 0)
+            throw new IllegalArgumentException("Quantity must be greater than zero");
+
+        setQuantity(productId, newQuantity, -1);
+    }
 
+    // Sets the quantity only if the cart is still at expectedVersion; false if it changed meanwhile.
+    public boolean updateQuantity(int productId, int newQuantity, long expectedVersion) {
         if (newQuantity <= 0)
             throw new IllegalArgumentException("Quantity must be greater than zero");
 
-        for (LineItem item : lineItems) {
-            if (item.getProduct().getId() == productId) {
-                item.updateQuantity(newQuantity);
+        return setQuantity(productId, newQuantity, expectedVersion);
+    }
+
+    // Id of the product's line, or -1 if the product is not in the cart.
+    public long getLineId(int productId) {
+        CartState.Line line = state.get().find(productId);
+        return line == null ? -1 : line.id;
+    }
+
+    // Replication: appends a line recorded on another copy of this cart, keeping its id, so both
+    // copies list the same lines in the same order. The product must not be in the cart (a replaced
+    // line is removed first). The cart's version becomes version if that is newer, else stays.
+    public synchronized void replicateNewLine(long lineId, Product product, int quantity, long version) {
+        if (product == null)
+            throw new IllegalArgumentException("Product cannot be null");
+
+        if (quantity <= 0)
+            throw new IllegalArgumentException("Quantity must be greater than zero");
+
+        if (!product.getPrice().getCurrency().equals(currency))
+            throw new IllegalArgumentException("Product is not priced in cart currency " + currency);
+
+        while (true) {
+            CartState current = current();
+            ensureActive(current);
+            if (current.find(product.getId()) != null) {
+                throw new IllegalStateException("Product " + product.getId() + " is already in the cart");
+            }
+            CartState next = current.withNewLine(lineId, product, quantity).withVersion(Math.max(current.version, version));
+            if (state.compareAndSet(current, next)) {
+                fireLineChanged(product, 0, quantity);
+                return;
+            }
+        }
+    }
+
+    // Replication: sets the quantity (0 removes) of the product's line, which must be lineId; a
+    // different line means this copy has diverged from the sender's. The cart's version becomes
+    // version if that is newer, else stays.
+    public synchronized void replicateQuantity(long lineId, int productId, int quantity, long version) {
+        if (quantity < 0)
+            throw new IllegalArgumentException("Quantity cannot be negative");
+
+        while (true) {
+            CartState current = current();
+            ensureActive(current);
+            CartState.Line line = current.find(productId);
+            if (line == null || line.id != lineId) {
+                throw new IllegalStateException("Cart has no line " + lineId + " for product " + productId);
+            }
+            CartState next = current.withQuantity(productId, quantity).withVersion(Math.max(current.version, version));
+            if (state.compareAndSet(current, next)) {
+                fireLineChanged(line.product, line.quantity, quantity);
                 return;
             }
         }
+    }
 
-        throw new IllegalArgumentException("Product not found in cart");
+    // Replication: moves the cart to the sender's version (if newer) after changes that left no
+    // line to replicate, e.g. a line added and removed again.
+    public synchronized void replicateVersion(long version) {
+        while (true) {
+            CartState current = state.get();
+            if (version <= current.version || state.compareAndSet(current, current.withVersion(version))) {
+                return;
+            }
+        }
     }
 
     public void checkout() {
-        ensureActive();
+        if (listeners != null || changeStatus(CartStatus.CHECKED_OUT, false) == Attempt.LOCK_REQUIRED) {
+            synchronized (this) {
+                changeStatus(CartStatus.CHECKED_OUT, true);
+            }
+        }
+    }
+
+    // Returns a checked-out cart to ACTIVE, e.g. when a later checkout step (stock, payment) fails.
+    public void reopen() {
+        if (listeners != null || changeStatus(CartStatus.ACTIVE, false) == Attempt.LOCK_REQUIRED) {
+            synchronized (this) {
+                changeStatus(CartStatus.ACTIVE, true);
+            }
+        }
+    }
+
+    // Catches up with price changes now rather than on the next read (used by background refreshers).
+    public void refreshPrices() {
+        current();
+    }
+
+    // Snapshot of the lines at current prices, in the order they were added. Used to build an Order.
+    public List<OrderLineItem> toOrderLineItems() {
+        CartState.Line[] lines = current().linesInOrder();
+        List<OrderLineItem> snapshot = new ArrayList<>(lines.length);
+        for (CartState.Line line : lines) {
+            Product product = line.product;
+            snapshot.add(new OrderLineItem(product.getId(), product.getProductName(),
+                    Money.ofMinor(line.unitPriceMinor, currency), line.quantity));
+        }
+        return snapshot;
+    }
+
+    // Same snapshot, but every line is priced against the one given price source.
+    public List<OrderLineItem> toOrderLineItems(PriceLookup prices) {
+        if (prices == null) {
+            throw new IllegalArgumentException("PriceLookup cannot be null");
+        }
+        CartState.Line[] lines = state.get().linesInOrder();
+        List<OrderLineItem> snapshot = new ArrayList<>(lines.length);
+        for (CartState.Line line : lines) {
+            Product product = line.product;
+            snapshot.add(new OrderLineItem(product.getId(), product.getProductName(), prices.priceOf(product.getId()), line.quantity));
+        }
+        return snapshot;
+    }
+
+    // Commutative: on a lost race the quantity is added again to whatever the newer state holds.
+    // Unlocked, it gives up (LOCK_REQUIRED) as soon as a listener is registered.
+    private Attempt add(Product product, int quantity, boolean locked) {
+        long lineId = -1; // allocated once, on the first attempt that creates the line
+        while (true) {
+            CartState current = current();
+            if (!locked && listeners != null) {
+                return Attempt.LOCK_REQUIRED;
+            }
+            ensureActive(current);
+            CartState.Line line = current.find(product.getId());
+            int oldQuantity = line == null ? 0 : line.quantity;
+            if (line == null && lineId < 0) {
+                lineId = lineIds == null ? 0 : lineIds.nextId();
+            }
+            CartState next = line == null
+                    ? current.withNewLine(lineId, product, quantity)
+                    : current.withQuantity(product.getId(), oldQuantity + quantity);
+            if (state.compareAndSet(current, next)) {
+                if (locked) {
+                    fireLineChanged(product, oldQuantity, oldQuantity + quantity);
+                }
+                return Attempt.APPLIED;
+            }
+        }
+    }
+
+    // expectedVersion < 0: apply to the latest state; otherwise only to that exact version.
+    private boolean setQuantity(int productId, int newQuantity, long expectedVersion) {
+        Attempt attempt = listeners == null ? set(productId, newQuantity, expectedVersion, false) : Attempt.LOCK_REQUIRED;
+        if (attempt == Attempt.LOCK_REQUIRED) {
+            synchronized (this) {
+                attempt = set(productId, newQuantity, expectedVersion, true);
+            }
+        }
+        return attempt == Attempt.APPLIED;
+    }
+
+    private Attempt set(int productId, int newQuantity, long expectedVersion, boolean locked) {
+        while (true) {
+            CartState current = current();
+            if (!locked && listeners != null) {
+                return Attempt.LOCK_REQUIRED;
+            }
+            ensureActive(current);
+            if (expectedVersion >= 0 && current.version != expectedVersion) {
+                return Attempt.STALE;
+            }
+            CartState.Line line = current.find(productId);
+            if (line == null) {
+                throw new IllegalArgumentException("Product not found in cart");
+            }
+            if (state.compareAndSet(current, current.withQuantity(productId, newQuantity))) {
+                if (locked) {
+                    fireLineChanged(line.product, line.quantity, newQuantity);
+                }
+                return Attempt.APPLIED;
+            }
+        }
+    }
 
-        if (lineItems.isEmpty()) {
-            throw new IllegalStateException("Cart is empty");
+    private Attempt changeStatus(CartStatus newStatus, boolean locked) {
+        while (true) {
+            CartState current = current();
+            if (!locked && listeners != null) {
+                return Attempt.LOCK_REQUIRED;
+            }
+            if (newStatus == CartStatus.CHECKED_OUT) {
+                ensureActive(current);
+                if (current.lineCount == 0) {
+                    throw new IllegalStateException("Cart is empty");
+                }
+            } else if (current.status != CartStatus.CHECKED_OUT) {
+                throw new IllegalStateException("Cart is not checked out");
+            }
+            if (state.compareAndSet(current, current.withStatus(newStatus))) {
+                if (locked) {
+                    fireStatusChanged(current.status, newStatus);
+                }
+                return Attempt.APPLIED;
+            }
         }
+    }
 
-        status = CartStatus.CHECKED_OUT;
+    // Latest state with price changes applied. Installing the repriced state is best effort:
+    // if a writer got in first, the caller still gets a consistent (repriced) view.
+    private CartState current() {
+        CartState current = state.get();
+        CartState repriced = current.repricedThrough(PriceChangeLog.latest());
+        if (repriced != current) {
+            state.compareAndSet(current, repriced);
+        }
+        return repriced;
     }
 
-    private void ensureActive() {
-        if (status != CartStatus.ACTIVE) {
+    private void fireLineChanged(Product product, int oldQuantity, int newQuantity) {
+        List<CartListener> current = listeners;
+        if (current == null) {
+            return;
+        }
+        for (CartListener listener : current) {
+            try {
+                listener.lineChanged(this, product, oldQuantity, newQuantity);
+            } catch (RuntimeException e) {
+                reportListenerFailure(e);
+            }
+        }
+    }
+
+    private void fireStatusChanged(CartStatus oldStatus, CartStatus newStatus) {
+        List<CartListener> current = listeners;
+        if (current == null) {
+            return;
+        }
+        for (CartListener listener : current) {
+            try {
+                listener.statusChanged(this, oldStatus, newStatus);
+            } catch (RuntimeException e) {
+                reportListenerFailure(e);
+            }
+        }
+    }
+
+    // Handed to the thread's uncaught-exception handler (by default printed): the change is already
+    // committed, so the caller must see it succeed and the remaining listeners must still hear of it.
+    private static void reportListenerFailure(RuntimeException e) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+
+    private static IdGenerator requireIds(IdGenerator ids) {
+        if (ids == null) {
+            throw new IllegalArgumentException("IdGenerator cannot be null");
+        }
+        return ids;
+    }
+
+    // Outcome of one write attempt. A write without the monitor stops with LOCK_REQUIRED once a
+    // listener is registered; its caller then redoes it under the monitor.
+    private enum Attempt { APPLIED, STALE, LOCK_REQUIRED }
+
+    private static void ensureActive(CartState current) {
+        if (current.status != CartStatus.ACTIVE) {
             throw new IllegalStateException("Cart is not active");
         }
     }
-}
\ No newline at end of file
+}
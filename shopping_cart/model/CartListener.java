@@ -0,0 +1,16 @@
+package shopping_cart.model;
+
+// Observer of line changes on a Cart, so derived state (discounts, indexes) can follow
+// each change incrementally instead of re-reading the whole cart.
+// A quantity of 0 means the product is not (or no longer) in the cart.
+// Listeners run after the change is committed, under the cart's monitor. An exception does not undo
+// the change or fail the caller's write: it goes to the thread's uncaught-exception handler and the
+// remaining listeners are still called.
+public interface CartListener {
+
+    void lineChanged(Cart cart, Product product, int oldQuantity, int newQuantity);
+
+    // Checkout and reopen. Most listeners only care about lines.
+    default void statusChanged(Cart cart, CartStatus oldStatus, CartStatus newStatus) {
+    }
+}
@@ -0,0 +1,54 @@
+package shopping_cart.model;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+// Consistent view of a Cart at one version: lines, totals and status all belong together.
+// Pass getVersion() to Cart's conditional mutations to apply a change only if nothing else
+// changed the cart since this view was taken.
+public final class CartSnapshot {
+
+    private final long version;
+    private final CartStatus status;
+    private final List<LineItem> lineItems;
+    private final int totalItems;
+    private final Money totalAmount;
+
+    CartSnapshot(CartState state, Currency currency) {
+        this.version = state.version;
+        this.status = state.status;
+        CartState.Line[] lines = state.linesInOrder();
+        this.lineItems = new ArrayList<>(lines.length);
+        for (CartState.Line line : lines) {
+            lineItems.add(new LineItem(line.id, line.product, line.quantity));
+        }
+        this.totalItems = state.totalItems;
+        this.totalAmount = Money.ofMinor(state.totalAmountMinor, currency);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public CartStatus getStatus() {
+        return status;
+    }
+
+    // Copies; changing them does not change the cart.
+    public List<LineItem> getLineItems() {
+        List<LineItem> copies = new ArrayList<>(lineItems.size());
+        for (LineItem item : lineItems) {
+            copies.add(new LineItem(item.getId(), item.getProduct(), item.getQuantity()));
+        }
+        return copies;
+    }
+
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    public Money getTotalAmount() {
+        return totalAmount;
+    }
+}
@@ -0,0 +1,383 @@
+package shopping_cart.model;
+
+import java.util.List;
+
+import shopping_cart.util.MoneyMath;
+
+// Immutable state of a Cart at one version, built from two persistent structures that share
+// everything a mutation does not touch:
+//
+// - lines: a hash array mapped trie (HAMT) from product id to Line, 32 ways per level. Changing,
+//   adding or removing a line copies only the O(log32 lines) nodes on its path.
+// - order: a 32-way trie indexed by line sequence, holding the product id of the line added at
+//   that position. Only new lines append to it; removed lines leave holes that readers skip (a
+//   hole's product is gone, or is back under a newer sequence). When holes outnumber lines the
+//   lines are renumbered, which is amortized O(1) per removal.
+//
+// So a write costs O(log32 lines) and an ordered read O(lines), neither with a per-cart-size copy
+// or sort. totalAmountMinor is always the sum of each line's stamped unit price times its quantity.
+final class CartState {
+
+    private static final Node EMPTY_NODE = new Node(0, new Object[0]);
+
+    final long version; // bumped by line and status changes, not by repricing
+    final CartStatus status;
+    final int lineCount;
+    final int totalItems;
+    final long totalAmountMinor;
+    final long pricedThrough; // last PriceChangeLog sequence applied to the line stamps
+    private final Node lines;
+    private final Order order; // its size is the next line sequence
+
+    private CartState(long version, CartStatus status, Node lines, Order order, int lineCount, int totalItems,
+                      long totalAmountMinor, long pricedThrough) {
+        this.version = version;
+        this.status = status;
+        this.lines = lines;
+        this.order = order;
+        this.lineCount = lineCount;
+        this.totalItems = totalItems;
+        this.totalAmountMinor = totalAmountMinor;
+        this.pricedThrough = pricedThrough;
+    }
+
+    static CartState empty() {
+        return new CartState(0, CartStatus.ACTIVE, EMPTY_NODE, Order.EMPTY, 0, 0, 0, PriceChangeLog.latest());
+    }
+
+    // State restored from storage: the given lines in order, each priced now, at the given version.
+    static CartState restored(List<LineItem> items, CartStatus status, long version) {
+        CartState state = new CartState(version, status, EMPTY_NODE, Order.EMPTY, 0, 0, 0, PriceChangeLog.latest());
+        for (LineItem item : items) {
+            Line line = Line.priced(item.getId(), item.getProduct(), item.getQuantity(), state.order.size);
+            state = state.replace(item.getProduct().getId(), line, version, state.order.with(item.getProduct().getId()));
+        }
+        return state;
+    }
+
+    Line find(int productId) {
+        return get(lines, hash(productId), productId);
+    }
+
+    // Next version with a new line for the product, stamped at its current price.
+    CartState withNewLine(long lineId, Product product, int quantity) {
+        Line line = Line.priced(lineId, product, quantity, order.size);
+        return replace(product.getId(), line, version + 1, order.with(product.getId()));
+    }
+
+    // Next version with the line's quantity changed (0 removes the line).
+    CartState withQuantity(int productId, int quantity) {
+        Line line = find(productId);
+        CartState next = replace(productId, quantity == 0 ? null : line.withQuantity(quantity), version + 1, order);
+        // holes in the order trie: renumber once they outnumber the lines (plus one leaf of slack)
+        return quantity == 0 && next.order.size - next.lineCount > next.lineCount + Order.WIDTH ? next.renumbered() : next;
+    }
+
+    // Same state at another version: a replica follows the sender's versions, not its own.
+    CartState withVersion(long newVersion) {
+        return new CartState(newVersion, status, lines, order, lineCount, totalItems, totalAmountMinor, pricedThrough);
+    }
+
+    CartState withStatus(CartStatus newStatus) {
+        return new CartState(version + 1, newStatus, lines, order, lineCount, totalItems, totalAmountMinor, pricedThrough);
+    }
+
+    // Equal state under a new identity: a compare-and-set against the old object now fails.
+    CartState copy() {
+        return new CartState(version, status, lines, order, lineCount, totalItems, totalAmountMinor, pricedThrough);
+    }
+
+    // Same version with line stamps brought up to the price changes logged through `latest`.
+    // Walks only the logged changes, unless repricing every line is cheaper or the log has wrapped.
+    CartState repricedThrough(long latest) {
+        if (latest == pricedThrough) {
+            return this;
+        }
+        if (latest - pricedThrough > lineCount) {
+            return repriceAll(latest);
+        }
+        CartState state = this;
+        long sequence = pricedThrough + 1;
+        for (; sequence <= latest; sequence++) {
+            long productId = PriceChangeLog.productAt(sequence);
+            if (productId == PriceChangeLog.NOT_YET_WRITTEN) {
+                break; // that update is still in progress; pick it up next time
+            }
+            if (productId == PriceChangeLog.OVERWRITTEN) {
+                return repriceAll(latest);
+            }
+            if (productId == PriceChangeLog.BATCH) {
+                int[] batch = PriceChangeLog.batchAt(sequence);
+                if (batch == null || batch.length > lineCount) {
+                    return repriceAll(latest);
+                }
+                for (int changed : batch) {
+                    state = state.repricedLine(changed);
+                }
+            } else {
+                state = state.repricedLine((int) productId);
+            }
+        }
+        return state.withPricedThrough(sequence - 1);
+    }
+
+    private CartState repricedLine(int productId) {
+        Line line = find(productId);
+        if (line == null) {
+            return this;
+        }
+        Line repriced = line.repriced();
+        return repriced == line ? this : replace(productId, repriced, version, order);
+    }
+
+    // Lines in the order their products were first added.
+    Line[] linesInOrder() {
+        Line[] all = new Line[lineCount];
+        int n = 0;
+        for (int sequence = 0; sequence < order.size && n < lineCount; sequence++) {
+            Line line = find(order.get(sequence));
+            if (line != null && line.sequence == sequence) {
+                all[n++] = line;
+            }
+        }
+        return all;
+    }
+
+    private CartState repriceAll(long latest) {
+        long[] amount = new long[1];
+        Node repriced = repriceAll(lines, amount);
+        return new CartState(version, status, repriced, order, lineCount, totalItems, amount[0], latest);
+    }
+
+    private CartState withPricedThrough(long sequence) {
+        return new CartState(version, status, lines, order, lineCount, totalItems, totalAmountMinor, sequence);
+    }
+
+    // Inserts, replaces (line != null) or removes (line == null) one product's line.
+    private CartState replace(int productId, Line line, long newVersion, Order newOrder) {
+        int hash = hash(productId);
+        Line old = get(lines, hash, productId);
+        Node nextLines = line == null
+                ? (old == null ? lines : without(lines, hash, productId, 0))
+                : with(lines, hash, line, 0);
+        int nextLineCount = lineCount + (old == null && line != null ? 1 : 0) - (old != null && line == null ? 1 : 0);
+        int items = totalItems + (line == null ? 0 : line.quantity) - (old == null ? 0 : old.quantity);
+        long amount = MoneyMath.add(
+                MoneyMath.subtract(totalAmountMinor, old == null ? 0 : old.subtotalMinor()),
+                line == null ? 0 : line.subtotalMinor());
+        return new CartState(newVersion, status, nextLines, newOrder, nextLineCount, items, amount, pricedThrough);
+    }
+
+    // Same lines and order with sequences 0..lineCount-1 and no holes.
+    private CartState renumbered() {
+        Node nextLines = EMPTY_NODE;
+        Order nextOrder = Order.EMPTY;
+        for (Line line : linesInOrder()) {
+            int productId = line.product.getId();
+            nextLines = with(nextLines, hash(productId), line.withSequence(nextOrder.size), 0);
+            nextOrder = nextOrder.with(productId);
+        }
+        return new CartState(version, status, nextLines, nextOrder, lineCount, totalItems, totalAmountMinor, pricedThrough);
+    }
+
+    // Bijective on int, so two product ids never share a full 32-bit hash: no collision nodes needed.
+    private static int hash(int productId) {
+        int h = productId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int bitFor(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    private static Line get(Node node, int hash, int productId) {
+        for (int shift = 0; ; shift += 5) {
+            int bit = bitFor(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (slot instanceof Node) {
+                node = (Node) slot;
+            } else {
+                Line line = (Line) slot;
+                return line.product.getId() == productId ? line : null;
+            }
+        }
+    }
+
+    // Copy of the path to the line's slot with the line inserted or replacing the same product's.
+    private static Node with(Node node, int hash, Line line, int shift) {
+        int bit = bitFor(hash, shift);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            slots[index] = line;
+            System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+            return new Node(node.bitmap | bit, slots);
+        }
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof Node) {
+            replacement = with((Node) slot, hash, line, shift + 5);
+        } else {
+            Line existing = (Line) slot;
+            int existingId = existing.product.getId();
+            replacement = existingId == line.product.getId()
+                    ? line
+                    : pair(existing, hash(existingId), line, hash, shift + 5);
+        }
+        Object[] slots = node.slots.clone();
+        slots[index] = replacement;
+        return new Node(node.bitmap, slots);
+    }
+
+    // Smallest subtree holding two lines whose hashes agree below shift.
+    private static Node pair(Line a, int hashA, Line b, int hashB, int shift) {
+        int bitA = bitFor(hashA, shift);
+        int bitB = bitFor(hashB, shift);
+        if (bitA == bitB) {
+            return new Node(bitA, new Object[] { pair(a, hashA, b, hashB, shift + 5) });
+        }
+        return new Node(bitA | bitB, Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[] { a, b } : new Object[] { b, a });
+    }
+
+    // Copy of the path without the product's line; a subtree left with a single line is folded into its parent.
+    private static Node without(Node node, int hash, int productId, int shift) {
+        int bit = bitFor(hash, shift);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        Object slot = node.slots[index];
+        if (slot instanceof Node) {
+            Node child = without((Node) slot, hash, productId, shift + 5);
+            if (child == slot) {
+                return node;
+            }
+            Object[] slots = node.slots.clone();
+            slots[index] = child.slots.length == 1 && !(child.slots[0] instanceof Node) ? child.slots[0] : child;
+            return new Node(node.bitmap, slots);
+        }
+        if (((Line) slot).product.getId() != productId) {
+            return node;
+        }
+        Object[] slots = new Object[node.slots.length - 1];
+        System.arraycopy(node.slots, 0, slots, 0, index);
+        System.arraycopy(node.slots, index + 1, slots, index, node.slots.length - index - 1);
+        return new Node(node.bitmap & ~bit, slots);
+    }
+
+    private static Node repriceAll(Node node, long[] amount) {
+        Object[] slots = node.slots.clone();
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] instanceof Node) {
+                slots[i] = repriceAll((Node) slots[i], amount);
+            } else {
+                Line line = ((Line) slots[i]).repriced();
+                slots[i] = line;
+                amount[0] = MoneyMath.add(amount[0], line.subtotalMinor());
+            }
+        }
+        return new Node(node.bitmap, slots);
+    }
+
+    // One cart line: product, quantity and the price it is counted at.
+    static final class Line {
+        final long id;
+        final Product product;
+        final int quantity;
+        final int sequence; // position in the cart's order trie
+        final long pricedVersion;
+        final long unitPriceMinor;
+
+        private Line(long id, Product product, int quantity, int sequence, long pricedVersion, long unitPriceMinor) {
+            this.id = id;
+            this.product = product;
+            this.quantity = quantity;
+            this.sequence = sequence;
+            this.pricedVersion = pricedVersion;
+            this.unitPriceMinor = unitPriceMinor;
+        }
+
+        // Version is read before price: if a price change races us the line only looks stale.
+        private static Line priced(long id, Product product, int quantity, int sequence) {
+            long version = product.getPriceVersion();
+            return new Line(id, product, quantity, sequence, version, product.getPrice().getAmountMinor());
+        }
+
+        private Line withQuantity(int newQuantity) {
+            return new Line(id, product, newQuantity, sequence, pricedVersion, unitPriceMinor);
+        }
+
+        private Line withSequence(int newSequence) {
+            return new Line(id, product, quantity, newSequence, pricedVersion, unitPriceMinor);
+        }
+
+        private Line repriced() {
+            return product.getPriceVersion() == pricedVersion ? this : priced(id, product, quantity, sequence);
+        }
+
+        long subtotalMinor() {
+            return MoneyMath.multiply(unitPriceMinor, quantity);
+        }
+    }
+
+    // HAMT node: slots holds a Line or a child Node for each bit set in bitmap, in bit order.
+    private static final class Node {
+        private final int bitmap;
+        private final Object[] slots;
+
+        private Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    // Persistent append-only vector of product ids, a 32-way trie indexed by line sequence.
+    // Leaves are int[WIDTH]; inner nodes are Object[WIDTH]. Appending copies one root-to-leaf path.
+    private static final class Order {
+        private static final int WIDTH = 32;
+        private static final Order EMPTY = new Order(0, 0, null);
+
+        private final int size;
+        private final int shift; // 0: root is a leaf
+        private final Object root;
+
+        private Order(int size, int shift, Object root) {
+            this.size = size;
+            this.shift = shift;
+            this.root = root;
+        }
+
+        private int get(int index) {
+            Object node = root;
+            for (int level = shift; level > 0; level -= 5) {
+                node = ((Object[]) node)[(index >>> level) & 31];
+            }
+            return ((int[]) node)[index & 31];
+        }
+
+        private Order with(int productId) {
+            if (size == 1 << (shift + 5)) { // full: grow a level
+                Object[] grown = new Object[WIDTH];
+                grown[0] = root;
+                return new Order(size + 1, shift + 5, appended(grown, shift + 5, size, productId));
+            }
+            return new Order(size + 1, shift, appended(root, shift, size, productId));
+        }
+
+        private static Object appended(Object node, int shift, int index, int productId) {
+            if (shift == 0) {
+                int[] leaf = node == null ? new int[WIDTH] : ((int[]) node).clone();
+                leaf[index & 31] = productId;
+                return leaf;
+            }
+            Object[] inner = node == null ? new Object[WIDTH] : ((Object[]) node).clone();
+            int slot = (index >>> shift) & 31;
+            inner[slot] = appended(inner[slot], shift - 5, index, productId);
+            return inner;
+        }
+    }
+}
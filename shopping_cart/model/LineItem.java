@@ -3,11 +3,11 @@ package shopping_cart.model;
 import java.util.Objects;
 
 public class LineItem {
-    private final int id;
+    private final long id;
     private Product product;
     private int quantity;
 
-    public LineItem(int id, Product product, int quantity){
+    public LineItem(long id, Product product, int quantity){
         if(product==null){
             throw new IllegalArgumentException("Product cannot be null");
         }
@@ -20,10 +20,10 @@ public class LineItem {
     }
 
     public LineItem(Product product, int quantity){
-        this(0, product, quantity); // id will be set by Cart when adding the line item
+        this(0, product, quantity); // 0: no id assigned (see Cart)
     }
 
-    public int getId(){
+    public long getId(){
         return this.id;
     }
 
@@ -34,8 +34,8 @@ public class LineItem {
         return this.quantity;
     }
 
-    public double getSubTotal(){
-        return this.product.getPrice()*this.quantity;
+    public Money getSubTotal(){
+        return this.product.getPrice().times(this.quantity);
     }
 
     public void updateQuantity(int newQuantity){
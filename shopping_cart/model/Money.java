@@ -0,0 +1,123 @@
+package shopping_cart.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+import shopping_cart.util.MoneyMath;
+
+// Exact fixed-point money: an amount in minor units (cents, paise, ...) plus its currency.
+// Immutable value object. Hot loops (cart totals, order sums) work on the raw minor units
+// through MoneyMath and only wrap the result in a Money at the edges.
+public final class Money implements Comparable<Money> {
+
+    private final long amountMinor;
+    private final Currency currency;
+
+    private Money(long amountMinor, Currency currency) {
+        this.amountMinor = amountMinor;
+        this.currency = currency;
+    }
+
+    public static Money ofMinor(long amountMinor, Currency currency) {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency cannot be null");
+        }
+        if (currency.getDefaultFractionDigits() < 0) {
+            throw new IllegalArgumentException("Currency " + currency + " has no minor unit");
+        }
+        return new Money(amountMinor, currency);
+    }
+
+    // Parses a decimal amount such as "19.99". Fails if it has more decimals than the currency allows.
+    public static Money of(String amount, Currency currency) {
+        if (amount == null || amount.isBlank()) {
+            throw new IllegalArgumentException("Amount cannot be null or empty");
+        }
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency cannot be null");
+        }
+        try {
+            BigDecimal minor = new BigDecimal(amount.trim()).movePointRight(currency.getDefaultFractionDigits());
+            return ofMinor(minor.longValueExact(), currency);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid amount " + amount + " for currency " + currency);
+        }
+    }
+
+    public static Money zero(Currency currency) {
+        return ofMinor(0, currency);
+    }
+
+    public long getAmountMinor() {
+        return amountMinor;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public boolean isNegative() {
+        return amountMinor < 0;
+    }
+
+    public boolean isZero() {
+        return amountMinor == 0;
+    }
+
+    public Money plus(Money other) {
+        ensureSameCurrency(other);
+        return new Money(MoneyMath.add(amountMinor, other.amountMinor), currency);
+    }
+
+    public Money minus(Money other) {
+        ensureSameCurrency(other);
+        return new Money(MoneyMath.subtract(amountMinor, other.amountMinor), currency);
+    }
+
+    public Money times(int quantity) {
+        return new Money(MoneyMath.multiply(amountMinor, quantity), currency);
+    }
+
+    // this * numerator / denominator, e.g. percentage discounts.
+    public Money multiplyRatio(long numerator, long denominator, RoundingMode rounding) {
+        return new Money(MoneyMath.multiplyRatio(amountMinor, numerator, denominator, rounding), currency);
+    }
+
+    public BigDecimal toDecimal() {
+        return BigDecimal.valueOf(amountMinor, currency.getDefaultFractionDigits());
+    }
+
+    void ensureSameCurrency(Money other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Money cannot be null");
+        }
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " vs " + other.currency);
+        }
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        ensureSameCurrency(other);
+        return Long.compare(amountMinor, other.amountMinor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Money)) return false;
+        Money other = (Money) o;
+        return amountMinor == other.amountMinor && currency.equals(other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(amountMinor) + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return currency.getCurrencyCode() + " " + toDecimal().toPlainString();
+    }
+}
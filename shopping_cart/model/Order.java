@@ -1,35 +1,58 @@
 package shopping_cart.model;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Currency;
 import java.util.List;
 
+import shopping_cart.util.MoneyMath;
+
 public class Order {
-     private final int id;
+     private final long id;
      private final User user;
      private final List<OrderLineItem> lineItems;
-     private final double totalAmount;
+     private final Money totalAmount;
+     private final Instant createdAt;
+
+     public Order(long id, User user, List<OrderLineItem> lineItems){
+         this(id, user, lineItems, Instant.now());
+     }
 
-     public Order(int id, User user, List<OrderLineItem> lineItems){
+     public Order(long id, User user, List<OrderLineItem> lineItems, Instant createdAt){
          if(user==null){
              throw new IllegalArgumentException("User cannot be null");
          }
          if(lineItems==null || lineItems.size()==0){
              throw new IllegalArgumentException("Order must have at least one line item");
          }
+         if(createdAt==null){
+             throw new IllegalArgumentException("Creation time cannot be null");
+         }
          this.id=id;
          this.user=user;
-         this.lineItems=lineItems;
+         this.lineItems=new ArrayList<>(lineItems);
+         this.createdAt=createdAt;
          this.totalAmount=calculateTotalAmount();
      }
 
-    private double calculateTotalAmount(){
-        double total=0;
-        for(OrderLineItem item: lineItems){
-            total+=item.getSubTotal();
+    // Sums all lines in one pass over primitive minor units (vectorizable for large orders).
+    private Money calculateTotalAmount(){
+        Currency currency=lineItems.get(0).getPriceAtPurchase().getCurrency();
+        int size=lineItems.size();
+        long[] unitPrices=new long[size];
+        int[] quantities=new int[size];
+        for(int i=0;i<size;i++){
+            OrderLineItem item=lineItems.get(i);
+            if(!item.getPriceAtPurchase().getCurrency().equals(currency)){
+                throw new IllegalArgumentException("All order line items must use the same currency");
+            }
+            unitPrices[i]=item.getPriceAtPurchase().getAmountMinor();
+            quantities[i]=item.getQuantity();
         }
-        return total;
+        return Money.ofMinor(MoneyMath.dot(unitPrices, quantities, size), currency);
     }
     
-     public int getId(){
+     public long getId(){
          return this.id;
      }
 
@@ -37,8 +60,16 @@ public class Order {
          return this.user;
      }
 
-     public double getTotalAmount(){
+     public Money getTotalAmount(){
          return this.totalAmount;
      }
 
+     public Instant getCreatedAt(){
+         return this.createdAt;
+     }
+
+     public List<OrderLineItem> getLineItems(){
+         return new ArrayList<>(this.lineItems);
+     }
+
 }
@@ -3,14 +3,17 @@ package shopping_cart.model;
 public class OrderLineItem {
      private final int productId;
      private final String productName;
-     private final double priceAtPurchase;
+     private final Money priceAtPurchase;
      private final int quantity;
 
-     public OrderLineItem(int productId, String productName, double priceAtPurchase, int quantity){
+     public OrderLineItem(int productId, String productName, Money priceAtPurchase, int quantity){
          if(productName==null || productName.isBlank()){
              throw new IllegalArgumentException("Please Enter the product name");
          }
-         if(priceAtPurchase<0){
+         if(priceAtPurchase==null){
+             throw new IllegalArgumentException("Price cannot be null");
+         }
+         if(priceAtPurchase.isNegative()){
              throw new IllegalArgumentException("Price cannot be negative");
          }
          if(quantity<=0){
@@ -22,7 +25,23 @@ public class OrderLineItem {
          this.quantity=quantity;
      }
 
-     public double getSubTotal() {
-        return priceAtPurchase * quantity;
+     public int getProductId() {
+        return productId;
+     }
+
+     public String getProductName() {
+        return productName;
+     }
+
+     public Money getPriceAtPurchase() {
+        return priceAtPurchase;
+     }
+
+     public int getQuantity() {
+        return quantity;
+     }
+
+     public Money getSubTotal() {
+        return priceAtPurchase.times(quantity);
     }
 }
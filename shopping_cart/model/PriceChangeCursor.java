@@ -0,0 +1,72 @@
+package shopping_cart.model;
+
+import java.util.function.IntConsumer;
+
+// A reader's position in the process-wide log of price changes (see PriceChangeLog), for pricing
+// state kept outside this package. Each advance hands over only the products whose price changed
+// since the previous one, so the reader can reprice just those instead of everything it holds.
+// Not thread-safe; each reader owns its cursor.
+public final class PriceChangeCursor {
+
+    private long position;
+
+    // Starts at the latest change: only later price changes are reported.
+    public PriceChangeCursor() {
+        this.position = PriceChangeLog.latest();
+    }
+
+    // Number of price changes logged since this cursor's position. A bulk update counts once,
+    // however many products it repriced.
+    public long pending() {
+        return PriceChangeLog.latest() - position;
+    }
+
+    // Passes the id of every product repriced since the last call (a product may come more than
+    // once) and moves past them. Returns false if the log has already overwritten some of those
+    // entries: the cursor then skips to the latest change and the caller must check all its
+    // products itself.
+    public boolean advance(IntConsumer changedProduct) {
+        return advance(changedProduct, Long.MAX_VALUE);
+    }
+
+    // As advance(changedProduct), but also gives up (returning false, as for an overwritten log)
+    // rather than report more than limit products, e.g. after a bulk update larger than what the
+    // caller holds. Products reported before giving up may come again in a later call.
+    public boolean advance(IntConsumer changedProduct, long limit) {
+        if (changedProduct == null) {
+            throw new IllegalArgumentException("Consumer cannot be null");
+        }
+        long latest = PriceChangeLog.latest();
+        long sequence = position + 1;
+        long reported = 0;
+        for (; sequence <= latest; sequence++) {
+            long productId = PriceChangeLog.productAt(sequence);
+            if (productId == PriceChangeLog.NOT_YET_WRITTEN) {
+                break; // that update is still in progress; it is reported next time
+            }
+            int[] batch = productId == PriceChangeLog.BATCH ? PriceChangeLog.batchAt(sequence) : null;
+            int count = batch != null ? batch.length : 1;
+            if (productId == PriceChangeLog.OVERWRITTEN || (productId == PriceChangeLog.BATCH && batch == null)
+                    || reported + count > limit) {
+                position = latest;
+                return false;
+            }
+            reported += count;
+            if (batch == null) {
+                changedProduct.accept((int) productId);
+            } else {
+                for (int changed : batch) {
+                    changedProduct.accept(changed);
+                }
+            }
+        }
+        position = sequence - 1;
+        return true;
+    }
+
+    // Moves to the latest change without reporting anything; for callers about to check all their
+    // products anyway. Every price logged up to here is already visible on its Product.
+    public void skipToLatest() {
+        position = PriceChangeLog.latest();
+    }
+}
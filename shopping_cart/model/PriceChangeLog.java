@@ -0,0 +1,79 @@
+package shopping_cart.model;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Process-wide ring of recent price changes: sequence number -> product id.
+//
+// A price update appends one entry (O(1), no matter how many carts hold the product). A cart
+// remembers the last sequence it has applied and, on its next read, walks only the entries
+// after it, repricing just the lines whose product appears there. A cart that fell more than
+// CAPACITY changes behind finds its entries overwritten and re-prices all of its lines instead.
+// A bulk update (Product.updatePrices) is one entry holding all of its product ids (a BATCH).
+final class PriceChangeLog {
+
+    static final long OVERWRITTEN = -1;
+    static final long NOT_YET_WRITTEN = -2;
+    static final long BATCH = -3;
+
+    private static final int CAPACITY = 1 << 14;
+    private static final int MASK = CAPACITY - 1;
+
+    private static final AtomicLong LATEST = new AtomicLong();
+    private static final AtomicIntegerArray PRODUCT_IDS = new AtomicIntegerArray(CAPACITY);
+    private static final AtomicReferenceArray<int[]> BATCHES = new AtomicReferenceArray<>(CAPACITY);
+    // sequence stored in each slot once its product id is written; lets readers detect reuse
+    private static final AtomicLongArray STAMPS = new AtomicLongArray(CAPACITY);
+
+    private PriceChangeLog() {
+    }
+
+    static void append(int productId) {
+        write(productId, null);
+    }
+
+    static void appendAll(int[] productIds) {
+        write(0, productIds);
+    }
+
+    private static void write(int productId, int[] batch) {
+        long sequence = LATEST.incrementAndGet();
+        int slot = (int) (sequence & MASK);
+        STAMPS.set(slot, 0); // claim: readers of an older lap now see a mismatch
+        PRODUCT_IDS.set(slot, productId);
+        BATCHES.set(slot, batch);
+        STAMPS.set(slot, sequence);
+    }
+
+    // Highest sequence handed out; entries up to it may still be in the middle of being written.
+    static long latest() {
+        return LATEST.get();
+    }
+
+    // The product id logged under sequence (as a non-negative long), or BATCH (see batchAt),
+    // OVERWRITTEN or NOT_YET_WRITTEN.
+    static long productAt(long sequence) {
+        int slot = (int) (sequence & MASK);
+        long stamp = STAMPS.get(slot);
+        if (stamp != sequence) {
+            return stamp > sequence || LATEST.get() - sequence >= CAPACITY ? OVERWRITTEN : NOT_YET_WRITTEN;
+        }
+        int productId = PRODUCT_IDS.get(slot);
+        boolean batch = BATCHES.get(slot) != null;
+        // re-check: a writer of a later lap may have reused the slot while we read it
+        if (STAMPS.get(slot) != sequence) {
+            return OVERWRITTEN;
+        }
+        return batch ? BATCH : productId & 0xFFFFFFFFL;
+    }
+
+    // The product ids of the bulk update logged under sequence, or null if the entry has been
+    // overwritten since productAt reported it as a BATCH. Callers must not modify the array.
+    static int[] batchAt(long sequence) {
+        int slot = (int) (sequence & MASK);
+        int[] batch = BATCHES.get(slot);
+        return STAMPS.get(slot) == sequence ? batch : null;
+    }
+}
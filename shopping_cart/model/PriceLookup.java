@@ -0,0 +1,9 @@
+package shopping_cart.model;
+
+// A consistent source of unit prices, e.g. one published catalog version.
+// Pricing a whole cart against one PriceLookup guarantees no mix of old and new prices.
+public interface PriceLookup {
+
+    // Throws IllegalStateException if the product is unknown to this price source.
+    Money priceOf(int productId);
+}
@@ -1,25 +1,36 @@
 package shopping_cart.model;
 
+import java.util.Map;
+import java.util.function.IntFunction;
+
 public class Product {
+
+    // serializes bulk price updates, so at most one epoch is staged on any product at a time
+    private static final Object BULK_UPDATES = new Object();
+
     private final int id;
     private String productName;
     private String description;
-    private double price;
-    
-    public Product(int id, String productName, String description, double price){
+    // volatile: carts on other threads reprice from it; price and version change together
+    private volatile Pricing pricing;
+
+    public Product(int id, String productName, String description, Money price){
         if(productName==null || productName.isBlank()){
             throw new IllegalArgumentException("Please Enter the product name");
         }
         if(description==null || description.isBlank()){
             throw new IllegalArgumentException("Please Enter the product description");
         }
-        if(price<0){
+        if(price==null){
+            throw new IllegalArgumentException("Price cannot be null");
+        }
+        if(price.isNegative()){
             throw new IllegalArgumentException("Price cannot be negative");
         }
         this.id=id;
         this.productName=productName;
         this.description=description;
-        this.price=price;
+        this.pricing=new Pricing(price,0,null,null);
     }
 
     public int getId(){
@@ -34,15 +45,109 @@ public class Product {
         return this.description;
     }
 
-    public double getPrice(){
-        return this.price;
+    public Money getPrice(){
+        return this.pricing.effective().price;
+    }
+
+    // Version of the current price; a LineItem priced at an older version is stale.
+    long getPriceVersion(){
+        return this.pricing.effective().version;
     }
 
-    public void updatePrice(double newPrice){
-        if(newPrice<0){
+    // Package-private: outside the model, prices change through ProductCatalog, which keeps its
+    // snapshot and the search index in step.
+    synchronized void updatePrice(Money newPrice){
+        checkNewPrice(newPrice);
+        Pricing current=this.pricing;
+        if(current.epoch!=null && !current.epoch.published){
+            // a bulk update is staged: change the price beneath it and keep the staged one newer
+            Pricing beneath=new Pricing(newPrice,current.beneath.version+1,null,null);
+            this.pricing=new Pricing(current.price,beneath.version+1,current.epoch,beneath);
+        }else{
+            this.pricing=new Pricing(newPrice,current.version+1,null,null);
+        }
+        // O(1) regardless of how many carts hold this product; carts catch up lazily on their next read
+        PriceChangeLog.append(this.id);
+    }
+
+    // Changes the prices of many products as one change: the new prices are staged on each product
+    // and then take effect together, so a reader never sees part of the update once it has seen
+    // any of it. The price-change log gets a single entry for the whole update. products resolves
+    // the ids; every id and price is checked before anything changes. Called by ProductCatalog;
+    // other callers would bypass the catalog snapshot and the search index.
+    public static void updatePrices(Map<Integer, Money> newPrices, IntFunction<Product> products){
+        if(newPrices==null || products==null){
+            throw new IllegalArgumentException("Prices and product resolver cannot be null");
+        }
+        for(Map.Entry<Integer, Money> entry : newPrices.entrySet()){
+            Product product=products.apply(entry.getKey());
+            if(product==null){
+                throw new IllegalArgumentException("Product with ID " + entry.getKey() + " not found");
+            }
+            product.checkNewPrice(entry.getValue());
+        }
+        if(newPrices.isEmpty()){
+            return;
+        }
+        synchronized(BULK_UPDATES){
+            PriceEpoch epoch=new PriceEpoch();
+            int[] changed=new int[newPrices.size()];
+            int n=0;
+            for(Map.Entry<Integer, Money> entry : newPrices.entrySet()){
+                products.apply(entry.getKey()).stage(entry.getValue(),epoch);
+                changed[n++]=entry.getKey();
+            }
+            epoch.published=true; // every staged price takes effect here, at once
+            PriceChangeLog.appendAll(changed);
+        }
+    }
+
+    private synchronized void stage(Money newPrice, PriceEpoch epoch){
+        Pricing base=this.pricing.effective();
+        Pricing settled=new Pricing(base.price,base.version,null,null);
+        this.pricing=new Pricing(newPrice,base.version+1,epoch,settled);
+    }
+
+    private void checkNewPrice(Money newPrice){
+        if(newPrice==null){
+            throw new IllegalArgumentException("Price cannot be null");
+        }
+        if(newPrice.isNegative()){
             throw new IllegalArgumentException("Price cannot be negative");
         }
-        this.price=newPrice;
+        if(!newPrice.getCurrency().equals(getPrice().getCurrency())){
+            throw new IllegalArgumentException("Price currency cannot change");
+        }
+    }
+
+    // Changes whenever any product price changes; lets derived pricing state detect staleness cheaply.
+    // Outside this package, use a PriceChangeCursor to find which products changed.
+    static long currentPriceEpoch(){
+        return PriceChangeLog.latest();
+    }
+
+    // A price and its version. A price staged by a bulk update (epoch set) only counts once its
+    // epoch is published; until then the price beneath it does.
+    private static final class Pricing {
+        private final Money price;
+        private final long version;
+        private final PriceEpoch epoch;
+        private final Pricing beneath;
+
+        private Pricing(Money price, long version, PriceEpoch epoch, Pricing beneath) {
+            this.price = price;
+            this.version = version;
+            this.epoch = epoch;
+            this.beneath = beneath;
+        }
+
+        private Pricing effective() {
+            return epoch == null || epoch.published ? this : beneath;
+        }
     }
 
+    // One bulk price update; publishing it switches every product it staged a price on.
+    private static final class PriceEpoch {
+        private volatile boolean published;
+    }
 }
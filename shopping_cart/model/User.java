@@ -1,39 +1,33 @@
 package shopping_cart.model;
 
-import java.util.List;
-import java.util.ArrayList;
-
 public class User {
     private final int id;
     private String name;
     private String email;
-    private String password;
+    // only a salted hash is kept, in its encoded form; hashing, checking and decoding passwords
+    // is done by shopping_cart.auth.CredentialService, so the model does not depend on auth
+    private volatile String passwordHash;
 
-    // realtionship with shopping cart
-    private Cart cart;
-    
-    private List<Order> orders;
+    // realtionship with shopping cart; volatile as sessions and checkout workers read it on other threads
+    private volatile Cart cart;
+    // order history lives in an order store (see shopping_cart.history), not on the user object
 
-    public User(int id, String name,String email,String password){
+    public User(int id, String name,String email,String passwordHash){
         if(name==null || name.isBlank()){
             throw new IllegalArgumentException("Please Enter your name");
         }
         if(email==null || email.isBlank()){
             throw new IllegalArgumentException("Please Enter your email");
         }
-        if(password==null || password.isBlank()){
-            throw new IllegalArgumentException("Please Enter your password");
-        }
-        if(password.length()<6){
-            throw new IllegalArgumentException("Password must be at least 6 characters long.");
+        if(passwordHash==null || passwordHash.isBlank()){
+            throw new IllegalArgumentException("Password hash cannot be empty");
         }
         this.id=id;
         this.name=name;
         this.email=email;
-        this.password=password;
+        this.passwordHash=passwordHash;
 
         this.cart=null; // user can have only one cart at a time
-        this.orders=new ArrayList<>();
     }
 
     public int getId(){
@@ -47,14 +41,28 @@ public class User {
         return this.email;
     }
     
-    public void updatePassword(String newPassword){
-        if(newPassword==null){
-            throw new IllegalArgumentException("Please Enter your password");
+    public String getPasswordHash(){
+        return this.passwordHash;
+    }
+
+    public synchronized void updatePasswordHash(String newHash){
+        if(newHash==null || newHash.isBlank()){
+            throw new IllegalArgumentException("Password hash cannot be empty");
+        }
+        this.passwordHash=newHash;
+    }
+
+    // Swaps in a rehashed password only if the hash is still the one that was checked,
+    // so a password change that happened meanwhile is never overwritten.
+    public synchronized boolean replacePasswordHash(String expected, String replacement){
+        if(replacement==null || replacement.isBlank()){
+            throw new IllegalArgumentException("Password hash cannot be empty");
         }
-        if(newPassword.length()<6){
-            throw new IllegalArgumentException("Password must be at least 6 characters long.");
+        if(!this.passwordHash.equals(expected)){
+            return false;
         }
-        this.password=newPassword;
+        this.passwordHash=replacement;
+        return true;
     }
 
     public void assignCart(Cart cart) {
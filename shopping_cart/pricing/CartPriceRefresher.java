@@ -0,0 +1,242 @@
+package shopping_cart.pricing;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import shopping_cart.catalog.CatalogListener;
+import shopping_cart.model.Cart;
+import shopping_cart.model.CartListener;
+import shopping_cart.model.LineItem;
+import shopping_cart.model.Money;
+import shopping_cart.model.Product;
+
+// Brings the most active carts up to date in the background after price changes.
+//
+// Carts already reprice lazily on their next read (only the lines whose product changed), so this
+// is an optimization for hot carts, not needed for correctness.
+// - Reverse index: product id -> tracked carts currently holding it, with each cart's last activity.
+//   It is a ConcurrentHashMap of concurrent weak sets with no lock of its own, so cart listeners
+//   (which run under their cart's monitor) only touch their product's entry. Carts are weakly
+//   referenced, so abandoned carts drop out of the index on their own.
+// - A price change enqueues one entry holding the ids of the changed products that some tracked
+//   cart holds: the catalog writer's cost does not depend on how many carts hold them, and a bulk
+//   reprice is one queue entry. When the queue is full the change is skipped (and counted).
+// - The refresher thread refreshes at most maxCartsPerChange carts per changed product,
+//   most recently active first, and each cart at most once per queue entry.
+public class CartPriceRefresher implements CartListener, CatalogListener, AutoCloseable {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    private static final int DEFAULT_MAX_CARTS_PER_CHANGE = 1_000;
+
+    // inner maps: cart -> activity tick of its last line change; an inner map is created and
+    // removed (once empty) only inside compute on its product's key
+    private final ConcurrentMap<Integer, ConcurrentMap<CartRef, Long>> cartsByProduct = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Cart> collectedCarts = new ReferenceQueue<>();
+    private final AtomicLong activityClock = new AtomicLong();
+    private final BlockingQueue<int[]> changedProducts;
+    private final int maxCartsPerChange;
+    private final Thread worker;
+    private final AtomicLong skippedChanges = new AtomicLong();
+    private final AtomicLong refreshedCarts = new AtomicLong();
+    private volatile boolean closed;
+
+    public CartPriceRefresher(int queueCapacity, int maxCartsPerChange, ThreadFactory threadFactory) {
+        if (queueCapacity <= 0 || maxCartsPerChange <= 0) {
+            throw new IllegalArgumentException("Queue capacity and carts per change must be positive");
+        }
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("Thread factory cannot be null");
+        }
+        this.changedProducts = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxCartsPerChange = maxCartsPerChange;
+        this.worker = threadFactory.newThread(this::run);
+        this.worker.start();
+    }
+
+    public CartPriceRefresher() {
+        this(DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_CARTS_PER_CHANGE, runnable -> {
+            Thread thread = new Thread(runnable, "cart-price-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Starts indexing the cart's lines; later line changes keep the index current.
+    public void track(Cart cart) {
+        if (cart == null) {
+            throw new IllegalArgumentException("Cart cannot be null");
+        }
+        cart.addListener(this);
+        for (LineItem line : cart.getLineItems()) {
+            index(cart, line.getProduct().getId());
+        }
+    }
+
+    @Override
+    public void lineChanged(Cart cart, Product product, int oldQuantity, int newQuantity) {
+        if (newQuantity == 0) {
+            unindex(new CartRef(cart), product.getId());
+        } else {
+            index(cart, product.getId());
+        }
+    }
+
+    @Override
+    public void productsAdded(Collection<Product> products) {
+        // new products are in no cart yet
+    }
+
+    @Override
+    public void pricesChanged(Map<Integer, Money> newPrices) {
+        int[] held = new int[Math.min(newPrices.size(), 16)];
+        int count = 0;
+        for (Integer productId : newPrices.keySet()) {
+            if (cartsByProduct.containsKey(productId)) {
+                if (count == held.length) {
+                    held = Arrays.copyOf(held, count * 2);
+                }
+                held[count++] = productId;
+            }
+        }
+        if (count > 0 && !changedProducts.offer(Arrays.copyOf(held, count))) {
+            skippedChanges.addAndGet(count); // those carts reprice on their next read instead
+        }
+    }
+
+    public long getSkippedChanges() {
+        return skippedChanges.get();
+    }
+
+    public long getRefreshedCarts() {
+        return refreshedCarts.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+    }
+
+    private void index(Cart cart, int productId) {
+        long tick = activityClock.incrementAndGet();
+        cartsByProduct.compute(productId, (id, carts) -> {
+            if (carts == null) {
+                carts = new ConcurrentHashMap<>();
+            }
+            CartRef lookup = new CartRef(cart);
+            if (carts.replace(lookup, tick) == null) {
+                carts.put(new CartRef(cart, productId, collectedCarts), tick);
+            }
+            return carts;
+        });
+        expungeCollectedCarts();
+    }
+
+    private void unindex(CartRef cart, int productId) {
+        cartsByProduct.computeIfPresent(productId, (id, carts) -> {
+            carts.remove(cart);
+            return carts.isEmpty() ? null : carts;
+        });
+    }
+
+    // Drops index entries of carts the garbage collector has cleared.
+    private void expungeCollectedCarts() {
+        Object collected;
+        while ((collected = collectedCarts.poll()) != null) {
+            CartRef cart = (CartRef) collected;
+            unindex(cart, cart.productId);
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            int[] productIds;
+            try {
+                productIds = changedProducts.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Set<Cart> refreshed = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int productId : productIds) {
+                for (Cart cart : hottestCartsHolding(productId)) {
+                    if (refreshed.add(cart)) {
+                        cart.refreshPrices();
+                        refreshedCarts.incrementAndGet();
+                    }
+                }
+            }
+            expungeCollectedCarts();
+        }
+    }
+
+    // Reads the index without locking it: carts indexed meanwhile may or may not be included.
+    private List<Cart> hottestCartsHolding(int productId) {
+        Map<CartRef, Long> carts = cartsByProduct.get(productId);
+        List<Cart> result = new ArrayList<>();
+        if (carts == null) {
+            return result;
+        }
+        // min-heap on activity: keeps the maxCartsPerChange most recent carts
+        PriorityQueue<Map.Entry<CartRef, Long>> hottest = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<CartRef, Long> entry : carts.entrySet()) {
+            hottest.add(entry);
+            if (hottest.size() > maxCartsPerChange) {
+                hottest.poll();
+            }
+        }
+        for (Map.Entry<CartRef, Long> entry : hottest) {
+            Cart cart = entry.getKey().get();
+            if (cart != null) {
+                result.add(cart);
+            }
+        }
+        return result;
+    }
+
+    // Weak key comparing carts by identity. Entries stored in the index are registered with the
+    // reference queue and remember their product; lookup keys are not.
+    private static final class CartRef extends WeakReference<Cart> {
+        private final int hash;
+        private final int productId;
+
+        private CartRef(Cart cart) {
+            super(cart);
+            this.hash = System.identityHashCode(cart);
+            this.productId = 0;
+        }
+
+        private CartRef(Cart cart, int productId, ReferenceQueue<Cart> queue) {
+            super(cart, queue);
+            this.hash = System.identityHashCode(cart);
+            this.productId = productId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CartRef)) return false;
+            Cart cart = get();
+            return cart != null && cart == ((CartRef) o).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
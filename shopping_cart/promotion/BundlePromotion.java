@@ -0,0 +1,49 @@
+package shopping_cart.promotion;
+
+import java.util.Currency;
+import java.util.Set;
+
+import shopping_cart.model.Money;
+import shopping_cart.util.MoneyMath;
+
+// One unit of each listed product together costs bundlePrice. Applies as many times as
+// complete sets are in the cart; never makes a set more expensive than buying it separately.
+public final class BundlePromotion extends ProductGroupPromotion {
+
+    private final Money bundlePrice;
+
+    public BundlePromotion(int id, String name, Set<Integer> productIds, Money bundlePrice) {
+        super(id, name, productIds);
+        if (productIds.size() < 2) {
+            throw new IllegalArgumentException("A bundle needs at least two products");
+        }
+        if (bundlePrice == null || bundlePrice.isNegative()) {
+            throw new IllegalArgumentException("Bundle price cannot be null or negative");
+        }
+        this.bundlePrice = bundlePrice;
+    }
+
+    public Money getBundlePrice() {
+        return bundlePrice;
+    }
+
+    @Override
+    boolean appliesTo(Currency currency) {
+        return bundlePrice.getCurrency().equals(currency);
+    }
+
+    @Override
+    long groupDiscount(CartDiscounts.Lines lines) {
+        int sets = Integer.MAX_VALUE;
+        long separatePrice = 0;
+        for (int productId : productIds()) {
+            sets = Math.min(sets, lines.quantityOf(productId));
+            if (sets == 0) {
+                return 0;
+            }
+            separatePrice = MoneyMath.add(separatePrice, lines.unitPriceOf(productId));
+        }
+        long savingPerSet = separatePrice - bundlePrice.getAmountMinor();
+        return savingPerSet <= 0 ? 0 : MoneyMath.multiply(savingPerSet, sets);
+    }
+}
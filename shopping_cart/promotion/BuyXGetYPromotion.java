@@ -0,0 +1,28 @@
+package shopping_cart.promotion;
+
+import java.util.Collections;
+import java.util.Set;
+
+import shopping_cart.util.MoneyMath;
+
+// For every `buy` units of a product, the next `free` units cost nothing (e.g. buy 2 get 1).
+public final class BuyXGetYPromotion extends LinePromotion {
+
+    private final int buy;
+    private final int free;
+
+    public BuyXGetYPromotion(int id, String name, int productId, int buy, int free) {
+        super(id, name, Set.of(productId), Collections.emptySet());
+        if (buy <= 0 || free <= 0) {
+            throw new IllegalArgumentException("Buy and free quantities must be positive");
+        }
+        this.buy = buy;
+        this.free = free;
+    }
+
+    @Override
+    long lineDiscount(long unitPriceMinor, int quantity) {
+        int freeUnits = quantity / (buy + free) * free;
+        return MoneyMath.multiply(unitPriceMinor, freeUnits);
+    }
+}
@@ -0,0 +1,213 @@
+package shopping_cart.promotion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import shopping_cart.model.Cart;
+import shopping_cart.model.CartListener;
+import shopping_cart.model.LineItem;
+import shopping_cart.model.Money;
+import shopping_cart.model.PriceChangeCursor;
+import shopping_cart.model.Product;
+import shopping_cart.util.MoneyMath;
+
+// Discounts of one cart, cached per line and per bundle and adjusted on each line change.
+//
+// Stacking: each line gets the best of its line promotions; product-group promotions add on top;
+// then the best cart promotion applies to what is left. The total discount never exceeds
+// the subtotal. Price changes are picked up on the next access: only lines whose product was
+// repriced are recomputed (found through a PriceChangeCursor, or by comparing each line's
+// price with its product's when more prices changed than the cart has lines).
+// Thread-safe: cart events and reads are serialized on this object.
+public final class CartDiscounts implements CartListener {
+
+    private final PromotionEngine engine;
+    private final Cart cart;
+    private final Lines lines = new Lines();
+    private final Map<Integer, Long> groupDiscounts = new HashMap<>(); // promotion id -> discount
+    private final CartPromotion[] cartPromotions;
+    private final PriceChangeCursor priceChanges = new PriceChangeCursor();
+
+    private long subtotalMinor;
+    private long lineDiscountMinor;
+    private long groupDiscountMinor;
+
+    CartDiscounts(PromotionEngine engine, Cart cart) {
+        this.engine = engine;
+        this.cart = cart;
+        List<CartPromotion> applicable = new ArrayList<>();
+        for (CartPromotion promotion : engine.cartWidePromotions()) {
+            if (promotion.appliesTo(cart.getCurrency())) {
+                applicable.add(promotion);
+            }
+        }
+        this.cartPromotions = applicable.toArray(new CartPromotion[0]);
+    }
+
+    // Called once the listener is registered; events that raced with registration are absorbed,
+    // because every event carries the line's absolute quantity.
+    synchronized void initialize() {
+        reprice();
+    }
+
+    @Override
+    public synchronized void lineChanged(Cart changed, Product product, int oldQuantity, int newQuantity) {
+        if (changed != cart) {
+            return;
+        }
+        catchUpWithPrices();
+        apply(product, newQuantity);
+    }
+
+    public synchronized Money getSubtotal() {
+        catchUpWithPrices();
+        return Money.ofMinor(subtotalMinor, cart.getCurrency());
+    }
+
+    public synchronized Money getDiscount() {
+        catchUpWithPrices();
+        return Money.ofMinor(totalDiscountMinor(), cart.getCurrency());
+    }
+
+    public synchronized Money getTotal() {
+        catchUpWithPrices();
+        return Money.ofMinor(subtotalMinor - totalDiscountMinor(), cart.getCurrency());
+    }
+
+    // Discount from LINE promotions on one product; zero if it is not in the cart.
+    public synchronized Money getLineDiscount(int productId) {
+        catchUpWithPrices();
+        Line line = lines.byProduct.get(productId);
+        return Money.ofMinor(line == null ? 0 : line.discountMinor, cart.getCurrency());
+    }
+
+    // Cart promotions depend on everything else, so they are evaluated on read: O(cart promotions).
+    private long totalDiscountMinor() {
+        long discounted = MoneyMath.add(lineDiscountMinor, groupDiscountMinor);
+        long remaining = Math.max(0, subtotalMinor - discounted);
+        long best = 0;
+        for (CartPromotion promotion : cartPromotions) {
+            best = Math.max(best, promotion.cartDiscount(remaining));
+        }
+        return Math.min(subtotalMinor, MoneyMath.add(discounted, best));
+    }
+
+    private void apply(Product product, int quantity) {
+        int productId = product.getId();
+        Line line = lines.byProduct.get(productId);
+        if (line != null) {
+            subtotalMinor = MoneyMath.subtract(subtotalMinor, MoneyMath.multiply(line.unitPriceMinor, line.quantity));
+            lineDiscountMinor = MoneyMath.subtract(lineDiscountMinor, line.discountMinor);
+        }
+        if (quantity == 0) {
+            if (line == null) {
+                return;
+            }
+            lines.byProduct.remove(productId);
+        } else {
+            if (line == null) {
+                line = new Line(product, engine.promotionsFor(productId, engine.categoryOf(productId)));
+                lines.byProduct.put(productId, line);
+            }
+            line.quantity = quantity;
+            line.unitPriceMinor = product.getPrice().getAmountMinor();
+            line.discountMinor = bestLineDiscount(line);
+            subtotalMinor = MoneyMath.add(subtotalMinor, MoneyMath.multiply(line.unitPriceMinor, quantity));
+            lineDiscountMinor = MoneyMath.add(lineDiscountMinor, line.discountMinor);
+        }
+        for (ProductGroupPromotion promotion : line.groupPromotions) {
+            if (promotion.appliesTo(cart.getCurrency())) {
+                long previous = groupDiscounts.getOrDefault(promotion.getId(), 0L);
+                long current = promotion.groupDiscount(lines);
+                groupDiscounts.put(promotion.getId(), current);
+                groupDiscountMinor = MoneyMath.add(MoneyMath.subtract(groupDiscountMinor, previous), current);
+            }
+        }
+    }
+
+    private long bestLineDiscount(Line line) {
+        long best = 0;
+        for (LinePromotion promotion : line.linePromotions) {
+            best = Math.max(best, promotion.lineDiscount(line.unitPriceMinor, line.quantity));
+        }
+        return best;
+    }
+
+    // Re-applies the lines whose product was repriced since the last call: O(changes) through the
+    // price-change log, or O(lines) comparing prices when that is cheaper or the log has wrapped.
+    private void catchUpWithPrices() {
+        if (priceChanges.pending() == 0) {
+            return;
+        }
+        if (priceChanges.pending() > lines.byProduct.size()) {
+            priceChanges.skipToLatest();
+            repriceChangedLines();
+        } else if (!priceChanges.advance(this::repriceLine, lines.byProduct.size())) {
+            repriceChangedLines();
+        }
+    }
+
+    private void repriceChangedLines() {
+        for (Line line : new ArrayList<>(lines.byProduct.values())) {
+            repriceLine(line.product.getId());
+        }
+    }
+
+    private void repriceLine(int productId) {
+        Line line = lines.byProduct.get(productId);
+        if (line != null && line.unitPriceMinor != line.product.getPrice().getAmountMinor()) {
+            apply(line.product, line.quantity);
+        }
+    }
+
+    // Rebuilds every cached value from the cart: O(lines x promotions per line).
+    private void reprice() {
+        priceChanges.skipToLatest();
+        lines.byProduct.clear();
+        groupDiscounts.clear();
+        subtotalMinor = 0;
+        lineDiscountMinor = 0;
+        groupDiscountMinor = 0;
+        for (LineItem item : cart.getLineItems()) {
+            apply(item.getProduct(), item.getQuantity());
+        }
+    }
+
+    private static final class Line {
+        private final Product product;
+        // resolved once, when the product enters the cart
+        private final List<LinePromotion> linePromotions = new ArrayList<>();
+        private final List<ProductGroupPromotion> groupPromotions = new ArrayList<>();
+        private int quantity;
+        private long unitPriceMinor;
+        private long discountMinor;
+
+        private Line(Product product, List<Promotion> promotions) {
+            this.product = product;
+            for (Promotion promotion : promotions) {
+                if (promotion instanceof LinePromotion) {
+                    linePromotions.add((LinePromotion) promotion);
+                } else if (promotion instanceof ProductGroupPromotion) {
+                    groupPromotions.add((ProductGroupPromotion) promotion);
+                }
+            }
+        }
+    }
+
+    // Read-only view of the cached lines for product-group promotions.
+    static final class Lines {
+        private final Map<Integer, Line> byProduct = new HashMap<>();
+
+        int quantityOf(int productId) {
+            Line line = byProduct.get(productId);
+            return line == null ? 0 : line.quantity;
+        }
+
+        long unitPriceOf(int productId) {
+            Line line = byProduct.get(productId);
+            return line == null ? 0 : line.unitPriceMinor;
+        }
+    }
+}
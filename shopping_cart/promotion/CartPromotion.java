@@ -0,0 +1,14 @@
+package shopping_cart.promotion;
+
+import java.util.Collections;
+
+// A promotion on the cart as a whole; applies after line and group discounts.
+public abstract class CartPromotion extends Promotion {
+
+    CartPromotion(int id, String name) {
+        super(id, name, Collections.emptySet(), Collections.emptySet());
+    }
+
+    // Discount in minor units given the cart amount after line and group discounts.
+    abstract long cartDiscount(long amountMinor);
+}
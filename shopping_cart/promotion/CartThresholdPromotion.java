@@ -0,0 +1,40 @@
+package shopping_cart.promotion;
+
+import java.util.Currency;
+
+import shopping_cart.model.Money;
+
+// Flat discount once the cart (after other discounts) reaches a minimum amount.
+public final class CartThresholdPromotion extends CartPromotion {
+
+    private final Money threshold;
+    private final Money discount;
+
+    public CartThresholdPromotion(int id, String name, Money threshold, Money discount) {
+        super(id, name);
+        if (threshold == null || discount == null) {
+            throw new IllegalArgumentException("Threshold and discount cannot be null");
+        }
+        if (!threshold.getCurrency().equals(discount.getCurrency())) {
+            throw new IllegalArgumentException("Threshold and discount must use the same currency");
+        }
+        if (threshold.isNegative() || discount.isNegative() || discount.isZero()) {
+            throw new IllegalArgumentException("Threshold cannot be negative and discount must be positive");
+        }
+        this.threshold = threshold;
+        this.discount = discount;
+    }
+
+    @Override
+    boolean appliesTo(Currency currency) {
+        return threshold.getCurrency().equals(currency);
+    }
+
+    @Override
+    long cartDiscount(long amountMinor) {
+        if (amountMinor < threshold.getAmountMinor()) {
+            return 0;
+        }
+        return Math.min(amountMinor, discount.getAmountMinor());
+    }
+}
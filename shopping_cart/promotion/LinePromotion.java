@@ -0,0 +1,14 @@
+package shopping_cart.promotion;
+
+import java.util.Set;
+
+// A promotion that prices one line on its own, from its unit price and quantity.
+public abstract class LinePromotion extends Promotion {
+
+    LinePromotion(int id, String name, Set<Integer> productIds, Set<String> categories) {
+        super(id, name, productIds, categories);
+    }
+
+    // Discount in minor units for one line.
+    abstract long lineDiscount(long unitPriceMinor, int quantity);
+}
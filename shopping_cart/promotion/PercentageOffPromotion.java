@@ -0,0 +1,32 @@
+package shopping_cart.promotion;
+
+import java.math.RoundingMode;
+import java.util.Set;
+
+import shopping_cart.util.MoneyMath;
+
+// percent off every unit of the listed products and of every product in the listed categories.
+public final class PercentageOffPromotion extends LinePromotion {
+
+    private final int percent;
+
+    public PercentageOffPromotion(int id, String name, int percent, Set<Integer> productIds, Set<String> categories) {
+        super(id, name, productIds, categories);
+        if (percent <= 0 || percent > 100) {
+            throw new IllegalArgumentException("Percent must be between 1 and 100");
+        }
+        if (productIds.isEmpty() && categories.isEmpty()) {
+            throw new IllegalArgumentException("Promotion must name at least one product or category");
+        }
+        this.percent = percent;
+    }
+
+    public int getPercent() {
+        return percent;
+    }
+
+    @Override
+    long lineDiscount(long unitPriceMinor, int quantity) {
+        return MoneyMath.multiplyRatio(MoneyMath.multiply(unitPriceMinor, quantity), percent, 100, RoundingMode.HALF_UP);
+    }
+}
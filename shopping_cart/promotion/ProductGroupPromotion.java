@@ -0,0 +1,16 @@
+package shopping_cart.promotion;
+
+import java.util.Collections;
+import java.util.Set;
+
+// A promotion over a fixed, small set of products taken together; re-evaluated whenever one of
+// their lines changes.
+public abstract class ProductGroupPromotion extends Promotion {
+
+    ProductGroupPromotion(int id, String name, Set<Integer> productIds) {
+        super(id, name, productIds, Collections.emptySet());
+    }
+
+    // Discount in minor units given the cart's lines for productIds().
+    abstract long groupDiscount(CartDiscounts.Lines lines);
+}
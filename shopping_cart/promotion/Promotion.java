@@ -0,0 +1,54 @@
+package shopping_cart.promotion;
+
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.Set;
+
+// A discount rule. Every promotion declares which products and categories it depends on,
+// so the engine only re-evaluates it when one of those lines changes.
+//
+// Each kind is its own abstract subclass with the one evaluation method it supports:
+// - LinePromotion prices one line on its own (percentage off, buy X get Y).
+// - ProductGroupPromotion looks at a fixed, small set of products together (bundles).
+// - CartPromotion looks only at the cart total (threshold discounts).
+public abstract class Promotion {
+
+    private final int id;
+    private final String name;
+    private final Set<Integer> productIds;
+    private final Set<String> categories;
+
+    Promotion(int id, String name, Set<Integer> productIds, Set<String> categories) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Promotion name cannot be blank");
+        }
+        if (productIds == null || categories == null) {
+            throw new IllegalArgumentException("Promotion scope cannot be null");
+        }
+        this.id = id;
+        this.name = name;
+        this.productIds = new HashSet<>(productIds);
+        this.categories = new HashSet<>(categories);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    Set<Integer> productIds() {
+        return productIds;
+    }
+
+    Set<String> categories() {
+        return categories;
+    }
+
+    // Promotions carrying fixed amounts only apply to carts in the same currency.
+    boolean appliesTo(Currency currency) {
+        return true;
+    }
+}
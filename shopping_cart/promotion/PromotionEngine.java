@@ -0,0 +1,102 @@
+package shopping_cart.promotion;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import shopping_cart.model.Cart;
+
+// Applies a fixed set of promotions to carts.
+//
+// Promotions are indexed by the products and categories they depend on. A cart attached to the
+// engine keeps its discounts in a CartDiscounts cache that is updated on every line change, and
+// only the promotions indexed under the changed product (or its category) are re-evaluated, so
+// the cost of a cart mutation does not grow with cart size or with the number of promotions.
+public class PromotionEngine {
+
+    private static final Promotion[] NONE = new Promotion[0];
+    private static final CartPromotion[] NO_CART_PROMOTIONS = new CartPromotion[0];
+
+    private final Map<Integer, Promotion[]> byProduct;
+    private final Map<String, Promotion[]> byCategory;
+    private final CartPromotion[] cartWide;
+    private final IntFunction<String> categoryOf;
+
+    // categoryOf maps a product id to its category, or null if the product has none.
+    public PromotionEngine(Collection<? extends Promotion> promotions, IntFunction<String> categoryOf) {
+        if (promotions == null) {
+            throw new IllegalArgumentException("Promotions cannot be null");
+        }
+        if (categoryOf == null) {
+            throw new IllegalArgumentException("Category resolver cannot be null");
+        }
+        Map<Integer, List<Promotion>> products = new HashMap<>();
+        Map<String, List<Promotion>> categories = new HashMap<>();
+        List<CartPromotion> cart = new ArrayList<>();
+        Set<Integer> ids = new HashSet<>();
+        for (Promotion promotion : promotions) {
+            if (promotion == null) {
+                throw new IllegalArgumentException("Promotion cannot be null");
+            }
+            if (!ids.add(promotion.getId())) {
+                throw new IllegalArgumentException("Duplicate promotion id " + promotion.getId());
+            }
+            if (promotion instanceof CartPromotion) {
+                cart.add((CartPromotion) promotion);
+                continue;
+            }
+            for (int productId : promotion.productIds()) {
+                products.computeIfAbsent(productId, id -> new ArrayList<>()).add(promotion);
+            }
+            for (String category : promotion.categories()) {
+                categories.computeIfAbsent(category, c -> new ArrayList<>()).add(promotion);
+            }
+        }
+        this.byProduct = new HashMap<>();
+        products.forEach((id, list) -> byProduct.put(id, list.toArray(NONE)));
+        this.byCategory = new HashMap<>();
+        categories.forEach((category, list) -> byCategory.put(category, list.toArray(NONE)));
+        this.cartWide = cart.toArray(NO_CART_PROMOTIONS);
+        this.categoryOf = categoryOf;
+    }
+
+    // Prices the cart's current lines and keeps the result up to date as the cart changes.
+    public CartDiscounts attach(Cart cart) {
+        if (cart == null) {
+            throw new IllegalArgumentException("Cart cannot be null");
+        }
+        CartDiscounts discounts = new CartDiscounts(this, cart);
+        cart.addListener(discounts);
+        discounts.initialize();
+        return discounts;
+    }
+
+    String categoryOf(int productId) {
+        return categoryOf.apply(productId);
+    }
+
+    // Line and product-group promotions that depend on the product, each listed once.
+    List<Promotion> promotionsFor(int productId, String category) {
+        Promotion[] direct = byProduct.getOrDefault(productId, NONE);
+        Promotion[] viaCategory = category == null ? NONE : byCategory.getOrDefault(category, NONE);
+        List<Promotion> result = new ArrayList<>(direct.length + viaCategory.length);
+        for (Promotion promotion : direct) {
+            result.add(promotion);
+        }
+        for (Promotion promotion : viaCategory) {
+            if (!result.contains(promotion)) {
+                result.add(promotion);
+            }
+        }
+        return result;
+    }
+
+    CartPromotion[] cartWidePromotions() {
+        return cartWide;
+    }
+}
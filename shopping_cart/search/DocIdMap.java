@@ -0,0 +1,72 @@
+package shopping_cart.search;
+
+import java.util.Arrays;
+
+// Product id -> dense document number, open addressing on primitive ints (no boxing per product).
+// Entries are never removed. Not thread-safe.
+final class DocIdMap {
+
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private int[] docs;
+    private int size;
+    private int mask;
+
+    DocIdMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize) * 2 - 1) * 2;
+        this.keys = new int[capacity];
+        this.docs = new int[capacity];
+        Arrays.fill(docs, FREE);
+        this.mask = capacity - 1;
+    }
+
+    // The document of a product, or -1 if it is not indexed.
+    int get(int productId) {
+        for (int slot = slot(productId); ; slot = (slot + 1) & mask) {
+            if (docs[slot] == FREE) {
+                return FREE;
+            }
+            if (keys[slot] == productId) {
+                return docs[slot];
+            }
+        }
+    }
+
+    void put(int productId, int doc) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int slot = slot(productId);
+        while (docs[slot] != FREE) {
+            if (keys[slot] == productId) {
+                docs[slot] = doc;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = productId;
+        docs[slot] = doc;
+        size++;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldDocs = docs;
+        keys = new int[oldKeys.length * 2];
+        docs = new int[oldKeys.length * 2];
+        Arrays.fill(docs, FREE);
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldDocs[i] != FREE) {
+                put(oldKeys[i], oldDocs[i]);
+            }
+        }
+    }
+
+    private int slot(int productId) {
+        int h = productId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,43 @@
+package shopping_cart.search;
+
+import java.util.Arrays;
+
+// Growable array of primitive ints (posting lists, price buckets). Not thread-safe.
+final class IntList {
+
+    private int[] values;
+    private int size;
+
+    IntList(int initialCapacity) {
+        this.values = new int[Math.max(1, initialCapacity)];
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    int get(int index) {
+        return values[index];
+    }
+
+    void set(int index, int value) {
+        values[index] = value;
+    }
+
+    // Removes the last value and returns it.
+    int removeLast() {
+        return values[--size];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // The backing array; only the first size() values are meaningful.
+    int[] array() {
+        return values;
+    }
+}
@@ -0,0 +1,434 @@
+package shopping_cart.search;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+
+import shopping_cart.catalog.CatalogListener;
+import shopping_cart.model.Money;
+import shopping_cart.model.Product;
+
+// Searchable view of the products of one currency.
+//
+// - Every product gets a dense document number; per-document data (price, category) lives in
+//   primitive arrays.
+// - Inverted index: each word of the name and description maps to the sorted list of documents
+//   containing it. A text query intersects the lists of its words, shortest list first.
+// - Price index: a sorted map from price to the documents at that price, so a price-range query
+//   without text only visits the matching prices.
+// - Facet counts (per category and per price band) are collected in the same pass as the top hits.
+//
+// Updates are incremental: adding a product appends to the posting lists, a price change moves
+// one document between price buckets. Register the index on a ProductCatalog to follow it.
+// Queries run concurrently; updates take a short exclusive lock.
+public class ProductSearchIndex implements CatalogListener {
+
+    private static final int NO_CATEGORY = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Currency currency;
+    private final long[] bandBounds; // lower bound of every price band after the first, ascending
+    private final String[] bandLabels;
+    private final IntFunction<String> categoryOf;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Product[] docs = new Product[INITIAL_CAPACITY];
+    private long[] docPrices = new long[INITIAL_CAPACITY];
+    private int[] docCategories = new int[INITIAL_CAPACITY];
+    private int[] docBucketSlots = new int[INITIAL_CAPACITY]; // position of the document in its price bucket
+    private int docCount;
+    private final DocIdMap docIds = new DocIdMap(INITIAL_CAPACITY);
+    private final Map<String, IntList> postings = new HashMap<>();
+    private final TreeMap<Long, IntList> priceBuckets = new TreeMap<>();
+    private final List<String> categoryNames = new ArrayList<>();
+    private final Map<String, Integer> categoryOrdinals = new HashMap<>();
+
+    // priceBandBoundaries split prices into bands for facet counts; categoryOf maps a product id
+    // to its category (or null).
+    public ProductSearchIndex(Currency currency, List<Money> priceBandBoundaries, IntFunction<String> categoryOf) {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency cannot be null");
+        }
+        if (priceBandBoundaries == null) {
+            throw new IllegalArgumentException("Price band boundaries cannot be null");
+        }
+        if (categoryOf == null) {
+            throw new IllegalArgumentException("Category resolver cannot be null");
+        }
+        this.currency = currency;
+        this.bandBounds = new long[priceBandBoundaries.size()];
+        for (int i = 0; i < bandBounds.length; i++) {
+            bandBounds[i] = minorUnits(priceBandBoundaries.get(i));
+            if (i > 0 && bandBounds[i] <= bandBounds[i - 1]) {
+                throw new IllegalArgumentException("Price band boundaries must be strictly ascending");
+            }
+        }
+        this.bandLabels = bandLabels(bandBounds, currency.getDefaultFractionDigits());
+        this.categoryOf = categoryOf;
+    }
+
+    public ProductSearchIndex(Currency currency) {
+        this(currency, List.of(), productId -> null);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(Product product) {
+        addAll(List.of(product));
+    }
+
+    public void addAll(Collection<Product> products) {
+        if (products == null) {
+            throw new IllegalArgumentException("Products cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            for (Product product : products) {
+                if (product == null) {
+                    throw new IllegalArgumentException("Product cannot be null");
+                }
+                if (docIds.get(product.getId()) >= 0) {
+                    throw new IllegalStateException("Product with ID " + product.getId() + " is already indexed");
+                }
+                minorUnits(product.getPrice());
+            }
+            for (Product product : products) {
+                index(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void updatePrice(int productId, Money newPrice) {
+        long price = minorUnits(newPrice);
+        lock.writeLock().lock();
+        try {
+            int doc = docIds.get(productId);
+            if (doc < 0) {
+                throw new IllegalArgumentException("Product with ID " + productId + " is not indexed");
+            }
+            if (docPrices[doc] != price) {
+                removeFromBucket(doc);
+                docPrices[doc] = price;
+                addToBucket(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productsAdded(Collection<Product> products) {
+        addAll(products);
+    }
+
+    @Override
+    public void pricesChanged(Map<Integer, Money> newPrices) {
+        for (Map.Entry<Integer, Money> entry : newPrices.entrySet()) {
+            updatePrice(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public SearchResult search(SearchQuery query) {
+        if (query == null) {
+            throw new IllegalArgumentException("Query cannot be null");
+        }
+        long minPrice = query.getMinPrice() == null ? Long.MIN_VALUE : minorUnits(query.getMinPrice());
+        long maxPrice = query.getMaxPrice() == null ? Long.MAX_VALUE : minorUnits(query.getMaxPrice());
+        Set<String> terms = tokens(query.getText());
+        lock.readLock().lock();
+        try {
+            Collector collector = new Collector(query.getSort(), query.getLimit());
+            if (terms.isEmpty()) {
+                for (IntList bucket : priceBuckets.subMap(minPrice, true, maxPrice, true).values()) {
+                    for (int i = 0; i < bucket.size(); i++) {
+                        collector.accept(bucket.get(i));
+                    }
+                }
+            } else {
+                matchText(terms, minPrice, maxPrice, collector);
+            }
+            return collector.result();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Intersects the posting lists of all terms, walking the shortest and probing the others.
+    private void matchText(Set<String> terms, long minPrice, long maxPrice, Collector collector) {
+        IntList[] lists = new IntList[terms.size()];
+        int n = 0;
+        for (String term : terms) {
+            IntList list = postings.get(term);
+            if (list == null) {
+                return; // a word no product contains: nothing matches
+            }
+            lists[n++] = list;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(IntList::size));
+        int[] cursors = new int[lists.length];
+        IntList shortest = lists[0];
+        candidates:
+        for (int i = 0; i < shortest.size(); i++) {
+            int doc = shortest.get(i);
+            for (int l = 1; l < lists.length; l++) {
+                int found = Arrays.binarySearch(lists[l].array(), cursors[l], lists[l].size(), doc);
+                if (found < 0) {
+                    cursors[l] = -found - 1;
+                    if (cursors[l] == lists[l].size()) {
+                        return; // this list has nothing larger: no further matches
+                    }
+                    continue candidates;
+                }
+                cursors[l] = found + 1;
+            }
+            long price = docPrices[doc];
+            if (price >= minPrice && price <= maxPrice) {
+                collector.accept(doc);
+            }
+        }
+    }
+
+    private void index(Product product) {
+        int doc = docCount;
+        if (doc == docs.length) {
+            int capacity = doc * 2;
+            docs = Arrays.copyOf(docs, capacity);
+            docPrices = Arrays.copyOf(docPrices, capacity);
+            docCategories = Arrays.copyOf(docCategories, capacity);
+            docBucketSlots = Arrays.copyOf(docBucketSlots, capacity);
+        }
+        docs[doc] = product;
+        docPrices[doc] = product.getPrice().getAmountMinor();
+        docCategories[doc] = categoryOrdinal(categoryOf.apply(product.getId()));
+        docIds.put(product.getId(), doc);
+        docCount++;
+        Set<String> terms = tokens(product.getProductName());
+        terms.addAll(tokens(product.getDescription()));
+        // documents are numbered in insertion order, so appending keeps every list sorted
+        for (String term : terms) {
+            postings.computeIfAbsent(term, t -> new IntList(4)).add(doc);
+        }
+        addToBucket(doc);
+    }
+
+    private void addToBucket(int doc) {
+        IntList bucket = priceBuckets.computeIfAbsent(docPrices[doc], p -> new IntList(4));
+        docBucketSlots[doc] = bucket.size();
+        bucket.add(doc);
+    }
+
+    // O(1): the bucket's last document takes the removed document's slot.
+    private void removeFromBucket(int doc) {
+        IntList bucket = priceBuckets.get(docPrices[doc]);
+        int last = bucket.removeLast();
+        if (last != doc) {
+            int slot = docBucketSlots[doc];
+            bucket.set(slot, last);
+            docBucketSlots[last] = slot;
+        }
+        if (bucket.size() == 0) {
+            priceBuckets.remove(docPrices[doc]);
+        }
+    }
+
+    private int categoryOrdinal(String category) {
+        if (category == null) {
+            return NO_CATEGORY;
+        }
+        Integer ordinal = categoryOrdinals.get(category);
+        if (ordinal == null) {
+            ordinal = categoryNames.size();
+            categoryNames.add(category);
+            categoryOrdinals.put(category, ordinal);
+        }
+        return ordinal;
+    }
+
+    private long minorUnits(Money price) {
+        if (price == null) {
+            throw new IllegalArgumentException("Price cannot be null");
+        }
+        if (!price.getCurrency().equals(currency)) {
+            throw new IllegalArgumentException("Index only holds prices in " + currency);
+        }
+        return price.getAmountMinor();
+    }
+
+    private int band(long price) {
+        int found = Arrays.binarySearch(bandBounds, price);
+        return found >= 0 ? found + 1 : -found - 1;
+    }
+
+    // Lower-cased words of letters and digits, each once.
+    static Set<String> tokens(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static String[] bandLabels(long[] bounds, int fractionDigits) {
+        String[] labels = new String[bounds.length + 1];
+        for (int i = 0; i <= bounds.length; i++) {
+            if (bounds.length == 0) {
+                labels[i] = "all";
+            } else if (i == 0) {
+                labels[i] = "under " + format(bounds[0], fractionDigits);
+            } else if (i == bounds.length) {
+                labels[i] = format(bounds[i - 1], fractionDigits) + " and above";
+            } else {
+                labels[i] = format(bounds[i - 1], fractionDigits) + "-" + format(bounds[i] - 1, fractionDigits);
+            }
+        }
+        return labels;
+    }
+
+    private static String format(long minor, int fractionDigits) {
+        return BigDecimal.valueOf(minor, Math.max(0, fractionDigits)).toPlainString();
+    }
+
+    // Counts every match and keeps the best `limit` of them in a bounded max-heap (worst on top).
+    private final class Collector {
+        private final SearchQuery.Sort sort;
+        private final int limit;
+        private final long[] heapKeys;
+        private final int[] heapDocs;
+        private int heapSize;
+        private int total;
+        private final int[] categoryCounts = new int[categoryNames.size()];
+        private final int[] bandCounts = new int[bandBounds.length + 1];
+
+        private Collector(SearchQuery.Sort sort, int limit) {
+            this.sort = sort;
+            this.limit = limit;
+            this.heapKeys = new long[limit];
+            this.heapDocs = new int[limit];
+        }
+
+        private void accept(int doc) {
+            total++;
+            long price = docPrices[doc];
+            if (docCategories[doc] != NO_CATEGORY) {
+                categoryCounts[docCategories[doc]]++;
+            }
+            bandCounts[band(price)]++;
+            if (limit == 0) {
+                return;
+            }
+            long key = sort == SearchQuery.Sort.PRICE_ASCENDING ? price
+                    : sort == SearchQuery.Sort.PRICE_DESCENDING ? -price
+                    : doc;
+            if (heapSize < limit) {
+                heapKeys[heapSize] = key;
+                heapDocs[heapSize] = doc;
+                siftUp(heapSize++);
+            } else if (worse(heapKeys[0], heapDocs[0], key, doc)) {
+                heapKeys[0] = key;
+                heapDocs[0] = doc;
+                siftDown(0);
+            }
+        }
+
+        private SearchResult result() {
+            Integer[] order = new Integer[heapSize];
+            for (int i = 0; i < heapSize; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> a.equals(b) ? 0 : worse(heapKeys[a], heapDocs[a], heapKeys[b], heapDocs[b]) ? 1 : -1);
+            List<Product> products = new ArrayList<>(heapSize);
+            for (int i : order) {
+                products.add(docs[heapDocs[i]]);
+            }
+            Integer[] categories = new Integer[categoryCounts.length];
+            for (int i = 0; i < categories.length; i++) {
+                categories[i] = i;
+            }
+            Arrays.sort(categories, (a, b) -> Integer.compare(categoryCounts[b], categoryCounts[a]));
+            Map<String, Integer> byCategory = new LinkedHashMap<>();
+            for (int c : categories) {
+                if (categoryCounts[c] > 0) {
+                    byCategory.put(categoryNames.get(c), categoryCounts[c]);
+                }
+            }
+            Map<String, Integer> byBand = new LinkedHashMap<>();
+            for (int b = 0; b < bandCounts.length; b++) {
+                byBand.put(bandLabels[b], bandCounts[b]);
+            }
+            return new SearchResult(products, total, byCategory, byBand);
+        }
+
+        // Whether (keyA, docA) ranks after (keyB, docB); ties go to catalog order.
+        private boolean worse(long keyA, int docA, long keyB, int docB) {
+            return keyA != keyB ? keyA > keyB : docA > docB;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!worse(heapKeys[i], heapDocs[i], heapKeys[parent], heapDocs[parent])) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int worst = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < heapSize; child++) {
+                    if (worse(heapKeys[child], heapDocs[child], heapKeys[worst], heapDocs[worst])) {
+                        worst = child;
+                    }
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long key = heapKeys[a];
+            heapKeys[a] = heapKeys[b];
+            heapKeys[b] = key;
+            int doc = heapDocs[a];
+            heapDocs[a] = heapDocs[b];
+            heapDocs[b] = doc;
+        }
+    }
+}
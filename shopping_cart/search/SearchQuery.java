@@ -0,0 +1,54 @@
+package shopping_cart.search;
+
+import shopping_cart.model.Money;
+
+// What to look for: all words of text (matched against name and description), an optional
+// inclusive price range, the sort order and how many products to return.
+public final class SearchQuery {
+
+    public enum Sort { CATALOG_ORDER, PRICE_ASCENDING, PRICE_DESCENDING }
+
+    private final String text;
+    private final Money minPrice;
+    private final Money maxPrice;
+    private final Sort sort;
+    private final int limit;
+
+    // text, minPrice and maxPrice may be null (no text filter / unbounded).
+    public SearchQuery(String text, Money minPrice, Money maxPrice, Sort sort, int limit) {
+        if (sort == null) {
+            throw new IllegalArgumentException("Sort cannot be null");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new IllegalArgumentException("Minimum price cannot exceed maximum price");
+        }
+        this.text = text;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.sort = sort;
+        this.limit = limit;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Money getMinPrice() {
+        return minPrice;
+    }
+
+    public Money getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,43 @@
+package shopping_cart.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import shopping_cart.model.Product;
+
+// Top products of a query plus counts over ALL matches: total, per category and per price band.
+public final class SearchResult {
+
+    private final List<Product> products;
+    private final int totalMatches;
+    private final Map<String, Integer> categoryCounts;
+    private final Map<String, Integer> priceBandCounts;
+
+    SearchResult(List<Product> products, int totalMatches, Map<String, Integer> categoryCounts,
+                 Map<String, Integer> priceBandCounts) {
+        this.products = products;
+        this.totalMatches = totalMatches;
+        this.categoryCounts = categoryCounts;
+        this.priceBandCounts = priceBandCounts;
+    }
+
+    public List<Product> getProducts() {
+        return new ArrayList<>(products);
+    }
+
+    public int getTotalMatches() {
+        return totalMatches;
+    }
+
+    // Category name -> matching products, most common first.
+    public Map<String, Integer> getCategoryCounts() {
+        return new LinkedHashMap<>(categoryCounts);
+    }
+
+    // Price band label (e.g. "10.00-49.99") -> matching products, in price order.
+    public Map<String, Integer> getPriceBandCounts() {
+        return new LinkedHashMap<>(priceBandCounts);
+    }
+}
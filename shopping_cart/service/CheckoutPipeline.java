@@ -0,0 +1,328 @@
+package shopping_cart.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import shopping_cart.catalog.ProductCatalog;
+import shopping_cart.model.Cart;
+import shopping_cart.model.Order;
+import shopping_cart.model.OrderLineItem;
+import shopping_cart.model.PriceLookup;
+import shopping_cart.model.User;
+import shopping_cart.util.IdGenerator;
+
+// Turns a user's Cart into a persisted Order through pipelined stages:
+//
+//   validate -> snapshot prices -> reserve stock -> allocate order ids -> persist
+//
+// - Stages are connected by bounded queues. A full queue blocks the upstream stage, so a burst
+//   backs up to submit(), which rejects after submitTimeout instead of queueing without limit.
+// - Each stage worker drains up to maxBatchSize waiting requests at once. Order ids come from an
+//   IdGenerator, which needs no shared counter, and persistence writes one batch per store call.
+// - A failed request is compensated (stock released, cart reopened) and its future completes
+//   exceptionally; the rest of the batch carries on. A batch the store rejects is retried one
+//   order at a time, so only the orders that cannot be stored are compensated.
+//
+// Workers come from the supplied ThreadFactory. On JDK 21+ pass Thread.ofVirtual().factory()
+// to run every stage on virtual threads; the default factory creates platform threads.
+public class CheckoutPipeline implements AutoCloseable {
+
+    private final StockReserver stockReserver;
+    private final OrderStore orderStore;
+    private final Supplier<? extends PriceLookup> prices; // null: price from the live Product objects
+    private final int maxBatchSize;
+    private final long submitTimeoutMillis;
+    private final IdGenerator orderIds;
+
+    private final List<BlockingQueue<CheckoutTask>> queues = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean closed;
+
+    public CheckoutPipeline(StockReserver stockReserver, OrderStore orderStore, Supplier<? extends PriceLookup> prices,
+                            IdGenerator orderIds, int workersPerStage, int queueCapacity, int maxBatchSize,
+                            long submitTimeoutMillis, ThreadFactory threadFactory) {
+        if (stockReserver == null) {
+            throw new IllegalArgumentException("StockReserver cannot be null");
+        }
+        if (orderStore == null) {
+            throw new IllegalArgumentException("OrderStore cannot be null");
+        }
+        if (orderIds == null) {
+            throw new IllegalArgumentException("IdGenerator cannot be null");
+        }
+        if (workersPerStage <= 0 || queueCapacity <= 0 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Workers, queue capacity and batch size must be positive");
+        }
+        if (submitTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Submit timeout cannot be negative");
+        }
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("ThreadFactory cannot be null");
+        }
+        this.stockReserver = stockReserver;
+        this.orderStore = orderStore;
+        this.prices = prices;
+        this.orderIds = orderIds;
+        this.maxBatchSize = maxBatchSize;
+        this.submitTimeoutMillis = submitTimeoutMillis;
+
+        BlockingQueue<CheckoutTask> validateIn = newQueue(queueCapacity);
+        BlockingQueue<CheckoutTask> snapshotIn = newQueue(queueCapacity);
+        BlockingQueue<CheckoutTask> reserveIn = newQueue(queueCapacity);
+        BlockingQueue<CheckoutTask> allocateIn = newQueue(queueCapacity);
+        BlockingQueue<CheckoutTask> persistIn = newQueue(queueCapacity);
+
+        startStage("validate", validateIn, snapshotIn, perTask(this::validate), workersPerStage, threadFactory);
+        startStage("snapshot", snapshotIn, reserveIn, perTask(this::snapshot), workersPerStage, threadFactory);
+        startStage("reserve", reserveIn, allocateIn, perTask(this::reserve), workersPerStage, threadFactory);
+        startStage("allocate", allocateIn, persistIn, this::allocateIds, workersPerStage, threadFactory);
+        startStage("persist", persistIn, null, this::persist, workersPerStage, threadFactory);
+    }
+
+    // Prices every order against the catalog version current at its snapshot stage.
+    public CheckoutPipeline(StockReserver stockReserver, OrderStore orderStore, ProductCatalog catalog, IdGenerator orderIds) {
+        this(stockReserver, orderStore, requireCatalog(catalog)::current, orderIds, 2, 1024, 64, 100, Executors.defaultThreadFactory());
+    }
+
+    public CheckoutPipeline(StockReserver stockReserver, OrderStore orderStore, IdGenerator orderIds) {
+        this(stockReserver, orderStore, null, orderIds, 2, 1024, 64, 100, Executors.defaultThreadFactory());
+    }
+
+    // Queues checkout of the user's current cart. The future completes with the persisted Order.
+    public CompletableFuture<Order> submit(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        CheckoutTask task = new CheckoutTask(user);
+        if (closed) {
+            task.future.completeExceptionally(new RejectedExecutionException("Checkout pipeline is closed"));
+            return task.future;
+        }
+        try {
+            BlockingQueue<CheckoutTask> input = queues.get(0);
+            if (!input.offer(task, submitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                task.future.completeExceptionally(new RejectedExecutionException("Checkout pipeline is saturated"));
+            } else if (closed && input.remove(task)) {
+                // close() raced the offer and may already have drained the queue; if the task is
+                // gone instead, a worker or close() took it and will complete it
+                task.future.completeExceptionally(new RejectedExecutionException("Checkout pipeline is closed"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.future.completeExceptionally(e);
+        }
+        return task.future;
+    }
+
+    // Stops all stages. Requests still queued are compensated and cancelled.
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        List<CheckoutTask> pending = new ArrayList<>();
+        for (BlockingQueue<CheckoutTask> queue : queues) {
+            queue.drainTo(pending);
+        }
+        for (CheckoutTask task : pending) {
+            fail(task, new CancellationException("Checkout pipeline closed"));
+        }
+    }
+
+    // Stage 1: the cart must exist, be active and non-empty. Flipping it to CHECKED_OUT freezes it
+    // against further mutation while the rest of the pipeline works on it.
+    private void validate(CheckoutTask task) {
+        Cart cart = task.user.getCart();
+        if (cart == null) {
+            throw new IllegalStateException("User has no cart");
+        }
+        cart.checkout();
+        task.cart = cart;
+    }
+
+    // Stage 2: capture prices as they are now; later price changes do not affect this order.
+    // With a catalog, the whole order is priced from one catalog version.
+    private void snapshot(CheckoutTask task) {
+        task.lineItems = prices == null ? task.cart.toOrderLineItems() : task.cart.toOrderLineItems(prices.get());
+    }
+
+    // Stage 3: all-or-nothing hold on stock for every line.
+    private void reserve(CheckoutTask task) {
+        stockReserver.reserve(task.lineItems);
+        task.reserved = true;
+    }
+
+    // Stage 4: ids come from this worker's leased block, so workers do not contend for them.
+    private List<CheckoutTask> allocateIds(List<CheckoutTask> batch) {
+        List<CheckoutTask> survivors = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            CheckoutTask task = batch.get(i);
+            try {
+                task.order = new Order(orderIds.nextId(), task.user, task.lineItems);
+                survivors.add(task);
+            } catch (RuntimeException e) {
+                fail(task, e);
+            }
+        }
+        return survivors;
+    }
+
+    // Stage 5: one store call per batch, then complete the callers' futures.
+    private List<CheckoutTask> persist(List<CheckoutTask> batch) {
+        List<Order> orders = new ArrayList<>(batch.size());
+        for (CheckoutTask task : batch) {
+            orders.add(task.order);
+        }
+        try {
+            orderStore.saveAll(orders);
+        } catch (RuntimeException e) {
+            // saveAll stored none of the batch; save the orders one by one so a single bad order
+            // only fails (and compensates) itself
+            for (CheckoutTask task : batch) {
+                persistOne(task);
+            }
+            return List.of();
+        }
+        for (CheckoutTask task : batch) {
+            task.future.complete(task.order);
+        }
+        return List.of();
+    }
+
+    private void persistOne(CheckoutTask task) {
+        try {
+            orderStore.saveAll(List.of(task.order));
+        } catch (RuntimeException e) {
+            fail(task, e);
+            return;
+        }
+        task.future.complete(task.order);
+    }
+
+    private BatchStep perTask(TaskStep step) {
+        return batch -> {
+            List<CheckoutTask> survivors = new ArrayList<>(batch.size());
+            for (CheckoutTask task : batch) {
+                try {
+                    step.apply(task);
+                    survivors.add(task);
+                } catch (RuntimeException e) {
+                    fail(task, e);
+                }
+            }
+            return survivors;
+        };
+    }
+
+    private void startStage(String name, BlockingQueue<CheckoutTask> input, BlockingQueue<CheckoutTask> output,
+                            BatchStep step, int workerCount, ThreadFactory threadFactory) {
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = threadFactory.newThread(() -> runStage(input, output, step));
+            worker.setName("checkout-" + name + "-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    private void runStage(BlockingQueue<CheckoutTask> input, BlockingQueue<CheckoutTask> output, BatchStep step) {
+        List<CheckoutTask> batch = new ArrayList<>(maxBatchSize);
+        while (!closed) {
+            batch.clear();
+            try {
+                batch.add(input.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            input.drainTo(batch, maxBatchSize - 1);
+
+            List<CheckoutTask> survivors = step.apply(batch);
+            if (output == null) {
+                continue;
+            }
+            for (int i = 0; i < survivors.size(); i++) {
+                try {
+                    output.put(survivors.get(i));
+                } catch (InterruptedException e) {
+                    // closing: whatever could not be handed on is cancelled here
+                    for (int j = i; j < survivors.size(); j++) {
+                        fail(survivors.get(j), new CancellationException("Checkout pipeline closed"));
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    private void fail(CheckoutTask task, Throwable cause) {
+        if (task.reserved) {
+            try {
+                stockReserver.release(task.lineItems);
+            } catch (RuntimeException e) {
+                cause.addSuppressed(e);
+            }
+            task.reserved = false;
+        }
+        if (task.cart != null) {
+            try {
+                task.cart.reopen();
+            } catch (RuntimeException e) {
+                cause.addSuppressed(e);
+            }
+            task.cart = null;
+        }
+        task.future.completeExceptionally(cause);
+    }
+
+    private static ProductCatalog requireCatalog(ProductCatalog catalog) {
+        if (catalog == null) {
+            throw new IllegalArgumentException("ProductCatalog cannot be null");
+        }
+        return catalog;
+    }
+
+    private BlockingQueue<CheckoutTask> newQueue(int capacity) {
+        BlockingQueue<CheckoutTask> queue = new ArrayBlockingQueue<>(capacity);
+        queues.add(queue);
+        return queue;
+    }
+
+    private interface TaskStep {
+        void apply(CheckoutTask task);
+    }
+
+    private interface BatchStep {
+        List<CheckoutTask> apply(List<CheckoutTask> batch);
+    }
+
+    // Per-request state carried between stages (handed over through the queues, so no extra locking).
+    private static final class CheckoutTask {
+        private final User user;
+        private final CompletableFuture<Order> future = new CompletableFuture<>();
+        private Cart cart;
+        private List<OrderLineItem> lineItems;
+        private boolean reserved;
+        private Order order;
+
+        private CheckoutTask(User user) {
+            this.user = user;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package shopping_cart.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import shopping_cart.model.Order;
+import shopping_cart.model.User;
+
+// Checkout keyed by a client-supplied idempotency key, in front of a CheckoutPipeline.
+//
+// - The first request for a key submits the checkout; every retry with the same key gets the
+//   same result (the original Order) from a hash lookup, even while the checkout is still running,
+//   so concurrent duplicates coalesce onto one computation.
+// - Failed checkouts are forgotten, so a retry after a failure runs a fresh checkout.
+// - Entries expire ttl after creation and the cache holds at most maxEntries keys, oldest evicted
+//   first. Choose ttl longer than the clients' retry window.
+// - Eviction walks a creation-order queue from its head, one thread at a time, so each step is
+//   O(1). Entries forgotten early (failed or expired on lookup) are only marked dead there and
+//   skipped when they reach the head; once more than maxEntries are dead the queue is compacted,
+//   so failures cost amortized O(1) and never pile up for a whole ttl.
+public class IdempotentCheckout {
+
+    private final CheckoutPipeline pipeline;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // creation order == expiry order, since every entry lives for the same ttl
+    private final ConcurrentLinkedQueue<Entry> byAge = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger deadQueued = new AtomicInteger(); // forgotten entries still in byAge
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    public IdempotentCheckout(CheckoutPipeline pipeline, int maxEntries, Duration ttl, Clock clock) {
+        if (pipeline == null) {
+            throw new IllegalArgumentException("CheckoutPipeline cannot be null");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive");
+        }
+        if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+            throw new IllegalArgumentException("TTL must be positive");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        this.pipeline = pipeline;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+    }
+
+    public IdempotentCheckout(CheckoutPipeline pipeline, int maxEntries, Duration ttl) {
+        this(pipeline, maxEntries, ttl, Clock.systemUTC());
+    }
+
+    public CompletableFuture<Order> checkout(String idempotencyKey, User user) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            throw new IllegalArgumentException("Idempotency key cannot be blank");
+        }
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        long now = clock.millis();
+        while (true) {
+            Entry existing = entries.get(idempotencyKey);
+            if (existing != null) {
+                if (now - existing.createdAtMillis < ttlMillis) {
+                    if (existing.userId != user.getId()) {
+                        throw new IllegalStateException("Idempotency key was already used by another user");
+                    }
+                    duplicates.incrementAndGet();
+                    return existing.result.copy();
+                }
+                forget(existing); // expired: run as a new request
+                continue;
+            }
+            Entry created = new Entry(idempotencyKey, user.getId(), now);
+            if (entries.putIfAbsent(idempotencyKey, created) == null) {
+                size.incrementAndGet();
+                byAge.add(created);
+                evict(now);
+                start(created, user);
+                return created.result.copy();
+            }
+            // lost the race to a concurrent duplicate: loop and join its result
+        }
+    }
+
+    // Requests answered from the cache instead of running a checkout.
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    // Submitted outside any map operation: submit() may block on backpressure.
+    private void start(Entry entry, User user) {
+        CompletableFuture<Order> submitted;
+        try {
+            submitted = pipeline.submit(user);
+        } catch (RuntimeException e) {
+            forget(entry);
+            entry.result.completeExceptionally(e);
+            return;
+        }
+        submitted.whenComplete((order, error) -> {
+            if (error != null) {
+                forget(entry); // before completing, so a retry that sees the failure starts afresh
+                entry.result.completeExceptionally(error);
+            } else {
+                entry.result.complete(order);
+            }
+        });
+    }
+
+    // Only the thread that wins `evicting` takes from byAge, so the head it peeks is the one it
+    // polls. A thread that finds eviction running leaves it to that thread.
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Entry oldest;
+            while ((oldest = byAge.peek()) != null
+                    && (oldest.forgotten || size.get() > maxEntries || now - oldest.createdAtMillis >= ttlMillis)) {
+                byAge.poll();
+                forget(oldest);
+                deadQueued.decrementAndGet(); // counted by whichever forget() removed it from the map
+            }
+            if (deadQueued.get() > maxEntries) {
+                Iterator<Entry> it = byAge.iterator();
+                while (it.hasNext()) {
+                    if (it.next().forgotten) {
+                        it.remove();
+                        deadQueued.decrementAndGet();
+                    }
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private void forget(Entry entry) {
+        if (entries.remove(entry.key, entry)) {
+            size.decrementAndGet();
+            entry.forgotten = true;
+            deadQueued.incrementAndGet();
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final int userId;
+        private final long createdAtMillis;
+        private final CompletableFuture<Order> result = new CompletableFuture<>();
+        private volatile boolean forgotten; // out of the map; its byAge node is dead
+
+        private Entry(String key, int userId, long createdAtMillis) {
+            this.key = key;
+            this.userId = userId;
+            this.createdAtMillis = createdAtMillis;
+        }
+    }
+}
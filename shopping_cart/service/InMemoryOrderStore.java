@@ -0,0 +1,60 @@
+package shopping_cart.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import shopping_cart.model.Order;
+
+// Thread-safe in-memory OrderStore, keyed by order id and by user id.
+public class InMemoryOrderStore implements OrderStore {
+
+    private final Map<Long, Order> ordersById = new ConcurrentHashMap<>();
+    private final Map<Integer, List<Order>> ordersByUserId = new ConcurrentHashMap<>();
+
+    // Checks the whole batch before storing any of it. Saves are serialized so no other batch can
+    // claim an id between the check and the write; reads stay lock-free.
+    @Override
+    public synchronized void saveAll(List<Order> orders) {
+        if (orders == null) {
+            throw new IllegalArgumentException("Orders cannot be null");
+        }
+        Set<Long> batchIds = new HashSet<>();
+        for (Order order : orders) {
+            if (order == null) {
+                throw new IllegalArgumentException("Order cannot be null");
+            }
+            if (ordersById.containsKey(order.getId()) || !batchIds.add(order.getId())) {
+                throw new IllegalStateException("Order with ID " + order.getId() + " already exists");
+            }
+        }
+        for (Order order : orders) {
+            ordersById.put(order.getId(), order);
+            List<Order> userOrders = ordersByUserId.computeIfAbsent(order.getUser().getId(), id -> new ArrayList<>());
+            synchronized (userOrders) {
+                userOrders.add(order);
+            }
+        }
+    }
+
+    public Order findById(long orderId) {
+        return ordersById.get(orderId);
+    }
+
+    public List<Order> findByUserId(int userId) {
+        List<Order> userOrders = ordersByUserId.get(userId);
+        if (userOrders == null) {
+            return new ArrayList<>();
+        }
+        synchronized (userOrders) {
+            return new ArrayList<>(userOrders);
+        }
+    }
+
+    public int size() {
+        return ordersById.size();
+    }
+}
@@ -0,0 +1,15 @@
+package shopping_cart.service;
+
+import java.util.List;
+
+import shopping_cart.model.Order;
+
+// Persistence step of checkout. Orders arrive in batches so a store can write them in one round trip.
+//
+// saveAll is all-or-nothing: when it throws, none of the batch is stored, so the caller may retry
+// or compensate every order in it. Side effects that follow a successful save (decorators that
+// publish or record the orders) must not make saveAll throw.
+public interface OrderStore {
+
+    void saveAll(List<Order> orders);
+}
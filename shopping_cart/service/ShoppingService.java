@@ -0,0 +1,256 @@
+package shopping_cart.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import shopping_cart.catalog.ProductCatalog;
+import shopping_cart.inventory.StockService;
+import shopping_cart.model.Cart;
+import shopping_cart.model.CartSnapshot;
+import shopping_cart.model.CartStatus;
+import shopping_cart.model.Order;
+import shopping_cart.model.Product;
+import shopping_cart.model.User;
+import shopping_cart.search.ProductSearchIndex;
+import shopping_cart.search.SearchQuery;
+import shopping_cart.search.SearchResult;
+import shopping_cart.util.IdGenerator;
+
+// One entry point for shopper sessions: browse the catalog, edit the cart, check out.
+//
+// - Any number of sessions may act for the same user at once. Cart edits are lock-free (Cart's
+//   optimistic state), and only replacing a user's cart takes the user's monitor.
+// - A user has one cart. Once its checkout succeeds (or it is abandoned) the next edit starts a new
+//   one. An edit that arrives while a checkout is in flight waits for it to settle: if the checkout
+//   fails, the pipeline reopens the cart and the edit applies to it, so no items are stranded in a
+//   cart the user no longer holds. Viewing a cart never creates or replaces one.
+// - Checkout goes through the CheckoutPipeline behind an IdempotentCheckout: retries with the same
+//   key get the original order. Orders are priced from the catalog version current at checkout.
+// - Search runs against a ProductSearchIndex that follows the catalog's additions and price changes.
+// - Carts stay on their User for the life of the service and are not bounded by a CartStore: the
+//   checkout pipeline reads and freezes the User's cart, and a store could spill it from under it
+//   (see CartStore).
+public class ShoppingService implements AutoCloseable {
+
+    private final ProductCatalog catalog;
+    private final StockService stock;
+    private final ProductSearchIndex searchIndex;
+    private final CheckoutPipeline pipeline;
+    private final IdempotentCheckout checkout;
+    private final IdGenerator ids;
+    private final Currency currency;
+    private final Map<Integer, User> users = new ConcurrentHashMap<>();
+    // checkouts submitted and not yet settled, per user id; changed under the user's monitor
+    private final ConcurrentMap<Integer, Integer> checkoutsInFlight = new ConcurrentHashMap<>();
+    private final CartSnapshot emptyCart; // what viewCart shows a user without a cart
+
+    public ShoppingService(Currency currency, ProductCatalog catalog, StockService stock, OrderStore orderStore,
+                           IdGenerator ids, int idempotencyKeys, Duration idempotencyTtl) {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency cannot be null");
+        }
+        if (catalog == null) {
+            throw new IllegalArgumentException("ProductCatalog cannot be null");
+        }
+        if (stock == null) {
+            throw new IllegalArgumentException("StockService cannot be null");
+        }
+        if (ids == null) {
+            throw new IllegalArgumentException("IdGenerator cannot be null");
+        }
+        this.currency = currency;
+        this.catalog = catalog;
+        this.stock = stock;
+        this.ids = ids;
+        this.emptyCart = new Cart(0L, currency).snapshot();
+        this.searchIndex = new ProductSearchIndex(currency);
+        List<Product> existing = new ArrayList<>();
+        catalog.current().forEach(version -> existing.add(catalog.getProduct(version.getId())));
+        searchIndex.addAll(existing);
+        catalog.addListener(searchIndex);
+        this.pipeline = new CheckoutPipeline(stock, orderStore, catalog, ids);
+        this.checkout = new IdempotentCheckout(pipeline, idempotencyKeys, idempotencyTtl);
+    }
+
+    // In-memory stores, node 0, idempotency keys kept for ten minutes.
+    public ShoppingService(Currency currency) {
+        this(currency, new ProductCatalog(), new StockService(), new InMemoryOrderStore(), new IdGenerator(0),
+                1 << 16, Duration.ofMinutes(10));
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    // Adds products to the catalog (and so the search index) with initialStock units each.
+    public void addProducts(Collection<Product> products, long initialStock) {
+        if (products == null) {
+            throw new IllegalArgumentException("Products cannot be null");
+        }
+        for (Product product : products) {
+            stock.registerProduct(product.getId(), initialStock);
+        }
+        catalog.addProducts(products);
+    }
+
+    public void registerUser(User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("User cannot be null");
+        }
+        if (users.putIfAbsent(user.getId(), user) != null) {
+            throw new IllegalArgumentException("User with ID " + user.getId() + " already exists");
+        }
+    }
+
+    public SearchResult browse(SearchQuery query) {
+        return searchIndex.search(query);
+    }
+
+    public Product getProduct(int productId) {
+        Product product = catalog.getProduct(productId);
+        if (product == null) {
+            throw new IllegalArgumentException("Product with ID " + productId + " not found");
+        }
+        return product;
+    }
+
+    // The user's cart as one consistent view; never creates one. While a checkout is in flight this
+    // is the cart being checked out (status CHECKED_OUT). Empty if the user has no cart or their
+    // last one was checked out.
+    public CartSnapshot viewCart(int userId) {
+        Cart cart = user(userId).getCart();
+        if (cart == null) {
+            return emptyCart;
+        }
+        CartSnapshot snapshot = cart.snapshot();
+        if (snapshot.getStatus() == CartStatus.ACTIVE || checkoutsInFlight.containsKey(userId)) {
+            return snapshot;
+        }
+        // no checkout left in flight: either this one succeeded, or it failed and reopened the cart
+        return cart.getStatus() == CartStatus.ACTIVE ? cart.snapshot() : emptyCart;
+    }
+
+    public void addToCart(int userId, int productId, int quantity) {
+        User user = user(userId);
+        Product product = getProduct(productId);
+        while (true) {
+            Cart cart = activeCart(user);
+            try {
+                cart.addProduct(product, quantity);
+                return;
+            } catch (IllegalStateException e) {
+                retryIfCheckedOut(cart, e);
+            }
+        }
+    }
+
+    public void updateQuantity(int userId, int productId, int newQuantity) {
+        User user = user(userId);
+        while (true) {
+            Cart cart = activeCart(user);
+            try {
+                cart.updateQuantity(productId, newQuantity);
+                return;
+            } catch (IllegalStateException e) {
+                retryIfCheckedOut(cart, e);
+            }
+        }
+    }
+
+    public void removeFromCart(int userId, int productId) {
+        User user = user(userId);
+        while (true) {
+            Cart cart = activeCart(user);
+            try {
+                cart.removeProduct(productId);
+                return;
+            } catch (IllegalStateException e) {
+                retryIfCheckedOut(cart, e);
+            }
+        }
+    }
+
+    // Checks out the user's active cart. Reusing idempotencyKey returns the first attempt's order.
+    // The returned future completes once the user's edits may go on to their next cart.
+    public CompletableFuture<Order> checkout(int userId, String idempotencyKey) {
+        User user = user(userId);
+        // counted before submitting: the pipeline may freeze the cart before submit returns
+        checkoutsInFlight.merge(userId, 1, Integer::sum);
+        CompletableFuture<Order> result;
+        try {
+            result = checkout.checkout(idempotencyKey, user);
+        } catch (RuntimeException e) {
+            checkoutSettled(user);
+            throw e;
+        }
+        return result.whenComplete((order, error) -> checkoutSettled(user));
+    }
+
+    // Drops the user's cart; their next edit starts an empty one.
+    public void abandonCart(int userId) {
+        user(userId).assignCart(null);
+    }
+
+    // Stops the checkout pipeline; checkouts still queued fail.
+    @Override
+    public void close() {
+        pipeline.close();
+    }
+
+    private User user(int userId) {
+        User user = users.get(userId);
+        if (user == null) {
+            throw new IllegalArgumentException("User with ID " + userId + " not found");
+        }
+        return user;
+    }
+
+    // The user's active cart. A checked-out cart is only replaced once no checkout of the user is
+    // in flight: until then the cart may still be reopened, and edits wait for that.
+    private Cart activeCart(User user) {
+        Cart cart = user.getCart();
+        if (cart != null && cart.getStatus() == CartStatus.ACTIVE) {
+            return cart;
+        }
+        synchronized (user) {
+            while (true) {
+                cart = user.getCart();
+                if (cart != null && cart.getStatus() == CartStatus.ACTIVE) {
+                    return cart;
+                }
+                if (cart == null || !checkoutsInFlight.containsKey(user.getId())) {
+                    cart = new Cart(ids, currency);
+                    user.assignCart(cart);
+                    return cart;
+                }
+                try {
+                    user.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a checkout to settle", e);
+                }
+            }
+        }
+    }
+
+    private void checkoutSettled(User user) {
+        synchronized (user) {
+            checkoutsInFlight.computeIfPresent(user.getId(), (id, count) -> count == 1 ? null : count - 1);
+            user.notifyAll();
+        }
+    }
+
+    // A cart checked out under a concurrent edit: the edit goes to the user's next cart.
+    private static void retryIfCheckedOut(Cart cart, IllegalStateException e) {
+        if (cart.getStatus() == CartStatus.ACTIVE) {
+            throw e;
+        }
+    }
+}
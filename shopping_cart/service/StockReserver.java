@@ -0,0 +1,28 @@
+package shopping_cart.service;
+
+import java.util.List;
+
+import shopping_cart.model.OrderLineItem;
+
+// Checkout hook for holding stock while an order is being placed.
+// reserve must be all-or-nothing: it either holds every line or throws and holds nothing.
+public interface StockReserver {
+
+    void reserve(List<OrderLineItem> lineItems);
+
+    // Undo a successful reserve when a later checkout stage fails.
+    void release(List<OrderLineItem> lineItems);
+
+    // For deployments without a stock model: every reservation succeeds.
+    static StockReserver unlimited() {
+        return new StockReserver() {
+            @Override
+            public void reserve(List<OrderLineItem> lineItems) {
+            }
+
+            @Override
+            public void release(List<OrderLineItem> lineItems) {
+            }
+        };
+    }
+}
@@ -0,0 +1,162 @@
+package shopping_cart.session;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import shopping_cart.model.Cart;
+import shopping_cart.model.CartSnapshot;
+import shopping_cart.model.CartStatus;
+import shopping_cart.model.LineItem;
+import shopping_cart.model.Product;
+import shopping_cart.util.IdGenerator;
+
+// On-disk form of evicted carts: one small file per user.
+//
+// Layout: format byte, cart id, currency code, cart version, line count, then (lineId, productId,
+// quantity) per line in the order they were added. Products are stored by id only and resolved
+// again on reload, so a reloaded cart is priced with whatever the product's price is at that time.
+// Reloaded carts keep their line ids and version and take new line ids from lineIds; files of
+// older formats are rejected. A file's modification time is set to when it was spilled (by the
+// store's clock), which is what the disk TTL sweep goes by.
+final class CartSpillFiles {
+
+    private static final byte FORMAT = 3;
+
+    private final Path directory;
+    private final IntFunction<Product> productResolver;
+    private final IdGenerator lineIds;
+
+    CartSpillFiles(Path directory, IntFunction<Product> productResolver, IdGenerator lineIds) {
+        this.directory = directory;
+        this.productResolver = productResolver;
+        this.lineIds = lineIds;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create spill directory " + directory, e);
+        }
+    }
+
+    void write(int userId, Cart cart, long nowMillis) {
+        Path target = fileFor(userId);
+        Path temp = directory.resolve("cart-" + userId + ".tmp");
+        CartSnapshot snapshot = cart.snapshot();
+        List<LineItem> lines = snapshot.getLineItems();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeByte(FORMAT);
+            out.writeLong(cart.getId());
+            out.writeUTF(cart.getCurrency().getCurrencyCode());
+            out.writeLong(snapshot.getVersion());
+            out.writeInt(lines.size());
+            for (LineItem line : lines) {
+                out.writeLong(line.getId());
+                out.writeInt(line.getProduct().getId());
+                out.writeInt(line.getQuantity());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot spill cart of user " + userId, e);
+        }
+        try {
+            // rename so a crash never leaves a half-written cart behind
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.setLastModifiedTime(target, FileTime.fromMillis(nowMillis));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot spill cart of user " + userId, e);
+        }
+    }
+
+    // Returns the spilled cart, or null if the user has none on disk.
+    Cart read(int userId) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(fileFor(userId))))) {
+            byte format = in.readByte();
+            if (format != FORMAT) {
+                throw new IllegalStateException("Unsupported cart spill format " + format);
+            }
+            long cartId = in.readLong();
+            Currency currency = Currency.getInstance(in.readUTF());
+            long version = in.readLong();
+            int lineCount = in.readInt();
+            List<LineItem> lines = new ArrayList<>(lineCount);
+            for (int i = 0; i < lineCount; i++) {
+                long lineId = in.readLong();
+                int productId = in.readInt();
+                int quantity = in.readInt();
+                Product product = productResolver.apply(productId);
+                if (product != null) { // products withdrawn meanwhile are dropped from the cart
+                    lines.add(new LineItem(lineId, product, quantity));
+                }
+            }
+            return new Cart(cartId, currency, lineIds, lines, CartStatus.ACTIVE, version);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot reload cart of user " + userId, e);
+        }
+    }
+
+    void delete(int userId) {
+        try {
+            Files.deleteIfExists(fileFor(userId));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete spilled cart of user " + userId, e);
+        }
+    }
+
+    // Users whose file was spilled before cutoffMillis. Leftover temp files are not listed.
+    List<Integer> usersSpilledBefore(long cutoffMillis) {
+        List<Integer> users = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "cart-*.bin")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int userId;
+                try {
+                    userId = Integer.parseInt(name.substring("cart-".length(), name.length() - ".bin".length()));
+                } catch (NumberFormatException e) {
+                    continue; // not one of ours
+                }
+                if (spilledBefore(file, cutoffMillis)) {
+                    users.add(userId);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list spill directory " + directory, e);
+        }
+        return users;
+    }
+
+    // Deletes the user's file if it was still spilled before cutoffMillis; false if it is newer or gone.
+    boolean deleteIfSpilledBefore(int userId, long cutoffMillis) {
+        Path file = fileFor(userId);
+        try {
+            return spilledBefore(file, cutoffMillis) && Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete spilled cart of user " + userId, e);
+        }
+    }
+
+    private static boolean spilledBefore(Path file, long cutoffMillis) throws IOException {
+        try {
+            return Files.getLastModifiedTime(file).toMillis() < cutoffMillis;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private Path fileFor(int userId) {
+        return directory.resolve("cart-" + userId + ".bin");
+    }
+}
@@ -0,0 +1,404 @@
+package shopping_cart.session;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import shopping_cart.model.Cart;
+import shopping_cart.model.CartStatus;
+import shopping_cart.model.Product;
+import shopping_cart.util.IdGenerator;
+
+// Carts of active sessions, keyed by user id, with a hard bound on how many stay in heap.
+//
+// - Memory holds at most maxCartsInMemory carts, split over independently locked segments.
+// - Carts idle for longer than idleTtl leave memory on the next write to their segment.
+// - Admission is W-TinyLFU: a cart coming into memory (put, or reloaded by get) enters a small LRU
+//   window, so the caller's cart is always in memory when the call returns. The window's least
+//   recently used cart then competes for the main area against the coldest of main's least
+//   recently used carts, and only the one accessed more often recently (per a frequency sketch)
+//   stays; the other goes to disk. A burst of one-off carts passes through the window without
+//   pushing frequently used carts out.
+// - Carts leaving memory are spilled to disk (active carts only) and reloaded lazily by get().
+//   File reads and writes happen outside the segment locks, serialized per user, so one slow
+//   disk operation does not stall every cart in its segment.
+// - Spill files not rewritten for diskTtl belong to users who did not come back: a background
+//   sweeper deletes them (see sweepSpillFiles), so the directory does not grow forever.
+//
+// Sessions should get() their cart on every request rather than keep the reference: a cart
+// spilled while a caller still holds it does not see that caller's later changes.
+//
+// ShoppingService does not use this store. It keeps each user's cart on the User, where the
+// checkout pipeline and IdempotentCheckout read and freeze it across threads; a cart spilled from
+// under them would split into two copies. The store is for front ends that own a cart per
+// session and fetch it on every request.
+public class CartStore implements AutoCloseable {
+
+    private static final int DEFAULT_SEGMENTS = 16;
+    private static final int EVICTION_SAMPLE = 4; // main LRU-tail entries compared by frequency on admission
+    private static final int WINDOW_PERCENT = 1; // share of each segment for the admission window
+    private static final Duration DEFAULT_DISK_TTL = Duration.ofDays(7);
+    private static final long MAX_SWEEP_INTERVAL_MILLIS = 3_600_000;
+    private static final int IO_LOCKS = 64; // per-user file operations, striped
+
+    private final Segment[] segments;
+    private final Object[] ioLocks = new Object[IO_LOCKS];
+    private final CartSpillFiles spillFiles;
+    private final long idleTtlMillis;
+    private final long diskTtlMillis;
+    private final Clock clock;
+    private final ScheduledThreadPoolExecutor sweeper;
+
+    // Reloaded carts give lines added after the reload ids from lineIds. Spill files are swept every
+    // quarter of diskTtl (at most hourly).
+    public CartStore(int maxCartsInMemory, Duration idleTtl, Duration diskTtl, Path spillDirectory,
+                     IntFunction<Product> productResolver, IdGenerator lineIds, Clock clock) {
+        if (maxCartsInMemory <= 0) {
+            throw new IllegalArgumentException("Max carts in memory must be positive");
+        }
+        if (idleTtl == null || idleTtl.isZero() || idleTtl.isNegative()) {
+            throw new IllegalArgumentException("Idle TTL must be positive");
+        }
+        if (diskTtl == null || diskTtl.isZero() || diskTtl.isNegative()) {
+            throw new IllegalArgumentException("Disk TTL must be positive");
+        }
+        if (spillDirectory == null) {
+            throw new IllegalArgumentException("Spill directory cannot be null");
+        }
+        if (productResolver == null) {
+            throw new IllegalArgumentException("Product resolver cannot be null");
+        }
+        if (lineIds == null) {
+            throw new IllegalArgumentException("IdGenerator cannot be null");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        int segmentCount = Math.min(DEFAULT_SEGMENTS, Integer.highestOneBit(maxCartsInMemory));
+        this.segments = new Segment[segmentCount];
+        int perSegment = Math.max(1, maxCartsInMemory / segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        for (int i = 0; i < IO_LOCKS; i++) {
+            ioLocks[i] = new Object();
+        }
+        this.spillFiles = new CartSpillFiles(spillDirectory, productResolver, lineIds);
+        this.idleTtlMillis = idleTtl.toMillis();
+        this.diskTtlMillis = diskTtl.toMillis();
+        this.clock = clock;
+        this.sweeper = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "cart-spill-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, Math.min(diskTtlMillis / 4, MAX_SWEEP_INTERVAL_MILLIS));
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Spill files are kept for a week.
+    public CartStore(int maxCartsInMemory, Duration idleTtl, Path spillDirectory, IntFunction<Product> productResolver,
+                     IdGenerator lineIds) {
+        this(maxCartsInMemory, idleTtl, DEFAULT_DISK_TTL, spillDirectory, productResolver, lineIds, Clock.systemUTC());
+    }
+
+    // The user's cart from memory, or reloaded from disk. Null if the user has no cart.
+    public Cart get(int userId) {
+        Segment segment = segmentFor(userId);
+        List<Map.Entry<Integer, Cart>> victims = new ArrayList<>();
+        Cart cart = segment.get(userId, victims);
+        if (cart == null) {
+            cart = load(segment, userId, victims);
+        }
+        spillAll(segment, victims);
+        return cart;
+    }
+
+    public void put(int userId, Cart cart) {
+        if (cart == null) {
+            throw new IllegalArgumentException("Cart cannot be null");
+        }
+        Segment segment = segmentFor(userId);
+        List<Map.Entry<Integer, Cart>> victims = new ArrayList<>();
+        segment.put(userId, cart, victims);
+        spillAll(segment, victims);
+    }
+
+    public void remove(int userId) {
+        Segment segment = segmentFor(userId);
+        synchronized (ioLock(userId)) {
+            segment.remove(userId);
+            spillFiles.delete(userId);
+        }
+    }
+
+    // Deletes spill files last written diskTtl or more ago and returns how many. Runs on the
+    // sweeper; callable directly, e.g. at startup.
+    public int sweepSpillFiles() {
+        long cutoff = clock.millis() - diskTtlMillis;
+        int deleted = 0;
+        for (int userId : spillFiles.usersSpilledBefore(cutoff)) {
+            // a spill or reload of this user finishes first; the file may have been rewritten since
+            synchronized (ioLock(userId)) {
+                if (spillFiles.deleteIfSpilledBefore(userId, cutoff)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    // Stops the sweeper. Carts in memory stay usable but are not written to disk.
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    public int inMemorySize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    // An exception would cancel the periodic task: report it and keep sweeping.
+    private void sweepQuietly() {
+        try {
+            sweepSpillFiles();
+        } catch (RuntimeException e) {
+            Thread t = Thread.currentThread();
+            t.getUncaughtExceptionHandler().uncaughtException(t, e);
+        }
+    }
+
+    private Segment segmentFor(int userId) {
+        return segments[spread(userId) & (segments.length - 1)];
+    }
+
+    private Object ioLock(int userId) {
+        return ioLocks[(spread(userId) >>> 8) & (ioLocks.length - 1)];
+    }
+
+    private static int spread(int userId) {
+        int h = userId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Reads a missing cart from disk without holding the segment lock. The I/O lock keeps the file
+    // from changing underneath (a spill or remove of this user waits), the segment is re-checked
+    // in case another caller loaded or put the cart meanwhile.
+    private Cart load(Segment segment, int userId, List<Map.Entry<Integer, Cart>> victims) {
+        synchronized (ioLock(userId)) {
+            Cart cart = segment.find(userId, victims);
+            if (cart != null) {
+                return cart;
+            }
+            cart = spillFiles.read(userId);
+            return cart == null ? null : segment.admitLoaded(userId, cart, victims);
+        }
+    }
+
+    // Writes the carts evicted by the last segment call, outside the segment lock. A cart that was
+    // taken back into memory (or replaced or removed) while waiting is skipped. A cart that cannot
+    // be written stays in the segment's spilling map, so it is not lost, and the error is rethrown.
+    private void spillAll(Segment segment, List<Map.Entry<Integer, Cart>> victims) {
+        RuntimeException failure = null;
+        for (Map.Entry<Integer, Cart> victim : victims) {
+            int userId = victim.getKey();
+            Cart cart = victim.getValue();
+            synchronized (ioLock(userId)) {
+                if (!segment.isSpilling(userId, cart)) {
+                    continue;
+                }
+                try {
+                    if (cart.getStatus() == CartStatus.ACTIVE) {
+                        spillFiles.write(userId, cart, clock.millis());
+                    } else {
+                        // checked-out or cancelled carts have nothing left to resume
+                        spillFiles.delete(userId);
+                    }
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                    continue;
+                }
+                segment.spilled(userId, cart);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static final class Entry {
+        private final Cart cart;
+        private long lastAccessMillis;
+
+        private Entry(Cart cart, long lastAccessMillis) {
+            this.cart = cart;
+            this.lastAccessMillis = lastAccessMillis;
+        }
+    }
+
+    // In-memory part of the store. Its lock is held only for map updates, never for file I/O: carts
+    // chosen for eviction move to the spilling map and are written by the caller afterwards
+    // (see spillAll). Until then they are still found here, so nothing reads a stale file.
+    private final class Segment {
+        private final int windowCapacity;
+        private final int mainCapacity;
+        // both in access order: the eldest entry is the least recently used cart
+        private final LinkedHashMap<Integer, Entry> window; // every cart entering memory starts here
+        private final LinkedHashMap<Integer, Entry> main; // carts that won admission by frequency
+        private final Map<Integer, Cart> spilling = new HashMap<>();
+        private final FrequencySketch sketch;
+
+        private Segment(int capacity) {
+            this.windowCapacity = Math.max(1, capacity * WINDOW_PERCENT / 100);
+            this.mainCapacity = capacity - windowCapacity;
+            this.window = new LinkedHashMap<>(16, 0.75f, true);
+            this.main = new LinkedHashMap<>(16, 0.75f, true);
+            this.sketch = new FrequencySketch(capacity);
+        }
+
+        private synchronized Cart get(int userId, List<Map.Entry<Integer, Cart>> victims) {
+            sketch.increment(userId);
+            return find(userId, victims);
+        }
+
+        // The cart from memory, taking it back if it is waiting to be spilled; null if on disk or absent.
+        private synchronized Cart find(int userId, List<Map.Entry<Integer, Cart>> victims) {
+            long now = clock.millis();
+            Entry entry = entry(userId);
+            if (entry != null) {
+                entry.lastAccessMillis = now;
+                return entry.cart;
+            }
+            Cart cart = spilling.remove(userId);
+            if (cart != null) {
+                admit(userId, cart, now, victims);
+            }
+            return cart;
+        }
+
+        // Admits a cart read from disk unless another caller got one into memory first.
+        private synchronized Cart admitLoaded(int userId, Cart loaded, List<Map.Entry<Integer, Cart>> victims) {
+            Cart current = find(userId, victims);
+            if (current != null) {
+                return current;
+            }
+            admit(userId, loaded, clock.millis(), victims);
+            return loaded;
+        }
+
+        private synchronized void put(int userId, Cart cart, List<Map.Entry<Integer, Cart>> victims) {
+            sketch.increment(userId);
+            long now = clock.millis();
+            Entry entry = entry(userId);
+            if (entry != null && entry.cart == cart) {
+                entry.lastAccessMillis = now;
+                return;
+            }
+            remove(userId);
+            admit(userId, cart, now, victims);
+        }
+
+        private synchronized void remove(int userId) {
+            window.remove(userId);
+            main.remove(userId);
+            spilling.remove(userId);
+        }
+
+        private synchronized boolean isSpilling(int userId, Cart cart) {
+            return spilling.get(userId) == cart;
+        }
+
+        private synchronized void spilled(int userId, Cart cart) {
+            spilling.remove(userId, cart);
+        }
+
+        private synchronized int size() {
+            return window.size() + main.size();
+        }
+
+        // Also moves the entry to the most recently used end of its map.
+        private Entry entry(int userId) {
+            Entry entry = window.get(userId);
+            return entry != null ? entry : main.get(userId);
+        }
+
+        // The cart being accessed always goes to memory, into the window (callers mutate the
+        // instance they get back). A window overflow makes its eldest cart a candidate for main.
+        // A file left from an earlier spill is harmless: it is only read when memory has no cart,
+        // and the cart's next spill (or remove) replaces it.
+        private void admit(int userId, Cart cart, long now, List<Map.Entry<Integer, Cart>> victims) {
+            expireIdle(window, now, victims);
+            expireIdle(main, now, victims);
+            window.put(userId, new Entry(cart, now));
+            if (window.size() > windowCapacity) {
+                Iterator<Map.Entry<Integer, Entry>> eldest = window.entrySet().iterator();
+                Map.Entry<Integer, Entry> candidate = eldest.next();
+                eldest.remove();
+                promote(candidate.getKey(), candidate.getValue(), victims);
+            }
+        }
+
+        // TinyLFU admission: with main full, the candidate replaces main's victim (the coldest of
+        // its few least recently used carts) only if it was accessed more often recently; otherwise
+        // the candidate itself is spilled.
+        private void promote(int userId, Entry candidate, List<Map.Entry<Integer, Cart>> victims) {
+            if (main.size() < mainCapacity) {
+                main.put(userId, candidate);
+                return;
+            }
+            Map.Entry<Integer, Entry> victim = null;
+            int victimFrequency = Integer.MAX_VALUE;
+            Iterator<Map.Entry<Integer, Entry>> it = main.entrySet().iterator();
+            for (int i = 0; i < EVICTION_SAMPLE && it.hasNext(); i++) {
+                Map.Entry<Integer, Entry> sample = it.next();
+                int frequency = sketch.frequency(sample.getKey());
+                if (frequency < victimFrequency) {
+                    victim = sample;
+                    victimFrequency = frequency;
+                }
+            }
+            if (victim != null && sketch.frequency(userId) > victimFrequency) {
+                main.remove(victim.getKey());
+                evict(victim.getKey(), victim.getValue().cart, victims);
+                main.put(userId, candidate);
+            } else {
+                evict(userId, candidate.cart, victims);
+            }
+        }
+
+        private void expireIdle(LinkedHashMap<Integer, Entry> carts, long now, List<Map.Entry<Integer, Cart>> victims) {
+            Iterator<Map.Entry<Integer, Entry>> it = carts.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, Entry> eldest = it.next();
+                if (now - eldest.getValue().lastAccessMillis < idleTtlMillis) {
+                    return; // access order: everything after this was used more recently
+                }
+                it.remove();
+                evict(eldest.getKey(), eldest.getValue().cart, victims);
+            }
+        }
+
+        private void evict(int userId, Cart cart, List<Map.Entry<Integer, Cart>> victims) {
+            spilling.put(userId, cart);
+            victims.add(new AbstractMap.SimpleImmutableEntry<>(userId, cart));
+        }
+    }
+}
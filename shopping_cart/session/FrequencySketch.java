@@ -0,0 +1,75 @@
+package shopping_cart.session;
+
+// Approximate access frequency of int keys (TinyLFU admission filter).
+//
+// Count-min sketch with 4 rows of saturating 4-bit counters, two counters packed per byte.
+// After `sampleSize` increments every counter is halved, so the sketch tracks recent
+// popularity instead of all-time popularity. Not thread-safe; guard it with the owner's lock.
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+    private final byte[][] rows;
+    private final int mask; // counters per row - 1
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedKeys) {
+        int width = Integer.highestOneBit(Math.max(16, expectedKeys) * 2 - 1);
+        this.rows = new byte[DEPTH][width / 2];
+        this.mask = width - 1;
+        this.sampleSize = 10 * Math.max(16, expectedKeys);
+    }
+
+    void increment(int key) {
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int counter = index(key, row);
+            int value = get(row, counter);
+            if (value < MAX_COUNT) {
+                set(row, counter, value + 1);
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            halve();
+        }
+    }
+
+    int frequency(int key) {
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, get(row, index(key, row)));
+        }
+        return min;
+    }
+
+    private void halve() {
+        for (byte[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                // halve both nibbles at once: shift right and clear the bit that crossed over
+                row[i] = (byte) (((row[i] & 0xFF) >>> 1) & 0x77);
+            }
+        }
+        additions /= 2;
+    }
+
+    private int index(int key, int row) {
+        int h = key * SEEDS[row];
+        return (h ^ (h >>> 15)) & mask;
+    }
+
+    private int get(int row, int counter) {
+        int b = rows[row][counter >>> 1] & 0xFF;
+        return (counter & 1) == 0 ? b & 0x0F : b >>> 4;
+    }
+
+    private void set(int row, int counter, int value) {
+        int i = counter >>> 1;
+        int b = rows[row][i] & 0xFF;
+        b = (counter & 1) == 0 ? (b & 0xF0) | value : (b & 0x0F) | (value << 4);
+        rows[row][i] = (byte) b;
+    }
+}
@@ -0,0 +1,123 @@
+package shopping_cart.util;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Unique 64-bit ids that sort roughly by creation time, with no shared counter per id.
+//
+//   0 | 41 bits milliseconds since EPOCH | 10 bits node | 12 bits sequence
+//
+// - Each process gets its own node id (0..1023), so nodes never coordinate: their ids differ in
+//   the node bits.
+// - Within a node, (milliseconds, sequence) is one counter that only moves forward. A thread leases
+//   a block of consecutive values with one CAS and then hands out ids from it with no shared
+//   writes. A block starts at the current millisecond or right after the last lease, whichever is
+//   later, so a clock stepping backwards never repeats an id; beyond 4096 ids per millisecond the
+//   counter runs ahead of the clock instead of blocking.
+// - A block is dropped once the clock has moved past its millisecond, so a thread never hands out
+//   an id stamped earlier than that. Block sizes adapt per thread: they double while blocks get used
+//   up and halve when they go stale, so idle threads do not burn counter space.
+//
+// Ids from different threads of one node are ordered to within about a millisecond; across nodes,
+// to within the clock skew. Use firstIdAt to turn a time range into an id range.
+public final class IdGenerator {
+
+    public static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    public static final int MAX_NODE_ID = 1023;
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_BITS = 10;
+    private static final int TIMESTAMP_SHIFT = SEQUENCE_BITS + NODE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_TIMESTAMP = (1L << (63 - TIMESTAMP_SHIFT)) - 1;
+
+    private final long nodeBits;
+    private final int maxBlockSize;
+    private final Clock clock;
+    private final AtomicLong nextUnleased = new AtomicLong(); // (millis << SEQUENCE_BITS) | sequence
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    public IdGenerator(int nodeId, int maxBlockSize, Clock clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+        }
+        if (maxBlockSize <= 0 || maxBlockSize > SEQUENCE_MASK + 1) {
+            throw new IllegalArgumentException("Block size must be between 1 and " + (SEQUENCE_MASK + 1));
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock cannot be null");
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.maxBlockSize = maxBlockSize;
+        this.clock = clock;
+    }
+
+    public IdGenerator(int nodeId) {
+        this(nodeId, 256, Clock.systemUTC());
+    }
+
+    public long nextId() {
+        Block block = blocks.get();
+        long now = clock.millis() - EPOCH_MILLIS;
+        if (block.next == block.end) {
+            block.size = Math.min(block.size * 2, maxBlockSize);
+            lease(block, now);
+        } else if ((block.next >>> SEQUENCE_BITS) < now) {
+            block.size = Math.max(block.size / 2, 1);
+            lease(block, now);
+        }
+        long value = block.next++;
+        return ((value >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT) | nodeBits | (value & SEQUENCE_MASK);
+    }
+
+    // Creation time encoded in an id, in epoch milliseconds.
+    public static long timestampMillis(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH_MILLIS;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+
+    // Smallest id any node can generate at or after the given time: ids created in [from, to)
+    // lie in [firstIdAt(from), firstIdAt(to)).
+    public static long firstIdAt(Instant time) {
+        if (time == null) {
+            throw new IllegalArgumentException("Time cannot be null");
+        }
+        long millis = time.toEpochMilli() - EPOCH_MILLIS;
+        if (millis <= 0) {
+            return 0;
+        }
+        return Math.min(millis, MAX_TIMESTAMP) << TIMESTAMP_SHIFT;
+    }
+
+    private void lease(Block block, long now) {
+        if (now < 0) {
+            throw new IllegalStateException("Clock is before the id epoch");
+        }
+        long start;
+        long end;
+        while (true) {
+            long last = nextUnleased.get();
+            start = Math.max(last, now << SEQUENCE_BITS);
+            end = start + block.size;
+            if (nextUnleased.compareAndSet(last, end)) {
+                break;
+            }
+        }
+        if (((end - 1) >>> SEQUENCE_BITS) > MAX_TIMESTAMP) {
+            throw new IllegalStateException("Id timestamp space exhausted");
+        }
+        block.next = start;
+        block.end = end;
+    }
+
+    // Ids [next, end) of the counter, owned by one thread.
+    private static final class Block {
+        private long next;
+        private long end;
+        private int size = 1;
+    }
+}
@@ -0,0 +1,195 @@
+package shopping_cart.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Hash map from primitive int keys to values that remembers insertion order.
+//
+// Layout (same idea as a compact/ordered dict):
+// - entries are appended to dense key/value arrays, so iteration follows insertion order
+// - an open-addressing slot table (linear probing) maps a key to its entry index
+// - remove leaves a tombstone in both; tombstones are compacted away on the next resize
+//
+// get/put/remove are O(1) on average with no boxing of keys and no per-entry node objects.
+// Null values are not allowed (null marks a removed entry). Not thread-safe.
+public final class IntLinkedHashMap<V> implements Iterable<V> {
+
+    private static final int EMPTY = -1;
+    private static final int DELETED = -2;
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] entryKeys;
+    private Object[] entryValues;
+    private int entryCount; // used entry slots, including tombstones
+    private int size;
+
+    private int[] slots; // entry index, EMPTY or DELETED; always twice the entry capacity
+    private int mask;
+
+    public IntLinkedHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public IntLinkedHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative");
+        }
+        allocate(Math.max(MIN_CAPACITY, expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return findSlot(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = findSlot(key);
+        return slot >= 0 ? (V) entryValues[slots[slot]] : null;
+    }
+
+    // Returns the previous value, or null if the key was absent (new keys go to the end of the order).
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value cannot be null");
+        }
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            V previous = (V) entryValues[slots[slot]];
+            entryValues[slots[slot]] = value;
+            return previous;
+        }
+        if (entryCount == entryKeys.length) {
+            rebuild(Math.max(MIN_CAPACITY, size * 2));
+        }
+        int entry = entryCount++;
+        entryKeys[entry] = key;
+        entryValues[entry] = value;
+        slots[freeSlot(key)] = entry;
+        size++;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        int entry = slots[slot];
+        V previous = (V) entryValues[entry];
+        entryValues[entry] = null;
+        slots[slot] = DELETED;
+        size--;
+        return previous;
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    // Values in insertion order (a copy).
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size);
+        for (V value : this) {
+            values.add(value);
+        }
+        return values;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < entryCount && entryValues[from] == null) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < entryCount;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (next >= entryCount) {
+                    throw new NoSuchElementException();
+                }
+                V value = (V) entryValues[next];
+                next = advance(next + 1);
+                return value;
+            }
+        };
+    }
+
+    private int findSlot(int key) {
+        int i = hash(key) & mask;
+        while (true) {
+            int entry = slots[i];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            if (entry >= 0 && entryKeys[entry] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    private int freeSlot(int key) {
+        int i = hash(key) & mask;
+        while (slots[i] >= 0) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void allocate(int capacity) {
+        entryKeys = new int[capacity];
+        entryValues = new Object[capacity];
+        entryCount = 0;
+        size = 0;
+        int slotCount = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        slots = new int[slotCount];
+        Arrays.fill(slots, EMPTY);
+        mask = slotCount - 1;
+    }
+
+    // Grows or shrinks to the given capacity and drops tombstones, preserving insertion order.
+    private void rebuild(int capacity) {
+        int[] oldKeys = entryKeys;
+        Object[] oldValues = entryValues;
+        int oldCount = entryCount;
+        allocate(capacity);
+        for (int i = 0; i < oldCount; i++) {
+            if (oldValues[i] != null) {
+                int entry = entryCount++;
+                entryKeys[entry] = oldKeys[i];
+                entryValues[entry] = oldValues[i];
+                slots[freeSlot(oldKeys[i])] = entry;
+                size++;
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,140 @@
+package shopping_cart.util;
+
+import java.math.RoundingMode;
+
+// Allocation-free arithmetic on money amounts held as long minor units (e.g. cents).
+//
+// Every operation is exact: results that do not fit in a long throw ArithmeticException
+// instead of silently wrapping, and division rounds with an explicit RoundingMode.
+// The bulk helpers are written as plain counted loops over primitive arrays so the JIT can
+// auto-vectorize them; an overflow pre-check decides whether the unchecked fast loop is safe.
+public final class MoneyMath {
+
+    private MoneyMath() {
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long multiply(long amount, int quantity) {
+        return Math.multiplyExact(amount, (long) quantity);
+    }
+
+    // amount * numerator / denominator, rounded. E.g. 15% off: multiplyRatio(amount, 85, 100, HALF_EVEN).
+    public static long multiplyRatio(long amount, long numerator, long denominator, RoundingMode rounding) {
+        if (denominator <= 0) {
+            throw new IllegalArgumentException("Denominator must be positive");
+        }
+        return divide(Math.multiplyExact(amount, numerator), denominator, rounding);
+    }
+
+    // dividend / divisor rounded with the given mode, without going through BigDecimal.
+    public static long divide(long dividend, long divisor, RoundingMode rounding) {
+        if (divisor <= 0) {
+            throw new IllegalArgumentException("Divisor must be positive");
+        }
+        if (rounding == null) {
+            throw new IllegalArgumentException("Rounding mode cannot be null");
+        }
+        long quotient = dividend / divisor; // truncates toward zero
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        long sign = dividend < 0 ? -1 : 1;
+        // |remainder| < divisor, so comparing |remainder| with divisor - |remainder| avoids 2*|r| overflowing
+        long absRemainder = Math.abs(remainder);
+        int half = Long.compare(absRemainder, divisor - absRemainder);
+        switch (rounding) {
+            case DOWN:
+                return quotient;
+            case UP:
+                return quotient + sign;
+            case FLOOR:
+                return sign < 0 ? quotient - 1 : quotient;
+            case CEILING:
+                return sign > 0 ? quotient + 1 : quotient;
+            case HALF_UP:
+                return half >= 0 ? quotient + sign : quotient;
+            case HALF_DOWN:
+                return half > 0 ? quotient + sign : quotient;
+            case HALF_EVEN:
+                if (half != 0) {
+                    return half > 0 ? quotient + sign : quotient;
+                }
+                return (quotient & 1) != 0 ? quotient + sign : quotient;
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+    }
+
+    // Exact sum of amounts[0..length).
+    public static long sum(long[] amounts, int length) {
+        checkLength(amounts.length, length);
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            bits |= amounts[i];
+        }
+        if (fitsUnchecked(bitLength(bits), 0, length)) {
+            long total = 0;
+            for (int i = 0; i < length; i++) {
+                total += amounts[i];
+            }
+            return total;
+        }
+        long total = 0;
+        for (int i = 0; i < length; i++) {
+            total = Math.addExact(total, amounts[i]);
+        }
+        return total;
+    }
+
+    // Exact sum of unitPrices[i] * quantities[i] over [0..length), e.g. a cart or order total.
+    public static long dot(long[] unitPrices, int[] quantities, int length) {
+        checkLength(unitPrices.length, length);
+        checkLength(quantities.length, length);
+        long priceBits = 0;
+        int quantityBits = 0;
+        for (int i = 0; i < length; i++) {
+            priceBits |= unitPrices[i];
+            quantityBits |= quantities[i];
+        }
+        if (fitsUnchecked(bitLength(priceBits), bitLength(quantityBits), length)) {
+            long total = 0;
+            for (int i = 0; i < length; i++) {
+                total += unitPrices[i] * quantities[i];
+            }
+            return total;
+        }
+        long total = 0;
+        for (int i = 0; i < length; i++) {
+            total = Math.addExact(total, Math.multiplyExact(unitPrices[i], (long) quantities[i]));
+        }
+        return total;
+    }
+
+    // Non-negative operands only (a negative value sets the sign bit and forces the exact path).
+    private static boolean fitsUnchecked(int valueBits, int factorBits, int length) {
+        int countBits = 32 - Integer.numberOfLeadingZeros(length);
+        return valueBits + factorBits + countBits <= 62;
+    }
+
+    private static int bitLength(long orOfValues) {
+        return 64 - Long.numberOfLeadingZeros(orOfValues);
+    }
+
+    private static int bitLength(int orOfValues) {
+        return 32 - Integer.numberOfLeadingZeros(orOfValues);
+    }
+
+    private static void checkLength(int arrayLength, int length) {
+        if (length < 0 || length > arrayLength) {
+            throw new IllegalArgumentException("Length out of range: " + length);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package shopping_cart.util;
+
+import java.nio.ByteBuffer;
+
+// Variable-length integers (LEB128): 7 bits per byte, high bit set on every byte but the last.
+// Small values take one or two bytes instead of four or eight. Negative numbers should be
+// zig-zag encoded first, otherwise they always take the maximum length.
+public final class VarInts {
+
+    private VarInts() {
+    }
+
+    public static void putVarInt(ByteBuffer out, int value) {
+        putVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    public static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    // Relative read at the buffer's position.
+    public static int getVarInt(ByteBuffer in) {
+        return (int) getVarLong(in);
+    }
+
+    public static long getVarLong(ByteBuffer in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("Malformed variable-length integer");
+    }
+
+    // Absolute read at position[0], which is advanced past the value. Leaves the buffer's own
+    // position alone, so several readers can share one buffer.
+    public static int getVarInt(ByteBuffer in, int[] position) {
+        return (int) getVarLong(in, position);
+    }
+
+    public static long getVarLong(ByteBuffer in, int[] position) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get(position[0]++);
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("Malformed variable-length integer");
+    }
+
+    // Maps signed to unsigned so small magnitudes stay short: 0, -1, 1, -2 -> 0, 1, 2, 3.
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
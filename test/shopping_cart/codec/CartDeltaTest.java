@@ -0,0 +1,148 @@
+package shopping_cart.codec;
+
+import java.nio.ByteBuffer;
+import java.util.Currency;
+import java.util.List;
+import java.util.Random;
+
+import shopping_cart.model.Cart;
+import shopping_cart.model.LineItem;
+import shopping_cart.model.Money;
+import shopping_cart.model.Product;
+import shopping_cart.util.IdGenerator;
+
+// Round trips of cart deltas: after every applied delta the replica must hold the sender's lines
+// with the same ids, order and quantities, and the same cart version. Covers a line the receiver
+// already has being removed and added again within one delta (sent as removal plus new line).
+//
+// Run: javac -d out $(find shopping_cart test -name '*.java') && java -cp out shopping_cart.codec.CartDeltaTest
+public class CartDeltaTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    public static void main(String[] args) {
+        removeThenReAddMovesLineToEnd(new IdGenerator(1));
+        removeThenReAddMovesLineToEnd(null); // without line ids only the explicit removal keeps order
+        addedThenRemovedLineIsNotSent();
+        randomEditsStayInSync();
+        System.out.println("CartDeltaTest passed");
+    }
+
+    private static void removeThenReAddMovesLineToEnd(IdGenerator lineIds) {
+        Product[] products = products(4);
+        Cart sender = new Cart(7L, USD, lineIds);
+        sender.addProduct(products[0], 1);
+        sender.addProduct(products[1], 2);
+        sender.addProduct(products[2], 3);
+        Cart replica = copy(sender);
+        CartDeltaRecorder recorder = CartDeltaRecorder.attach(sender);
+
+        long firstLine = sender.getLineId(products[0].getId());
+        sender.removeProduct(products[0].getId());
+        sender.addProduct(products[0], 5);
+        sender.updateQuantity(products[1].getId(), 4);
+        ship(recorder, replica, products, 1);
+
+        checkSame(sender, replica);
+        List<LineItem> lines = replica.getLineItems();
+        check(lines.get(2).getProduct().getId() == products[0].getId(), "re-added line is last");
+        check(lines.get(2).getQuantity() == 5, "re-added quantity");
+        if (lineIds != null) {
+            check(lines.get(2).getId() != firstLine, "re-added line has a new id");
+        }
+
+        // removed for good: the replica drops it too
+        sender.removeProduct(products[0].getId());
+        ship(recorder, replica, products, 2);
+        checkSame(sender, replica);
+    }
+
+    private static void addedThenRemovedLineIsNotSent() {
+        Product[] products = products(2);
+        Cart sender = new Cart(8L, USD, new IdGenerator(1));
+        sender.addProduct(products[0], 1);
+        Cart replica = copy(sender);
+        CartDeltaRecorder recorder = CartDeltaRecorder.attach(sender);
+        sender.addProduct(products[1], 1);
+        sender.removeProduct(products[1].getId());
+        sender.addProduct(products[0], 1);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        recorder.writeDelta(buffer);
+        buffer.flip();
+        ModelCodec.applyCartDelta(buffer, replica, id -> products[id - 1]);
+        checkSame(sender, replica);
+        check(replica.getLineItems().size() == 1, "transient line not replicated");
+    }
+
+    private static void randomEditsStayInSync() {
+        Product[] products = products(20);
+        Random random = new Random(40);
+        Cart sender = new Cart(9L, USD, new IdGenerator(2));
+        Cart replica = copy(sender);
+        CartDeltaRecorder recorder = CartDeltaRecorder.attach(sender);
+        long sequence = 0;
+        for (int round = 0; round < 500; round++) {
+            for (int step = 0, steps = random.nextInt(12); step < steps; step++) {
+                Product product = products[random.nextInt(products.length)];
+                int id = product.getId();
+                int op = random.nextInt(3);
+                if (op == 0 || sender.getLineId(id) < 0) {
+                    sender.addProduct(product, 1 + random.nextInt(3));
+                } else if (op == 1) {
+                    sender.updateQuantity(id, 1 + random.nextInt(9));
+                } else {
+                    sender.removeProduct(id);
+                }
+            }
+            if (recorder.hasChanges()) {
+                ship(recorder, replica, products, ++sequence);
+            }
+            checkSame(sender, replica);
+        }
+    }
+
+    private static void ship(CartDeltaRecorder recorder, Cart replica, Product[] products, long expectedSequence) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 14);
+        long written = recorder.writeDelta(buffer);
+        buffer.flip();
+        long applied = ModelCodec.applyCartDelta(buffer, replica, id -> products[id - 1]);
+        check(written == expectedSequence && applied == expectedSequence, "sequence " + applied);
+        check(!buffer.hasRemaining(), "delta fully read");
+    }
+
+    private static Cart copy(Cart cart) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 14);
+        ModelCodec.encode(cart, buffer);
+        buffer.flip();
+        return ModelCodec.decodeCart(buffer, id -> null);
+    }
+
+    private static void checkSame(Cart sender, Cart replica) {
+        List<LineItem> expected = sender.getLineItems();
+        List<LineItem> actual = replica.getLineItems();
+        check(expected.size() == actual.size(), "line count " + actual.size() + " vs " + expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            LineItem want = expected.get(i);
+            LineItem got = actual.get(i);
+            check(want.getId() == got.getId(), "line " + i + " id");
+            check(want.getProduct().getId() == got.getProduct().getId(), "line " + i + " product");
+            check(want.getQuantity() == got.getQuantity(), "line " + i + " quantity");
+        }
+        check(sender.getVersion() == replica.getVersion(),
+                "version " + replica.getVersion() + " vs " + sender.getVersion());
+    }
+
+    private static Product[] products(int count) {
+        Product[] products = new Product[count];
+        for (int i = 0; i < count; i++) {
+            products[i] = new Product(i + 1, "Product " + (i + 1), "Test product", Money.ofMinor(100 + i * 7L, USD));
+        }
+        return products;
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Check failed: " + what);
+        }
+    }
+}
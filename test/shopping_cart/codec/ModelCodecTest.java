@@ -0,0 +1,178 @@
+package shopping_cart.codec;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import shopping_cart.model.Cart;
+import shopping_cart.model.CartStatus;
+import shopping_cart.model.LineItem;
+import shopping_cart.model.Money;
+import shopping_cart.model.Order;
+import shopping_cart.model.OrderLineItem;
+import shopping_cart.model.Product;
+import shopping_cart.model.User;
+import shopping_cart.util.IdGenerator;
+import shopping_cart.util.VarInts;
+
+// Round trips through ModelCodec and VarInts: every record decodes to what was encoded (ids,
+// line order, versions, prices, timestamps), variable-length integers keep their boundary values
+// and lengths, and a record of the wrong type is refused.
+//
+// Run: javac -d out $(find shopping_cart test -name '*.java') && java -cp out shopping_cart.codec.ModelCodecTest
+public class ModelCodecTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    public static void main(String[] args) {
+        varIntsRoundTrip();
+        cartRoundTrip();
+        lineItemRoundTrip();
+        orderRoundTrip();
+        wrongRecordTypeIsRefused();
+        System.out.println("ModelCodecTest passed");
+    }
+
+    private static void varIntsRoundTrip() {
+        long[] values = { 0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, 1L << 35, Long.MAX_VALUE, -1, Long.MIN_VALUE };
+        int[] lengths = { 1, 1, 1, 2, 2, 3, 5, 6, 9, 10, 10 };
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        for (int i = 0; i < values.length; i++) {
+            int start = buffer.position();
+            VarInts.putVarLong(buffer, values[i]);
+            check(buffer.position() - start == lengths[i], values[i] + " takes " + lengths[i] + " bytes");
+        }
+        buffer.flip();
+        int[] position = { 0 };
+        for (long value : values) {
+            check(VarInts.getVarLong(buffer, position) == value, "absolute read of " + value);
+            check(VarInts.getVarLong(buffer) == value, "relative read of " + value);
+        }
+        check(position[0] == buffer.limit() && !buffer.hasRemaining(), "both reads consume every byte");
+
+        for (long value : new long[] { 0, -1, 1, -2, 2, Long.MIN_VALUE, Long.MAX_VALUE }) {
+            check(VarInts.unZigZag(VarInts.zigZag(value)) == value, "zig-zag of " + value);
+        }
+        check(VarInts.zigZag(-1) == 1 && VarInts.zigZag(1) == 2, "small magnitudes stay small");
+
+        buffer.clear();
+        for (int value : new int[] { 0, 300, Integer.MAX_VALUE }) {
+            VarInts.putVarInt(buffer, value);
+        }
+        buffer.flip();
+        check(VarInts.getVarInt(buffer) == 0 && VarInts.getVarInt(buffer) == 300
+                && VarInts.getVarInt(buffer) == Integer.MAX_VALUE, "int round trip");
+    }
+
+    private static void cartRoundTrip() {
+        Product[] products = products(5);
+        Cart cart = new Cart(new IdGenerator(3), USD);
+        for (Product product : products) {
+            cart.addProduct(product, product.getId());
+        }
+        cart.removeProduct(products[1].getId());
+        cart.addProduct(products[1], 9); // back at the end, under a new line id
+        cart.updateQuantity(products[3].getId(), 2);
+        cart.checkout();
+
+        // products resolved by the receiver are used as they are; unknown ones are rebuilt
+        Cart decoded = roundTrip(cart, id -> id == 1 ? products[0] : null);
+        check(decoded.getId() == cart.getId(), "cart id");
+        check(decoded.getStatus() == CartStatus.CHECKED_OUT, "status");
+        check(decoded.getVersion() == cart.getVersion(), "version");
+        List<LineItem> expected = cart.getLineItems();
+        List<LineItem> actual = decoded.getLineItems();
+        check(actual.size() == expected.size(), "line count");
+        for (int i = 0; i < expected.size(); i++) {
+            check(actual.get(i).getId() == expected.get(i).getId(), "line " + i + " id");
+            check(actual.get(i).getProduct().getId() == expected.get(i).getProduct().getId(), "line " + i + " product");
+            check(actual.get(i).getQuantity() == expected.get(i).getQuantity(), "line " + i + " quantity");
+            check(actual.get(i).getProduct().getPrice().equals(expected.get(i).getProduct().getPrice()), "line " + i + " price");
+        }
+        check(actual.get(0).getProduct() == products[0], "resolved product instance reused");
+        check(actual.get(1).getProduct() != products[2]
+                && actual.get(1).getProduct().getProductName().equals(products[2].getProductName()), "unresolved product rebuilt");
+        check(decoded.getTotalAmount().equals(cart.getTotalAmount()), "total");
+    }
+
+    private static void lineItemRoundTrip() {
+        Product product = products(1)[0];
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 10);
+        ModelCodec.encode(new LineItem(1L << 40, product, 7), buffer);
+        buffer.flip();
+        LineItem decoded = ModelCodec.decodeLineItem(buffer, id -> product);
+        check(decoded.getId() == 1L << 40 && decoded.getProduct() == product && decoded.getQuantity() == 7, "line item");
+        check(!buffer.hasRemaining(), "line item fully read");
+    }
+
+    private static void orderRoundTrip() {
+        User user = new User(42, "Test User", "test@example.com", "hash");
+        List<OrderLineItem> lines = new ArrayList<>();
+        lines.add(new OrderLineItem(1, "Product 1", Money.ofMinor(1_999, USD), 3));
+        lines.add(new OrderLineItem(70_000, "Produkt ü", Money.ofMinor(0, USD), 1));
+        for (Instant createdAt : new Instant[] { Instant.ofEpochSecond(1_700_000_000L, 123_456_789),
+                Instant.ofEpochSecond(-86_400, 1) }) {
+            Order order = new Order(Long.MAX_VALUE - 1, user, lines, createdAt);
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 10);
+            ModelCodec.encode(order, buffer);
+            buffer.flip();
+            Order decoded = ModelCodec.decodeOrder(buffer, id -> id == 42 ? user : null);
+            check(decoded.getId() == order.getId() && decoded.getUser() == user, "order id and user");
+            check(decoded.getCreatedAt().equals(createdAt), "created at " + createdAt);
+            check(decoded.getTotalAmount().equals(order.getTotalAmount()), "order total");
+            check(decoded.getLineItems().size() == lines.size(), "order line count");
+            for (int i = 0; i < lines.size(); i++) {
+                OrderLineItem want = lines.get(i);
+                OrderLineItem got = decoded.getLineItems().get(i);
+                check(got.getProductId() == want.getProductId() && got.getProductName().equals(want.getProductName())
+                        && got.getPriceAtPurchase().equals(want.getPriceAtPurchase())
+                        && got.getQuantity() == want.getQuantity(), "order line " + i);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 10);
+        ModelCodec.encode(lines.get(0), buffer);
+        buffer.flip();
+        OrderLineItem line = ModelCodec.decodeOrderLineItem(buffer);
+        check(line.getSubTotal().equals(lines.get(0).getSubTotal()), "order line item");
+    }
+
+    private static void wrongRecordTypeIsRefused() {
+        Product product = products(1)[0];
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 10);
+        ModelCodec.encode(new LineItem(1, product, 1), buffer);
+        buffer.flip();
+        try {
+            ModelCodec.decodeCart(buffer, id -> product);
+            throw new AssertionError("Check failed: line item decoded as a cart");
+        } catch (IllegalArgumentException expected) {
+            // refused by its type tag
+        }
+    }
+
+    private static Cart roundTrip(Cart cart, IntFunction<Product> products) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        ModelCodec.encode(cart, buffer);
+        buffer.flip();
+        Cart decoded = ModelCodec.decodeCart(buffer, products);
+        check(!buffer.hasRemaining(), "cart fully read");
+        return decoded;
+    }
+
+    private static Product[] products(int count) {
+        Product[] products = new Product[count];
+        for (int i = 0; i < count; i++) {
+            products[i] = new Product(i + 1, "Product " + (i + 1), "Test product", Money.ofMinor(100 + i * 7L, USD));
+        }
+        return products;
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Check failed: " + what);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package shopping_cart.events;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import shopping_cart.model.Cart;
+import shopping_cart.model.Money;
+import shopping_cart.model.Product;
+
+// ChangeEventPublisher against healthy and failing transports: events of one cart arrive in change
+// order, and a transport that never recovers (or a broker subscriber that keeps throwing) costs
+// cart writers a bounded wait, with every event either shipped or counted as dropped.
+//
+// Run: javac -d out $(find shopping_cart test -name '*.java') && java -cp out shopping_cart.events.ChangeEventPublisherTest
+public class ChangeEventPublisherTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    public static void main(String[] args) throws InterruptedException {
+        eventsOfOneCartArriveInOrder();
+        deadTransportDoesNotStallCarts();
+        throwingSubscriberDoesNotStallCarts();
+        System.out.println("ChangeEventPublisherTest passed");
+    }
+
+    private static void eventsOfOneCartArriveInOrder() {
+        InProcessBroker broker = new InProcessBroker();
+        List<ChangeEvent> received = new ArrayList<>();
+        broker.subscribe(received::add);
+        Product product = product();
+        Cart cart = new Cart(1L, USD);
+        try (ChangeEventPublisher publisher = new ChangeEventPublisher(broker, 1 << 10, 64, 1,
+                Executors.defaultThreadFactory())) {
+            publisher.track(cart);
+            for (int i = 0; i < 5_000; i++) {
+                cart.addProduct(product, 1);
+            }
+            publisher.flush();
+        }
+        check(received.size() == 5_000, "received " + received.size());
+        for (int i = 0; i < received.size(); i++) {
+            check(received.get(i).getVersion() == i + 1, "version order at " + i);
+        }
+    }
+
+    private static void deadTransportDoesNotStallCarts() throws InterruptedException {
+        AtomicLong attempts = new AtomicLong();
+        EventTransport dead = batch -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("transport down");
+        };
+        runAgainstFailingTransport(dead);
+        check(attempts.get() > 0, "transport was tried");
+    }
+
+    private static void throwingSubscriberDoesNotStallCarts() throws InterruptedException {
+        InProcessBroker broker = new InProcessBroker();
+        broker.subscribe(event -> {
+            throw new IllegalStateException("subscriber down");
+        });
+        runAgainstFailingTransport(broker);
+    }
+
+    // Four writers on their own carts against a tiny ring: every add must finish quickly although
+    // nothing is ever shipped, and close() must return promptly.
+    private static void runAgainstFailingTransport(EventTransport transport) throws InterruptedException {
+        ChangeEventPublisher publisher = new ChangeEventPublisher(transport, 16, 4, 1, 2, 3,
+                Executors.defaultThreadFactory());
+        Product product = product();
+        List<Thread> writers = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int t = 0; t < 4; t++) {
+            Cart cart = new Cart(t, USD);
+            publisher.track(cart);
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    cart.addProduct(product, 1);
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join(30_000);
+            check(!writer.isAlive(), "writer stalled behind a failing transport");
+        }
+        long closing = System.nanoTime();
+        publisher.close();
+        check(System.nanoTime() - closing < 5_000_000_000L, "close() returned promptly");
+        check(publisher.getOverflowCount() > 0, "overflowing events counted");
+        check(publisher.getDroppedBatchCount() > 0, "given-up batches counted");
+        check(publisher.getDroppedCount() == 2_000, "every event dropped and counted: " + publisher.getDroppedCount());
+        check(System.nanoTime() - started < 30_000_000_000L, "bounded total time");
+    }
+
+    private static Product product() {
+        return new Product(1, "Product 1", "Test product", Money.ofMinor(100, USD));
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Check failed: " + what);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package shopping_cart.events;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// EventRing under concurrent producers: every event comes out exactly once, and the events of each
+// producer come out in the order it offered them, across many laps of a small ring.
+//
+// Run: javac -d out $(find shopping_cart test -name '*.java') && java -cp out shopping_cart.events.EventRingTest
+public class EventRingTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int EVENTS_PER_PRODUCER = 200_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        fullRingRefusesOffers();
+        producersKeepTheirOrder();
+        System.out.println("EventRingTest passed");
+    }
+
+    private static void fullRingRefusesOffers() {
+        EventRing ring = new EventRing(4);
+        for (int i = 0; i < 4; i++) {
+            check(ring.offer(event(0, i)), "offer " + i + " into free slot");
+        }
+        check(!ring.offer(event(0, 4)), "offer into full ring");
+        List<ChangeEvent> out = new ArrayList<>();
+        check(ring.drainTo(out, 2) == 2, "drain two");
+        check(ring.offer(event(0, 4)) && ring.offer(event(0, 5)), "offers after drain");
+        check(ring.drainTo(out, 10) == 4, "drain the rest");
+        for (int i = 0; i < out.size(); i++) {
+            check(out.get(i).getVersion() == i, "position " + i);
+        }
+    }
+
+    private static void producersKeepTheirOrder() throws InterruptedException {
+        EventRing ring = new EventRing(1 << 10);
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+                    ChangeEvent event = event(producer, i);
+                    while (!ring.offer(event)) {
+                        Thread.yield(); // full: wait for the consumer
+                    }
+                }
+            }, "ring-producer-" + p);
+            producers[p].start();
+        }
+        long[] next = new long[PRODUCERS];
+        List<ChangeEvent> batch = new ArrayList<>();
+        long received = 0;
+        long total = (long) PRODUCERS * EVENTS_PER_PRODUCER;
+        while (received < total) {
+            batch.clear();
+            if (ring.drainTo(batch, 256) == 0) {
+                Thread.yield();
+                continue;
+            }
+            for (ChangeEvent event : batch) {
+                int producer = (int) event.getEntityId();
+                check(event.getVersion() == next[producer],
+                        "producer " + producer + ": got " + event.getVersion() + ", expected " + next[producer]);
+                next[producer]++;
+            }
+            received += batch.size();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        check(ring.drainTo(batch, 1) == 0, "nothing left over");
+    }
+
+    private static ChangeEvent event(int producer, long sequence) {
+        return new ChangeEvent(ChangeType.QUANTITY_CHANGED, producer, sequence, 1, 1, 0, 1, 100, 0);
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Check failed: " + what);
+        }
+    }
+}
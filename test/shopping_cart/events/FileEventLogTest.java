@@ -0,0 +1,94 @@
+package shopping_cart.events;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// FileEventLog recovery from a crash mid-write: read() stops before a torn batch at the end, and
+// reopening the log cuts it off, so batches sent afterwards are readable instead of hidden behind it.
+//
+// Run: javac -d out $(find shopping_cart test -name '*.java') && java -cp out shopping_cart.events.FileEventLogTest
+public class FileEventLogTest {
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("event-log-test");
+        try {
+            tornBatchIsCutOffOnReopen(directory.resolve("torn-batch.log"), tornBatch());
+            tornBatchIsCutOffOnReopen(directory.resolve("torn-length.log"), new byte[] { 0, 0 });
+            check(FileEventLog.read(directory.resolve("missing.log")).isEmpty(), "missing log reads as empty");
+        } finally {
+            deleteRecursively(directory);
+        }
+        System.out.println("FileEventLogTest passed");
+    }
+
+    private static void tornBatchIsCutOffOnReopen(Path file, byte[] tail) throws IOException {
+        try (FileEventLog log = new FileEventLog(file, true)) {
+            for (int b = 0; b < 3; b++) {
+                log.send(ChangeEventBatch.encode(events(b * 10, 10)));
+            }
+        }
+        long complete = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(tail)); // what a crash mid-send leaves behind
+        }
+        checkVersions(FileEventLog.read(file), 30, "before reopen");
+
+        try (FileEventLog log = new FileEventLog(file, true)) {
+            check(Files.size(file) == complete, "torn tail cut off on open");
+            log.send(ChangeEventBatch.encode(events(30, 10)));
+        }
+        checkVersions(FileEventLog.read(file), 40, "after reopen");
+    }
+
+    // A length prefix promising more bytes than follow it.
+    private static byte[] tornBatch() {
+        byte[] batch = ChangeEventBatch.encode(events(100, 10));
+        ByteBuffer torn = ByteBuffer.allocate(Integer.BYTES + batch.length / 2);
+        torn.putInt(batch.length).put(batch, 0, batch.length / 2);
+        return torn.array();
+    }
+
+    private static void checkVersions(List<ChangeEvent> events, int count, String when) {
+        check(events.size() == count, when + ": " + events.size() + " events, expected " + count);
+        for (int i = 0; i < count; i++) {
+            check(events.get(i).getVersion() == i, when + ": event " + i);
+        }
+    }
+
+    private static List<ChangeEvent> events(int firstVersion, int count) {
+        List<ChangeEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(new ChangeEvent(ChangeType.QUANTITY_CHANGED, 7, firstVersion + i, 1, 2, i, i + 1, 250, 1_000 + i));
+        }
+        return events;
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Check failed: " + what);
+        }
+    }
+}
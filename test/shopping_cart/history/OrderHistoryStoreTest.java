@@ -0,0 +1,157 @@
+package shopping_cart.history;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import shopping_cart.model.Money;
+import shopping_cart.model.Order;
+import shopping_cart.model.OrderLineItem;
+import shopping_cart.model.User;
+
+// Range queries on the order history: every [from, to) query, paged, must return exactly the
+// orders a linear scan finds, newest appended first, including open bounds (Instant.MIN/MAX) and
+// orders appended out of creation order. Reopening the mapped segment files must rebuild the same
+// index, and appends after a reopen must continue the users' chains.
+//
+// Run: javac -d out $(find shopping_cart test -name '*.java') && java -cp out shopping_cart.history.OrderHistoryStoreTest
+public class OrderHistoryStoreTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final long BASE_MILLIS = 1_700_000_000_000L;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("order-history-test");
+        try {
+            rangeQueriesMatchScan(directory.resolve("ranges"));
+            reopenRebuildsIndex(directory.resolve("reopen"));
+        } finally {
+            deleteRecursively(directory);
+        }
+        System.out.println("OrderHistoryStoreTest passed");
+    }
+
+    private static void rangeQueriesMatchScan(Path directory) {
+        User user = new User(1, "Test User", "test@example.com", "hash");
+        User other = new User(2, "Other User", "other@example.com", "hash");
+        List<Order> appended = new ArrayList<>();
+        Random random = new Random(37);
+        try (OrderHistoryStore store = new OrderHistoryStore(directory, 4096)) {
+            for (int i = 0; i < 500; i++) {
+                // mostly in order, some arriving up to a minute late
+                long millis = BASE_MILLIS + i * 1000L - (random.nextInt(10) == 0 ? random.nextInt(60_000) : 0);
+                Order order = order(i + 1, user, Instant.ofEpochMilli(millis));
+                store.append(order);
+                appended.add(order);
+                store.append(order(100_000 + i, other, Instant.ofEpochMilli(millis)));
+            }
+            checkRange(store, user, appended, Instant.MIN, Instant.MAX, 7);
+            checkRange(store, user, appended, Instant.MIN, Instant.ofEpochMilli(BASE_MILLIS + 100_000), 10);
+            checkRange(store, user, appended, Instant.ofEpochMilli(BASE_MILLIS + 400_000), Instant.MAX, 10);
+            checkRange(store, user, appended, Instant.EPOCH, Instant.MAX, 1000);
+            for (int q = 0; q < 200; q++) {
+                long from = BASE_MILLIS - 30_000 + random.nextInt(560_000);
+                long to = from + 1 + random.nextInt(120_000);
+                checkRange(store, user, appended, Instant.ofEpochMilli(from), Instant.ofEpochMilli(to), 1 + random.nextInt(20));
+            }
+            check(store.ordersBetween(user, Instant.MAX.minusSeconds(1), Instant.MAX, 5).getOrders().isEmpty(),
+                    "nothing at the end of time");
+        }
+    }
+
+    private static void reopenRebuildsIndex(Path directory) throws IOException {
+        User user = new User(1, "Test User", "test@example.com", "hash");
+        User other = new User(2, "Other User", "other@example.com", "hash");
+        List<Order> appended = new ArrayList<>();
+        try (OrderHistoryStore store = new OrderHistoryStore(directory, 4096)) {
+            for (int i = 0; i < 300; i++) {
+                Order order = order(i + 1, user, Instant.ofEpochMilli(BASE_MILLIS + i * 1000L));
+                store.append(order);
+                appended.add(order);
+                store.append(order(100_000 + i, other, Instant.ofEpochMilli(BASE_MILLIS + i * 1000L)));
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            check(files.count() > 1, "history spans several segments");
+        }
+        try (OrderHistoryStore store = new OrderHistoryStore(directory, 4096)) {
+            check(store.orderCount(user) == 300 && store.orderCount(other) == 300, "order counts after reopen");
+            List<Order> last = store.lastOrders(user, 3);
+            check(last.size() == 3 && last.get(0).getId() == 300 && last.get(2).getId() == 298, "newest orders after reopen");
+            Order first = last.get(0);
+            check(first.getCreatedAt().equals(appended.get(299).getCreatedAt())
+                    && first.getTotalAmount().equals(appended.get(299).getTotalAmount()), "order decoded intact");
+            checkRange(store, user, appended, Instant.MIN, Instant.MAX, 25);
+            checkRange(store, user, appended, Instant.ofEpochMilli(BASE_MILLIS + 50_000),
+                    Instant.ofEpochMilli(BASE_MILLIS + 150_000), 9);
+            for (int i = 300; i < 320; i++) {
+                Order order = order(i + 1, user, Instant.ofEpochMilli(BASE_MILLIS + i * 1000L));
+                store.append(order);
+                appended.add(order);
+            }
+        }
+        try (OrderHistoryStore store = new OrderHistoryStore(directory, 4096)) {
+            check(store.orderCount(user) == 320, "appends after reopen survive the next reopen");
+            checkRange(store, user, appended, Instant.MIN, Instant.MAX, 50);
+        }
+    }
+
+    // Pages through [from, to) and compares with the appended orders in that range, newest appended first.
+    private static void checkRange(OrderHistoryStore store, User user, List<Order> appended,
+                                   Instant from, Instant to, int pageSize) {
+        List<Long> expected = new ArrayList<>();
+        for (int i = appended.size() - 1; i >= 0; i--) {
+            Instant createdAt = appended.get(i).getCreatedAt();
+            if (!createdAt.isBefore(from) && createdAt.isBefore(to)) {
+                expected.add(appended.get(i).getId());
+            }
+        }
+        List<Long> actual = new ArrayList<>();
+        OrderPage page = store.ordersBetween(user, from, to, pageSize);
+        while (true) {
+            check(page.getOrders().size() <= pageSize, "page size");
+            for (Order order : page.getOrders()) {
+                actual.add(order.getId());
+            }
+            if (!page.hasMore()) {
+                break;
+            }
+            page = store.ordersBetween(user, from, to, pageSize, page.getNextCursor());
+        }
+        check(actual.equals(expected), "range [" + from + ", " + to + "): " + actual.size() + " orders, expected " + expected.size());
+    }
+
+    private static Order order(long id, User user, Instant createdAt) {
+        List<OrderLineItem> lines = new ArrayList<>();
+        lines.add(new OrderLineItem((int) (id % 50) + 1, "Product", Money.ofMinor(250, USD), 1 + (int) (id % 3)));
+        return new Order(id, user, lines, createdAt);
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Check failed: " + what);
+        }
+    }
+}
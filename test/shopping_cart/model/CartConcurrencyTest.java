@@ -0,0 +1,163 @@
+package shopping_cart.model;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Concurrency tests for Cart: concurrent adds are never lost, conditional updates apply at most
+// once per version, and a listener registered while lock-free writers are running ends up with
+// the same quantities as the cart (no write slips past it unseen or out of order).
+//
+// Run: javac -d out $(find shopping_cart test -name '*.java') && java -cp out shopping_cart.model.CartConcurrencyTest
+public class CartConcurrencyTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+    private static final int THREADS = 4;
+
+    public static void main(String[] args) throws InterruptedException {
+        concurrentAddsAreNotLost();
+        conditionalUpdatesApplyOncePerVersion();
+        for (int round = 0; round < 50; round++) {
+            listenerAddedDuringWritesSeesEveryChange();
+        }
+        System.out.println("CartConcurrencyTest passed");
+    }
+
+    private static void concurrentAddsAreNotLost() throws InterruptedException {
+        Product[] products = products(8);
+        Cart cart = new Cart(1L, USD);
+        runConcurrently(thread -> {
+            for (int i = 0; i < 10_000; i++) {
+                cart.addProduct(products[(i + thread) % products.length], 1);
+            }
+        });
+        check(cart.getTotalItems() == THREADS * 10_000, "total items " + cart.getTotalItems());
+        for (LineItem line : cart.getLineItems()) {
+            check(line.getQuantity() == THREADS * 10_000 / products.length, "quantity of " + line.getProduct().getId());
+        }
+    }
+
+    private static void conditionalUpdatesApplyOncePerVersion() throws InterruptedException {
+        Product[] products = products(1);
+        Cart cart = new Cart(1L, USD);
+        cart.addProduct(products[0], 1);
+        AtomicInteger applied = new AtomicInteger();
+        long version = cart.getVersion();
+        runConcurrently(thread -> {
+            if (cart.updateQuantity(products[0].getId(), 10 + thread, version)) {
+                applied.incrementAndGet();
+            }
+        });
+        check(applied.get() == 1, "conditional updates applied: " + applied.get());
+        check(cart.getVersion() == version + 1, "one version step");
+    }
+
+    private static void listenerAddedDuringWritesSeesEveryChange() throws InterruptedException {
+        Product[] products = products(4);
+        Cart cart = new Cart(1L, USD);
+        QuantityView view = new QuantityView(cart);
+        CountDownLatch writing = new CountDownLatch(THREADS);
+        Thread registrar = new Thread(() -> {
+            try {
+                writing.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            cart.addListener(view);
+            view.initialize();
+        });
+        registrar.start();
+        runConcurrently(thread -> {
+            writing.countDown();
+            for (int i = 0; i < 2_000; i++) {
+                Product product = products[(i + thread) % products.length];
+                if (i % 5 == 4) {
+                    cart.updateQuantity(product.getId(), 1 + i % 3);
+                } else {
+                    cart.addProduct(product, 1);
+                }
+            }
+        });
+        registrar.join();
+        for (LineItem line : cart.getLineItems()) {
+            check(view.quantityOf(line.getProduct().getId()) == line.getQuantity(),
+                    "listener view of product " + line.getProduct().getId());
+        }
+    }
+
+    // Follows the cart the way CartDiscounts does: absolute quantities from events, plus one full
+    // read right after registering.
+    private static final class QuantityView implements CartListener {
+        private final Cart cart;
+        private final Map<Integer, Integer> quantities = new HashMap<>();
+
+        private QuantityView(Cart cart) {
+            this.cart = cart;
+        }
+
+        synchronized void initialize() {
+            for (LineItem line : cart.getLineItems()) {
+                quantities.put(line.getProduct().getId(), line.getQuantity());
+            }
+        }
+
+        @Override
+        public synchronized void lineChanged(Cart changed, Product product, int oldQuantity, int newQuantity) {
+            quantities.put(product.getId(), newQuantity);
+        }
+
+        synchronized int quantityOf(int productId) {
+            return quantities.getOrDefault(productId, 0);
+        }
+    }
+
+    private interface Work {
+        void run(int thread);
+    }
+
+    private static void runConcurrently(Work work) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    work.run(thread);
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : threads) {
+            worker.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Worker failed", failures.get(0));
+        }
+    }
+
+    private static Product[] products(int count) {
+        Product[] products = new Product[count];
+        for (int i = 0; i < count; i++) {
+            products[i] = new Product(i + 1, "Product " + (i + 1), "Test product", Money.ofMinor(100 + i, USD));
+        }
+        return products;
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Check failed: " + what);
+        }
+    }
+}
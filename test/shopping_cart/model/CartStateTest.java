@@ -0,0 +1,203 @@
+package shopping_cart.model;
+
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Regression tests for Cart's persistent state: random edits are checked after every step against
+// a LinkedHashMap model (lines, insertion order, totals, line ids), including the renumbering of
+// the order trie after many removals and repricing through the price-change log (single and bulk).
+//
+// Run: javac -d out $(find shopping_cart test -name '*.java') && java -cp out shopping_cart.model.CartStateTest
+public class CartStateTest {
+
+    private static final Currency USD = Currency.getInstance("USD");
+
+    public static void main(String[] args) {
+        randomEditsMatchModel();
+        orderSurvivesRenumbering();
+        pricesFollowProductChanges();
+        restoredCartKeepsIdsOrderAndVersion();
+        throwingListenerDoesNotFailWrites();
+        System.out.println("CartStateTest passed");
+    }
+
+    private static void randomEditsMatchModel() {
+        Product[] products = products(300);
+        Cart cart = new Cart(1L, USD);
+        Map<Integer, Integer> model = new LinkedHashMap<>();
+        Random random = new Random(42);
+        for (int step = 0; step < 20_000; step++) {
+            Product product = products[random.nextInt(products.length)];
+            int id = product.getId();
+            int op = random.nextInt(3);
+            if (op == 0 || !model.containsKey(id)) {
+                int quantity = 1 + random.nextInt(4);
+                cart.addProduct(product, quantity);
+                model.merge(id, quantity, Integer::sum);
+            } else if (op == 1) {
+                int quantity = 1 + random.nextInt(9);
+                cart.updateQuantity(id, quantity);
+                model.put(id, quantity);
+            } else {
+                cart.removeProduct(id);
+                model.remove(id);
+            }
+            if (step % 97 == 0) {
+                checkMatches(cart, model, products);
+            }
+        }
+        checkMatches(cart, model, products);
+    }
+
+    private static void orderSurvivesRenumbering() {
+        Product[] products = products(100);
+        Cart cart = new Cart(1L, USD);
+        for (Product product : products) {
+            cart.addProduct(product, 1);
+        }
+        // remove and re-add the first half over and over: each pass leaves 50 holes to compact
+        Map<Integer, Integer> model = new LinkedHashMap<>();
+        for (int pass = 0; pass < 20; pass++) {
+            for (int i = 0; i < 50; i++) {
+                cart.removeProduct(products[i].getId());
+            }
+            for (int i = 0; i < 50; i++) {
+                cart.addProduct(products[i], pass + 1);
+            }
+        }
+        for (int i = 50; i < 100; i++) {
+            model.put(products[i].getId(), 1);
+        }
+        for (int i = 0; i < 50; i++) {
+            model.put(products[i].getId(), 20);
+        }
+        checkMatches(cart, model, products);
+    }
+
+    private static void pricesFollowProductChanges() {
+        Product[] products = products(64);
+        Cart cart = new Cart(1L, USD);
+        for (Product product : products) {
+            cart.addProduct(product, 2);
+        }
+        products[5].updatePrice(Money.ofMinor(1, USD));
+        check(cart.getTotalAmount().getAmountMinor() == expectedTotal(cart), "one repriced line");
+        // more changes than the log holds: the cart must reprice every line
+        for (int i = 0; i < 20_000; i++) {
+            products[i % products.length].updatePrice(Money.ofMinor(100 + i % 13, USD));
+        }
+        check(cart.getTotalAmount().getAmountMinor() == expectedTotal(cart), "after the log wrapped");
+        // bulk updates: one log entry each, smaller and larger than the cart
+        Map<Integer, Money> some = new HashMap<>();
+        some.put(products[3].getId(), Money.ofMinor(5, USD));
+        some.put(products[60].getId(), Money.ofMinor(6, USD));
+        Product.updatePrices(some, id -> products[id - 1]);
+        check(cart.getTotalAmount().getAmountMinor() == expectedTotal(cart), "after a small bulk update");
+        Map<Integer, Money> all = new HashMap<>();
+        for (Product product : products) {
+            all.put(product.getId(), Money.ofMinor(42, USD));
+        }
+        Product.updatePrices(all, id -> products[id - 1]);
+        check(cart.getTotalAmount().getAmountMinor() == 42L * 2 * products.length, "after a bulk update of every product");
+    }
+
+    private static void restoredCartKeepsIdsOrderAndVersion() {
+        Product[] products = products(5);
+        List<LineItem> lines = new ArrayList<>();
+        lines.add(new LineItem(77, products[3], 2));
+        lines.add(new LineItem(11, products[0], 1));
+        Cart cart = new Cart(9L, USD, null, lines, CartStatus.ACTIVE, 41);
+        check(cart.getVersion() == 41, "version restored");
+        List<LineItem> restored = cart.getLineItems();
+        check(restored.get(0).getId() == 77 && restored.get(0).getProduct() == products[3], "first line restored");
+        check(restored.get(1).getId() == 11 && restored.get(1).getProduct() == products[0], "second line restored");
+        cart.addProduct(products[1], 1);
+        check(cart.getVersion() == 42 && cart.getLineItems().get(2).getProduct() == products[1], "new line appended");
+    }
+
+    private static void throwingListenerDoesNotFailWrites() {
+        Product[] products = products(2);
+        Cart cart = new Cart(1L, USD);
+        int[] heard = new int[2];
+        List<Throwable> reported = new ArrayList<>();
+        cart.addListener(new CartListener() {
+            @Override
+            public void lineChanged(Cart changed, Product product, int oldQuantity, int newQuantity) {
+                throw new IllegalStateException("listener down");
+            }
+
+            @Override
+            public void statusChanged(Cart changed, CartStatus oldStatus, CartStatus newStatus) {
+                throw new IllegalStateException("listener down");
+            }
+        });
+        cart.addListener(new CartListener() {
+            @Override
+            public void lineChanged(Cart changed, Product product, int oldQuantity, int newQuantity) {
+                heard[0]++;
+            }
+
+            @Override
+            public void statusChanged(Cart changed, CartStatus oldStatus, CartStatus newStatus) {
+                heard[1]++;
+            }
+        });
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler previous = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler((t, e) -> reported.add(e));
+        try {
+            cart.addProduct(products[0], 1);
+            cart.checkout();
+        } finally {
+            thread.setUncaughtExceptionHandler(previous);
+        }
+        check(cart.getTotalItems() == 1 && cart.getStatus() == CartStatus.CHECKED_OUT, "writes committed");
+        check(heard[0] == 1 && heard[1] == 1, "later listener still called");
+        check(reported.size() == 2, "failures reported: " + reported.size());
+    }
+
+    private static void checkMatches(Cart cart, Map<Integer, Integer> model, Product[] products) {
+        List<LineItem> lines = cart.getLineItems();
+        check(lines.size() == model.size(), "line count " + lines.size() + " vs " + model.size());
+        int i = 0;
+        long total = 0;
+        int items = 0;
+        for (Map.Entry<Integer, Integer> expected : model.entrySet()) {
+            LineItem line = lines.get(i++);
+            check(line.getProduct().getId() == expected.getKey(), "insertion order at line " + (i - 1));
+            check(line.getQuantity() == expected.getValue(), "quantity of product " + expected.getKey());
+            total += products[expected.getKey() - 1].getPrice().getAmountMinor() * expected.getValue();
+            items += expected.getValue();
+        }
+        check(cart.getTotalAmount().getAmountMinor() == total, "total amount");
+        check(cart.getTotalItems() == items, "total items");
+        check(cart.toOrderLineItems().size() == model.size(), "order lines");
+    }
+
+    private static long expectedTotal(Cart cart) {
+        long total = 0;
+        for (LineItem line : cart.getLineItems()) {
+            total += line.getProduct().getPrice().getAmountMinor() * line.getQuantity();
+        }
+        return total;
+    }
+
+    private static Product[] products(int count) {
+        Product[] products = new Product[count];
+        for (int i = 0; i < count; i++) {
+            products[i] = new Product(i + 1, "Product " + (i + 1), "Test product", Money.ofMinor(100 + i * 7L, USD));
+        }
+        return products;
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Check failed: " + what);
+        }
+    }
+}
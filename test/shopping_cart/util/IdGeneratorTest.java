@@ -0,0 +1,139 @@
+package shopping_cart.util;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// IdGenerator ordering: ids of one thread strictly increase even when the clock steps back or more
+// than 4096 are taken in one millisecond, an id is never stamped earlier than the clock when it was
+// taken, concurrent threads never share an id, and firstIdAt bounds the ids created in a time range.
+//
+// Run: javac -d out $(find shopping_cart test -name '*.java') && java -cp out shopping_cart.util.IdGeneratorTest
+public class IdGeneratorTest {
+
+    private static final long START_MILLIS = IdGenerator.EPOCH_MILLIS + 86_400_000L;
+
+    public static void main(String[] args) throws InterruptedException {
+        increasingAcrossClockSteps();
+        neverStampedBeforeTheClock();
+        uniqueAcrossThreads();
+        timeRangesBoundIds();
+        System.out.println("IdGeneratorTest passed");
+    }
+
+    private static void increasingAcrossClockSteps() {
+        ManualClock clock = new ManualClock(START_MILLIS);
+        IdGenerator ids = new IdGenerator(5, 256, clock);
+        long previous = -1;
+        for (int step = 0; step < 50_000; step++) {
+            if (step % 1000 == 0) {
+                clock.advance(step % 3000 == 0 ? -20 : 1); // every third step goes backwards
+            }
+            long id = ids.nextId();
+            check(id > previous, "step " + step + ": " + id + " after " + previous);
+            check(IdGenerator.nodeOf(id) == 5, "node bits");
+            previous = id;
+        }
+        // 50,000 ids in a few milliseconds: the counter ran ahead of the clock instead of blocking
+        check(IdGenerator.timestampMillis(previous) > clock.millis(), "runs ahead under a burst");
+    }
+
+    private static void neverStampedBeforeTheClock() {
+        ManualClock clock = new ManualClock(START_MILLIS);
+        IdGenerator ids = new IdGenerator(1, 4096, clock);
+        for (int i = 0; i < 100; i++) {
+            ids.nextId(); // grows this thread's block
+        }
+        for (int step = 0; step < 100; step++) {
+            clock.advance(1 + step % 7);
+            long id = ids.nextId();
+            check(IdGenerator.timestampMillis(id) >= clock.millis(), "stale block dropped at step " + step);
+        }
+    }
+
+    private static void uniqueAcrossThreads() throws InterruptedException {
+        IdGenerator ids = new IdGenerator(7);
+        int threads = 4;
+        int perThread = 100_000;
+        long[][] taken = new long[threads][perThread];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long[] mine = taken[t];
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    mine[i] = ids.nextId();
+                }
+            }, "id-worker-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Set<Long> seen = new HashSet<>();
+        for (long[] mine : taken) {
+            for (int i = 0; i < perThread; i++) {
+                check(seen.add(mine[i]), "duplicate id " + mine[i]);
+                check(i == 0 || mine[i] > mine[i - 1], "per-thread order at " + i);
+            }
+        }
+    }
+
+    private static void timeRangesBoundIds() {
+        ManualClock clock = new ManualClock(START_MILLIS);
+        IdGenerator node0 = new IdGenerator(0, 16, clock);
+        IdGenerator node1023 = new IdGenerator(IdGenerator.MAX_NODE_ID, 16, clock);
+        for (int ms = 0; ms < 50; ms++) {
+            Instant from = Instant.ofEpochMilli(clock.millis());
+            Instant to = from.plusMillis(1);
+            for (IdGenerator ids : new IdGenerator[] { node0, node1023 }) {
+                long id = ids.nextId();
+                check(id >= IdGenerator.firstIdAt(from) && id < IdGenerator.firstIdAt(to), "id within its millisecond");
+                check(IdGenerator.timestampMillis(id) == from.toEpochMilli(), "timestamp");
+            }
+            clock.advance(1);
+        }
+        check(IdGenerator.firstIdAt(Instant.EPOCH) == 0, "before the id epoch");
+    }
+
+    private static final class ManualClock extends Clock {
+        private final AtomicLong millis;
+
+        private ManualClock(long millis) {
+            this.millis = new AtomicLong(millis);
+        }
+
+        private void advance(long delta) {
+            millis.addAndGet(delta);
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            throw new AssertionError("Check failed: " + what);
+        }
+    }
+}